@@ -1,6 +1,7 @@
 
 package de.duesseldorf.frames;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -13,7 +14,8 @@ import de.tuebingen.tag.Environment;
  * @author Simon
  *
  */
-public class ConstraintLiteral{
+@SuppressWarnings("serial")
+public class ConstraintLiteral implements Serializable {
 
     
     public enum Kind {
@@ -1,5 +1,6 @@
 package de.duesseldorf.frames;
 
+import java.io.Serializable;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -13,7 +14,8 @@ import de.tuebingen.anchoring.NameFactory;
  * The frame serves as a holder for feature structures (Fs) and a set
  * of relations
  */
-public class Frame {
+@SuppressWarnings("serial")
+public class Frame implements Serializable {
 
     private List<Fs> featureStructures = new LinkedList<Fs>();
     private Set<Relation> relations = new HashSet<Relation>();
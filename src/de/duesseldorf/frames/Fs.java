@@ -34,12 +34,14 @@
  */
 package de.duesseldorf.frames;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -52,39 +54,43 @@ import de.tuebingen.tag.TagNode;
  *
  * @author wmaier, parmenti
  */
-public class Fs {
+@SuppressWarnings("serial")
+public class Fs implements Serializable {
 
-    private Hashtable<String, Value> AVlist;
+    // feature structures are copied for every anchoring and every
+    // unification, and most of them only have a handful of features: an
+    // unsynchronized map sized for its content is cheaper than a Hashtable
+    private Map<String, Value> AVlist;
     private Type type;
     private boolean is_typed;
     // we handle corefs only for typed feature structures to make it easier
     private Value coref;
 
     /**
-     * setting the AVlist to a fresh HashTable and everything else to null/false
+     * setting the AVlist to a fresh map and everything else to null/false
      */
     public Fs() {
-        AVlist = new Hashtable<String, Value>();
+        AVlist = newAVlist(0);
         type = null;
         coref = null;
         is_typed = false;
     }
 
     public Fs(Type type, Value coref) {
-        AVlist = new Hashtable<String, Value>();
+        AVlist = newAVlist(0);
         this.type = type;
         this.coref = coref;
         is_typed = type != null;
     }
 
-    public Fs(Hashtable<String, Value> avm) {
+    public Fs(Map<String, Value> avm) {
         AVlist = avm;
         this.type = null;
         is_typed = false;
         this.coref = null;
     }
 
-    public Fs(Hashtable<String, Value> avm, Type type, Value coref) {
+    public Fs(Map<String, Value> avm, Type type, Value coref) {
         AVlist = avm;
         if (type != null) {
             is_typed = true;
@@ -100,18 +106,18 @@ public class Fs {
             type = null;
             is_typed = false;
             coref = null;
-            AVlist = new Hashtable<String, Value>();
+            AVlist = newAVlist(0);
         } else {
             type = fs.getType();
             is_typed = fs.isTyped();
             coref = fs.getCoref();
-            AVlist = new Hashtable<String, Value>(fs.getAVlist().size());
+            AVlist = newAVlist(fs.getAVlist().size());
             Set<String> keys = fs.getAVlist().keySet();
             Iterator<String> i = keys.iterator();
             while (i.hasNext()) {
                 String k = (String) i.next();
                 Value v = fs.getFeat(k);
-                AVlist.put(new String(k), new Value(v));
+                AVlist.put(k, new Value(v));
             }
         }
     }
@@ -121,31 +127,40 @@ public class Fs {
             this.type = null;
             this.is_typed = false;
             this.coref = null;
-            AVlist = new Hashtable<String, Value>();
+            AVlist = newAVlist(0);
         } else {
             this.is_typed = fs.isTyped();
             if (fs.getType() == null) {
                 this.type = null;
                 this.is_typed = false;
+            } else if (fs.getType().getVar() != null) {
+                this.type = new Type(fs.getType(),
+                        new Value(fs.getType().getVar(), nf));
             } else
                 this.type = new Type(fs.getType());
-            if (type != null && type.getVar() != null) {
-                this.type.setVar(new Value(fs.getType().getVar(), nf));
-            }
             if (fs.getCoref() != null) {
                 this.coref = new Value(fs.getCoref(), nf);
             }
-            AVlist = new Hashtable<String, Value>(fs.getAVlist().size());
+            AVlist = newAVlist(fs.getAVlist().size());
             Set<String> keys = fs.getAVlist().keySet();
             Iterator<String> i = keys.iterator();
             while (i.hasNext()) {
                 String k = (String) i.next();
                 Value v = fs.getFeat(k);
-                AVlist.put(new String(k), new Value(v, nf));
+                AVlist.put(k, new Value(v, nf));
             }
         }
     }
 
+    /**
+     * @param size the number of features that will be stored
+     * @return an empty map that can take {@code size} features without being
+     * rehashed
+     */
+    private static Map<String, Value> newAVlist(int size) {
+        return new HashMap<String, Value>(size + size / 3 + 1);
+    }
+
     public int getSize() {
         return (AVlist.size());
     }
@@ -164,7 +179,8 @@ public class Fs {
                     + " already used, feature skipped. Existing value: "
                     + AVlist.get(key) + " / New value: " + val);
         } else if (val != null) {
-            AVlist.put(key, val);
+            // feature names are read from the grammar, keep only one copy
+            AVlist.put(key.intern(), val);
         }
     }
 
@@ -191,11 +207,7 @@ public class Fs {
      * method that lookup a feature in the FS
      */
     public Value getFeat(String key) {
-        if (AVlist.containsKey(key)) {
-            return AVlist.get(key);
-        } else {
-            return null;
-        }
+        return AVlist.get(key);
     }
 
     public Value getConstFeat(String key) {
@@ -548,7 +560,7 @@ public class Fs {
         } else
             seen.add(fs.getCoref());
 
-        Hashtable<String, Value> avm = fs.getAVlist();
+        Map<String, Value> avm = fs.getAVlist();
         Set<String> keys = avm.keySet();
         Iterator<String> i = keys.iterator();
         while (i.hasNext()) {
@@ -597,11 +609,11 @@ public class Fs {
         return res;
     }
 
-    public Hashtable<String, Value> getAVlist() {
+    public Map<String, Value> getAVlist() {
         return AVlist;
     }
 
-    public void setAVlist(Hashtable<String, Value> vlist) {
+    public void setAVlist(Map<String, Value> vlist) {
         AVlist = vlist;
     }
 
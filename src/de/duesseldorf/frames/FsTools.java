@@ -28,10 +28,11 @@
  */
 package de.duesseldorf.frames;
 
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import de.tuebingen.tag.Environment;
@@ -117,6 +118,32 @@ public class FsTools {
         return false;
     }
 
+    /**
+     * Check whether fs1 and fs2 unify in env. When it returns, env and the
+     * feature structures are as they were before: the bindings made while
+     * trying are taken back using the trail of env, and so are the changes
+     * unification makes to its inputs (the corefs of untyped feature
+     * structures and the variables put in front of atomic disjunctions).
+     * While it runs, the feature structures are changed in place, so copy
+     * them first if another thread can read them at the same time.
+     *
+     * @param fs1
+     * @param fs2
+     * @param env
+     * @return
+     */
+    public static boolean unifiable(Fs fs1, Fs fs2, Environment env) {
+        int mark = env.mark();
+        try {
+            unify(fs1, fs2, env);
+            return true;
+        } catch (UnifyException e) {
+            return false;
+        } finally {
+            env.undo(mark);
+        }
+    }
+
     /**
      * Temporary method so that nothing breaks
      *
@@ -141,9 +168,9 @@ public class FsTools {
      *
      * @param fs1,
      *            fs2, env
-     *            fs1 is a feature structure containing a hashtable of
+     *            fs1 is a feature structure containing a map of
      *            String,Value
-     *            fs2 is a feature structure containing a hashtable of
+     *            fs2 is a feature structure containing a map of
      *            String,Value
      *            env is an environment global to the 2 feature structures,
      *            and that
@@ -151,8 +178,8 @@ public class FsTools {
      */
     static Fs unify(Fs fs1, Fs fs2, Environment env, Set<Value> seen)
             throws UnifyException {
-        Hashtable<String, Value> avm1 = fs1.getAVlist();
-        Hashtable<String, Value> avm2 = fs2.getAVlist();
+        Map<String, Value> avm1 = fs1.getAVlist();
+        Map<String, Value> avm2 = fs2.getAVlist();
 
         if (fs1.getCoref() != null && seen.contains(fs1.getCoref())) {
             //System.out.println("Stopping unification because of recursion: " + fs1);
@@ -162,9 +189,11 @@ public class FsTools {
             // seen.add(fs2.getCoref());
         }
         // the resulting avm:
-        Hashtable<String, Value> resultingAVM = new Hashtable<String, Value>();
+        int size = avm1.size() + avm2.size();
+        Map<String, Value> resultingAVM = new HashMap<String, Value>(
+                size + size / 3 + 1);
         // a temporary avm used to store non-common features:
-        Hashtable<String, Value> todo = new Hashtable<String, Value>();
+        Map<String, Value> todo = new HashMap<String, Value>();
 
         // 1. loop through avm1
         for (String k : avm1.keySet()) {
@@ -226,6 +255,7 @@ public class FsTools {
                 // System.out.println("Done unify");
             } else {
                 resCoref = fs1.getCoref();
+                env.trailCoref(fs2);
                 fs2.setCoref(fs1.getCoref());
             }
         } else {
@@ -331,7 +361,7 @@ public class FsTools {
     static boolean checkAttrConstraint(Fs frame, LinkedList<String> path, List<String> type, Environment env, NameFactory nf)
 	throws UnifyException {
 
-	Hashtable<String, Value> features = frame.getAVlist();
+	Map<String, Value> features = frame.getAVlist();
 	if(path.size() == 1){
 	    // check if the attribute is present
 	    // if yes, check if it has the right type
@@ -381,7 +411,7 @@ public class FsTools {
 	System.out.println("path: " + path.toString());
 	System.out.println("type: " + type.toString());
 	
-	Hashtable<String, Value> features = frame.getAVlist();
+	Map<String, Value> features = frame.getAVlist();
 	if(path.size() == 1){
 	    // check if the attribute is present
 	    // if yes, check if it has the right type
@@ -1,6 +1,7 @@
 
 package de.duesseldorf.frames;
 
+import java.io.Serializable;
 import java.util.List;
 
 import de.tuebingen.tag.Environment;
@@ -10,7 +11,8 @@ import de.duesseldorf.frames.ConstraintLiteral;
  * @author Simon
  *
  */
-public class HierarchyConstraint{
+@SuppressWarnings("serial")
+public class HierarchyConstraint implements Serializable {
 
     private List<ConstraintLiteral> left;
     private List<ConstraintLiteral> right;
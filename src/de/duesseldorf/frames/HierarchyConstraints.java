@@ -1,6 +1,7 @@
 
 package de.duesseldorf.frames;
 
+import java.io.Serializable;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -16,7 +17,8 @@ import de.duesseldorf.frames.ConstraintLiteral.Kind;
  * @author Simon
  *
  */
-public class HierarchyConstraints{
+@SuppressWarnings("serial")
+public class HierarchyConstraints implements Serializable {
 
     // private List<HierarchyConstraint> typeConstraints;
     // private List<HierarchyConstraint> typeToPathConstraints;
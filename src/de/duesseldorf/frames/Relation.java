@@ -1,11 +1,13 @@
 package de.duesseldorf.frames;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
 
 import de.tuebingen.anchoring.NameFactory;
 
-public class Relation {
+@SuppressWarnings("serial")
+public class Relation implements Serializable {
 
     private String name;
     private List<Value> arguments;
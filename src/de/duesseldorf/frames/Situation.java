@@ -36,31 +36,99 @@ import de.tuebingen.tree.Grammar;
  * Stores a grammar, the corresponding frames and the type hierarchy to allow
  * easy access.
  *
+ * A Situation object is immutable and can be given to the classes that do
+ * anchoring and parsing, so that several grammars can be used in one JVM. The
+ * static getters return the situation bound to the current thread (a parser
+ * binds its situation while it is running), or else the default situation
+ * set with {@link #instantiate(Grammar, Grammar, TypeHierarchy)}. Code deep
+ * inside unification uses the static getters.
+ *
  * @author david
  *
  */
 public class Situation {
 
-    private static Grammar g;
-    private static Grammar frameG;
-    private static TypeHierarchy tyHi;
+    private static volatile Situation defaultSituation;
+    private static final ThreadLocal<Situation> boundSituation = new ThreadLocal<Situation>();
+
+    private final Grammar g;
+    private final Grammar frameG;
+    private final TypeHierarchy tyHi;
 
+    public Situation(Grammar grammar, Grammar frameGrammar,
+                     TypeHierarchy typeHierarchy) {
+        this.g = grammar;
+        this.frameG = frameGrammar;
+        this.tyHi = typeHierarchy;
+    }
+
+    /**
+     * set the default situation
+     */
     public static void instantiate(Grammar grammar, Grammar frameGrammar,
                                    TypeHierarchy typeHierarchy) {
-        g = grammar;
-        frameG = frameGrammar;
-        tyHi = typeHierarchy;
+        defaultSituation = new Situation(grammar, frameGrammar, typeHierarchy);
+    }
+
+    /**
+     * @return the situation bound to the current thread, or the default
+     * situation if there is none
+     */
+    public static Situation current() {
+        Situation bound = boundSituation.get();
+        return bound != null ? bound : defaultSituation;
+    }
+
+    /**
+     * Bind a situation to the current thread. Always restore the previous one
+     * when done:
+     *
+     * <pre>
+     * Situation previous = Situation.bind(situation);
+     * try {
+     *     ...
+     * } finally {
+     *     Situation.bind(previous);
+     * }
+     * </pre>
+     *
+     * @param situation null to fall back to the default situation
+     * @return the situation that was bound before
+     */
+    public static Situation bind(Situation situation) {
+        Situation previous = boundSituation.get();
+        if (situation == null) {
+            boundSituation.remove();
+        } else {
+            boundSituation.set(situation);
+        }
+        return previous;
     }
 
     public static Grammar getGrammar() {
-        return g;
+        Situation current = current();
+        return current == null ? null : current.g;
     }
 
     public static Grammar getFrameGrammar() {
-        return frameG;
+        Situation current = current();
+        return current == null ? null : current.frameG;
     }
 
     public static TypeHierarchy getTypeHierarchy() {
+        Situation current = current();
+        return current == null ? null : current.tyHi;
+    }
+
+    public Grammar grammar() {
+        return g;
+    }
+
+    public Grammar frameGrammar() {
+        return frameG;
+    }
+
+    public TypeHierarchy typeHierarchy() {
         return tyHi;
     }
 }
@@ -29,7 +29,9 @@
 
 package de.duesseldorf.frames;
 
+import java.io.Serializable;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
@@ -46,15 +48,17 @@ import de.tuebingen.tag.Environment;
  *         Variable.
  *
  */
-public final class Type {
+@SuppressWarnings("serial")
+public final class Type implements Serializable {
 
     private Set<String> elemTypes;
     private Value var;
+    // never modified, so that copies can share it
     private Set<TypeConstraint> typeConstraints;
     private Boolean truevar;
 
     public Type(Collection<String> elementaryTypes) {
-        this.typeConstraints = new HashSet<TypeConstraint>();
+        this.typeConstraints = Collections.<TypeConstraint>emptySet();
         this.elemTypes = new HashSet<String>(elementaryTypes);
         this.var = new Value(Value.Kind.VAR, new NameFactory().getUniqueName());
         this.truevar = false;
@@ -63,7 +67,7 @@ public final class Type {
     public Type(Collection<String> elementaryTypes, Value variable) {
         this.elemTypes = new HashSet<String>(elementaryTypes);
         this.var = variable;
-        this.typeConstraints = new HashSet<TypeConstraint>();
+        this.typeConstraints = Collections.<TypeConstraint>emptySet();
         this.truevar = true;
     }
 
@@ -71,13 +75,15 @@ public final class Type {
                 Collection<TypeConstraint> typeConstraints) {
         this.elemTypes = new HashSet<String>(elementaryTypes);
         this.var = variable;
-        this.typeConstraints = new HashSet<TypeConstraint>(typeConstraints);
+        this.typeConstraints = Collections.unmodifiableSet(
+                new HashSet<TypeConstraint>(typeConstraints));
         this.truevar = true;
     }
 
     public Type(Collection<String> elementaryTypes,
                 Collection<TypeConstraint> typeConstraints) {
-        this.typeConstraints = new HashSet<TypeConstraint>(typeConstraints);
+        this.typeConstraints = Collections.unmodifiableSet(
+                new HashSet<TypeConstraint>(typeConstraints));
         this.elemTypes = new HashSet<String>(elementaryTypes);
         this.var = new Value(Value.Kind.VAR, new NameFactory().getUniqueName());
         this.truevar = false;
@@ -101,6 +107,21 @@ public final class Type {
         this.truevar = false;
     }
 
+    /**
+     * A copy of t with another variable. The sets of elementary types and of
+     * type constraints are not copied but shared with t.
+     *
+     * @param t
+     * @param var
+     */
+    public Type(Type t, Value var) {
+        this.elemTypes = t.elemTypes != null ? t.elemTypes
+                : new HashSet<String>();
+        this.var = var;
+        this.typeConstraints = t.getTypeConstraints();
+        this.truevar = false;
+    }
+
     public Value getVar() {
         return var;
     }
@@ -120,7 +141,9 @@ public final class Type {
         Set<String> resultingElementaryTypes = t.getElementaryTypes();
         resultingElementaryTypes.addAll(elemTypes);
 
-        Set<TypeConstraint> resultingTypeConstraints = t.getTypeConstraints();
+        // the type constraints of t can not be modified
+        Set<TypeConstraint> resultingTypeConstraints = new HashSet<TypeConstraint>(
+                t.getTypeConstraints());
         resultingTypeConstraints.addAll(typeConstraints);
         result = new Type(resultingElementaryTypes, resultingTypeConstraints);
         return result;
@@ -147,10 +170,21 @@ public final class Type {
         return ttypes.containsAll(elemTypes);
     }
 
+    /**
+     * @return the type constraints. The set can not be modified, it may be
+     * shared with copies of this type.
+     */
     public Set<TypeConstraint> getTypeConstraints() {
         return this.typeConstraints;
     }
 
+    /**
+     * @return the elementary types without copying them. Do not modify.
+     */
+    Set<String> elementaryTypes() {
+        return elemTypes != null ? elemTypes : Collections.<String>emptySet();
+    }
+
     public Set<String> getElementaryTypes() {
         if (elemTypes != null) {
             Set<String> e = new HashSet<String>(elemTypes);
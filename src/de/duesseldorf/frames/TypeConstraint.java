@@ -1,12 +1,14 @@
 package de.duesseldorf.frames;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedList;
 
 import de.tuebingen.anchoring.NameFactory;
 
-public class TypeConstraint {
+@SuppressWarnings("serial")
+public class TypeConstraint implements Serializable {
 
     private LinkedList<String> attributes;
     private Type type;
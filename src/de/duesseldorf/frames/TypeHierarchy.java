@@ -28,11 +28,16 @@
  */
 package de.duesseldorf.frames;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.tuebingen.tag.Environment;
 import de.duesseldorf.frames.HierarchyConstraint;
@@ -43,11 +48,22 @@ import de.duesseldorf.frames.HierarchyConstraints;
  * @author david
  *
  */
-public class TypeHierarchy {
+@SuppressWarnings("serial")
+public class TypeHierarchy implements Serializable {
 
     private HashMap<Integer, Set<Type>> tyHi;
     private HierarchyConstraints tyCo;
 
+    // the hierarchy compiled at load time: every elementary type gets an id,
+    // and every type in the hierarchy is a bitset of elementary type ids.
+    // lattice is ordered by specificity, starting at specStart[spec].
+    private Map<String, Integer> elementaryTypeIds;
+    private BitSet[] lattice;
+    private Type[] latticeTypes;
+    private int[] specStart;
+    // union of elementary types -> index in lattice, or -1 if there is none
+    private Map<BitSet, Integer> meets;
+
     /**
      * given a Collection of Types, create a type hierarchy.
      *
@@ -64,9 +80,44 @@ public class TypeHierarchy {
             }
             tyHi.get(type.getSpec()).add(new Type(type));
         }
+        compile();
     }
 
-
+    /**
+     * Compile the hierarchy into the bitset lattice. Within one specificity,
+     * the types keep the order in which leastSpecificSubtype used to try them.
+     */
+    private void compile() {
+        this.elementaryTypeIds = new HashMap<String, Integer>();
+        this.meets = new ConcurrentHashMap<BitSet, Integer>();
+        int max = tyHi.isEmpty() ? -1 : Collections.max(tyHi.keySet());
+        List<BitSet> bitsets = new ArrayList<BitSet>();
+        List<Type> types = new ArrayList<Type>();
+        this.specStart = new int[max + 2];
+        for (int spec = 0; spec <= max; spec++) {
+            specStart[spec] = types.size();
+            Set<Type> typesWithSpec = tyHi.get(spec);
+            if (typesWithSpec == null) {
+                continue;
+            }
+            for (Type type : typesWithSpec) {
+                BitSet bits = new BitSet();
+                for (String elementaryType : type.getElementaryTypes()) {
+                    Integer id = elementaryTypeIds.get(elementaryType);
+                    if (id == null) {
+                        id = elementaryTypeIds.size();
+                        elementaryTypeIds.put(elementaryType, id);
+                    }
+                    bits.set(id);
+                }
+                bitsets.add(bits);
+                types.add(type);
+            }
+        }
+        specStart[max + 1] = types.size();
+        this.lattice = bitsets.toArray(new BitSet[0]);
+        this.latticeTypes = types.toArray(new Type[0]);
+    }
 
     /**
      *
@@ -81,18 +132,21 @@ public class TypeHierarchy {
         // System.out.println("Find least specific subtype of a and b");
         // System.out.println(a);
         // System.out.println(b);
-        Type union = a.union(b, env);
         Value resvar = ValueTools.unify(a.getVar(), b.getVar(), env);
-        int max = Collections.max(tyHi.keySet());
-        if (union.getSpec() <= max) {
-            for (int i = union.getSpec(); i <= max; i++) {
-                for (Type type : tyHi.get(i)) {
-                    if (union.subsumes(type)) {
-                        return new Type(type.getElementaryTypes(), resvar,
-                                type.getTypeConstraints());
-                    }
-                }
+        BitSet union = new BitSet();
+        int meet = -1;
+        if (addElementaryTypes(a, union) && addElementaryTypes(b, union)) {
+            Integer cached = meets.get(union);
+            if (cached == null) {
+                cached = computeMeet(union);
+                meets.put(union, cached);
             }
+            meet = cached;
+        }
+        if (meet >= 0) {
+            Type type = latticeTypes[meet];
+            return new Type(type.elementaryTypes(), resvar,
+                    type.getTypeConstraints());
         }
         throw new UnifyException("Types " + a + " and " + b
                 + " are incompatible in the environment " + env);
@@ -101,6 +155,41 @@ public class TypeHierarchy {
         // return null;
     }
 
+    /**
+     * add the ids of the elementary types of t to bits
+     *
+     * @return false if t has an elementary type that is not in the hierarchy
+     */
+    private boolean addElementaryTypes(Type t, BitSet bits) {
+        for (String elementaryType : t.elementaryTypes()) {
+            Integer id = elementaryTypeIds.get(elementaryType);
+            if (id == null) {
+                return false;
+            }
+            bits.set(id);
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of the first type in the lattice that contains all of
+     * union, or -1
+     */
+    private int computeMeet(BitSet union) {
+        int spec = union.cardinality();
+        if (spec >= specStart.length - 1) {
+            return -1;
+        }
+        for (int i = specStart[spec]; i < lattice.length; i++) {
+            BitSet candidate = (BitSet) union.clone();
+            candidate.andNot(lattice[i]);
+            if (candidate.isEmpty()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public String toString() {
         StringBuffer sb = new StringBuffer();
         for (int i = 0; i <= Collections.max(tyHi.keySet()); i++) {
@@ -29,6 +29,7 @@
  */
 package de.duesseldorf.frames;
 
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
@@ -43,7 +44,8 @@ import de.tuebingen.tag.SemLit;
  *
  * @author parmenti
  */
-public class Value implements SemLit {
+@SuppressWarnings("serial")
+public class Value implements SemLit, Serializable {
 
     public enum Kind {
         VAL, INT, AVM, ADISJ, VAR;
@@ -70,7 +72,7 @@ public class Value implements SemLit {
      */
     public Value(int i) {
         sVal = null;
-        iVal = new Integer(i);
+        iVal = Integer.valueOf(i);
         avmVal = null;
         adisj = null;
         varVal = null;
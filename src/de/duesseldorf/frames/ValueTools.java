@@ -447,6 +447,7 @@ public class ValueTools {
                 env.bind(b.getVarVal(), aMaybeVar);
             } else {
                 // the variable b is now bound to the adisj a:
+                env.trailAdisj(a);
                 a.getAdisj().addFirst(b);
                 env.bind(b.getVarVal(), a);
             }
@@ -0,0 +1,681 @@
+/**
+ * File GrammarImage.java
+ * <p>
+ * This file is part of the TuLiPA-frames system
+ * https://github.com/spetitjean/TuLiPA-frames
+ * <p>
+ * <p>
+ * TuLiPA is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * TuLiPA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.duesseldorf.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import de.duesseldorf.frames.TypeHierarchy;
+import de.duesseldorf.rrg.RRG;
+import de.duesseldorf.rrg.RRGTree;
+import de.tuebingen.lexicon.Lemma;
+import de.tuebingen.lexicon.MorphEntry;
+import de.tuebingen.tag.TTMCTAG;
+import de.tuebingen.tag.Tuple;
+import de.tuebingen.tree.Grammar;
+
+/**
+ * A compiled image of a loaded TAG or RRG grammar, with its frames,
+ * lemmas, morphological entries and type hierarchy, so that the XML files
+ * do not have to be read again (option -image).
+ * <p>
+ * The image starts with a header giving its format version, the loading
+ * mode and a checksum of every source file, so an image whose sources (or
+ * mode) changed is not used. The rest are sections of serialized objects.
+ * The image is memory-mapped when it is opened (in segments, so that it
+ * can be larger than 2 GB), and the tuples, frames, lemmas and
+ * morphological entries are stored in chunks of a few keys that are only
+ * deserialized when one of their keys is looked up. The RRG trees
+ * and the type hierarchy are read at once.
+ * <p>
+ * Only the keys (families, lemmas, ...) are kept in memory. The decoded
+ * chunks can be limited with {@link #setCacheBudget(long)}: the chunks
+ * that were least recently used are dropped (and decoded again when they
+ * are needed) to stay within the budget.
+ * <p>
+ * Objects are written with Java serialization, without fixed
+ * serialVersionUIDs: after a change of the grammar classes, an old image
+ * can't be read (an InvalidClassException when it is opened) and is built
+ * again. This is why the serializable grammar classes suppress the warning
+ * about their missing serialVersionUID. {@link #VERSION} only changes with
+ * the layout of the image itself.
+ */
+public class GrammarImage {
+
+    private static final String MAGIC = "TuLiPA grammar image";
+    private static final int VERSION = 3;
+    // number of keys of a map deserialized at once
+    private static final int CHUNK_SIZE = 64;
+    // size of the segments the image is mapped in
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final String TUPLES = "tuples";
+    private static final String FRAMES = "frames";
+    private static final String RRG_TREES = "rrgTrees";
+    private static final String LEMMAS = "lemmas";
+    private static final String MORPHS = "morphs";
+    private static final String TYPE_HIERARCHY = "typeHierarchy";
+
+    // the image, mapped in segments of SEGMENT_SIZE bytes
+    private final MappedByteBuffer[] data;
+    // offset and length of the sections in data
+    private final Map<String, long[]> sections;
+    private final boolean needsAnchoring;
+    private final boolean framesNeedAnchoring;
+
+    // the decoded chunks of all the maps, least recently used first
+    private final LinkedHashMap<ImageMap<?>.Chunk, Boolean> cache = new LinkedHashMap<ImageMap<?>.Chunk, Boolean>(
+            16, 0.75f, true);
+    // size of the decoded chunks, and the maximum size (<= 0 for no
+    // limit), measured by their size in the image
+    private long cacheSize = 0;
+    private long cacheBudget = 0;
+
+    private GrammarImage(MappedByteBuffer[] data, Map<String, long[]> sections,
+                         boolean needsAnchoring, boolean framesNeedAnchoring) {
+        this.data = data;
+        this.sections = sections;
+        this.needsAnchoring = needsAnchoring;
+        this.framesNeedAnchoring = framesNeedAnchoring;
+    }
+
+    /**
+     * @param image   the image file
+     * @param mode    the loading mode the image must have been written with
+     * @param sources the source files of the grammar, by option name
+     * @return the image, or null if it does not exist, or if it was written
+     * from other source files, in another mode or by another version
+     */
+    public static GrammarImage open(File image, String mode,
+                                    Map<String, File> sources) throws IOException {
+        if (!image.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(image, "r")) {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            MappedByteBuffer[] data = new MappedByteBuffer[(int) ((size
+                    + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < data.length; i++) {
+                long start = i * SEGMENT_SIZE;
+                data[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(SEGMENT_SIZE, size - start));
+            }
+            DataInputStream in = new DataInputStream(
+                    new MappedInputStream(data, 0, size));
+            if (!in.readUTF().equals(MAGIC) || in.readInt() != VERSION
+                    || !in.readUTF().equals(mode)
+                    || !in.readUTF().equals(checksums(sources))) {
+                return null;
+            }
+            boolean needsAnchoring = in.readBoolean();
+            boolean framesNeedAnchoring = in.readBoolean();
+            Map<String, long[]> sections = new LinkedHashMap<String, long[]>();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String name = in.readUTF();
+                sections.put(name, new long[]{in.readLong(), in.readLong()});
+            }
+            // the mapping stays valid after the channel is closed
+            return new GrammarImage(data, sections, needsAnchoring,
+                    framesNeedAnchoring);
+        }
+    }
+
+    /**
+     * Write the image of a grammar loaded from the source files. The
+     * sections are written one after the other, so that the image is never
+     * in memory as a whole.
+     */
+    public static void write(File image, String mode, Map<String, File> sources,
+                             Grammar g, Grammar frameG, TypeHierarchy tHi) throws IOException {
+        // maps are written in chunks, other objects at once
+        Map<String, Object> sections = new LinkedHashMap<String, Object>();
+        if (g instanceof TTMCTAG) {
+            sections.put(TUPLES, ((TTMCTAG) g).getGrammar());
+        } else if (g instanceof RRG) {
+            // as a list, so that the trees keep their order (a deserialized
+            // HashSet is ordered by the hash codes of the new trees)
+            sections.put(RRG_TREES,
+                    new ArrayList<RRGTree>(((RRG) g).getTrees()));
+        } else {
+            throw new IOException("No image for grammars of type "
+                    + g.getClass().getSimpleName());
+        }
+        if (frameG != null) {
+            sections.put(FRAMES, ((TTMCTAG) frameG).getGrammar());
+        }
+        if (g.getLemmas() != null) {
+            sections.put(LEMMAS, g.getLemmas());
+        }
+        if (g.getMorphEntries() != null) {
+            sections.put(MORPHS, g.getMorphEntries());
+        }
+        if (tHi != null) {
+            sections.put(TYPE_HIERARCHY, tHi);
+        }
+        String checksums = checksums(sources);
+        boolean framesNeedAnchoring = frameG != null && frameG.needsAnchoring();
+        // offset and length of every section, only known once they are
+        // written
+        long[] table = new long[2 * sections.size()];
+        byte[] header = header(mode, checksums, g.needsAnchoring(),
+                framesNeedAnchoring, sections.keySet(), table);
+        // written to a temporary file first, so that a parser opening the
+        // image never sees half of it
+        File tmp = new File(image.getPath() + ".tmp");
+        try (CountingOutputStream count = new CountingOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+             DataOutputStream out = new DataOutputStream(count)) {
+            out.write(header);
+            int i = 0;
+            for (Object section : sections.values()) {
+                table[i] = count.written;
+                if (section instanceof Map) {
+                    writeChunked(out, count, (Map<?, ?>) section);
+                } else {
+                    out.write(serialize(section));
+                }
+                table[i + 1] = count.written - table[i];
+                i += 2;
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+            raf.write(header(mode, checksums, g.needsAnchoring(),
+                    framesNeedAnchoring, sections.keySet(), table));
+        }
+        if (!tmp.renameTo(image)) {
+            image.delete();
+            if (!tmp.renameTo(image)) {
+                throw new IOException("Can't write " + image);
+            }
+        }
+    }
+
+    private static byte[] header(String mode, String checksums,
+                                 boolean needsAnchoring, boolean framesNeedAnchoring,
+                                 Set<String> sections, long[] table) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        out.writeUTF(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(mode);
+        out.writeUTF(checksums);
+        out.writeBoolean(needsAnchoring);
+        out.writeBoolean(framesNeedAnchoring);
+        out.writeInt(sections.size());
+        int i = 0;
+        for (String name : sections) {
+            out.writeUTF(name);
+            out.writeLong(table[i]);
+            out.writeLong(table[i + 1]);
+            i += 2;
+        }
+        out.flush();
+        return header.toByteArray();
+    }
+
+    /**
+     * Limit the memory used by the decoded tuples, frames, lemmas and
+     * morphological entries.
+     *
+     * @param budget the maximum size of the decoded chunks, measured by
+     *               their size in the image (in bytes), <= 0 for no limit
+     */
+    public void setCacheBudget(long budget) {
+        synchronized (cache) {
+            cacheBudget = budget;
+            evict(null);
+        }
+    }
+
+    public Grammar getGrammar() throws IOException {
+        Grammar g;
+        if (sections.containsKey(TUPLES)) {
+            g = new TTMCTAG(new ImageMap<List<Tuple>>(TUPLES));
+        } else {
+            @SuppressWarnings("unchecked")
+            List<RRGTree> trees = (List<RRGTree>) deserialize(
+                    sections.get(RRG_TREES));
+            g = new RRG(new LinkedHashSet<RRGTree>(trees));
+        }
+        g.setNeedsAnchoring(needsAnchoring);
+        if (sections.containsKey(LEMMAS)) {
+            g.setLemmas(new ImageMap<List<Lemma>>(LEMMAS));
+        }
+        if (sections.containsKey(MORPHS)) {
+            g.setMorphEntries(new ImageMap<List<MorphEntry>>(MORPHS));
+        }
+        return g;
+    }
+
+    /**
+     * @return the frame grammar, or null if there is none
+     */
+    public Grammar getFrameGrammar() throws IOException {
+        if (!sections.containsKey(FRAMES)) {
+            return null;
+        }
+        TTMCTAG frameG = new TTMCTAG(new ImageMap<List<Tuple>>(FRAMES));
+        frameG.setNeedsAnchoring(framesNeedAnchoring);
+        return frameG;
+    }
+
+    /**
+     * @return the type hierarchy, or null if there is none
+     */
+    public TypeHierarchy getTypeHierarchy() throws IOException {
+        if (!sections.containsKey(TYPE_HIERARCHY)) {
+            return null;
+        }
+        return (TypeHierarchy) deserialize(sections.get(TYPE_HIERARCHY));
+    }
+
+    /**
+     * @return the length and CRC32 of every source file, with their option
+     * names
+     */
+    private static String checksums(Map<String, File> sources)
+            throws IOException {
+        StringBuilder sb = new StringBuilder();
+        byte[] buf = new byte[1 << 16];
+        for (Map.Entry<String, File> source : sources.entrySet()) {
+            CRC32 crc = new CRC32();
+            try (InputStream in = new FileInputStream(source.getValue())) {
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    crc.update(buf, 0, n);
+                }
+            }
+            sb.append(source.getKey()).append(':')
+                    .append(source.getValue().length()).append(':')
+                    .append(Long.toHexString(crc.getValue())).append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A map section: the chunks, each containing the entries of CHUNK_SIZE
+     * keys, then the index (keys and offset of every chunk relative to the
+     * start of the section) and the length of the index.
+     */
+    private static void writeChunked(DataOutputStream out,
+                                     CountingOutputStream count, Map<?, ?> map) throws IOException {
+        List<Object> keys = new ArrayList<Object>(map.keySet());
+        int nChunks = (keys.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        long start = count.written;
+        long[] chunkOffsets = new long[nChunks + 1];
+        for (int c = 0; c < nChunks; c++) {
+            // keeps the order of the keys, as in the map the image was
+            // written from
+            LinkedHashMap<Object, Object> chunk = new LinkedHashMap<Object, Object>();
+            for (Object key : keys.subList(c * CHUNK_SIZE,
+                    Math.min(keys.size(), (c + 1) * CHUNK_SIZE))) {
+                chunk.put(key, map.get(key));
+            }
+            chunkOffsets[c] = count.written - start;
+            out.write(serialize(chunk));
+        }
+        chunkOffsets[nChunks] = count.written - start;
+        byte[] index = serialize(new Object[]{
+                keys.toArray(new String[keys.size()]), chunkOffsets});
+        out.write(index);
+        out.writeInt(index.length);
+    }
+
+    /**
+     * Drop the least recently used chunks until the cache is within its
+     * budget. The caller must hold the lock of the cache.
+     *
+     * @param keep a chunk which is not dropped, or null
+     */
+    private void evict(ImageMap<?>.Chunk keep) {
+        if (cacheBudget <= 0) {
+            return;
+        }
+        Iterator<ImageMap<?>.Chunk> it = cache.keySet().iterator();
+        while (cacheSize > cacheBudget && it.hasNext()) {
+            ImageMap<?>.Chunk c = it.next();
+            if (c != keep) {
+                it.remove();
+                c.drop();
+                cacheSize -= c.size;
+            }
+        }
+    }
+
+    private Object deserialize(long[] section) throws IOException {
+        return deserialize(section[0], section[1]);
+    }
+
+    private Object deserialize(long offset, long length) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new MappedInputStream(data, offset, offset + length))) {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * A map read from a map section of the image. Only the keys are read
+     * when it is created, the values are deserialized chunk by chunk when
+     * they are looked up, and may be dropped again (see
+     * {@link GrammarImage#setCacheBudget(long)}). The map can be changed:
+     * the values that were put are kept in memory.
+     */
+    private class ImageMap<V> extends AbstractMap<String, V> {
+
+        private final Map<String, Integer> chunkOfKey = new HashMap<String, Integer>();
+        private final List<Chunk> chunks = new ArrayList<Chunk>();
+        // the keys, in the order they were written, and the values that were
+        // put
+        private final Set<String> keys = new LinkedHashSet<String>();
+        private final Map<String, V> values = new LinkedHashMap<String, V>();
+
+        /**
+         * A chunk of the section, which is decoded or not.
+         */
+        class Chunk {
+            final long offset;
+            final long size;
+            Map<String, V> entries;
+
+            Chunk(long offset, long size) {
+                this.offset = offset;
+                this.size = size;
+            }
+
+            void drop() {
+                entries = null;
+            }
+        }
+
+        ImageMap(String section) throws IOException {
+            long[] s = sections.get(section);
+            long end = s[0] + s[1] - 4;
+            int indexLength = new DataInputStream(
+                    new MappedInputStream(data, end, end + 4)).readInt();
+            Object[] index = (Object[]) deserialize(end - indexLength,
+                    indexLength);
+            String[] k = (String[]) index[0];
+            long[] chunkOffsets = (long[]) index[1];
+            for (int i = 0; i + 1 < chunkOffsets.length; i++) {
+                chunks.add(new Chunk(s[0] + chunkOffsets[i],
+                        chunkOffsets[i + 1] - chunkOffsets[i]));
+            }
+            for (int i = 0; i < k.length; i++) {
+                keys.add(k[i]);
+                chunkOfKey.put(k[i], i / CHUNK_SIZE);
+            }
+            // the first chunk is read at once, so that an image written with
+            // other versions of the classes is noticed here
+            if (!chunks.isEmpty()) {
+                synchronized (cache) {
+                    decodeChunk(chunks.get(0));
+                }
+            }
+        }
+
+        /**
+         * @return the decoded entries of the chunk of the key, or null if
+         * the key was not in the image
+         */
+        private Map<String, V> entries(Object key) {
+            Integer i = chunkOfKey.get(key);
+            if (i == null) {
+                return null;
+            }
+            Chunk chunk = chunks.get(i);
+            if (chunk.entries == null) {
+                try {
+                    decodeChunk(chunk);
+                } catch (IOException e) {
+                    throw new IllegalStateException(
+                            "Can't read the grammar image, please delete it: "
+                                    + e.getMessage(), e);
+                }
+            } else {
+                // marks the chunk as recently used
+                cache.get(chunk);
+            }
+            return chunk.entries;
+        }
+
+        private void decodeChunk(Chunk chunk) throws IOException {
+            @SuppressWarnings("unchecked")
+            Map<String, V> entries = (Map<String, V>) deserialize(
+                    chunk.offset, chunk.size);
+            chunk.entries = entries;
+            cache.put(chunk, Boolean.TRUE);
+            cacheSize += chunk.size;
+            evict(chunk);
+        }
+
+        @Override
+        public V get(Object key) {
+            synchronized (cache) {
+                if (!keys.contains(key)) {
+                    return null;
+                }
+                if (values.containsKey(key)) {
+                    return values.get(key);
+                }
+                Map<String, V> entries = entries(key);
+                return entries == null ? null : entries.get(key);
+            }
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            synchronized (cache) {
+                return keys.contains(key);
+            }
+        }
+
+        @Override
+        public V put(String key, V value) {
+            synchronized (cache) {
+                V old = get(key);
+                keys.add(key);
+                values.put(key, value);
+                return old;
+            }
+        }
+
+        @Override
+        public V remove(Object key) {
+            synchronized (cache) {
+                V old = get(key);
+                keys.remove(key);
+                values.remove(key);
+                return old;
+            }
+        }
+
+        @Override
+        public int size() {
+            synchronized (cache) {
+                return keys.size();
+            }
+        }
+
+        @Override
+        public Set<Map.Entry<String, V>> entrySet() {
+            return new AbstractSet<Map.Entry<String, V>>() {
+                @Override
+                public Iterator<Map.Entry<String, V>> iterator() {
+                    final Iterator<String> it = keys.iterator();
+                    return new Iterator<Map.Entry<String, V>>() {
+                        private String current;
+
+                        public boolean hasNext() {
+                            return it.hasNext();
+                        }
+
+                        public Map.Entry<String, V> next() {
+                            current = it.next();
+                            return new SimpleEntry<String, V>(current,
+                                    get(current)) {
+                                @Override
+                                public V setValue(V value) {
+                                    super.setValue(value);
+                                    return put(getKey(), value);
+                                }
+                            };
+                        }
+
+                        public void remove() {
+                            synchronized (cache) {
+                                it.remove();
+                                values.remove(current);
+                            }
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return ImageMap.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Reads the bytes from start to end of an image mapped in segments.
+     */
+    private static class MappedInputStream extends InputStream {
+        private final MappedByteBuffer[] data;
+        private long position;
+        private final long end;
+
+        MappedInputStream(MappedByteBuffer[] data, long start, long end) {
+            this.data = data;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() {
+            if (position >= end) {
+                return -1;
+            }
+            int b = data[(int) (position / SEGMENT_SIZE)]
+                    .get((int) (position % SEGMENT_SIZE)) & 0xff;
+            position++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            // at most to the end of the segment of position
+            long inSegment = position % SEGMENT_SIZE;
+            len = (int) Math.min(len, Math.min(end - position,
+                    SEGMENT_SIZE - inSegment));
+            ByteBuffer segment = data[(int) (position / SEGMENT_SIZE)]
+                    .duplicate();
+            segment.position((int) inSegment);
+            segment.get(b, off, len);
+            position += len;
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+
+    /**
+     * Counts the bytes written, as a long (DataOutputStream.size() stops at
+     * 2 GB).
+     */
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        long written = 0;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            written += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  File ClosedItems.java
+ *
+ *  This file is part of the TuLiPA system
+ *     http://www.sfb441.uni-tuebingen.de/emmy-noether-kallmeyer/tulipa
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.duesseldorf.parser;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The chart items of the {@link SlimTAGParser} for one node that does not
+ * dominate a foot node: spans [i,j] with 0 <= i <= j <= nTokens, each with two
+ * scores (index 0: adjunction no longer possible, index 1: adjunction still
+ * possible) and two in-queue flags.
+ * <p>
+ * The scores are stored in one array per start position i, indexed by j - i,
+ * which is only allocated once an item starting at i is created. Scores of
+ * items that do not exist are NaN. The in-queue flags are packed into a
+ * bitset, with the spans in lower-triangular order.
+ */
+final class ClosedItems {
+
+    private final int nTokens;
+    private final double[][] rows;
+    private final BitSet inQueue = new BitSet();
+
+    ClosedItems(int nTokens) {
+        this.nTokens = nTokens;
+        this.rows = new double[nTokens + 1][];
+    }
+
+    /**
+     * @return true iff there is an item [i,j] for some j
+     */
+    boolean has(int i) {
+        return rows[i] != null;
+    }
+
+    boolean has(int i, int j) {
+        return !Double.isNaN(get(i, j, 0));
+    }
+
+    /**
+     * @return the score, or NaN if there is no item [i,j]
+     */
+    double get(int i, int j, int pos) {
+        double[] row = rows[i];
+        if (row == null || j < i) {
+            return Double.NaN;
+        }
+        return row[2 * (j - i) + pos];
+    }
+
+    /**
+     * the item [i,j] must exist
+     */
+    void set(int i, int j, int pos, double score) {
+        rows[i][2 * (j - i) + pos] = score;
+    }
+
+    /**
+     * Create the item [i,j] with the given scores, if it does not exist yet.
+     */
+    void create(int i, int j, double score0, double score1) {
+        if (rows[i] == null) {
+            rows[i] = new double[2 * (nTokens + 1 - i)];
+            Arrays.fill(rows[i], Double.NaN);
+        }
+        if (Double.isNaN(rows[i][2 * (j - i)])) {
+            rows[i][2 * (j - i)] = score0;
+            rows[i][2 * (j - i) + 1] = score1;
+        }
+    }
+
+    boolean isInQueue(int i, int j, int pos) {
+        return inQueue.get(flag(i, j, pos));
+    }
+
+    void setInQueue(int i, int j, int pos, boolean value) {
+        inQueue.set(flag(i, j, pos), value);
+    }
+
+    private static int flag(int i, int j, int pos) {
+        return 2 * (j * (j + 1) / 2 + i) + pos;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *  File GapItems.java
+ *
+ *  This file is part of the TuLiPA system
+ *     http://www.sfb441.uni-tuebingen.de/emmy-noether-kallmeyer/tulipa
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.duesseldorf.parser;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The chart items of the {@link SlimTAGParser} for one node that dominates a
+ * foot node: spans [i1,i2][j1,j2] with 0 <= i1 <= i2 <= j1 <= j2 <= nTokens,
+ * each with two scores and two in-queue flags (see {@link ClosedItems}).
+ * <p>
+ * The items are stored in blocks, one for each pair (i1,i2), which are only
+ * allocated once an item in them is created. Within a block, the spans
+ * [j1,j2] are packed in lower-triangular order. Scores of items that do not
+ * exist are NaN.
+ */
+final class GapItems {
+
+    private final int nTokens;
+    // indexed by block(i1, i2)
+    private final double[][] scores;
+    private final BitSet[] inQueue;
+    // indexed by i1: is there any item [i1,..][..,..]?
+    private final boolean[] started;
+
+    GapItems(int nTokens) {
+        this.nTokens = nTokens;
+        int nBlocks = (nTokens + 1) * (nTokens + 2) / 2;
+        this.scores = new double[nBlocks][];
+        this.inQueue = new BitSet[nBlocks];
+        this.started = new boolean[nTokens + 1];
+    }
+
+    /**
+     * @return true iff there is an item [i1,i2][j1,j2] for some i2, j1, j2
+     */
+    boolean has(int i1) {
+        return started[i1];
+    }
+
+    /**
+     * @return true iff there is an item [i1,i2][j1,j2] for some j1, j2
+     */
+    boolean has(int i1, int i2) {
+        return i1 <= i2 && scores[block(i1, i2)] != null;
+    }
+
+    /**
+     * @return true iff there is an item [i1,i2][j1,j2] for some j2
+     */
+    boolean has(int i1, int i2, int j1) {
+        if (!has(i1, i2)) {
+            return false;
+        }
+        for (int j2 = j1; j2 <= nTokens; j2++) {
+            if (has(i1, i2, j1, j2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean has(int i1, int i2, int j1, int j2) {
+        return !Double.isNaN(get(i1, i2, j1, j2, 0));
+    }
+
+    /**
+     * @return the score, or NaN if there is no item [i1,i2][j1,j2]
+     */
+    double get(int i1, int i2, int j1, int j2, int pos) {
+        if (i1 > i2 || i2 > j1 || j1 > j2) {
+            return Double.NaN;
+        }
+        double[] block = scores[block(i1, i2)];
+        if (block == null) {
+            return Double.NaN;
+        }
+        return block[2 * span(i2, j1, j2) + pos];
+    }
+
+    /**
+     * the item [i1,i2][j1,j2] must exist
+     */
+    void set(int i1, int i2, int j1, int j2, int pos, double score) {
+        scores[block(i1, i2)][2 * span(i2, j1, j2) + pos] = score;
+    }
+
+    /**
+     * Create the item [i1,i2][j1,j2] with the given scores, if it does not
+     * exist yet.
+     */
+    void create(int i1, int i2, int j1, int j2, double score0,
+                double score1) {
+        int b = block(i1, i2);
+        if (scores[b] == null) {
+            int m = nTokens + 1 - i2;
+            scores[b] = new double[m * (m + 1)];
+            Arrays.fill(scores[b], Double.NaN);
+            inQueue[b] = new BitSet();
+            started[i1] = true;
+        }
+        int k = 2 * span(i2, j1, j2);
+        if (Double.isNaN(scores[b][k])) {
+            scores[b][k] = score0;
+            scores[b][k + 1] = score1;
+        }
+    }
+
+    /**
+     * the item [i1,i2][j1,j2] must exist
+     */
+    boolean isInQueue(int i1, int i2, int j1, int j2, int pos) {
+        return inQueue[block(i1, i2)].get(2 * span(i2, j1, j2) + pos);
+    }
+
+    /**
+     * the item [i1,i2][j1,j2] must exist
+     */
+    void setInQueue(int i1, int i2, int j1, int j2, int pos, boolean value) {
+        inQueue[block(i1, i2)].set(2 * span(i2, j1, j2) + pos, value);
+    }
+
+    private static int block(int i1, int i2) {
+        return i2 * (i2 + 1) / 2 + i1;
+    }
+
+    /**
+     * position of [j1,j2] in the block of the items with inner start i2
+     */
+    private static int span(int i2, int j1, int j2) {
+        int a = j1 - i2;
+        int b = j2 - i2;
+        return b * (b + 1) / 2 + a;
+    }
+}
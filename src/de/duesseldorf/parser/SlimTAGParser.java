@@ -29,18 +29,24 @@
  */
 package de.duesseldorf.parser;
 
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.Vector;
 
+import de.duesseldorf.frames.UnifyException;
 import de.duesseldorf.frames.Value;
 import de.duesseldorf.frames.ValueTools;
+import de.tuebingen.anchoring.NameFactory;
 import de.tuebingen.forest.Rule;
 import de.tuebingen.forest.Tidentifier;
 import de.tuebingen.forest.TreeOp;
@@ -60,9 +66,11 @@ public class SlimTAGParser {
     private Map<String, TagTree> grammarDict;
     private Map<TagTree, String> revGrammarDict;
 
-    private Map<TagNode, Map<Integer, Map<Integer, double[]>>> closed_map;
+    // the chart: items of nodes that are not above a foot node, and items
+    // (with a gap) of nodes that are
+    private Map<TagNode, ClosedItems> closed_map;
 
-    private Map<TagNode, Map<Integer, Map<Integer, Map<Integer, Map<Integer, double[]>>>>> gap_map;
+    private Map<TagNode, GapItems> gap_map;
 
     List<TagNode> all_nodes; // all nodes except lexical nodes and foot nodes,
     // in an order so that children are listed before
@@ -75,14 +83,19 @@ public class SlimTAGParser {
     private Vector<Queue<TAGAgendaItem>> agenda;
     List<TagNode> foot_nodes;
     private Map<String, Vector<Vector<List<TagNode>>>> foot_nodes_ij;
-    private Map<TagNode, Map<Integer, Map<Integer, boolean[]>>> closed_in_queue;
-    private Map<TagNode, Map<Integer, Map<Integer, Map<Integer, Map<Integer, boolean[]>>>>> gap_in_queue;
     // end of only used in the agenda-routine
 
     private Map<TagNode, String> adr_map;
 
     private int nTokens;
 
+    // features unified during substitution and adjunction (see
+    // setPruningFeatures), none by default
+    private List<String> pruning_features = Collections.emptyList();
+    private boolean check_features = false;
+    // results of the feature checks, for each node and tree
+    private Map<TagNode, Map<TagTree, Boolean>> feature_checks = new IdentityHashMap<TagNode, Map<TagTree, Boolean>>();
+
     public SlimTAGParser(Map<String, TagTree> dict) {
         grammarDict = new HashMap<String, TagTree>();
         revGrammarDict = new HashMap<TagTree, String>();
@@ -335,66 +348,94 @@ public class SlimTAGParser {
         // }
     }
 
-    private boolean substitution_possible(TagNode node, TagTree tag_tree) {
-
-        TagNode subst_root = (TagNode) tag_tree.getRoot();
-
-        Value top1 = node.getLabel().getFeat("top");
-        Value top2 = subst_root.getLabel().getFeat("top");
-
-        boolean allowed = true;
-        try {
+    /**
+     * Unify the given features of the top and bottom feature structures
+     * during substitution and adjunction, so that items which cannot give a
+     * derived tree because of a clash on these features (e.g. agreement, mode
+     * or case) are never built. Only the features are compared, on their own
+     * (variables shared with other features or nodes are ignored), so this
+     * only removes analyses on which TreeDeriver would fail.
+     *
+     * @param features an empty list to only check the categories
+     */
+    public void setPruningFeatures(List<String> features) {
+        pruning_features = features;
+        check_features = !features.isEmpty();
+        feature_checks.clear();
+    }
 
-            Value v = ValueTools.unify(top1, top2, new Environment(0));
-            if (v == null)
-                allowed = false;
+    /*
+     * the categories are checked when the trees are looked up (see
+     * initial_trees and auxiliary_trees), this only checks the features
+     */
+    private boolean substitution_possible(TagNode node, TagTree tag_tree) {
 
-        } catch (Exception e) {
-            allowed = false;
+        Map<TagTree, Boolean> checks = feature_checks.get(node);
+        if (checks == null) {
+            checks = new IdentityHashMap<TagTree, Boolean>();
+            feature_checks.put(node, checks);
         }
+        Boolean allowed = checks.get(tag_tree);
+        if (allowed == null) {
+            TagNode subst_root = (TagNode) tag_tree.getRoot();
 
-        // TODO: CROSS-CHECK
-        // check if the labels match
-        return (node.getCategory().equals(subst_root.getCategory()));
-        // return (allowed);
+            allowed = features_unify(node.getLabel().getFeat("top"),
+                    subst_root.getLabel().getFeat("top"));
+            checks.put(tag_tree, allowed);
+        }
+        return allowed;
     }
 
     private boolean adjunction_possible(TagNode node, TagTree tag_tree) {
 
-        TagNode subst_root = (TagNode) tag_tree.getRoot();
-        TagNode subst_foot = (TagNode) tag_tree.getFoot();
-
-        Value top1 = node.getLabel().getFeat("top");
-        Value top2 = subst_root.getLabel().getFeat("top");
-
-        Value bottom1 = node.getLabel().getFeat("bot");
-        Value bottom2 = subst_foot.getLabel().getFeat("bot");
-
-        boolean allowed1 = true;
-        try {
-
-            Value v = ValueTools.unify(top1, top2, new Environment(0));
-            if (v == null)
-                allowed1 = false;
-
-        } catch (Exception e) {
-            allowed1 = false;
+        Map<TagTree, Boolean> checks = feature_checks.get(node);
+        if (checks == null) {
+            checks = new IdentityHashMap<TagTree, Boolean>();
+            feature_checks.put(node, checks);
         }
-
-        boolean allowed2 = true;
-        try {
-
-            Value v = ValueTools.unify(bottom1, bottom2, new Environment(0));
-            if (v == null)
-                allowed2 = false;
-
-        } catch (Exception e) {
-            allowed2 = false;
+        Boolean allowed = checks.get(tag_tree);
+        if (allowed == null) {
+            TagNode subst_root = (TagNode) tag_tree.getRoot();
+            TagNode subst_foot = (TagNode) tag_tree.getFoot();
+
+            allowed = features_unify(node.getLabel().getFeat("top"),
+                    subst_root.getLabel().getFeat("top"))
+                    && features_unify(node.getLabel().getFeat("bot"),
+                    subst_foot.getLabel().getFeat("bot"));
+            checks.put(tag_tree, allowed);
         }
+        return allowed;
+    }
 
-        // TODO: CROSS-CHECK
-        return (node.getCategory().equals(subst_root.getCategory()));
-        // return (allowed1 && allowed2) ;
+    /**
+     * @return false if the pruning features of the two feature structures
+     * do not unify
+     */
+    private boolean features_unify(Value fs1, Value fs2) {
+
+        if (fs1 == null || fs2 == null || fs1.getAvmVal() == null
+                || fs2.getAvmVal() == null)
+            return true;
+
+        for (String feature : pruning_features) {
+
+            Value v1 = fs1.getAvmVal().getFeat(feature);
+            Value v2 = fs2.getAvmVal().getFeat(feature);
+            if (v1 == null || v2 == null)
+                continue;
+
+            // the variables of the two trees are renamed apart, and the
+            // values of the grammar are not modified
+            try {
+                Value v = ValueTools.unify(new Value(v1, new NameFactory()),
+                        new Value(v2, new NameFactory()), new Environment(0));
+                if (v == null)
+                    return false;
+            } catch (UnifyException e) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public List<Tidentifier> parse(List<Word> tokens,
@@ -473,19 +514,9 @@ public class SlimTAGParser {
                     TagNode child2 = (TagNode) cur_children.get(1);
                     // System.err.println("In trace all no gaps [2 children, got the children]");
 
-                    // Added for debugging
-                    Iterator<Integer> it;
-                    if (closed_map.get(child1).get(i) == null) {
-                        //System.err.println("Strange thing[2]");
-                        it = new LinkedList<Integer>().iterator();
-                    } else {
-                        it = closed_map.get(child1).get(i)
-                                .keySet().iterator();
-                        // System.err.println("In trace all no gaps [2 children, starting while loop]");
-                    }
-
-                    while (it.hasNext()) {
-                        int split_point = it.next().intValue();
+                    for (int split_point = i; split_point <= nTokens; split_point++) {
+                        if (!closed_map.get(child1).has(i, split_point))
+                            continue;
                         // System.err.println("Building hyp");
                         // System.err.println("First thing: "+ closed_map.get(child1).get(i)
                         // 		   .get(split_point)[0]);
@@ -499,19 +530,14 @@ public class SlimTAGParser {
                         // System.err.println("Child1 get(i): "+ closed_map.get(child1).get(i));
                         // System.err.println("split point: "+ split_point);
 
-                        if (closed_map.get(child2).get(split_point) != null) {
+                        if (closed_map.get(child2).has(split_point, j)) {
 
-                            hyp = closed_map.get(child1).get(i)
-                                    .get(split_point)[0]
-                                    + closed_map.get(child2).get(split_point)
-                                    .get(j)[0];
+                            hyp = closed_map.get(child1).get(i, split_point, 0)
+                                    + closed_map.get(child2).get(split_point, j,
+                                    0);
                         }
                         // Added for debugging:
                         else {
-                            hyp = closed_map.get(child1).get(i)
-                                    .get(split_point)[0]
-                                    + closed_map.get(child1).get(i)
-                                    .get(split_point)[0];
                             hyp = 1e300;
                             //System.err.println("Strange thing[3]");
                             //return;
@@ -569,13 +595,12 @@ public class SlimTAGParser {
                 //// System.err.println("Get j: "+ closed_map.get(cur_node).get(i).get(j));
                 double hyp_na = 0;
                 // Added for debugging
-                if (closed_map.get(cur_node).get(i) == null) {
-                    //hyp_na = closed_map.get(cur_node).get(i).get(j)[1];
+                if (!closed_map.get(cur_node).has(i, j)) {
                     //System.err.println("Strange thing[1]");
                     hyp_na = 1e300;
                     //return;
                 } else {
-                    hyp_na = closed_map.get(cur_node).get(i).get(j)[1];
+                    hyp_na = closed_map.get(cur_node).get(i, j, 1);
                 }
                 if (hyp_na < 1e300) {
                     trace_all_no_gap(cur_node, i, j, 1, cur_id, rules,
@@ -592,10 +617,10 @@ public class SlimTAGParser {
 
                 for (TagTree subst_tag_tree : initial_trees.get(category)) {
 
-                    // this is currently superfluous, we already ensured
-                    // matching categories
-                    // if (!substitution_possible(cur_node, subst_tag_tree))
-                    // continue;
+                    // we already ensured matching categories
+                    if (check_features
+                            && !substitution_possible(cur_node, subst_tag_tree))
+                        continue;
 
                     TagNode subst_root = (TagNode) subst_tag_tree.getRoot();
 
@@ -606,9 +631,8 @@ public class SlimTAGParser {
                     // In the end we have to add the weight of the initial tree
 
                     double hyp = 1e300;
-                    if (closed_map.get(subst_root).get(i) != null
-                            && closed_map.get(subst_root).get(i).get(j) != null)
-                        hyp = closed_map.get(subst_root).get(i).get(j)[0] + 1.0; // this
+                    if (closed_map.get(subst_root).has(i, j))
+                        hyp = closed_map.get(subst_root).get(i, j, 0) + 1.0; // this
                     // is
                     // the
                     // tree
@@ -664,82 +688,59 @@ public class SlimTAGParser {
 
                 for (TagTree subst_tag_tree : auxiliary_trees.get(category)) {
                     //System.err.println("[00]");
-                    // this is currently superfluous, we already ensured
-                    // matching categories
-                    // if (!adjunction_possible(cur_node, subst_tag_tree))
-                    // continue;
+                    // we already ensured matching categories
+                    if (check_features
+                            && !adjunction_possible(cur_node, subst_tag_tree))
+                        continue;
 
                     TagNode subst_root = (TagNode) subst_tag_tree.getRoot();
-                    if (gap_map.get(subst_root).get(i) == null) {
+                    if (!gap_map.get(subst_root).has(i)) {
                         //System.err.println("Strange thing[11]");
                         continue;
                     }
 
-                    Iterator<Integer> it_i = closed_map.get(cur_node).keySet()
-                            .iterator();
-
-                    while (it_i.hasNext()) {
+                    for (int i_inner = i; i_inner <= j; i_inner++) {
                         //System.err.println("[0]");
 
-                        int i_inner = it_i.next().intValue();
-
-                        if (i_inner < i)
+                        if (!closed_map.get(cur_node).has(i_inner))
                             continue;
-                        if (i_inner > j)
-                            break;
 
-                        if (gap_map.get(subst_root).get(i).get(i_inner) == null) {
+                        if (!gap_map.get(subst_root).has(i, i_inner)) {
                             //System.err.println("Strange thing[12]");
                             continue;
                         }
 
-                        Iterator<Integer> it_j = closed_map.get(cur_node).get(i)
-                                .keySet().iterator();
-
-                        while (it_j.hasNext()) {
+                        for (int j_inner = i_inner; j_inner <= j; j_inner++) {
                             //System.err.println("[1]");
 
-                            int j_inner = it_j.next().intValue();
-
-                            if (j_inner < i_inner)
+                            if (!closed_map.get(cur_node).has(i, j_inner))
                                 continue;
-                            if (j_inner > j)
-                                break;
-
 
                             // Added for debugging:
                             double hyp = 0;
-                            if (gap_map.get(subst_root).get(i)
-                                    .get(i_inner).get(j_inner) == null) {
-                                //System.err.println("Strange thing[4]");
+                            if (!gap_map.get(subst_root).has(i, i_inner,
+                                    j_inner, j)
+                                    || !closed_map.get(cur_node).has(i_inner,
+                                    j_inner)) {
+                                //System.err.println("Strange thing[5]");
                                 hyp = 1e300;
                                 //continue;
                             } else {
-                                if (gap_map.get(subst_root).get(i).get(i_inner)
-                                        .get(j_inner) == null
-                                        || gap_map.get(subst_root).get(i)
-                                        .get(i_inner).get(j_inner)
-                                        .get(j) == null) {
-                                    //System.err.println("Strange thing[5]");
-                                    hyp = 1e300;
-                                    //continue;
-                                } else {
 
-                                    //System.err.println("Here[ElseElse]");
+                                //System.err.println("Here[ElseElse]");
 
-                                    // NOTE: every time we integrate a tree into another
-                                    // tree, we add the weight
-                                    // of the tree. This way the system with the passes
-                                    // is less complicated.
-                                    // In the end we have to add the weight of the
-                                    // initial tree
+                                // NOTE: every time we integrate a tree into another
+                                // tree, we add the weight
+                                // of the tree. This way the system with the passes
+                                // is less complicated.
+                                // In the end we have to add the weight of the
+                                // initial tree
 
-                                    hyp = gap_map.get(subst_root).get(i)
-                                            .get(i_inner).get(j_inner).get(j)[0]
-                                            + closed_map.get(cur_node).get(i_inner)
-                                            .get(j_inner)[1]
-                                            + 1.0; // this is the tree weight
-                                }
+                                hyp = gap_map.get(subst_root).get(i,
+                                        i_inner, j_inner, j, 0)
+                                        + closed_map.get(cur_node).get(
+                                        i_inner, j_inner, 1)
+                                        + 1.0; // this is the tree weight
                             }
 
                             //System.err.println("[22]");
@@ -870,32 +871,22 @@ public class SlimTAGParser {
                         // the foot node is in the subtree of child1
                         assert (gap_map.get(child2) == null);
 
-                        if (gap_map.get(child1).get(i1) != null
-                                && gap_map.get(child1).get(i1).get(i2) != null
-                                && gap_map.get(child1).get(i1).get(i2)
-                                .get(j1) != null) {
+                        if (gap_map.get(child1).has(i1, i2, j1)) {
 
-                            Iterator<Integer> it = gap_map.get(child1).get(i1)
-                                    .get(i2).get(j1).keySet().iterator();
+                            for (int split_point = j1; split_point <= j2; split_point++) {
 
-                            while (it.hasNext()) {
-
-                                int split_point = it.next().intValue();
-                                if (split_point > j2)
-                                    break;
+                                if (!gap_map.get(child1).has(i1, i2, j1,
+                                        split_point))
+                                    continue;
 
                                 double hyp = 1e300;
 
-                                if (closed_map.get(child2)
-                                        .get(split_point) != null
-                                        && closed_map.get(child2)
-                                        .get(split_point)
-                                        .get(j2) != null)
-                                    hyp = gap_map.get(child1).get(i1).get(i2)
-                                            .get(j1).get(split_point)[0]
-                                            + closed_map.get(child2)
-                                            .get(split_point)
-                                            .get(j2)[0];
+                                if (closed_map.get(child2).has(split_point,
+                                        j2))
+                                    hyp = gap_map.get(child1).get(i1, i2, j1,
+                                            split_point, 0)
+                                            + closed_map.get(child2).get(
+                                            split_point, j2, 0);
 
                                 if (hyp < 1e300) {
 
@@ -935,35 +926,25 @@ public class SlimTAGParser {
                         // the foot node is in the subtree of child2
                         assert (gap_map.get(child2) != null);
 
-                        if (closed_map.get(child1).get(i1) == null) {
+                        if (!closed_map.get(child1).has(i1)) {
                             System.err.println("Very STRANGE");
                             // Simon: added for debugging
                             return;
                         }
 
-                        Iterator<Integer> it = closed_map.get(child1).get(i1)
-                                .keySet().iterator();
+                        for (int split_point = i1; split_point <= i2; split_point++) {
 
-                        while (it.hasNext()) {
-
-                            int split_point = it.next().intValue();
-
-                            if (split_point > i2)
-                                break;
+                            if (!closed_map.get(child1).has(i1, split_point))
+                                continue;
 
                             double hyp = 1e300;
 
-                            if (gap_map.get(child2).get(split_point) != null
-                                    && gap_map.get(child2).get(split_point)
-                                    .get(i2) != null
-                                    && gap_map.get(child2).get(split_point)
-                                    .get(i2).get(j1) != null
-                                    && gap_map.get(child2).get(split_point)
-                                    .get(i2).get(j1).get(j2) != null)
-                                hyp = closed_map.get(child1).get(i1)
-                                        .get(split_point)[0]
-                                        + gap_map.get(child2).get(split_point)
-                                        .get(i2).get(j1).get(j2)[0];
+                            if (gap_map.get(child2).has(split_point, i2, j1,
+                                    j2))
+                                hyp = closed_map.get(child1).get(i1,
+                                        split_point, 0)
+                                        + gap_map.get(child2).get(split_point,
+                                        i2, j1, j2, 0);
 
                             if (hyp < 1e300) {
 
@@ -1013,8 +994,7 @@ public class SlimTAGParser {
             if (cur_node.getAdjStatus() != TagNode.MADJ) {
                 // adjunction is not obligatory
                 //double hyp_na = 0;
-                double hyp_na = gap_map.get(cur_node).get(i1).get(i2).get(j1)
-                        .get(j2)[1];
+                double hyp_na = gap_map.get(cur_node).get(i1, i2, j1, j2, 1);
                 if (hyp_na < 1e300) {
 
                     trace_all_with_gap(cur_node, i1, i2, j1, j2, 1, cur_id,
@@ -1033,51 +1013,26 @@ public class SlimTAGParser {
                 // category here
                 for (TagTree subst_tag_tree : auxiliary_trees.get(category)) {
 
-                    // if (adjunction_possible(cur_node,subst_tag_tree)) {
-                    if (true) {
+                    if (!check_features
+                            || adjunction_possible(cur_node, subst_tag_tree)) {
 
                         TagNode subst_root = (TagNode) subst_tag_tree.getRoot();
 
 
-                        Iterator<Integer> it_i;
-                        if (gap_map.get(subst_root).get(i1) == null) {
-                            //System.err.println("Strange thing[6]");
-                            //continue;
-                            it_i = new LinkedList<Integer>().iterator();
-                        } else {
-                            it_i = gap_map.get(subst_root).get(i1)
-                                    .keySet().iterator();
-                        }
-                        while (it_i.hasNext()) {
+                        for (int i_inter = i1; i_inter <= i2; i_inter++) {
 
-                            int i_inter = it_i.next().intValue();
-                            if (i_inter > i2) {
-                                break;
-                            }
+                            if (!gap_map.get(subst_root).has(i1, i_inter))
+                                continue;
 
-                            if (gap_map.get(cur_node).get(i_inter) == null
-                                    || gap_map.get(cur_node).get(i_inter)
-                                    .get(i2) == null
-                                    || gap_map.get(cur_node).get(i_inter)
-                                    .get(i2).get(j1) == null) {
+                            if (!gap_map.get(cur_node).has(i_inter, i2, j1)) {
                                 //System.err.println("Strange thing[7]");
                                 continue;
                             }
 
-                            Iterator<Integer> it_j = gap_map.get(subst_root)
-                                    .get(i1).get(i_inter).keySet().iterator();
-
-                            while (it_j.hasNext()) {
+                            for (int j_inter = i_inter; j_inter <= j2; j_inter++) {
 
-                                int j_inter = it_j.next().intValue();
-
-                                if (j_inter > j2) {
-                                    //System.err.println("Strange thing[10]");
-                                    break;
-                                }
-
-                                if (gap_map.get(subst_root).get(i1).get(i_inter)
-                                        .get(j_inter).get(j2) == null) {
+                                if (!gap_map.get(subst_root).has(i1, i_inter,
+                                        j_inter, j2)) {
                                     //System.err.println("Strange thing[8]");
                                     continue;
                                 }
@@ -1089,13 +1044,12 @@ public class SlimTAGParser {
                                 // initial tree
 
                                 double hyp = 1e300;
-                                if (gap_map.get(cur_node).get(i_inter).get(i2)
-                                        .get(j1).get(j_inter) != null)
-                                    hyp = gap_map.get(cur_node).get(i_inter)
-                                            .get(i2).get(j1).get(j_inter)[1]
-                                            + gap_map.get(subst_root).get(i1)
-                                            .get(i_inter).get(j_inter)
-                                            .get(j2)[0]
+                                if (gap_map.get(cur_node).has(i_inter, i2, j1,
+                                        j_inter))
+                                    hyp = gap_map.get(cur_node).get(i_inter,
+                                            i2, j1, j_inter, 1)
+                                            + gap_map.get(subst_root).get(i1,
+                                            i_inter, j_inter, j2, 0)
                                             + 1.0; // this is the tree weight
 
                                 if (hyp < 1e300) {
@@ -1163,61 +1117,15 @@ public class SlimTAGParser {
 
     private void add_if_not_in_queue(TagNode node, int i, int j, int pos) {
 
-        if (closed_in_queue.get(node).get(i) == null) {
-            closed_in_queue.get(node).put(i, new HashMap<Integer, boolean[]>());
-        }
-        if (closed_in_queue.get(node).get(i).get(j) == null) {
-            closed_in_queue.get(node).get(i).put(j, new boolean[2]);
-            closed_in_queue.get(node).get(i).get(j)[0] = false;
-            closed_in_queue.get(node).get(i).get(j)[1] = false;
-        }
+        ClosedItems items = closed_map.get(node);
 
-        if (!closed_in_queue.get(node).get(i).get(j)[pos]) {
+        if (!items.isInQueue(i, j, pos)) {
 
             agenda.get(j - i).offer(new TAGAgendaItem(node, i, -1, -1, j, pos));
 
-            closed_in_queue.get(node).get(i).get(j)[pos] = true;
-
-            String label = node.getCategory();
-
-            // add foot items
-            for (TagNode foot_node : foot_nodes_ij.get(label).get(i).get(j)) {
-
-                if (gap_in_queue.get(foot_node).get(i) == null) {
-                    gap_in_queue.get(foot_node).put(i,
-                            new HashMap<Integer, Map<Integer, Map<Integer, boolean[]>>>());
-                    gap_map.get(foot_node).put(i,
-                            new HashMap<Integer, Map<Integer, Map<Integer, double[]>>>());
-                }
-                if (gap_in_queue.get(foot_node).get(i).get(i) == null) {
-                    gap_in_queue.get(foot_node).get(i).put(i,
-                            new HashMap<Integer, Map<Integer, boolean[]>>());
-                    gap_map.get(foot_node).get(i).put(i,
-                            new HashMap<Integer, Map<Integer, double[]>>());
-                }
-                if (gap_in_queue.get(foot_node).get(i).get(i).get(j) == null) {
-                    gap_in_queue.get(foot_node).get(i).get(i).put(j,
-                            new HashMap<Integer, boolean[]>());
-                    gap_map.get(foot_node).get(i).get(i).put(j,
-                            new HashMap<Integer, double[]>());
-                }
-
-                if (gap_in_queue.get(foot_node).get(i).get(i).get(j)
-                        .get(j) == null) {
-
-                    gap_in_queue.get(foot_node).get(i).get(i).get(j).put(j,
-                            new boolean[2]);
-                    gap_map.get(foot_node).get(i).get(i).get(j).put(j,
-                            new double[2]);
-
-                    gap_map.get(foot_node).get(i).get(i).get(j).get(j)[0] = 0.0;
-                    gap_map.get(foot_node).get(i).get(i).get(j)
-                            .get(j)[1] = 1e300;
-
-                    add_if_not_in_queue(foot_node, i, i, j, j, 0);
-                }
-            }
+            items.setInQueue(i, j, pos, true);
 
+            add_foot_items(node.getCategory(), i, j);
         }
     }
 
@@ -1228,77 +1136,38 @@ public class SlimTAGParser {
         // + "][" + j1 + "," + j2 + "]");
         // System.err.println("+++ node " + node);
 
-        if (gap_in_queue.get(node).get(i1) == null) {
-            gap_in_queue.get(node).put(i1,
-                    new HashMap<Integer, Map<Integer, Map<Integer, boolean[]>>>());
-        }
-        if (gap_in_queue.get(node).get(i1).get(i2) == null) {
-            gap_in_queue.get(node).get(i1).put(i2,
-                    new HashMap<Integer, Map<Integer, boolean[]>>());
-        }
-        if (gap_in_queue.get(node).get(i1).get(i2).get(j1) == null) {
-            gap_in_queue.get(node).get(i1).get(i2).put(j1,
-                    new HashMap<Integer, boolean[]>());
-        }
-        if (gap_in_queue.get(node).get(i1).get(i2).get(j1).get(j2) == null) {
-            gap_in_queue.get(node).get(i1).get(i2).get(j1).put(j2,
-                    new boolean[2]);
-            gap_in_queue.get(node).get(i1).get(i2).get(j1).get(j2)[0] = false;
-            gap_in_queue.get(node).get(i1).get(i2).get(j1).get(j2)[1] = false;
-        }
+        GapItems items = gap_map.get(node);
 
-        if (!gap_in_queue.get(node).get(i1).get(i2).get(j1).get(j2)[pos]) {
+        if (!items.isInQueue(i1, i2, j1, j2, pos)) {
 
             agenda.get(j2 - i1)
                     .offer(new TAGAgendaItem(node, i1, i2, j1, j2, pos));
 
-            gap_in_queue.get(node).get(i1).get(i2).get(j1).get(j2)[pos] = true;
+            items.setInQueue(i1, i2, j1, j2, pos, true);
 
-            String label = node.getCategory();
+            add_foot_items(node.getCategory(), i1, j2);
+        }
+    }
 
-            // add foot items
-            for (TagNode foot_node : foot_nodes_ij.get(label).get(i1).get(j2)) {
+    /**
+     * foot predict: the foot nodes with the given label get an item spanning
+     * the gap [i,j]
+     */
+    private void add_foot_items(String label, int i, int j) {
 
-                if (gap_in_queue.get(foot_node).get(i1) == null) {
-                    gap_in_queue.get(foot_node).put(i1,
-                            new HashMap<Integer, Map<Integer, Map<Integer, boolean[]>>>());
-                    gap_map.get(foot_node).put(i1,
-                            new HashMap<Integer, Map<Integer, Map<Integer, double[]>>>());
-                }
-                if (gap_in_queue.get(foot_node).get(i1).get(i1) == null) {
-                    gap_in_queue.get(foot_node).get(i1).put(i1,
-                            new HashMap<Integer, Map<Integer, boolean[]>>());
-                    gap_map.get(foot_node).get(i1).put(i1,
-                            new HashMap<Integer, Map<Integer, double[]>>());
-                }
-                if (gap_in_queue.get(foot_node).get(i1).get(i1)
-                        .get(j2) == null) {
-                    gap_in_queue.get(foot_node).get(i1).get(i1).put(j2,
-                            new HashMap<Integer, boolean[]>());
-                    gap_map.get(foot_node).get(i1).get(i1).put(j2,
-                            new HashMap<Integer, double[]>());
-                }
+        for (TagNode foot_node : foot_nodes_ij.get(label).get(i).get(j)) {
 
-                if (gap_in_queue.get(foot_node).get(i1).get(i1).get(j2)
-                        .get(j2) == null) {
+            GapItems foot_items = gap_map.get(foot_node);
 
-                    gap_in_queue.get(foot_node).get(i1).get(i1).get(j2).put(j2,
-                            new boolean[2]);
-                    gap_map.get(foot_node).get(i1).get(i1).get(j2).put(j2,
-                            new double[2]);
+            if (!foot_items.has(i, i, j, j)) {
 
-                    gap_map.get(foot_node).get(i1).get(i1).get(j2)
-                            .get(j2)[0] = 0.0;
-                    gap_map.get(foot_node).get(i1).get(i1).get(j2)
-                            .get(j2)[1] = 1e300;
+                foot_items.create(i, i, j, j, 0.0, 1e300);
 
-                    add_if_not_in_queue(foot_node, i1, i1, j2, j2, 0);
-                }
+                add_if_not_in_queue(foot_node, i, i, j, j, 0);
             }
         }
     }
 
-    /****************************************************************/
     public boolean build_chart_via_agenda(List<Word> tokens) {
 
         /***
@@ -1338,19 +1207,17 @@ public class SlimTAGParser {
 
         // trace code: 0 = move, 1 = null-adjoin, 2 = subst/adjoin
 
-        // each map is indexed as [start of span-1][end of span][adjunction
+        // each chart is indexed as [start of span-1][end of span][adjunction
         // possible]
         // where for the last index a 0 means that adjunction is no longer
         // possible, a 1 that it is still possible
-        closed_map = new HashMap<TagNode, Map<Integer, Map<Integer, double[]>>>();
-        closed_in_queue = new HashMap<TagNode, Map<Integer, Map<Integer, boolean[]>>>();
+        closed_map = new HashMap<TagNode, ClosedItems>();
 
-        // map for nodes where adjunction is still possible
+        // charts for nodes where adjunction is still possible
         // this implies that the node must be the ancestor of a foot node
-        // each map is indexed as [start of span1-1][end of span1][start of
+        // each chart is indexed as [start of span1-1][end of span1][start of
         // span2-1][end of span2][adjunction performed]
-        gap_map = new HashMap<TagNode, Map<Integer, Map<Integer, Map<Integer, Map<Integer, double[]>>>>>();
-        gap_in_queue = new HashMap<TagNode, Map<Integer, Map<Integer, Map<Integer, Map<Integer, boolean[]>>>>>();
+        gap_map = new HashMap<TagNode, GapItems>();
 
         Iterator<String> its = grammarDict.keySet().iterator();
         while (its.hasNext()) {
@@ -1411,10 +1278,7 @@ public class SlimTAGParser {
 
                 for (TagNode cur_node : tree_nodes) {
 
-                    closed_map.put(cur_node,
-                            new HashMap<Integer, Map<Integer, double[]>>());
-                    closed_in_queue.put(cur_node,
-                            new HashMap<Integer, Map<Integer, boolean[]>>());
+                    closed_map.put(cur_node, new ClosedItems(nTokens));
                 }
             } else {
 
@@ -1456,17 +1320,11 @@ public class SlimTAGParser {
 
                     if (above_foot) {
 
-                        gap_map.put(cur_node,
-                                new HashMap<Integer, Map<Integer, Map<Integer, Map<Integer, double[]>>>>());
-                        gap_in_queue.put(cur_node,
-                                new HashMap<Integer, Map<Integer, Map<Integer, Map<Integer, boolean[]>>>>());
+                        gap_map.put(cur_node, new GapItems(nTokens));
 
                     } else {
 
-                        closed_map.put(cur_node,
-                                new HashMap<Integer, Map<Integer, double[]>>());
-                        closed_in_queue.put(cur_node,
-                                new HashMap<Integer, Map<Integer, boolean[]>>());
+                        closed_map.put(cur_node, new ClosedItems(nTokens));
                     }
                 }
             }
@@ -1616,13 +1474,8 @@ public class SlimTAGParser {
                             for (int i = 0; i <= nTokens; i++) {
                                 // closed_map.get(cur_node)[i][i][0] = 0.0;
 
-                                closed_map.get(cur_node).put(i,
-                                        new HashMap<Integer, double[]>());
-                                closed_map.get(cur_node).get(i).put(i,
-                                        new double[2]);
-                                closed_map.get(cur_node).get(i).get(i)[0] = 0.0;
-                                closed_map.get(cur_node).get(i)
-                                        .get(i)[1] = 1e300;
+                                closed_map.get(cur_node).create(i, i, 0.0,
+                                        1e300);
 
                                 add_if_not_in_queue(cur_node, i, i, 0);
                             }
@@ -1678,14 +1531,8 @@ public class SlimTAGParser {
 
                                 if (possible) {
 
-                                    closed_map.get(cur_node).put(i,
-                                            new HashMap<Integer, double[]>());
-                                    closed_map.get(cur_node).get(i).put(i,
-                                            new double[2]);
-                                    closed_map.get(cur_node).get(i)
-                                            .get(i)[0] = 0.0;
-                                    closed_map.get(cur_node).get(i)
-                                            .get(i)[1] = 1e300;
+                                    closed_map.get(cur_node).create(i, i,
+                                            0.0, 1e300);
 
                                     add_if_not_in_queue(cur_node, i, i, 0);
                                 }
@@ -1714,14 +1561,8 @@ public class SlimTAGParser {
                                 // This does not apply for co-anchors (hence the  || !cur_node.isAncLex())
                                 if (tag_tree.getPosition() == i + 1 || !cur_node.isAncLex()) {
 
-                                    closed_map.get(cur_node).put(i,
-                                            new HashMap<Integer, double[]>());
-                                    closed_map.get(cur_node).get(i).put(i + 1,
-                                            new double[2]);
-                                    closed_map.get(cur_node).get(i)
-                                            .get(i + 1)[0] = 0.0;
-                                    closed_map.get(cur_node).get(i)
-                                            .get(i + 1)[1] = 1e300;
+                                    closed_map.get(cur_node).create(i,
+                                            i + 1, 0.0, 1e300);
 
                                     add_if_not_in_queue(cur_node, i, i + 1, 0);
                                 }
@@ -1931,12 +1772,11 @@ public class SlimTAGParser {
                 int j = cur_item.j2;
                 int pos = cur_item.pos;
 
-                closed_in_queue.get(cur_node).get(i).get(j)[pos] = false;
+                ClosedItems cur_map = closed_map.get(cur_node);
 
-                Map<Integer, Map<Integer, double[]>> cur_map = closed_map
-                        .get(cur_node);
+                cur_map.setInQueue(i, j, pos, false);
 
-                double base_score = cur_map.get(i).get(j)[pos];
+                double base_score = cur_map.get(i, j, pos);
 
                 if (pos == 1) {
 
@@ -1945,9 +1785,9 @@ public class SlimTAGParser {
                     // adjunction?
                     if (cur_node.getAdjStatus() != TagNode.MADJ) {
 
-                        if (base_score < cur_map.get(i).get(j)[0]) {
+                        if (base_score < cur_map.get(i, j, 0)) {
 
-                            cur_map.get(i).get(j)[0] = base_score;
+                            cur_map.set(i, j, 0, base_score);
 
                             add_if_not_in_queue(cur_node, i, j, 0);
                         }
@@ -1970,34 +1810,27 @@ public class SlimTAGParser {
 
                         // since i_outer and j_outer are really i and j, we
                         // don't have to check for existence here
-                        double prev_score = cur_map.get(i_outer)
-                                .get(j_outer)[0];
+                        double prev_score = cur_map.get(i_outer, j_outer, 0);
                         double best_score = prev_score;
 
                         for (TagTree subst_tag_tree : auxiliary_trees
                                 .get(category)) {
 
-                            // this is currently superfluous, we already ensured
-                            // matching categories
-                            // if
-                            // (!adjunction_possible(cur_node,subst_tag_tree))
-                            // continue;
+                            // we already ensured matching categories
+                            if (check_features && !adjunction_possible(
+                                    cur_node, subst_tag_tree))
+                                continue;
 
                             TagNode subst_root = (TagNode) subst_tag_tree
                                     .getRoot();
 
-                            if (gap_map.get(subst_root).get(i_outer) == null
-                                    || gap_map.get(subst_root).get(i_outer)
-                                    .get(i) == null
-                                    || gap_map.get(subst_root).get(i_outer)
-                                    .get(i).get(j) == null
-                                    || gap_map.get(subst_root).get(i_outer)
-                                    .get(i).get(j).get(j_outer) == null)
+                            if (!gap_map.get(subst_root).has(i_outer, i, j,
+                                    j_outer))
                                 continue;
 
                             double hyp_score = base_score
-                                    + gap_map.get(subst_root).get(i_outer)
-                                    .get(i).get(j).get(j_outer)[0]
+                                    + gap_map.get(subst_root).get(i_outer, i, j,
+                                    j_outer, 0)
                                     + 1.0; // this is the tree weight
 
                             if (hyp_score < best_score) {
@@ -2008,7 +1841,7 @@ public class SlimTAGParser {
 
                         if (best_score < prev_score) {
 
-                            cur_map.get(i_outer).get(j_outer)[0] = best_score;
+                            cur_map.set(i_outer, j_outer, 0, best_score);
 
                             add_if_not_in_queue(cur_node, i_outer, j_outer, 0);
                         }
@@ -2026,22 +1859,13 @@ public class SlimTAGParser {
                         if (siblings.size() == 1) {
                             // unary move
 
-                            Map<Integer, Map<Integer, double[]>> par_map = closed_map
-                                    .get(parent);
+                            ClosedItems par_map = closed_map.get(parent);
 
-                            if (par_map.get(i) == null) {
-                                par_map.put(i,
-                                        new HashMap<Integer, double[]>());
-                            }
-                            if (par_map.get(i).get(j) == null) {
-                                par_map.get(i).put(j, new double[2]);
-                                par_map.get(i).get(j)[0] = 1e300;
-                                par_map.get(i).get(j)[1] = 1e300;
-                            }
+                            par_map.create(i, j, 1e300, 1e300);
 
-                            if (base_score < par_map.get(i).get(j)[1]) {
+                            if (base_score < par_map.get(i, j, 1)) {
 
-                                par_map.get(i).get(j)[1] = base_score;
+                                par_map.set(i, j, 1, base_score);
 
                                 add_if_not_in_queue(parent, i, j, 1);
                             }
@@ -2056,8 +1880,10 @@ public class SlimTAGParser {
                                 if (closed_map.get(sibling) != null) {
                                     // sibling is not above a foot node
 
-                                    Map<Integer, Map<Integer, double[]>> par_map = closed_map
+                                    ClosedItems par_map = closed_map
                                             .get(parent);
+                                    ClosedItems sib_map = closed_map
+                                            .get(sibling);
 
                                     // we need only combine with items that have
                                     // already been dequeued (all others will
@@ -2066,45 +1892,23 @@ public class SlimTAGParser {
                                     int limit = Math.min(nTokens,
                                             j + active_list);
 
-                                    if (closed_map.get(sibling)
-                                            .get(j) != null) {
-
-                                        Iterator<Integer> it = closed_map
-                                                .get(sibling).get(j).keySet()
-                                                .iterator();
-
-                                        while (it.hasNext()) {
-
-                                            int j_outer = it.next().intValue();
-
-                                            // this should be guaranteed:
-                                            // if (j_outer < j)
-                                            // continue;
-                                            if (j_outer > limit)
-                                                break;
-
-                                            double hyp = base_score + closed_map
-                                                    .get(sibling).get(j)
-                                                    .get(j_outer)[0];
-
-                                            if (par_map.get(i) == null)
-                                                par_map.put(i,
-                                                        new HashMap<Integer, double[]>());
-                                            if (par_map.get(i)
-                                                    .get(j_outer) == null) {
-                                                par_map.get(i).put(j_outer,
-                                                        new double[2]);
-                                                par_map.get(i).get(
-                                                        j_outer)[0] = 1e300;
-                                                par_map.get(i).get(
-                                                        j_outer)[1] = 1e300;
-                                            }
+                                    if (sib_map.has(j)) {
+
+                                        for (int j_outer = j; j_outer <= limit; j_outer++) {
+
+                                            if (!sib_map.has(j, j_outer))
+                                                continue;
 
-                                            if (hyp < par_map.get(i)
-                                                    .get(j_outer)[1]) {
+                                            double hyp = base_score + sib_map
+                                                    .get(j, j_outer, 0);
 
-                                                par_map.get(i)
-                                                        .get(j_outer)[1] = hyp;
+                                            par_map.create(i, j_outer, 1e300,
+                                                    1e300);
+
+                                            if (hyp < par_map.get(i, j_outer,
+                                                    1)) {
+
+                                                par_map.set(i, j_outer, 1, hyp);
 
                                                 add_if_not_in_queue(parent, i,
                                                         j_outer, 1);
@@ -2123,91 +1927,42 @@ public class SlimTAGParser {
                                     int limit = Math.min(nTokens,
                                             j + active_list);
 
-                                    if (gap_map.get(sibling).get(j) == null)
-                                        continue;
-
-                                    Map<Integer, Map<Integer, Map<Integer, Map<Integer, double[]>>>> par_map = gap_map
-                                            .get(parent);
+                                    GapItems sib_map = gap_map.get(sibling);
 
-                                    Iterator<Integer> it_i = gap_map
-                                            .get(sibling).get(j).keySet()
-                                            .iterator();
-
-                                    while (it_i.hasNext()) {
-
-                                        int i_inner = it_i.next().intValue();
-
-                                        if (i_inner > limit)
-                                            break;
-
-                                        Iterator<Integer> it_j = gap_map
-                                                .get(sibling).get(j)
-                                                .get(i_inner).keySet()
-                                                .iterator();
-
-                                        while (it_j.hasNext()) {
+                                    if (!sib_map.has(j))
+                                        continue;
 
-                                            int j_inner = it_j.next()
-                                                    .intValue();
+                                    GapItems par_map = gap_map.get(parent);
 
-                                            if (j_inner > limit)
-                                                break;
+                                    for (int i_inner = j; i_inner <= limit; i_inner++) {
 
-                                            Iterator<Integer> it_j_outer = gap_map
-                                                    .get(sibling).get(j)
-                                                    .get(i_inner).get(j_inner)
-                                                    .keySet().iterator();
+                                        if (!sib_map.has(j, i_inner))
+                                            continue;
 
-                                            while (it_j_outer.hasNext()) {
+                                        for (int j_inner = i_inner; j_inner <= limit; j_inner++) {
 
-                                                int j_outer = it_j_outer.next()
-                                                        .intValue();
+                                            for (int j_outer = j_inner; j_outer <= limit; j_outer++) {
 
-                                                if (j_outer > limit)
-                                                    break;
+                                                if (!sib_map.has(j, i_inner,
+                                                        j_inner, j_outer))
+                                                    continue;
 
                                                 double hyp = base_score
-                                                        + gap_map.get(sibling)
-                                                        .get(j)
-                                                        .get(i_inner)
-                                                        .get(j_inner)
-                                                        .get(j_outer)[0];
-
-                                                if (par_map.get(i) == null)
-                                                    par_map.put(i,
-                                                            new HashMap<Integer, Map<Integer, Map<Integer, double[]>>>());
-                                                if (par_map.get(i)
-                                                        .get(i_inner) == null)
-                                                    par_map.get(i).put(i_inner,
-                                                            new HashMap<Integer, Map<Integer, double[]>>());
-                                                if (par_map.get(i).get(i_inner)
-                                                        .get(j_inner) == null)
-                                                    par_map.get(i).get(i_inner)
-                                                            .put(j_inner,
-                                                                    new HashMap<Integer, double[]>());
-                                                if (par_map.get(i).get(i_inner)
-                                                        .get(j_inner)
-                                                        .get(j_outer) == null) {
-                                                    par_map.get(i).get(i_inner)
-                                                            .get(j_inner)
-                                                            .put(j_outer,
-                                                                    new double[2]);
-                                                    par_map.get(i).get(i_inner)
-                                                            .get(j_inner)
-                                                            .get(j_outer)[0] = 1e300;
-                                                    par_map.get(i).get(i_inner)
-                                                            .get(j_inner)
-                                                            .get(j_outer)[1] = 1e300;
-                                                }
+                                                        + sib_map.get(j,
+                                                        i_inner, j_inner,
+                                                        j_outer, 0);
+
+                                                par_map.create(i, i_inner,
+                                                        j_inner, j_outer, 1e300,
+                                                        1e300);
 
-                                                if (hyp < par_map.get(i)
-                                                        .get(i_inner)
-                                                        .get(j_inner)
-                                                        .get(j_outer)[1]) {
+                                                if (hyp < par_map.get(i,
+                                                        i_inner, j_inner,
+                                                        j_outer, 1)) {
 
-                                                    par_map.get(i).get(i_inner)
-                                                            .get(j_inner)
-                                                            .get(j_outer)[1] = hyp;
+                                                    par_map.set(i, i_inner,
+                                                            j_inner, j_outer, 1,
+                                                            hyp);
 
                                                     add_if_not_in_queue(parent,
                                                             i, i_inner, j_inner,
@@ -2225,8 +1980,10 @@ public class SlimTAGParser {
                                 if (closed_map.get(sibling) != null) {
                                     // sibling is not above a foot node
 
-                                    Map<Integer, Map<Integer, double[]>> par_map = closed_map
+                                    ClosedItems par_map = closed_map
                                             .get(parent);
+                                    ClosedItems sib_map = closed_map
+                                            .get(sibling);
 
                                     // we need only combine with items that have
                                     // already been dequeued (all others will
@@ -2234,46 +1991,20 @@ public class SlimTAGParser {
 
                                     int limit = Math.max(0, i - active_list);
 
-                                    Iterator<Integer> it = closed_map
-                                            .get(sibling).keySet().iterator();
-
-                                    while (it.hasNext()) {
-
-                                        int i_outer = it.next().intValue();
+                                    for (int i_outer = limit; i_outer <= i; i_outer++) {
 
-                                        if (i_outer > i)
-                                            break;
-
-                                        if (i_outer < limit)
-                                            continue;
-
-                                        if (closed_map.get(sibling).get(i_outer)
-                                                .get(i) == null)
+                                        if (!sib_map.has(i_outer, i))
                                             continue;
 
                                         double hyp = base_score
-                                                + closed_map.get(sibling)
-                                                .get(i_outer).get(i)[0];
-
-                                        if (par_map.get(i_outer) == null)
-                                            par_map.put(i_outer,
-                                                    new HashMap<Integer, double[]>());
-
-                                        if (par_map.get(i_outer)
-                                                .get(j) == null) {
-                                            par_map.get(i_outer).put(j,
-                                                    new double[2]);
-                                            par_map.get(i_outer)
-                                                    .get(j)[0] = 1e300;
-                                            par_map.get(i_outer)
-                                                    .get(j)[1] = 1e300;
-                                        }
+                                                + sib_map.get(i_outer, i, 0);
 
-                                        if (hyp < par_map.get(i_outer)
-                                                .get(j)[1]) {
+                                        par_map.create(i_outer, j, 1e300,
+                                                1e300);
 
-                                            par_map.get(i_outer)
-                                                    .get(j)[1] = hyp;
+                                        if (hyp < par_map.get(i_outer, j, 1)) {
+
+                                            par_map.set(i_outer, j, 1, hyp);
 
                                             add_if_not_in_queue(parent, i_outer,
                                                     j, 1);
@@ -2284,112 +2015,41 @@ public class SlimTAGParser {
 
                                     //System.err.println("Sibling above a foot node, parent: "+parent+", sibling: "+sibling);
 
-                                    Map<Integer, Map<Integer, Map<Integer, Map<Integer, double[]>>>> par_map = gap_map
-                                            .get(parent);
-                                    Map<Integer, Map<Integer, Map<Integer, Map<Integer, double[]>>>> sib_map = gap_map
-                                            .get(sibling);
+                                    GapItems par_map = gap_map.get(parent);
+                                    GapItems sib_map = gap_map.get(sibling);
 
                                     int limit = Math.max(0, i - active_list);
 
-                                    Iterator<Integer> it_i_outer = sib_map
-                                            .keySet().iterator();
+                                    for (int i_outer = limit; i_outer <= i; i_outer++) {
 
-                                    while (it_i_outer.hasNext()) {
+                                        if (!sib_map.has(i_outer))
+                                            continue;
 
-                                        int i_outer = it_i_outer.next()
-                                                .intValue();
+                                        for (int i_inner = i_outer; i_inner <= i; i_inner++) {
 
-                                        if (i_outer > i)
-                                            break;
-                                        if (i_outer < limit)
-                                            continue;
+                                            if (!sib_map.has(i_outer, i_inner))
+                                                continue;
 
-                                        Iterator<Integer> it_i = sib_map
-                                                .get(i_outer).keySet()
-                                                .iterator();
-
-                                        while (it_i.hasNext()) {
-                                            //System.err.println("Getting next i: "+it_i);
-                                            int i_inner = it_i.next()
-                                                    .intValue();
-
-                                            if (i_inner > i)
-                                                break;
-
-                                            // Simon: changed this for
-                                            // debugging: the keySet
-                                            // must be copied because
-                                            // it might be modified
-                                            // (ConcurrentModificationException)
-                                            Iterator<Integer> it_j = new HashSet<Integer>(sib_map
-                                                    .get(i_outer).get(i_inner)
-                                                    .keySet()).iterator();
-
-
-                                            while (it_j.hasNext()) {
-                                                //System.err.println("Getting next j: "+it_j);
-                                                int j_inner = it_j.next()
-                                                        .intValue();
-                                                //System.err.println("Got next");
-
-                                                if (j_inner > i)
-                                                    break;
-
-                                                if (sib_map.get(i_outer)
-                                                        .get(i_inner)
-                                                        .get(j_inner)
-                                                        .get(i) == null)
+                                            for (int j_inner = i_inner; j_inner <= i; j_inner++) {
+
+                                                if (!sib_map.has(i_outer,
+                                                        i_inner, j_inner, i))
                                                     continue;
 
                                                 double hyp = base_score
-                                                        + sib_map.get(i_outer)
-                                                        .get(i_inner)
-                                                        .get(j_inner)
-                                                        .get(i)[0];
-
-                                                if (par_map
-                                                        .get(i_outer) == null)
-                                                    par_map.put(i_outer,
-                                                            new HashMap<Integer, Map<Integer, Map<Integer, double[]>>>());
-                                                if (par_map.get(i_outer)
-                                                        .get(i_inner) == null)
-                                                    par_map.get(i_outer).put(
-                                                            i_inner,
-                                                            new HashMap<Integer, Map<Integer, double[]>>());
-                                                if (par_map.get(i_outer)
-                                                        .get(i_inner)
-                                                        .get(j_inner) == null)
-                                                    par_map.get(i_outer)
-                                                            .get(i_inner)
-                                                            .put(j_inner,
-                                                                    new HashMap<Integer, double[]>());
-                                                if (par_map.get(i_outer)
-                                                        .get(i_inner)
-                                                        .get(j_inner)
-                                                        .get(j) == null) {
-                                                    par_map.get(i_outer)
-                                                            .get(i_inner)
-                                                            .get(j_inner)
-                                                            .put(j, new double[2]);
-                                                    par_map.get(i_outer)
-                                                            .get(i_inner)
-                                                            .get(j_inner)
-                                                            .get(j)[0] = 1e300;
-                                                    par_map.get(i_outer)
-                                                            .get(i_inner)
-                                                            .get(j_inner)
-                                                            .get(j)[1] = 1e300;
-                                                }
-
-                                                if (hyp < par_map.get(i_outer)
-                                                        .get(i_inner)
-                                                        .get(j_inner)
-                                                        .get(j)[1]) {
-                                                    //System.err.println("Here[1]");
-                                                    par_map.get(i_outer)
-                                                            .get(i_inner)
-                                                            .get(j_inner)
-                                                            .get(j)[1] = hyp;
+                                                        + sib_map.get(i_outer,
+                                                        i_inner, j_inner, i, 0);
+
+                                                par_map.create(i_outer, i_inner,
+                                                        j_inner, j, 1e300,
+                                                        1e300);
+
+                                                if (hyp < par_map.get(i_outer,
+                                                        i_inner, j_inner, j,
+                                                        1)) {
+                                                    par_map.set(i_outer,
+                                                            i_inner, j_inner, j,
+                                                            1, hyp);
                                                     add_if_not_in_queue(parent,
                                                             i_outer, i_inner,
                                                             j_inner, j, 1);
@@ -2420,26 +2080,18 @@ public class SlimTAGParser {
 
                             // System.err.println("subst node: "+ subst_node);
 
-                            // this is currently superfluous, we already ensured
-                            // matching categories
-                            // if (substitution_possible(subst_node,tag_tree)) {
-                            if (true) {
+                            // we already ensured matching categories
+                            if (!check_features || substitution_possible(
+                                    subst_node, tag_tree)) {
 
-                                Map<Integer, Map<Integer, double[]>> subst_map = closed_map
+                                ClosedItems subst_map = closed_map
                                         .get(subst_node);
 
-                                if (subst_map.get(i) == null)
-                                    subst_map.put(i,
-                                            new HashMap<Integer, double[]>());
-                                if (subst_map.get(i).get(j) == null) {
-                                    subst_map.get(i).put(j, new double[2]);
-                                    subst_map.get(i).get(j)[0] = 1e300;
-                                    subst_map.get(i).get(j)[1] = 1e300;
-                                }
+                                subst_map.create(i, j, 1e300, 1e300);
 
-                                if (hyp_score < subst_map.get(i).get(j)[0]) {
+                                if (hyp_score < subst_map.get(i, j, 0)) {
 
-                                    subst_map.get(i).get(j)[0] = hyp_score;
+                                    subst_map.set(i, j, 0, hyp_score);
 
                                     add_if_not_in_queue(subst_node, i, j, 0);
                                 }
@@ -2457,14 +2109,11 @@ public class SlimTAGParser {
                 int j2 = cur_item.j2;
                 int pos = cur_item.pos;
 
-                Map<Integer, Map<Integer, Map<Integer, Map<Integer, double[]>>>> cur_map = gap_map
-                        .get(cur_node);
+                GapItems cur_map = gap_map.get(cur_node);
 
-                gap_in_queue.get(cur_node).get(i1).get(i2).get(j1)
-                        .get(j2)[pos] = false;
+                cur_map.setInQueue(i1, i2, j1, j2, pos, false);
 
-                double base_score = cur_map.get(i1).get(i2).get(j1)
-                        .get(j2)[pos];
+                double base_score = cur_map.get(i1, i2, j1, j2, pos);
 
                 if (pos == 1) {
 
@@ -2473,11 +2122,9 @@ public class SlimTAGParser {
                     // adjunction?
                     if (cur_node.getAdjStatus() != TagNode.MADJ) {
 
-                        if (base_score < cur_map.get(i1).get(i2).get(j1)
-                                .get(j2)[0]) {
+                        if (base_score < cur_map.get(i1, i2, j1, j2, 0)) {
 
-                            cur_map.get(i1).get(i2).get(j1)
-                                    .get(j2)[0] = base_score;
+                            cur_map.set(i1, i2, j1, j2, 0, base_score);
 
                             add_if_not_in_queue(cur_node, i1, i2, j1, j2, 0);
                         }
@@ -2491,18 +2138,17 @@ public class SlimTAGParser {
                         int i_outer = i1;
                         int j_outer = j2;
 
-                        double prev_score = cur_map.get(i_outer).get(i2).get(j1)
-                                .get(j_outer)[0];
+                        double prev_score = cur_map.get(i_outer, i2, j1,
+                                j_outer, 0);
                         double best_score = prev_score;
 
                         for (TagTree subst_tag_tree : auxiliary_trees
                                 .get(category)) {
 
-                            // this is currently superfluous, we already ensured
-                            // matching categories
-                            // if
-                            // (!adjunction_possible(cur_node,subst_tag_tree))
-                            // continue;
+                            // we already ensured matching categories
+                            if (check_features && !adjunction_possible(
+                                    cur_node, subst_tag_tree))
+                                continue;
 
                             // we need only combine with items that have already
                             // been dequeued (all others will trigger a separate
@@ -2511,22 +2157,16 @@ public class SlimTAGParser {
                             TagNode subst_root = (TagNode) subst_tag_tree
                                     .getRoot();
 
-                            Map<Integer, Map<Integer, Map<Integer, Map<Integer, double[]>>>> adj_map = gap_map
-                                    .get(subst_root);
+                            GapItems adj_map = gap_map.get(subst_root);
 
-                            if (adj_map.get(i_outer) == null
-                                    || adj_map.get(i_outer).get(i1) == null
-                                    || adj_map.get(i_outer).get(i1)
-                                    .get(j2) == null
-                                    || adj_map.get(i_outer).get(i1).get(j2)
-                                    .get(j_outer) == null)
+                            if (!adj_map.has(i_outer, i1, j2, j_outer))
                                 continue;
 
                             // since i_outer and j_outer are really i1 and j2,
                             // we need not check for existence here
 
-                            double hyp_score = base_score + adj_map.get(i_outer)
-                                    .get(i1).get(j2).get(j_outer)[0] + 1.0; // this
+                            double hyp_score = base_score + adj_map.get(i_outer,
+                                    i1, j2, j_outer, 0) + 1.0; // this
                             // is
                             // the
                             // tree
@@ -2540,8 +2180,8 @@ public class SlimTAGParser {
 
                         if (best_score < prev_score) {
 
-                            cur_map.get(i_outer).get(i2).get(j1)
-                                    .get(j_outer)[0] = best_score;
+                            cur_map.set(i_outer, i2, j1, j_outer, 0,
+                                    best_score);
 
                             add_if_not_in_queue(cur_node, i_outer, i2, j1,
                                     j_outer, 0);
@@ -2558,36 +2198,16 @@ public class SlimTAGParser {
 
                         List<Node> siblings = parent.getChildren();
 
-                        Map<Integer, Map<Integer, Map<Integer, Map<Integer, double[]>>>> par_map = gap_map
-                                .get(parent);
+                        GapItems par_map = gap_map.get(parent);
 
                         if (siblings.size() == 1) {
                             // unary move
 
-                            if (par_map.get(i1) == null)
-                                par_map.put(i1,
-                                        new HashMap<Integer, Map<Integer, Map<Integer, double[]>>>());
-                            if (par_map.get(i1).get(i2) == null)
-                                par_map.get(i1).put(i2,
-                                        new HashMap<Integer, Map<Integer, double[]>>());
-                            if (par_map.get(i1).get(i2).get(j1) == null)
-                                par_map.get(i1).get(i2).put(j1,
-                                        new HashMap<Integer, double[]>());
-                            if (par_map.get(i1).get(i2).get(j1)
-                                    .get(j2) == null) {
-                                par_map.get(i1).get(i2).get(j1).put(j2,
-                                        new double[2]);
-                                par_map.get(i1).get(i2).get(j1)
-                                        .get(j2)[0] = 1e300;
-                                par_map.get(i1).get(i2).get(j1)
-                                        .get(j2)[1] = 1e300;
-                            }
+                            par_map.create(i1, i2, j1, j2, 1e300, 1e300);
 
-                            if (base_score < par_map.get(i1).get(i2).get(j1)
-                                    .get(j2)[1]) {
+                            if (base_score < par_map.get(i1, i2, j1, j2, 1)) {
 
-                                par_map.get(i1).get(i2).get(j1)
-                                        .get(j2)[1] = base_score;
+                                par_map.set(i1, i2, j1, j2, 1, base_score);
 
                                 add_if_not_in_queue(parent, i1, i2, j1, j2, 1);
                             }
@@ -2605,48 +2225,26 @@ public class SlimTAGParser {
 
                                 int limit = Math.min(nTokens, j2 + active_list);
 
-                                if (closed_map.get(sibling).get(j2) != null) {
+                                ClosedItems sib_map = closed_map.get(sibling);
 
-                                    Iterator<Integer> it = closed_map
-                                            .get(sibling).get(j2).keySet()
-                                            .iterator();
+                                if (sib_map.has(j2)) {
 
-                                    while (it.hasNext()) {
+                                    for (int j_outer = j2; j_outer <= limit; j_outer++) {
 
-                                        int j_outer = it.next().intValue();
+                                        if (!sib_map.has(j2, j_outer))
+                                            continue;
 
-                                        if (j_outer > limit)
-                                            break;
+                                        double hyp = base_score
+                                                + sib_map.get(j2, j_outer, 0);
 
-                                        double hyp = base_score + closed_map
-                                                .get(sibling).get(j2)
-                                                .get(j_outer)[0];
-
-                                        if (par_map.get(i1) == null)
-                                            par_map.put(i1,
-                                                    new HashMap<Integer, Map<Integer, Map<Integer, double[]>>>());
-                                        if (par_map.get(i1).get(i2) == null)
-                                            par_map.get(i1).put(i2,
-                                                    new HashMap<Integer, Map<Integer, double[]>>());
-                                        if (par_map.get(i1).get(i2)
-                                                .get(j1) == null)
-                                            par_map.get(i1).get(i2).put(j1,
-                                                    new HashMap<Integer, double[]>());
-                                        if (par_map.get(i1).get(i2).get(j1)
-                                                .get(j_outer) == null) {
-                                            par_map.get(i1).get(i2).get(j1).put(
-                                                    j_outer, new double[2]);
-                                            par_map.get(i1).get(i2).get(j1)
-                                                    .get(j_outer)[0] = 1e300;
-                                            par_map.get(i1).get(i2).get(j1)
-                                                    .get(j_outer)[1] = 1e300;
-                                        }
+                                        par_map.create(i1, i2, j1, j_outer,
+                                                1e300, 1e300);
 
-                                        if (hyp < par_map.get(i1).get(i2)
-                                                .get(j1).get(j_outer)[1]) {
+                                        if (hyp < par_map.get(i1, i2, j1,
+                                                j_outer, 1)) {
 
-                                            par_map.get(i1).get(i2).get(j1)
-                                                    .get(j_outer)[1] = hyp;
+                                            par_map.set(i1, i2, j1, j_outer, 1,
+                                                    hyp);
 
                                             add_if_not_in_queue(parent, i1, i2,
                                                     j1, j_outer, 1);
@@ -2665,49 +2263,24 @@ public class SlimTAGParser {
 
                                 int limit = Math.max(0, i1 - active_list);
 
-                                Iterator<Integer> it = closed_map.get(sibling)
-                                        .keySet().iterator();
-
-                                while (it.hasNext()) {
-
-                                    int i_outer = it.next().intValue();
+                                ClosedItems sib_map = closed_map.get(sibling);
 
-                                    if (i_outer > i1)
-                                        break;
+                                for (int i_outer = 0; i_outer <= i1; i_outer++) {
 
-                                    if (closed_map.get(sibling).get(i_outer)
-                                            .get(i1) == null)
+                                    if (!sib_map.has(i_outer, i1))
                                         continue;
 
                                     double hyp = base_score
-                                            + closed_map.get(sibling)
-                                            .get(i_outer).get(i1)[0];
-
-                                    if (par_map.get(i_outer) == null)
-                                        par_map.put(i_outer,
-                                                new HashMap<Integer, Map<Integer, Map<Integer, double[]>>>());
-                                    if (par_map.get(i_outer).get(i2) == null)
-                                        par_map.get(i_outer).put(i2,
-                                                new HashMap<Integer, Map<Integer, double[]>>());
-                                    if (par_map.get(i_outer).get(i2)
-                                            .get(j1) == null)
-                                        par_map.get(i_outer).get(i2).put(j1,
-                                                new HashMap<Integer, double[]>());
-                                    if (par_map.get(i_outer).get(i2).get(j1)
-                                            .get(j2) == null) {
-                                        par_map.get(i_outer).get(i2).get(j1)
-                                                .put(j2, new double[2]);
-                                        par_map.get(i_outer).get(i2).get(j1)
-                                                .get(j2)[0] = 1e300;
-                                        par_map.get(i_outer).get(i2).get(j1)
-                                                .get(j2)[1] = 1e300;
-                                    }
+                                            + sib_map.get(i_outer, i1, 0);
+
+                                    par_map.create(i_outer, i2, j1, j2, 1e300,
+                                            1e300);
 
-                                    if (hyp < par_map.get(i_outer).get(i2)
-                                            .get(j1).get(j2)[1]) {
+                                    if (hyp < par_map.get(i_outer, i2, j1, j2,
+                                            1)) {
 
-                                        par_map.get(i_outer).get(i2).get(j1)
-                                                .get(j2)[1] = hyp;
+                                        par_map.set(i_outer, i2, j1, j2, 1,
+                                                hyp);
 
                                         add_if_not_in_queue(parent, i_outer, i2,
                                                 j1, j2, 1);
@@ -2734,41 +2307,26 @@ public class SlimTAGParser {
                             // System.err.println("spans:
                             // ["+i1+","+i2+"]["+j1+","+j2+"]");
 
-                            // this is currently superfluous, we already ensured
-                            // matching categories
-                            // if (adjunction_possible(adj_node,tag_tree)) {
-                            if (true) {
+                            // we already ensured matching categories
+                            if (!check_features || adjunction_possible(
+                                    adj_node, tag_tree)) {
+
+                                ClosedItems adj_closed = closed_map
+                                        .get(adj_node);
 
-                                if (closed_map.get(adj_node) != null) {
+                                if (adj_closed != null) {
 
-                                    if (closed_map.get(adj_node).get(i2) != null
-                                            && closed_map.get(adj_node).get(i2)
-                                            .get(j1) != null) {
+                                    if (adj_closed.has(i2, j1)) {
 
                                         double hyp = base_score
-                                                + closed_map.get(adj_node)
-                                                .get(i2).get(j1)[1]
+                                                + adj_closed.get(i2, j1, 1)
                                                 + 1.0; // tree weight
 
-                                        if (closed_map.get(adj_node)
-                                                .get(i1) == null)
-                                            closed_map.get(adj_node).put(i1,
-                                                    new HashMap<Integer, double[]>());
-                                        if (closed_map.get(adj_node).get(i1)
-                                                .get(j2) == null) {
-                                            closed_map.get(adj_node).get(i1)
-                                                    .put(j2, new double[2]);
-                                            closed_map.get(adj_node).get(i1)
-                                                    .get(j2)[0] = 1e300;
-                                            closed_map.get(adj_node).get(i1)
-                                                    .get(j2)[1] = 1e300;
-                                        }
+                                        adj_closed.create(i1, j2, 1e300, 1e300);
 
-                                        if (hyp < closed_map.get(adj_node)
-                                                .get(i1).get(j2)[0]) {
+                                        if (hyp < adj_closed.get(i1, j2, 0)) {
 
-                                            closed_map.get(adj_node).get(i1)
-                                                    .get(j2)[0] = hyp;
+                                            adj_closed.set(i1, j2, 0, hyp);
 
                                             add_if_not_in_queue(adj_node, i1,
                                                     j2, 0);
@@ -2777,77 +2335,35 @@ public class SlimTAGParser {
 
                                 } else {
 
-                                    Map<Integer, Map<Integer, Map<Integer, Map<Integer, double[]>>>> adj_map = gap_map
-                                            .get(adj_node);
+                                    GapItems adj_map = gap_map.get(adj_node);
 
-                                    if (adj_map.get(i2) == null)
+                                    if (!adj_map.has(i2))
                                         continue;
 
-                                    Iterator<Integer> it_i = adj_map.get(i2)
-                                            .keySet().iterator();
-
-                                    while (it_i.hasNext()) {
-
-                                        int i_inner = it_i.next().intValue();
-
-                                        if (i_inner > j1)
-                                            break;
-
-                                        Iterator<Integer> it_j = adj_map.get(i2)
-                                                .get(i_inner).keySet()
-                                                .iterator();
+                                    for (int i_inner = i2; i_inner <= j1; i_inner++) {
 
-                                        while (it_j.hasNext()) {
-
-                                            int j_inner = it_j.next()
-                                                    .intValue();
+                                        if (!adj_map.has(i2, i_inner))
+                                            continue;
 
-                                            if (j_inner > j1)
-                                                break;
+                                        for (int j_inner = i_inner; j_inner <= j1; j_inner++) {
 
-                                            if (adj_map.get(i2).get(i_inner)
-                                                    .get(j_inner)
-                                                    .get(j1) == null)
+                                            if (!adj_map.has(i2, i_inner,
+                                                    j_inner, j1))
                                                 continue;
 
                                             double hyp = base_score + adj_map
-                                                    .get(i2).get(i_inner)
-                                                    .get(j_inner).get(j1)[1]
+                                                    .get(i2, i_inner, j_inner,
+                                                    j1, 1)
                                                     + 1.0; // tree weight
 
-                                            if (adj_map.get(i1) == null)
-                                                adj_map.put(i1,
-                                                        new HashMap<Integer, Map<Integer, Map<Integer, double[]>>>());
-                                            if (adj_map.get(i1)
-                                                    .get(i_inner) == null)
-                                                adj_map.get(i1).put(i_inner,
-                                                        new HashMap<Integer, Map<Integer, double[]>>());
-                                            if (adj_map.get(i1).get(i_inner)
-                                                    .get(j_inner) == null)
-                                                adj_map.get(i1).get(i_inner)
-                                                        .put(j_inner,
-                                                                new HashMap<Integer, double[]>());
-                                            if (adj_map.get(i1).get(i_inner)
-                                                    .get(j_inner)
-                                                    .get(j2) == null) {
-                                                adj_map.get(i1).get(i_inner)
-                                                        .get(j_inner)
-                                                        .put(j2, new double[2]);
-                                                adj_map.get(i1).get(i_inner)
-                                                        .get(j_inner)
-                                                        .get(j2)[0] = 1e300;
-                                                adj_map.get(i1).get(i_inner)
-                                                        .get(j_inner)
-                                                        .get(j2)[1] = 1e300;
-                                            }
+                                            adj_map.create(i1, i_inner, j_inner,
+                                                    j2, 1e300, 1e300);
 
-                                            if (hyp < adj_map.get(i1)
-                                                    .get(i_inner).get(j_inner)
-                                                    .get(j2)[0]) {
+                                            if (hyp < adj_map.get(i1, i_inner,
+                                                    j_inner, j2, 0)) {
 
-                                                adj_map.get(i1).get(i_inner)
-                                                        .get(j_inner)
-                                                        .get(j2)[0] = hyp;
+                                                adj_map.set(i1, i_inner,
+                                                        j_inner, j2, 0, hyp);
 
                                                 add_if_not_in_queue(adj_node,
                                                         i1, i_inner, j_inner,
@@ -2869,6 +2385,19 @@ public class SlimTAGParser {
         long chartTime = System.nanoTime() - chartStartTime;
         System.err.println("Total time for init & chart construction: "
                 + (chartTime) / (Math.pow(10, 9)) + " sec.");
+        if (check_features) {
+            int checked = 0;
+            int pruned = 0;
+            for (Map<TagTree, Boolean> checks : feature_checks.values()) {
+                for (Boolean allowed : checks.values()) {
+                    checked++;
+                    if (!allowed)
+                        pruned++;
+                }
+            }
+            System.err.println("Feature pruning: " + pruned + " of " + checked
+                    + " node/tree combinations ruled out.");
+        }
 
 
         return true;
@@ -2979,9 +2508,8 @@ public class SlimTAGParser {
 
                 double score = 1e300;
 
-                if (closed_map.get(tree_root).get(0) != null && closed_map
-                        .get(tree_root).get(0).get(nTokens) != null)
-                    score = closed_map.get(tree_root).get(0).get(nTokens)[0]
+                if (closed_map.get(tree_root).has(0, nTokens))
+                    score = closed_map.get(tree_root).get(0, nTokens, 0)
                             + 1.0; // this is the tree weight
 
                 // System.err.println("score: " + score);
@@ -3007,7 +2535,103 @@ public class SlimTAGParser {
                 }
             }
         }
+        remove_duplicate_rules(rules, root_trees);
         return root_trees;
     }
 
+    /*
+     * Some derivations of the forest are identical (see the "Debug by Simon"
+     * notes in ParsingInterface): the tracing can reach the same operations
+     * several times (e.g. with several adjunctions), each time with new
+     * identifiers. The rules of a tree with the same operations (tree, type
+     * and address, in any order at different nodes, as in
+     * DerivationTree.getSignature()) as a previous rule of the tree, and thus
+     * the same derivations, are removed here, bottom-up. The rules of a cycle
+     * of the forest are kept.
+     */
+    private void remove_duplicate_rules(Map<Tidentifier, List<Rule>> rules,
+                                        List<Tidentifier> root_trees) {
+
+        Map<Tidentifier, Integer> set_ids = new HashMap<Tidentifier, Integer>();
+        Map<String, Integer> set_signatures = new HashMap<String, Integer>();
+        for (Tidentifier root : root_trees)
+            derivation_set_id(root, rules, set_ids, set_signatures);
+
+        // the rules below the removed ones are not reachable anymore
+        rules.keySet().retainAll(set_ids.keySet());
+    }
+
+    // the set identifier of a tree whose rules are being compared
+    private static final int IN_PROGRESS = -1;
+
+    /*
+     * returns an identifier for the set of derivations of tid (the same for
+     * identical sets), after removing the duplicate rules of tid. A rule
+     * reaching a tree in progress (a cycle of the forest) is not compared to
+     * the other ones, and the trees with such rules get an identifier of
+     * their own, as their sets of derivations are not known.
+     */
+    private int derivation_set_id(Tidentifier tid,
+                                  Map<Tidentifier, List<Rule>> rules,
+                                  Map<Tidentifier, Integer> set_ids,
+                                  Map<String, Integer> set_signatures) {
+
+        Integer id = set_ids.get(tid);
+        if (id != null)
+            return id;
+        set_ids.put(tid, IN_PROGRESS);
+
+        Set<String> rule_signatures = new TreeSet<String>();
+        boolean cyclic = false;
+        List<Rule> tid_rules = rules.get(tid);
+        if (tid_rules != null) {
+            Iterator<Rule> it = tid_rules.iterator();
+            while (it.hasNext()) {
+                Rule rule = it.next();
+                // the node and the signature of every operation
+                List<String[]> ops = new LinkedList<String[]>();
+                boolean in_cycle = false;
+                for (TreeOp top : rule.getRhs()) {
+                    String op = "";
+                    for (TreeOp alt = top; alt != null; alt = alt.isDisj()
+                            ? alt.getOr() : null) {
+                        int alt_id = derivation_set_id(alt.getId(), rules,
+                                set_ids, set_signatures);
+                        in_cycle |= alt_id == IN_PROGRESS;
+                        op += alt.getType() + "@" + alt.getId().getNodeId()
+                                + ":" + alt_id + "|";
+                    }
+                    ops.add(new String[]{top.getId().getNodeId(), op});
+                }
+                if (in_cycle) {
+                    cyclic = true;
+                    continue;
+                }
+                // stable, the order of the operations at the same node
+                // (multiple adjunction) matters
+                Collections.sort(ops, new Comparator<String[]>() {
+                    public int compare(String[] o1, String[] o2) {
+                        return o1[0].compareTo(o2[0]);
+                    }
+                });
+                StringBuilder rule_signature = new StringBuilder();
+                for (String[] op : ops)
+                    rule_signature.append(op[1]).append(' ');
+                if (!rule_signatures.add(rule_signature.toString()))
+                    it.remove();
+            }
+        }
+
+        // a signature no other tree has if tid is in a cycle
+        String signature = cyclic ? "cycle " + set_signatures.size()
+                : tid.getTreeId() + rule_signatures;
+        id = set_signatures.get(signature);
+        if (id == null) {
+            id = set_signatures.size();
+            set_signatures.put(signature, id);
+        }
+        set_ids.put(tid, id);
+        return id;
+    }
+
 };
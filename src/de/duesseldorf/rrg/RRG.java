@@ -26,12 +26,12 @@
  */
 package de.duesseldorf.rrg;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import de.tuebingen.lexicon.Lemma;
 import de.tuebingen.lexicon.MorphEntry;
@@ -48,20 +48,44 @@ public class RRG implements Grammar {
     private boolean needsAnchoring;
     private Map<String, List<MorphEntry>> morphEntries;
     private Map<String, List<Lemma>> lemmas;
-    private Set<RRGTree> anchoredTrees;
+
+    // index of the trees, built once when the grammar is created:
+    // trees by family (for anchoring), trees without anchor node by the
+    // words of their lexical nodes, and trees without anchor and lexical
+    // nodes
+    private Map<String, Set<RRGTree>> treesByFamily;
+    private Map<String, Set<RRGTree>> treesByLexItem;
+    private Set<RRGTree> unlexicalisedTrees;
 
     public RRG() {
-        trees = new HashSet<RRGTree>();
-        anchoredTrees = new HashSet<RRGTree>();
-        isLexicalised = lookForLexicalisation();
-        needsAnchoring = lookForAnchors();
+        this(new HashSet<RRGTree>());
     }
 
     public RRG(Set<RRGTree> trees) {
         this.trees = trees;
-        this.anchoredTrees = new HashSet<RRGTree>();
         isLexicalised = lookForLexicalisation();
         needsAnchoring = lookForAnchors();
+        indexTrees();
+    }
+
+    private void indexTrees() {
+        treesByFamily = new HashMap<String, Set<RRGTree>>();
+        treesByLexItem = new HashMap<String, Set<RRGTree>>();
+        Set<RRGTree> unlexicalised = new HashSet<RRGTree>();
+        for (RRGTree tree : trees) {
+            treesByFamily.computeIfAbsent(tree.getFamily(),
+                    f -> new HashSet<RRGTree>()).add(tree);
+            if (tree.getAnchorNode() == null) {
+                if (tree.getLexNodes().isEmpty()) {
+                    unlexicalised.add(tree);
+                }
+                for (String lex : tree.getLexNodes().keySet()) {
+                    treesByLexItem.computeIfAbsent(lex,
+                            l -> new HashSet<RRGTree>()).add(tree);
+                }
+            }
+        }
+        unlexicalisedTrees = Collections.unmodifiableSet(unlexicalised);
     }
 
     /**
@@ -127,27 +151,30 @@ public class RRG implements Grammar {
         return new HashMap<String, List<Tuple>>();
     }
 
+    /**
+     * @return the trees of the family (a view that must not be modified)
+     */
     public Set<RRGTree> getTreesByFamily(String family) {
-        return trees.parallelStream()
-                .filter(tree -> tree.getFamily().equals(family))
-                .collect(Collectors.toSet());
-    }
-
-    public void addAnchoredTree(RRGTree anchoredTree) {
-        this.anchoredTrees.add(anchoredTree);
+        Set<RRGTree> res = treesByFamily.get(family);
+        return res == null ? Collections.<RRGTree>emptySet()
+                : Collections.unmodifiableSet(res);
     }
 
-    public Set<RRGTree> getAnchoredTrees() {
-        if (needsAnchoring) {
-            return this.anchoredTrees;
-        } else {
-            return this.trees;
-        }
-
+    /**
+     * @return the trees without anchor node that have a lexical node with
+     * the word {@code lex} (a view that must not be modified)
+     */
+    public Set<RRGTree> getTreesByLexItem(String lex) {
+        Set<RRGTree> res = treesByLexItem.get(lex);
+        return res == null ? Collections.<RRGTree>emptySet()
+                : Collections.unmodifiableSet(res);
     }
 
-    public void resetAnchoredTrees() {
-        this.anchoredTrees = new HashSet<RRGTree>();
+    /**
+     * @return the trees that have neither an anchor node nor lexical nodes
+     */
+    public Set<RRGTree> getUnlexicalisedTrees() {
+        return unlexicalisedTrees;
     }
 
 }
@@ -1,5 +1,6 @@
 package de.duesseldorf.rrg;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.HashSet;
 import java.util.List;
@@ -40,7 +41,8 @@ import de.tuebingen.anchoring.NameFactory;
  *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  *
  */
-public class RRGNode implements Node, Comparable<RRGNode> {
+@SuppressWarnings("serial")
+public class RRGNode implements Node, Comparable<RRGNode>, Serializable {
 
     private List<Node> children; // all children of the Node, in order
     private RRGNodeType type; // the type of this node
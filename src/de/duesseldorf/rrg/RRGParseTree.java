@@ -42,6 +42,7 @@ import de.tuebingen.tree.Node;
  * You should have received a copy of the GNU General Public License
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
+@SuppressWarnings("serial")
 public class RRGParseTree extends RRGTree {
 
     private List<ExtractionStep> extractionsteps;
@@ -1,6 +1,7 @@
 package de.duesseldorf.rrg;
 
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import de.duesseldorf.rrg.io.SystemLogger;
@@ -13,11 +14,11 @@ public class RRGTools {
      * temporary fix: copied from method below and added idMap
      *
      * @param trees
-     * @return
+     * @return the trees that are kept, in the order of {@code trees}
      */
     public static Set<RRGParseTree> removeDoubleParseTreesByWeakEqualsWithParseTrees(
             Set<RRGParseTree> trees) {
-        Set<RRGParseTree> result = new HashSet<RRGParseTree>();
+        Set<RRGParseTree> result = new LinkedHashSet<RRGParseTree>();
         int i = 0;
         for (RRGParseTree treeFromResource : trees) {
             if (i % 10000 == 0 && i > 0) {
@@ -1,5 +1,6 @@
 package de.duesseldorf.rrg;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -46,7 +47,8 @@ import de.tuebingen.anchoring.NameFactory;
  * You should have received a copy of the GNU General Public License
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
-public class RRGTree implements Comparable<RRGTree> {
+@SuppressWarnings("serial")
+public class RRGTree implements Comparable<RRGTree>, Serializable {
 
     // representation of the syntactic tree
     protected Node root;
@@ -163,4 +163,18 @@ public class RRGTreeTools {
         return resultBuilder.build();
     }
 
+    /**
+     * @param node1
+     * @param node2
+     * @param env   an Environment that is only used for trying, it is left
+     *              as it was
+     * @return true iff unifyNodes(node1, node2, env) would succeed. The nodes
+     * are not copied, see {@link FsTools#unifiable(Fs, Fs, Environment)}.
+     */
+    public static boolean unifiableNodes(RRGNode node1, RRGNode node2,
+                                         Environment env) {
+        return node1.getCategory().equals(node2.getCategory()) && FsTools
+                .unifiable(node1.getNodeFs(), node2.getNodeFs(), env);
+    }
+
 }
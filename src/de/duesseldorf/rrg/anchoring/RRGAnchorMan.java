@@ -5,8 +5,6 @@ import de.duesseldorf.rrg.RRG;
 import de.duesseldorf.rrg.RRGNode;
 import de.duesseldorf.rrg.RRGTree;
 import de.tuebingen.anchoring.TreeSelector;
-import de.tuebingen.lexicon.Lemma;
-import de.tuebingen.lexicon.MorphEntry;
 import de.tuebingen.tokenizer.Word;
 
 import java.util.*;
@@ -15,8 +13,19 @@ public class RRGAnchorMan {
 
     private List<String> tokenizedSentenceAsStrings;
     private List<Word> tokenizedSentenceAsWords;
+    private Situation situation;
 
     public RRGAnchorMan(List<String> tokenizedSentence) {
+        this(Situation.current(), tokenizedSentence);
+    }
+
+    /**
+     * @param situation         the grammar to take the trees from. Anchoring
+     *                          does not change the grammar.
+     * @param tokenizedSentence
+     */
+    public RRGAnchorMan(Situation situation, List<String> tokenizedSentence) {
+        this.situation = situation;
         this.tokenizedSentenceAsStrings = tokenizedSentence;
         convertTokenizedSentenceToListOfWords();
     }
@@ -35,44 +44,43 @@ public class RRGAnchorMan {
      * of the input
      */
     public Set<RRGTree> anchor() {
-        Map<String, List<MorphEntry>> morphEntries = Situation.getGrammar()
-                .getMorphEntries();
-        Map<String, List<Lemma>> lemmas = Situation.getGrammar().getLemmas();
-
-        if (Situation.getGrammar().needsAnchoring()) {
-
-            TreeSelector ts = new TreeSelector(tokenizedSentenceAsWords, false);
-            // TreeSelector adds all RRGTrees as anchoredTrees to the RRG that
-            // contain an anchor node (and have lemmas in the input sentence?)
+        RRG grammar = (RRG) situation.grammar();
+        Set<RRGTree> result = new HashSet<>();
+        if (grammar.needsAnchoring()) {
+            TreeSelector ts = new TreeSelector(tokenizedSentenceAsWords, false,
+                    situation);
+            // TreeSelector anchors all RRGTrees that contain an anchor node
+            // (and have lemmas in the input sentence?)
             ts.retrieve(new LinkedList<String>());
-        }
-
-
-        Set<RRGTree> tmpresult = ((RRG) Situation.getGrammar()).getAnchoredTrees();
-        Set<RRGTree> resultWithNewIds = new HashSet<>();
-        for (RRGTree tree : tmpresult) {
-            RRGTree newTree = new RRGTree(tree);
-            ((RRGNode) newTree.getRoot()).removeCategory();
-            newTree.setId(tree.getId() + "_" + tree.getLexNodes().keySet().toString());
-            resultWithNewIds.add(newTree);
-        }
-        Set<RRGTree> result = new HashSet<>(resultWithNewIds);
-        // next, take care of the lexicaliized trees and trees without anchor
-        // nodes
-
-        ((RRG) Situation.getGrammar()).getTrees().stream().forEach((tree) -> {
-            boolean noAnchNoLex = tree.getLexNodes().isEmpty()
-                    && tree.getAnchorNode() == null;
-            // anch node must be null and some word from the sentence must be in
-            // the tree
-            HashSet<String> intersection = new HashSet<String>(tokenizedSentenceAsStrings);
-            intersection.retainAll(tree.getLexNodes().keySet());
-            boolean lexNoAnch = tree.getAnchorNode() == null
-                    && !intersection.isEmpty();
-            if (noAnchNoLex || lexNoAnch) {
+            // the anchored trees are new trees, they can be changed in place
+            for (RRGTree tree : ts.getRRGAnchoredTrees()) {
+                String id = tree.getId() + "_" + tree.getLexNodes().keySet();
+                ((RRGNode) tree.getRoot()).removeCategory();
+                tree.setId(id);
                 result.add(tree);
             }
-        });
+        } else {
+            for (RRGTree tree : grammar.getTrees()) {
+                // trees that have their categories only in the node labels
+                // (e.g. from the bracket format) would lose them here; they
+                // are taken as they are below
+                if (((RRGNode) tree.getRoot()).getNodeFs().getCategory()
+                        .isEmpty()) {
+                    continue;
+                }
+                RRGTree newTree = new RRGTree(tree);
+                ((RRGNode) newTree.getRoot()).removeCategory();
+                newTree.setId(tree.getId() + "_" + tree.getLexNodes().keySet());
+                result.add(newTree);
+            }
+        }
+        // next, take care of the lexicaliized trees and trees without anchor
+        // nodes: the trees without anchor node and with a lex node matching
+        // a word from the sentence, and those with no lex node at all
+        result.addAll(grammar.getUnlexicalisedTrees());
+        for (String word : new HashSet<String>(tokenizedSentenceAsStrings)) {
+            result.addAll(grammar.getTreesByLexItem(word));
+        }
         return result;
 
         // System.out.println(morphEntries.values());
@@ -0,0 +1,55 @@
+package de.duesseldorf.rrg.extractor;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * File LazyIterator.java
+ * <p>
+ * An iterator that computes its next element only when it is asked for. Used
+ * to unpack parse trees from a {@link RRGParseForest} one by one.
+ * <p>
+ * This file is part of the TuLiPA-frames system
+ * https://github.com/spetitjean/TuLiPA-frames
+ * <p>
+ * <p>
+ * TuLiPA is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * TuLiPA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+abstract class LazyIterator<T> implements Iterator<T> {
+    private T next;
+
+    /**
+     * @return the next element, or null if there is none
+     */
+    protected abstract T computeNext();
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            next = computeNext();
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T result = next;
+        next = null;
+        return result;
+    }
+}
+
@@ -4,7 +4,6 @@ import de.duesseldorf.frames.UnifyException;
 import de.duesseldorf.rrg.RRGNode.RRGNodeType;
 import de.duesseldorf.rrg.RRGParseResult;
 import de.duesseldorf.rrg.RRGParseTree;
-import de.duesseldorf.rrg.RRGTree;
 import de.duesseldorf.rrg.parser.Backpointer;
 import de.duesseldorf.rrg.parser.Operation;
 import de.duesseldorf.rrg.parser.RRGParseChart;
@@ -13,6 +12,7 @@ import de.duesseldorf.util.GornAddress;
 import de.tuebingen.util.TextUtilities;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
@@ -49,15 +49,25 @@ public class ParseForestExtractor {
 
     public boolean verbosePrintsToStdOut = false;
 
-    private Set<Operation> sameElemTree = new HashSet<Operation>(Arrays
-            .asList(Operation.COMBINESIS, Operation.MOVEUP, Operation.NLS));
     private List<String> toksentence;
 
+    // memo table: what each item contributes to the parse trees at a position
+    // in the parse tree. The fragments do not depend on the parse tree built
+    // so far, so the table is kept for the whole chart and shared by all
+    // goals.
+    private Map<ExtractionKey, Fragment> fragments;
+    // the keys whose fragment is being built, to cut cycles in the chart
+    private Set<ExtractionKey> inProgress;
+    private int extractionSteps = 0;
+    private int cacheHits = 0;
+
     public ParseForestExtractor(RRGParseChart parseChart,
                                 List<String> toksentence) {
         this.parseChart = parseChart;
         this.toksentence = toksentence;
         this.resultingParses = new ConcurrentSkipListSet<RRGParseTree>();
+        this.fragments = new HashMap<ExtractionKey, Fragment>();
+        this.inProgress = new HashSet<ExtractionKey>();
     }
 
     public RRGParseResult extractParseTrees() {
@@ -68,30 +78,47 @@ public class ParseForestExtractor {
         //if (verbosePrintsToStdOut) {
         System.out.println("goal items: " + goals);
         //}
+        List<RRGParseTree> trees = new ArrayList<RRGParseTree>();
         goals.stream().forEach((goal) -> {
             System.out.println("goal item: " + goal);
-            ExtractionStep initExtrStep = initialExtractionStep(
-                    (RRGParseItem) goal);
-            Set<RRGParseTree> resultingTrees = extract(initExtrStep);
-            addToResultingParses(resultingTrees);
+            Fragment fragment = fragment(goal, new GornAddress(), 0);
+            if (fragment != null) {
+                trees.addAll(apply(fragment,
+                        new RRGParseTree(goal.getTreeInstance())));
+            }
         });
+        addToResultingParses(trees);
         return ParseForestPostProcessor
                 .postProcessParseTreeSet(resultingParses);
     }
 
     /**
-     * this method takes a
+     * Extract the parse trees of a goal item one by one, without
+     * post-processing them. Used to unpack a {@link RRGParseForest} lazily:
+     * a parse tree is only built when the iteration reaches it. Equal trees
+     * can be returned more than once.
      *
-     * @param goal item and creates the initial extraction step from that item
+     * @param goal a goal item of the chart
+     * @return the parse trees of {@code goal}
      */
-    private ExtractionStep initialExtractionStep(RRGParseItem goal) {
-        ExtractionStep result = new ExtractionStep(goal, new GornAddress(),
-                new RRGParseTree(goal.getTreeInstance()), 0);
-        return result;
+    public Iterator<RRGParseTree> iterateParseTrees(RRGParseItem goal) {
+        Fragment fragment = fragment(goal, new GornAddress(), 0);
+        if (fragment == null) {
+            return Collections.emptyIterator();
+        }
+        return iterate(fragment, new RRGParseTree(goal.getTreeInstance()));
     }
 
+    /**
+     * Number the parse trees and add them to the resulting parses. The
+     * sets of parse trees are ordered by the hash codes of their nodes,
+     * which depend on how the grammar was loaded (e.g. from an image), so
+     * they are sorted first to give the same trees the same numbers.
+     */
     private synchronized void addToResultingParses(
-            Set<RRGParseTree> resultingTrees) {
+            List<RRGParseTree> resultingTrees) {
+        resultingTrees.sort(Comparator.<RRGParseTree>naturalOrder()
+                .thenComparing(tree -> tree.getIds().toString()));
         for (RRGParseTree resultingParseTree : resultingTrees) {
             String newId = TextUtilities.appendList(toksentence, "_")
                     + resultingParses.size();
@@ -100,173 +127,164 @@ public class ParseForestExtractor {
         }
     }
 
-    private Set<RRGParseTree> extract(ExtractionStep extractionstep) {
-        Backpointer backPointers = parseChart
-                .getBackPointers(extractionstep.getCurrentItem());
-        // Set<RRGParseTree> parsesInThisStep = new ConcurrentSkipListSet<RRGParseTree>();
-        Set<RRGParseTree> parsesInThisStep = new HashSet<RRGParseTree>();
+    /**
+     * @return the number of times the fragment of an item at a position was
+     * asked for so far, including the ones answered from the cache
+     */
+    public int getExtractionSteps() {
+        return extractionSteps;
+    }
+
+    /**
+     * @return the number of times the fragment of an item at a position was
+     * answered from the cache
+     */
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * What an item contributes to the parse trees only depends on the item,
+     * the position in the parse tree and the direction to go down, not on
+     * the parse tree built so far: the parse tree only decides whether the
+     * tree operations succeed (e.g. whether features unify). So the fragment
+     * is built once and grafted into every parse tree that reaches the same
+     * situation.
+     *
+     * @return the fragment, or null if {@code item} is reached again while
+     * its own fragment is built (a cycle in the chart)
+     */
+    private Fragment fragment(RRGParseItem item, GornAddress ga,
+                              int goToRightWhenGoingDown) {
+        checkInterrupted();
+        extractionSteps++;
+        ExtractionKey key = new ExtractionKey(parseChart.getId(item), ga,
+                goToRightWhenGoingDown);
+        Fragment result = fragments.get(key);
+        if (result != null) {
+            cacheHits++;
+            return result;
+        }
+        if (!inProgress.add(key)) {
+            return null;
+        }
+        try {
+            result = buildFragment(item, ga, goToRightWhenGoingDown);
+        } finally {
+            inProgress.remove(key);
+        }
+        fragments.put(key, result);
+        return result;
+    }
+
+    private Fragment buildFragment(RRGParseItem item, GornAddress ga,
+                                   int goToRightWhenGoingDown) {
+        Backpointer backPointers = parseChart.getBackPointers(item);
+        if (backPointers == null) {
+            backPointers = new Backpointer();
+        }
         if (verbosePrintsToStdOut) {
-            System.out.println(extractionstep);
+            System.out.println(item + "\n" + ga
+                    + "\nMove Right when going to daughter: "
+                    + goToRightWhenGoingDown
+                    + "\n-------------------------------\n");
         }
-        // System.out.println("Extraction step");
-        // System.out.println(extractionstep);
-        //System.out.println("Backpointers");
-        //System.out.println(backPointers);
+        // if no other rule applies (i.e. if we deal with a scanned item),
+        // the parse tree is taken as it is
+        Fragment result = new Fragment(
+                item.getNode().getType().equals(RRGNodeType.LEX));
 
         // distinguish different operations here
         // NLS
-        parsesInThisStep.addAll(extractNLS(
-                backPointers.getAntecedents(Operation.NLS), extractionstep));
+        extractNLS(backPointers.getAntecedents(Operation.NLS), ga,
+                goToRightWhenGoingDown, result);
 
         // Move-Up
-        Set<Set<RRGParseItem>> moveupAntecedents = backPointers
-                .getAntecedents(Operation.MOVEUP);
-        parsesInThisStep
-                .addAll(extractMoveUp(moveupAntecedents, extractionstep));
+        extractMoveUp(backPointers.getAntecedents(Operation.MOVEUP), ga,
+                goToRightWhenGoingDown, result);
 
         // Combine-Sisters
-        Set<Set<RRGParseItem>> combsisAntecedents = backPointers
-                .getAntecedents(Operation.COMBINESIS);
-        parsesInThisStep
-                .addAll(extractCombSis(combsisAntecedents, extractionstep));
+        extractCombSis(backPointers.getAntecedents(Operation.COMBINESIS), ga,
+                goToRightWhenGoingDown, result);
 
         // Substitution
-        Set<Set<RRGParseItem>> substAntecedents = backPointers
-                .getAntecedents(Operation.SUBSTITUTE);
-        parsesInThisStep.addAll(extractSubst(substAntecedents, extractionstep));
+        extractSubst(backPointers.getAntecedents(Operation.SUBSTITUTE), ga,
+                result);
 
         // Left-Adjoin
-        Set<Set<RRGParseItem>> leftAdjAntecedents = backPointers
-                .getAntecedents(Operation.LEFTADJOIN);
-        parsesInThisStep
-                .addAll(extractLeftAdjoin(leftAdjAntecedents, extractionstep));
+        extractLeftAdjoin(backPointers.getAntecedents(Operation.LEFTADJOIN),
+                ga, goToRightWhenGoingDown, result);
 
         // Right-Adjoin
-        Set<Set<RRGParseItem>> rightAdjAntecedents = backPointers
-                .getAntecedents(Operation.RIGHTADJOIN);
-        parsesInThisStep.addAll(
-                extractRightAdjoin(rightAdjAntecedents, extractionstep));
+        extractRightAdjoin(backPointers.getAntecedents(Operation.RIGHTADJOIN),
+                ga, goToRightWhenGoingDown, result);
 
         // Complete-Wrapping
-        Set<Set<RRGParseItem>> coWrAntecedents = backPointers
-                .getAntecedents(Operation.COMPLETEWRAPPING);
-        parsesInThisStep.addAll(
-                extractCompleteWrapping(coWrAntecedents, extractionstep));
+        extractCompleteWrapping(
+                backPointers.getAntecedents(Operation.COMPLETEWRAPPING), ga,
+                result);
 
         // Predict-Wrapping
-
-        Set<Set<RRGParseItem>> prWrAntecedents = backPointers
-                .getAntecedents(Operation.PREDICTWRAPPING);
-        boolean wrappingException = false;
-        try {
-            parsesInThisStep.addAll(
-                    extractPredictWrapping(prWrAntecedents, extractionstep));
-        } catch (WrappingException e) {
-            wrappingException = true;
-        }
+        extractPredictWrapping(
+                backPointers.getAntecedents(Operation.PREDICTWRAPPING), ga,
+                goToRightWhenGoingDown, result);
 
         // Generalized Wrapping
-        Set<Set<RRGParseItem>> jumpbackAntecedents = backPointers.getAntecedents(Operation.GENCWJUMPBACK);
-        parsesInThisStep.addAll(extractJumpBack(jumpbackAntecedents, extractionstep));
-
-        Set<Set<RRGParseItem>> gencwAntecedents = backPointers.getAntecedents(Operation.GENCW);
-        parsesInThisStep.addAll(extractGenCompleteWrapping(gencwAntecedents, extractionstep));
-        // if no other rule applied (i.e. if we dealt with a scanned item):
-        boolean noBackPointersBecauseLexNode = extractionstep.getCurrentItem()
-                .getNode().getType().equals(RRGNodeType.LEX);
-        if (parsesInThisStep.isEmpty() && !wrappingException
-                && noBackPointersBecauseLexNode) {
-            parsesInThisStep.add(extractionstep.getCurrentParseTree());
-        }
-        // System.out.println("---------------------------------------------");
-        // System.out.println(parsesInThisStep.size());
-        // System.out.println("---------------------------------------------");
-        // System.out.println(extractionstep);
-        // for (RRGParseTree parseInThisStep : parsesInThisStep) {
-        // System.out.println(parseInThisStep);
-        // }
-        // System.out.println("---------------------------------------------");
-
-        // Set<RRGParseTree> parsesInThisStepWithCurrentExtractionStep =
-        // addExtractionStepToAllTrees(
-        // parsesInThisStep, extractionstep);
-
-        // System.out.println("\nParses in this step:");
-        // System.out.println(parsesInThisStep);
-
-        return parsesInThisStep;
+        extractJumpBack(backPointers.getAntecedents(Operation.GENCWJUMPBACK),
+                ga, goToRightWhenGoingDown, result);
+        extractGenCompleteWrapping(
+                backPointers.getAntecedents(Operation.GENCW), ga, result);
+        return result;
     }
 
-    private Set<RRGParseTree> extractJumpBack(Set<Set<RRGParseItem>> jumpbackAntecedents, ExtractionStep extractionstep) {
-        Set<RRGParseTree> parsesInThisStep = new HashSet<>();
+    private void extractJumpBack(Set<Set<RRGParseItem>> jumpbackAntecedents,
+                                 GornAddress ga, int goToRightWhenGoingDown,
+                                 Fragment result) {
         for (Set<RRGParseItem> itemset : jumpbackAntecedents) {
             if (verbosePrintsToStdOut) {
                 System.out.println(Operation.GENCWJUMPBACK);
             }
-            RRGParseTree currentParseTree = extractionstep.getCurrentParseTree();
             RRGParseItem jumpbackAntecedent = itemset.iterator().next();
-            RRGTree wrappingTree = jumpbackAntecedent.getTree();
-            /**int ddaughterIndex = -1;
-             for (int i = 0; i < wrappingTree.getRoot().getChildren().size(); i++) {
-             RRGNode ithDaughter = (RRGNode) wrappingTree.getRoot().getChildren().get(i);
-             if (ithDaughter.getType().equals(RRGNodeType.DDAUGHTER)) {
-             break;
-             }
-             }*/
-            GornAddress currentGA = extractionstep.getGAInParseTree();
-            RRGParseTree nextStepParseTree = currentParseTree.insertWrappingTree(wrappingTree, currentGA, jumpbackAntecedent.getGenwrappingjumpback());
-            ExtractionStep nextStep = new ExtractionStep(jumpbackAntecedent, currentGA, nextStepParseTree, extractionstep.getGoToRightWhenGoingDown());
-            parsesInThisStep.addAll(extract(nextStep));
             // first extract all arms to the right of the ddaguther
             // then jumpback
             // then extract left armas
-            // before: debug a very simple general wrapping example (on the master branch!) to see how it should work. Bonus: Nested wrapping extraction
+            result.addAlternative(
+                    (TreeOperation) tree -> tree.insertWrappingTree(
+                            jumpbackAntecedent.getTree(), ga,
+                            jumpbackAntecedent.getGenwrappingjumpback()),
+                    fragment(jumpbackAntecedent, ga, goToRightWhenGoingDown));
         }
-        return parsesInThisStep;
     }
 
-    private Set<RRGParseTree> extractPredictWrapping(
-            Set<Set<RRGParseItem>> predictWrappingAntecedents,
-            ExtractionStep extractionstep) throws WrappingException {
-
-        Set<RRGParseTree> parsesInThisPWStep = new HashSet<RRGParseTree>();
+    private void extractPredictWrapping(
+            Set<Set<RRGParseItem>> predictWrappingAntecedents, GornAddress ga,
+            int goToRightWhenGoingDown, Fragment result) {
         for (Set<RRGParseItem> predictWrappingantecedentItemsingletonList : predictWrappingAntecedents) {
             if (verbosePrintsToStdOut) {
                 System.out.println(Operation.PREDICTWRAPPING);
             }
             // do the substitution and extract wrapping tree below d-daughter
-            // System.out.println("got here! antecedens: "
-            // + predictWrappingantecedentItemsingletonList);
-            // System.out.println("step: " + extractionstep);
-
-
-            RRGParseItem predictWrappingAntecedentItem = (RRGParseItem) predictWrappingantecedentItemsingletonList
+            RRGParseItem predictWrappingAntecedentItem = predictWrappingantecedentItemsingletonList
                     .iterator().next();
-            if (extractionstep.getGAInParseTree() == null) {
+            if (ga == null) {
                 System.err.println("Weird NullPointerException, should be caught in a cleaner way");
-                return parsesInThisPWStep;
+                return;
             }
-            GornAddress ddaughterAbsAddress = new GornAddress(
-                    extractionstep.getGAInParseTree());
+            GornAddress ddaughterAbsAddress = new GornAddress(ga);
             // insert the subtree stored in the RRGParseTree at the correct GA
             // (seems to work)
-            // continue extraction from there with same GA	    
-            RRGParseTree nextStepParseTree = extractionstep
-                    .getCurrentParseTree().addWrappingSubTree(
-                            ddaughterAbsAddress, predictWrappingAntecedentItem);
-            if (nextStepParseTree != null) {
-                ExtractionStep nextStep = new ExtractionStep(
-                        predictWrappingAntecedentItem, ddaughterAbsAddress,
-                        nextStepParseTree,
-                        extractionstep.getGoToRightWhenGoingDown());
-                parsesInThisPWStep.addAll(extract(nextStep));
-            }
+            // continue extraction from there with same GA
+            result.addAlternative(
+                    (TreeOperation) tree -> tree.addWrappingSubTree(ddaughterAbsAddress,
+                            predictWrappingAntecedentItem),
+                    fragment(predictWrappingAntecedentItem,
+                            ddaughterAbsAddress, goToRightWhenGoingDown));
         }
-        return parsesInThisPWStep;
     }
 
-    private Set<RRGParseTree> extractGenCompleteWrapping(Set<Set<RRGParseItem>> gencwAntecedents, ExtractionStep extractionstep) {
-        Set<RRGParseTree> parsesInThisStep = new HashSet<>();
+    private void extractGenCompleteWrapping(
+            Set<Set<RRGParseItem>> gencwAntecedents, GornAddress ga,
+            Fragment result) {
         for (Set<RRGParseItem> backpointerset : gencwAntecedents) {
             if (verbosePrintsToStdOut) {
                 System.out.println(Operation.GENCW);
@@ -275,31 +293,20 @@ public class ParseForestExtractor {
             RRGParseItem ddaughterItem = backpointerset.stream().filter(item -> item.getwsflag()).findFirst().orElseGet(null);
             RRGParseItem wraprootItem = backpointerset.stream().filter(item -> !item.getwsflag()).findFirst().orElseGet(null);
 
-
-            RRGParseTree currentParseTree = extractionstep.getCurrentParseTree();
-            GornAddress currentGA = extractionstep.getGAInParseTree();
-            RRGParseTree nextStepParseTree = currentParseTree.insertWrappedTreeForGeneralizedWrapping(wraprootItem, currentGA, ddaughterItem);
-
-            GornAddress newGA = extractionstep.getGAInParseTree().mother();
-            ExtractionStep nextStep = new ExtractionStep(wraprootItem,
-                    newGA, nextStepParseTree,
-                    extractionstep.getGAInParseTree().isIthDaughter());
-            parsesInThisStep.addAll(extract(nextStep));
+            result.addAlternative(
+                    (TreeOperation) tree -> tree.insertWrappedTreeForGeneralizedWrapping(
+                            wraprootItem, ga, ddaughterItem),
+                    fragment(wraprootItem, ga.mother(), ga.isIthDaughter()));
         }
-        return parsesInThisStep;
     }
 
-    private Set<RRGParseTree> extractCompleteWrapping(
-            Set<Set<RRGParseItem>> completeWrappingAntecedents,
-            ExtractionStep extractionstep) {
-        Set<RRGParseTree> parsesInThisCWStep = new HashSet<RRGParseTree>();
+    private void extractCompleteWrapping(
+            Set<Set<RRGParseItem>> completeWrappingAntecedents, GornAddress ga,
+            Fragment result) {
         for (Set<RRGParseItem> CWantecedentItems : completeWrappingAntecedents) {
             if (verbosePrintsToStdOut) {
                 System.out.println(Operation.COMPLETEWRAPPING);
             }
-            // System.out.println(
-            // "do complete Wrapping with\n" + CWantecedentItems.toString()
-            // + "\n" + extractionstep.getCurrentItem());
 
             RRGParseItem dDaughter, gapItem;
             Iterator<RRGParseItem> it = CWantecedentItems.iterator();
@@ -312,42 +319,24 @@ public class ParseForestExtractor {
                 gapItem = candidate1;
             }
 
-            // extract the d-daughter in the predict-wrapping step
-
-            // insert the wrapped tree into the parse tree
-            // System.out.println(
-            // "before wrapping: " + extractionstep.getCurrentParseTree());
-            // System.out.println("insert that tree: " + gapItem.getTree());
-            // System.out.println("at: " + extractionstep.getGAInParseTree());
-            RRGParseTree nextStepParseTree = extractionstep
-                    .getCurrentParseTree().insertWrappedTree(gapItem.getTreeInstance(),
-                            extractionstep.getGAInParseTree(), dDaughter, false);
-            // System.out.println("after wrapping: " + nextStepParseTree);
-
-            // adjust Gorn Addresses here.
-            GornAddress shiftedGAInParseTree = extractionstep.getGAInParseTree()
-                    .mother();
-            // System.out.println("extract from address (root of wrapped tree):
-            // "
-            // + shiftedGAInParseTree);
-            ExtractionStep nextStep = new ExtractionStep(gapItem,
-                    shiftedGAInParseTree, nextStepParseTree,
-                    extractionstep.getGAInParseTree().isIthDaughter()
-                    /* + extractionstep.getGoToRightWhenGoingDown() */);
-            parsesInThisCWStep.addAll(extract(nextStep));
+            // the d-daughter is extracted in the predict-wrapping step.
+            // insert the wrapped tree into the parse tree, then continue at
+            // the root of the wrapped tree
+            result.addAlternative(
+                    (TreeOperation) tree -> tree.insertWrappedTree(gapItem.getTreeInstance(),
+                            ga, dDaughter, false),
+                    fragment(gapItem, ga.mother(), ga.isIthDaughter()
+                            /* + goToRightWhenGoingDown */));
         }
-        return parsesInThisCWStep;
     }
 
-    private Set<RRGParseTree> extractRightAdjoin(
-            Set<Set<RRGParseItem>> rightAdjAntecedents,
-            ExtractionStep extractionstep) {
-        Set<RRGParseTree> parsesInThisRightAdjStep = new HashSet<RRGParseTree>();
+    private void extractRightAdjoin(Set<Set<RRGParseItem>> rightAdjAntecedents,
+                                    GornAddress ga, int goToRightWhenGoingDown,
+                                    Fragment result) {
         for (Set<RRGParseItem> rightAdjAntecedentItems : rightAdjAntecedents) {
             if (verbosePrintsToStdOut) {
                 System.out.println(Operation.RIGHTADJOIN);
             }
-            Set<RRGParseTree> tmpResult = new HashSet<RRGParseTree>();
             // First: find both items
             // Second: extract the right one (might cause problem when the
             // consequent item of this extraction step was the left sister in a
@@ -362,59 +351,24 @@ public class ParseForestExtractor {
                 auxRootItem = it.next();
                 targetItem = candidate1;
             }
-            RRGParseTree nextStepParseTree = null;
-            try {
-                nextStepParseTree = extractionstep
-                        .getCurrentParseTree().sisterAdjoin(auxRootItem.getTreeInstance(),
-                                extractionstep.getGAInParseTree().mother(),
-                                extractionstep.getGAInParseTree().isIthDaughter()
-                                        + extractionstep.getGoToRightWhenGoingDown()
-                                        + 1);
-            } catch (UnifyException e) {
-                continue;
-            }
-            // extract aux tree:
-            ExtractionStep nextStep = new ExtractionStep(auxRootItem,
-                    extractionstep.getGAInParseTree().mother(),
-                    nextStepParseTree,
-                    extractionstep.goToRightWhenGoingDown
-                            + extractionstep.getGAInParseTree().isIthDaughter()
-                            + 1);
-
-            tmpResult = extract(nextStep);
-            // System.out.println("tmpresult size: " + tmpResult.size());
-            // extract target:
-            for (RRGParseTree rrgParseTree : tmpResult) {
-                nextStep = new ExtractionStep(targetItem,
-                        extractionstep.getGAInParseTree(), rrgParseTree,
-                        extractionstep.getGoToRightWhenGoingDown());
-                parsesInThisRightAdjStep.addAll(extract(nextStep));
-            }
-            // System.out.println("RIGHTADJOIN");
-            // System.out.println("extractionstep: " + extractionstep);
-            // System.out.println("auxroot: " + auxRootItem);
-            // System.out.println("targetitem: " + targetItem);
-            // System.out.println("nextStep: " + nextStep);
-            // System.out.println("tmpResult: " + tmpResult);
+            int position = ga.isIthDaughter() + goToRightWhenGoingDown + 1;
+            // adjoin and extract the aux tree, then extract the target
+            result.addAlternative(
+                    (TreeOperation) tree -> sisterAdjoin(tree, auxRootItem, ga.mother(),
+                            position),
+                    fragment(auxRootItem, ga.mother(), position),
+                    fragment(targetItem, ga, goToRightWhenGoingDown));
         }
-        // System.out.println("\nparses in this right adj step:");
-        // System.out.println(parsesInThisRightAdjStep);
-        return parsesInThisRightAdjStep;
     }
 
-    private Set<RRGParseTree> extractLeftAdjoin(
-            Set<Set<RRGParseItem>> leftAdjAntecedents,
-            ExtractionStep extractionstep) {
-        Set<RRGParseTree> parsesInThisLeftAdjStep = new HashSet<RRGParseTree>();
+    private void extractLeftAdjoin(Set<Set<RRGParseItem>> leftAdjAntecedents,
+                                   GornAddress ga, int goToRightWhenGoingDown,
+                                   Fragment result) {
         // for all possible antecedents
         for (Set<RRGParseItem> leftAdjAntecedentItems : leftAdjAntecedents) {
             if (verbosePrintsToStdOut) {
                 System.out.println(Operation.LEFTADJOIN);
             }
-            // System.out.println("leftsisadj: " + leftAdjAntecedentItems);
-            Set<RRGParseTree> tmpResult = new HashSet<RRGParseTree>();
-            // tmpResult.add(extractionstep.getCurrentParseTree());
-
             RRGParseItem auxRootItem, rightSisItem;
             Iterator<RRGParseItem> it = leftAdjAntecedentItems.iterator();
             RRGParseItem candidate1 = it.next();
@@ -425,47 +379,21 @@ public class ParseForestExtractor {
                 auxRootItem = it.next();
                 rightSisItem = candidate1;
             }
-            // first extract the right sister
-            ExtractionStep nextStep = new ExtractionStep(rightSisItem,
-                    extractionstep.getGAInParseTree(),
-                    extractionstep.getCurrentParseTree(),
-                    extractionstep.getGoToRightWhenGoingDown());
-            tmpResult = extract(nextStep);
-            // System.out.println("aux root: " + auxRootItem);
-            // System.out.println("right sis: " + rightSisItem);
-            // then extract the left sister
-            for (RRGParseTree rrgParseTree : tmpResult) {
-                int position = Math
-                        .max(extractionstep.getGAInParseTree().isIthDaughter()
-                                /* extractionstep.getGoToRightWhenGoingDown() */, 0);
-
-                RRGParseTree nextStepParseTree = null;
-                try {
-                    nextStepParseTree = rrgParseTree.sisterAdjoin(
-                            auxRootItem.getTreeInstance(),
-                            extractionstep.getGAInParseTree().mother(), position);
-                } catch (UnifyException e) {
-                    continue;
-                }
-                nextStep = new ExtractionStep(auxRootItem,
-                        extractionstep.getGAInParseTree().mother(),
-                        nextStepParseTree, position);
-                parsesInThisLeftAdjStep.addAll(extract(nextStep));
-            }
-            // System.out.println("LEFTADJOIN");
-            // System.out.println("extractionstep: " + extractionstep);
-            // System.out.println("auxroot: " + auxRootItem);
-            // System.out.println("targetitem: " + rightSisItem);
-            // System.out.println("nextStep: " + nextStep);
-            // System.out.println("tmpResult: " + tmpResult);
+            int position = Math.max(ga.isIthDaughter()
+                    /* goToRightWhenGoingDown */, 0);
+            // first extract the right sister, then adjoin and extract the
+            // left sister
+            result.addAlternative(
+                    fragment(rightSisItem, ga, goToRightWhenGoingDown),
+                    (TreeOperation) tree -> sisterAdjoin(tree, auxRootItem,
+                            ga.mother(), position),
+                    fragment(auxRootItem, ga.mother(), position));
         }
-        return parsesInThisLeftAdjStep;
     }
 
-    private Set<RRGParseTree> extractCombSis(
-            Set<Set<RRGParseItem>> combsisAntecedents,
-            ExtractionStep extractionstep) {
-        Set<RRGParseTree> parsesInThisCombSisStep = new HashSet<RRGParseTree>();
+    private void extractCombSis(Set<Set<RRGParseItem>> combsisAntecedents,
+                                GornAddress ga, int goToRightWhenGoingDown,
+                                Fragment result) {
         // how many different antecedents are there?
         for (Set<RRGParseItem> combsisantecedentItems : combsisAntecedents) {
             if (verbosePrintsToStdOut) {
@@ -483,140 +411,258 @@ public class ParseForestExtractor {
                 leftItem = it.next();
                 rightItem = candidate1;
             }
-
-            ExtractionStep nextStep = new ExtractionStep(rightItem,
-                    extractionstep.getGAInParseTree(),
-                    extractionstep.getCurrentParseTree(),
-                    extractionstep.getGoToRightWhenGoingDown());
-            Set<RRGParseTree> tmpResult = extract(nextStep);
-            for (RRGParseTree rrgParseTree : tmpResult) {
-                nextStep = new ExtractionStep(leftItem,
-                        extractionstep.getGAInParseTree().leftSister(),
-                        rrgParseTree,
-                        extractionstep.getGoToRightWhenGoingDown());
-                parsesInThisCombSisStep.addAll(extract(nextStep));
-            }
-            // old part:
-            // Set<RRGParseTree> tmpResult = new HashSet<RRGParseTree>();
-            // tmpResult.add(extractionstep.getCurrentParseTree());
-            // for (int i = 0; i < combsisantecedentItems.size(); i++) {
-            // RRGParseItem combsisantecedentItem = (RRGParseItem)
-            // combsisantecedentItems
-            // .get(i);
-            // idea of this part: The inner for loop only takes one round
-            // when extracting the first item from the list. When extracting
-            // the first item, add all extracted parse trees to tmpResult.
-            // Then, you can further elaborate those possibilities with a
-            // second take on the inner for loop.
-            // for (RRGParseTree oneTree : tmpResult) {
-            // ExtractionStep nextStep;
-            // GornAddress GAtoExtractFrom;
-            // boolean currentAntecedentIsRightSister = ((RRGParseItem)
-            // combsisantecedentItem)
-            // .getNode().getGornaddress()
-            // .equals(extractionstep.getCurrentItem().getNode()
-            // .getGornaddress());
-            // First, find the GA from which to further extract
-            // processing the right sister
-            // if (currentAntecedentIsRightSister) {
-            // GAtoExtractFrom = extractionstep.getGAInParseTree();
-            // } else { // processing the left sister
-            // GAtoExtractFrom = extractionstep.getGAInParseTree()
-            // .leftSister();
-            // }
-            // Then, extract and add to the right set (see above)
-            // nextStep = new ExtractionStep(
-            // (RRGParseItem) combsisantecedentItem,
-            // GAtoExtractFrom, oneTree);
-            //
-            // if (i == 0) {
-            // tmpResult = extract(nextStep);
-            // } else {
-            // parsesInThisCombSisStep.addAll(extract(nextStep));
-            // }
-            // }
-            // }
-
+            // first the right sister, then the left one
+            result.addAlternative(
+                    fragment(rightItem, ga, goToRightWhenGoingDown),
+                    fragment(leftItem, ga.leftSister(),
+                            goToRightWhenGoingDown));
         }
-        return parsesInThisCombSisStep;
-
     }
 
-    private Set<RRGParseTree> extractSubst(
-            Set<Set<RRGParseItem>> substAntecedents,
-            ExtractionStep extractionstep) {
-        Set<RRGParseTree> parsesInThisSUBSTStep = new HashSet<RRGParseTree>();
+    private void extractSubst(Set<Set<RRGParseItem>> substAntecedents,
+                              GornAddress ga, Fragment result) {
         for (Set<RRGParseItem> substantecedentItemSingletonList : substAntecedents) {
             if (verbosePrintsToStdOut) {
                 System.out.println(Operation.SUBSTITUTE);
             }
-            // System.out.println("Subst: " + substantecedentItemSingletonList
-            // + "\n" + extractionstep);
-
-            RRGParseItem substAntecedentItem = (RRGParseItem) substantecedentItemSingletonList
+            RRGParseItem substAntecedentItem = substantecedentItemSingletonList
                     .iterator().next();
-            GornAddress GAtoReplaceAt = extractionstep.getGAInParseTree();
-            //RRGTree substTree = substAntecedentItem.getTree();
-            RRGTree substTree = substAntecedentItem.getTreeInstance();
-            // System.out.println("try to subst this tree: " + substTree);
-            // System.out.println(
-            // "into that tree: " + extractionstep.getCurrentParseTree());
-            // System.out.println("at GA " + GAtoReplaceAt);
-            try {
-                RRGParseTree nextStepParseTree = extractionstep
-                        .getCurrentParseTree().substitute(substTree, GAtoReplaceAt);
-                // System.out.println("result: " + nextStepParseTree);
-                ExtractionStep nextStep = new ExtractionStep(substAntecedentItem,
-                        extractionstep.getGAInParseTree(), nextStepParseTree, 0);
-                parsesInThisSUBSTStep.addAll(extract(nextStep));
-            } catch (UnifyException e) {
-                continue;
-            }
+            result.addAlternative((TreeOperation) tree -> {
+                try {
+                    return tree.substitute(
+                            substAntecedentItem.getTreeInstance(), ga);
+                } catch (UnifyException e) {
+                    return null;
+                }
+            }, fragment(substAntecedentItem, ga, 0));
         }
-        return parsesInThisSUBSTStep;
     }
 
-    private Set<RRGParseTree> extractMoveUp(
-            Set<Set<RRGParseItem>> moveupAntecedents,
-            ExtractionStep extractionstep) {
-        Set<RRGParseTree> parsesInThisMoveUpStep = new HashSet<RRGParseTree>();
-
+    private void extractMoveUp(Set<Set<RRGParseItem>> moveupAntecedents,
+                               GornAddress ga, int goToRightWhenGoingDown,
+                               Fragment result) {
         for (Set<RRGParseItem> moveupAntecedentItemSingletonList : moveupAntecedents) {
             if (verbosePrintsToStdOut) {
                 System.out.println(Operation.MOVEUP);
             }
-            RRGParseItem moveupAntecedentItem = (RRGParseItem) moveupAntecedentItemSingletonList
+            RRGParseItem moveupAntecedentItem = moveupAntecedentItemSingletonList
                     .iterator().next();
-            if (extractionstep.getGAInParseTree() != null) {
-                GornAddress newMoveUpGA = extractionstep.getGAInParseTree()
-                        .ithDaughter(moveupAntecedentItem.getNode().getGornaddress()
-                                .isIthDaughter()
-                                + extractionstep.getGoToRightWhenGoingDown());
-                ExtractionStep nextStep = new ExtractionStep(moveupAntecedentItem,
-                        newMoveUpGA, extractionstep.getCurrentParseTree(), 0);
-                parsesInThisMoveUpStep.addAll(extract(nextStep));
+            if (ga != null) {
+                GornAddress newMoveUpGA = ga.ithDaughter(moveupAntecedentItem
+                        .getNode().getGornaddress().isIthDaughter()
+                        + goToRightWhenGoingDown);
+                result.addAlternative(
+                        fragment(moveupAntecedentItem, newMoveUpGA, 0));
             }
         }
-        return parsesInThisMoveUpStep;
     }
 
-    private Set<RRGParseTree> extractNLS(Set<Set<RRGParseItem>> nlsAntecedents,
-                                         ExtractionStep extractionstep) {
-        Set<RRGParseTree> parsesInThisNLSStep = new HashSet<RRGParseTree>();
+    private void extractNLS(Set<Set<RRGParseItem>> nlsAntecedents,
+                            GornAddress ga, int goToRightWhenGoingDown,
+                            Fragment result) {
         for (Set<RRGParseItem> antecedentItemSingletonList : nlsAntecedents) {
             if (verbosePrintsToStdOut) {
                 System.out.println(Operation.NLS);
             }
-            ExtractionStep nextStep = new ExtractionStep(
-                    (RRGParseItem) antecedentItemSingletonList.iterator()
-                            .next(),
-                    extractionstep.getGAInParseTree(),
-                    extractionstep.getCurrentParseTree(),
-                    extractionstep.getGoToRightWhenGoingDown());
-            parsesInThisNLSStep.addAll(extract(nextStep));
+            result.addAlternative(
+                    fragment(antecedentItemSingletonList.iterator().next(),
+                            ga, goToRightWhenGoingDown));
+        }
+    }
+
+    private static RRGParseTree sisterAdjoin(RRGParseTree tree,
+                                             RRGParseItem auxRootItem,
+                                             GornAddress target, int position) {
+        try {
+            return tree.sisterAdjoin(auxRootItem.getTreeInstance(), target,
+                    position);
+        } catch (UnifyException e) {
+            return null;
+        }
+    }
+
+    private void checkInterrupted() {
+        if (Thread.interrupted()) {
+            throw new CancellationException(
+                    "parse tree extraction interrupted: " + toksentence);
+        }
+    }
+
+    /**
+     * @return all parse trees that result from grafting {@code fragment} into
+     * {@code tree}
+     */
+    private Set<RRGParseTree> apply(Fragment fragment, RRGParseTree tree) {
+        checkInterrupted();
+        Set<RRGParseTree> result = new HashSet<RRGParseTree>();
+        for (List<Part> alternative : fragment.alternatives) {
+            result.addAll(apply(alternative, 0, tree));
+        }
+        if (result.isEmpty() && fragment.lexical) {
+            result.add(tree);
+        }
+        return result;
+    }
+
+    private Set<RRGParseTree> apply(List<Part> parts, int i,
+                                    RRGParseTree tree) {
+        if (i == parts.size()) {
+            return Collections.singleton(tree);
+        }
+        Part part = parts.get(i);
+        Set<RRGParseTree> result = new HashSet<RRGParseTree>();
+        if (part instanceof TreeOperation) {
+            RRGParseTree next = ((TreeOperation) part).apply(tree);
+            if (next != null) {
+                result.addAll(apply(parts, i + 1, next));
+            }
+        } else {
+            for (RRGParseTree next : apply((Fragment) part, tree)) {
+                result.addAll(apply(parts, i + 1, next));
+            }
         }
+        return result;
+    }
+
+    /**
+     * Like {@link #apply(Fragment, RRGParseTree)}, but the parse trees are
+     * built one by one when they are asked for.
+     */
+    private Iterator<RRGParseTree> iterate(final Fragment fragment,
+                                           final RRGParseTree tree) {
+        return new LazyIterator<RRGParseTree>() {
+            private int nextAlternative = 0;
+            private Iterator<RRGParseTree> current = Collections
+                    .emptyIterator();
+            private boolean found = false;
+
+            @Override
+            protected RRGParseTree computeNext() {
+                checkInterrupted();
+                while (!current.hasNext()) {
+                    if (nextAlternative == fragment.alternatives.size()) {
+                        if (!found && fragment.lexical) {
+                            found = true;
+                            return tree;
+                        }
+                        return null;
+                    }
+                    current = iterate(
+                            fragment.alternatives.get(nextAlternative++), 0,
+                            tree);
+                }
+                found = true;
+                return current.next();
+            }
+        };
+    }
 
-        return parsesInThisNLSStep;
+    private Iterator<RRGParseTree> iterate(final List<Part> parts, final int i,
+                                           RRGParseTree tree) {
+        if (i == parts.size()) {
+            return Collections.singletonList(tree).iterator();
+        }
+        Part part = parts.get(i);
+        if (part instanceof TreeOperation) {
+            RRGParseTree next = ((TreeOperation) part).apply(tree);
+            return (next == null) ? Collections.<RRGParseTree>emptyIterator()
+                    : iterate(parts, i + 1, next);
+        }
+        final Iterator<RRGParseTree> heads = iterate((Fragment) part, tree);
+        return new LazyIterator<RRGParseTree>() {
+            private Iterator<RRGParseTree> rest = Collections.emptyIterator();
+
+            @Override
+            protected RRGParseTree computeNext() {
+                while (!rest.hasNext()) {
+                    if (!heads.hasNext()) {
+                        return null;
+                    }
+                    rest = iterate(parts, i + 1, heads.next());
+                }
+                return rest.next();
+            }
+        };
+    }
 
+    /**
+     * A part of a {@link Fragment}: either a tree operation or the fragment
+     * of an antecedent item.
+     */
+    private interface Part {
+    }
+
+    /**
+     * An operation on a parse tree, e.g. substituting the tree of an item at
+     * a fixed Gorn address. Returns the new parse tree, or null if the
+     * operation fails on the given tree.
+     */
+    private interface TreeOperation extends Part {
+        RRGParseTree apply(RRGParseTree tree);
+    }
+
+    /**
+     * The parse tree fragments an item contributes at a position: for every
+     * set of antecedents of the item, the sequence of tree operations and
+     * antecedent fragments to apply one after the other.
+     */
+    private static class Fragment implements Part {
+        private final List<List<Part>> alternatives = new ArrayList<List<Part>>();
+        // lexical items have no antecedents and leave the parse tree as it is
+        private final boolean lexical;
+
+        Fragment(boolean lexical) {
+            this.lexical = lexical;
+        }
+
+        /**
+         * @param parts if one of them is null (a cycle) or a fragment without
+         *              any parse trees, the alternative is left out
+         */
+        void addAlternative(Part... parts) {
+            for (Part part : parts) {
+                if (part == null || (part instanceof Fragment
+                        && ((Fragment) part).isEmpty())) {
+                    return;
+                }
+            }
+            alternatives.add(Arrays.asList(parts));
+        }
+
+        boolean isEmpty() {
+            return alternatives.isEmpty() && !lexical;
+        }
+    }
+
+    /**
+     * Identifies a fragment in the memo table: the item, the position in the
+     * parse tree and the direction to go down.
+     */
+    private static class ExtractionKey {
+        private final int itemId;
+        private final String gornAddress;
+        private final int goToRightWhenGoingDown;
+
+        ExtractionKey(int itemId, GornAddress ga, int goToRightWhenGoingDown) {
+            this.itemId = itemId;
+            this.gornAddress = String.valueOf(ga);
+            this.goToRightWhenGoingDown = goToRightWhenGoingDown;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(itemId, gornAddress, goToRightWhenGoingDown);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ExtractionKey)) {
+                return false;
+            }
+            ExtractionKey other = (ExtractionKey) o;
+            return itemId == other.itemId
+                    && goToRightWhenGoingDown == other.goToRightWhenGoingDown
+                    && gornAddress.equals(other.gornAddress);
+        }
     }
 }
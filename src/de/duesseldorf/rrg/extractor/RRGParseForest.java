@@ -0,0 +1,265 @@
+package de.duesseldorf.rrg.extractor;
+
+import de.duesseldorf.frames.Situation;
+import de.duesseldorf.rrg.RRGParseResult;
+import de.duesseldorf.rrg.RRGParseTree;
+import de.duesseldorf.rrg.parser.Backpointer;
+import de.duesseldorf.rrg.parser.Operation;
+import de.duesseldorf.rrg.parser.RRGParseChart;
+import de.duesseldorf.rrg.parser.RRGParseItem;
+import de.tuebingen.util.TextUtilities;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * File RRGParseForest.java
+ * <p>
+ * A packed shared forest view on a filled parse chart. The items of the chart
+ * are the OR-nodes of the forest, and each set of antecedents stored in the
+ * backpointers of an item (together with its operation) is one AND-node.
+ * Subtrees shared between several parses are stored only once.
+ * <p>
+ * The number of derivations is computed on the forest without unpacking it.
+ * Parse trees are only built on demand, one by one, using the
+ * {@link ParseForestExtractor}.
+ * <p>
+ * This file is part of the TuLiPA-frames system
+ * https://github.com/spetitjean/TuLiPA-frames
+ * <p>
+ * <p>
+ * TuLiPA is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * TuLiPA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+public class RRGParseForest implements Iterable<RRGParseTree> {
+
+    private RRGParseChart parseChart;
+    private List<String> toksentence;
+    private Situation situation;
+    private List<RRGParseItem> goals;
+
+    // derivation counts, indexed by the id the chart gave to the items
+    private BigInteger[] derivationCounts;
+    private boolean[] counting;
+
+    /**
+     * The {@link Situation} that is current when the forest is created is
+     * used again when trees are unpacked.
+     */
+    public RRGParseForest(RRGParseChart parseChart, List<String> toksentence) {
+        this.situation = Situation.current();
+        this.parseChart = parseChart;
+        this.toksentence = toksentence;
+        this.goals = new ArrayList<RRGParseItem>(
+                parseChart.retrieveGoalItems());
+        Collections.sort(this.goals);
+        this.derivationCounts = new BigInteger[parseChart.computeSize()];
+        this.counting = new boolean[parseChart.computeSize()];
+    }
+
+    /**
+     * @return the goal items, i.e. the roots of the forest, in a fixed order
+     */
+    public List<RRGParseItem> getGoals() {
+        return Collections.unmodifiableList(goals);
+    }
+
+    /**
+     * @param item
+     * @return the id the chart gave to {@code item}
+     */
+    public int getId(RRGParseItem item) {
+        return parseChart.getId(item);
+    }
+
+    /**
+     * @return all items that are reachable from a goal item, each of them only
+     * once. The order is stable: ordered by the ids the chart gave to the
+     * items.
+     */
+    public List<RRGParseItem> getItems() {
+        BitSet reachable = new BitSet(derivationCounts.length);
+        Deque<RRGParseItem> todo = new ArrayDeque<RRGParseItem>(goals);
+        for (RRGParseItem goal : goals) {
+            reachable.set(parseChart.getId(goal));
+        }
+        while (!todo.isEmpty()) {
+            RRGParseItem item = todo.pop();
+            for (Set<Set<RRGParseItem>> derivations : getDerivations(item)
+                    .values()) {
+                for (Set<RRGParseItem> antecedents : derivations) {
+                    for (RRGParseItem antecedent : antecedents) {
+                        int id = parseChart.getId(antecedent);
+                        if (!reachable.get(id)) {
+                            reachable.set(id);
+                            todo.push(antecedent);
+                        }
+                    }
+                }
+            }
+        }
+        List<RRGParseItem> result = new ArrayList<RRGParseItem>(
+                reachable.cardinality());
+        for (int id = reachable.nextSetBit(0); id >= 0; id = reachable
+                .nextSetBit(id + 1)) {
+            result.add(parseChart.getItem(id));
+        }
+        return result;
+    }
+
+    /**
+     * @param item
+     * @return the AND-nodes below {@code item}: for every operation that
+     * created the item, all sets of antecedents. Items created by
+     * scanning have the empty set as their only antecedents.
+     */
+    public Map<Operation, Set<Set<RRGParseItem>>> getDerivations(
+            RRGParseItem item) {
+        Map<Operation, Set<Set<RRGParseItem>>> result = new EnumMap<Operation, Set<Set<RRGParseItem>>>(
+                Operation.class);
+        Backpointer backpointer = parseChart.getBackPointers(item);
+        if (backpointer == null) {
+            return result;
+        }
+        for (Operation op : Operation.values()) {
+            Set<Set<RRGParseItem>> antecedents = backpointer.getAntecedents(op);
+            if (!antecedents.isEmpty()) {
+                result.put(op, antecedents);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of derivations of all goal items. This counts
+     * derivations in the chart, i.e. before feature unification and
+     * before filtering equal trees, so it is an upper bound of the
+     * number of parse trees.
+     */
+    public BigInteger countDerivations() {
+        BigInteger result = BigInteger.ZERO;
+        for (RRGParseItem goal : goals) {
+            result = result.add(countDerivations(goal));
+        }
+        return result;
+    }
+
+    /**
+     * @param item
+     * @return the number of derivations of {@code item}: the sum over all its
+     * AND-nodes of the product of the counts of their antecedents
+     * (scanned items have one derivation without antecedents). Counts are
+     * memoized, and derivations that run into a cycle are not counted.
+     */
+    public BigInteger countDerivations(RRGParseItem item) {
+        int id = parseChart.getId(item);
+        if (derivationCounts[id] != null) {
+            return derivationCounts[id];
+        }
+        if (counting[id]) {
+            return BigInteger.ZERO;
+        }
+        counting[id] = true;
+        BigInteger result = BigInteger.ZERO;
+        for (Entry<Operation, Set<Set<RRGParseItem>>> derivation : getDerivations(
+                item).entrySet()) {
+            for (Set<RRGParseItem> antecedents : derivation.getValue()) {
+                BigInteger product = BigInteger.ONE;
+                for (RRGParseItem antecedent : antecedents) {
+                    product = product.multiply(countDerivations(antecedent));
+                }
+                result = result.add(product);
+            }
+        }
+        counting[id] = false;
+        derivationCounts[id] = result;
+        return result;
+    }
+
+    /**
+     * Iterate over the unprocessed parse trees of the forest. The goal items
+     * are unpacked one after the other, and each parse tree is only extracted
+     * when the iteration reaches it. Trees that are equal to a tree returned
+     * before are skipped.
+     */
+    @Override
+    public Iterator<RRGParseTree> iterator() {
+        return new LazyIterator<RRGParseTree>() {
+            private ParseForestExtractor extractor = new ParseForestExtractor(
+                    parseChart, toksentence);
+            private Iterator<RRGParseItem> goalIterator = goals.iterator();
+            private Iterator<RRGParseTree> currentTrees = Collections
+                    .emptyIterator();
+            // RRGParseTrees are equal iff their hash codes are
+            private Set<Integer> returned = new HashSet<Integer>();
+
+            @Override
+            protected RRGParseTree computeNext() {
+                while (true) {
+                    while (currentTrees.hasNext()) {
+                        RRGParseTree tree = currentTrees.next();
+                        if (returned.add(tree.hashCode())) {
+                            tree.setId(TextUtilities.appendList(toksentence,
+                                    "_") + (returned.size() - 1));
+                            return tree;
+                        }
+                    }
+                    if (goalIterator.hasNext()) {
+                        currentTrees = extractor
+                                .iterateParseTrees(goalIterator.next());
+                    } else {
+                        return null;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Unpack at most {@code maxTrees} parse trees from the forest and
+     * post-process them like the {@link ParseForestExtractor} does.
+     *
+     * @param maxTrees give a negative number to unpack all trees
+     * @return
+     */
+    public RRGParseResult unpack(int maxTrees) {
+        Situation previous = Situation.bind(situation);
+        try {
+            Set<RRGParseTree> unpacked = new ConcurrentSkipListSet<RRGParseTree>();
+            Iterator<RRGParseTree> trees = iterator();
+            while (trees.hasNext()
+                    && (maxTrees < 0 || unpacked.size() < maxTrees)) {
+                unpacked.add(trees.next());
+            }
+            return ParseForestPostProcessor.postProcessParseTreeSet(unpacked);
+        } finally {
+            Situation.bind(previous);
+        }
+    }
+
+    public List<String> getSentence() {
+        return toksentence;
+    }
+}
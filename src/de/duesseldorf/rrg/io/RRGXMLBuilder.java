@@ -1,20 +1,13 @@
 package de.duesseldorf.rrg.io;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Map.Entry;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-
 import de.duesseldorf.frames.Fs;
 import de.duesseldorf.frames.Relation;
 import de.duesseldorf.frames.Value;
@@ -22,10 +15,20 @@ import de.duesseldorf.rrg.RRGNode;
 import de.duesseldorf.rrg.RRGNode.RRGNodeType;
 import de.duesseldorf.rrg.RRGParseResult;
 import de.duesseldorf.rrg.RRGParseTree;
+import de.duesseldorf.rrg.RRGTree;
+import de.duesseldorf.rrg.extractor.RRGParseForest;
+import de.duesseldorf.rrg.parser.Operation;
+import de.duesseldorf.rrg.parser.RRGParseItem;
 import de.tuebingen.tree.Node;
+import de.tuebingen.util.XMLStreamOutput;
 
 import java.util.LinkedList;
 
+/**
+ * Writes an RRG parse result (or packed forest) as XML. The entries are
+ * written one after the other, without building a document of the whole
+ * result.
+ */
 public class RRGXMLBuilder {
 
     static Map<RRGNode.RRGNodeType, XMLRRGTag> nodeTypesToXMLTags = new HashMap<RRGNode.RRGNodeType, XMLRRGTag>();
@@ -41,234 +44,275 @@ public class RRGXMLBuilder {
     }
 
     private final RRGParseResult parseResult;
-    private Document doc;
+    private final RRGParseForest forest;
     private boolean printEdgeMismatches;
 
     public RRGXMLBuilder(RRGParseResult parseResult,
-                         boolean printEdgeMismatches) throws ParserConfigurationException {
+                         boolean printEdgeMismatches) {
         this.parseResult = parseResult;
+        this.forest = null;
         this.printEdgeMismatches = printEdgeMismatches;
-        this.doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
-                .newDocument();
     }
 
     /**
-     * create a Document representation of the parse result
+     * Write the packed forest instead of the parse trees: every elementary
+     * tree and every chart item is written once, and the items refer to
+     * their antecedents by id.
      *
-     * @return
+     * @param forest
      */
-    public Document build() {
-        // create the root element
-        Element rootGrammar = doc.createElement(XMLRRGTag.GRAMMAR.StringVal());
-        for (RRGParseTree parse : parseResult.getSuccessfulParses()) {
-            Element entry = createEntryElement(parse);
-            rootGrammar.appendChild(entry);
-        }
-        if (printEdgeMismatches) {
-            for (RRGParseTree parse : parseResult
-                    .getTreesWithEdgeFeatureMismatches()) {
-                parse.setId("mismatch_" + parse.getId());
-                Element entry = createEntryElement(parse);
-                rootGrammar.appendChild(entry);
-            }
-        }
-        doc.appendChild(rootGrammar);
-        return doc;
+    public RRGXMLBuilder(RRGParseForest forest) {
+        this.parseResult = null;
+        this.forest = forest;
+        this.printEdgeMismatches = false;
     }
 
     /**
-     * always execute the build method before!
-     * wrte the document to a StreamResult
+     * write the parse result to out, and flush it (each entry is flushed as
+     * soon as it is written). No DOM document is built, but the parse result
+     * is complete before the first entry is written: equal trees are only
+     * filtered out once all trees are extracted and post-processed (see
+     * ParseForestPostProcessor).
      */
-    public void write(StreamResult resultStream) {
-        try {
-            Transformer transformer = TransformerFactory.newInstance()
-                    .newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty(
-                    "{http://xml.apache.org/xslt}indent-amount", "2");
+    public void write(XMLStreamOutput out) throws IOException {
+        out.startDocument(null);
+        if (forest != null) {
+            writeForest(out);
+        } else {
+            out.startElement(XMLRRGTag.GRAMMAR.StringVal());
+            for (RRGParseTree parse : parseResult.getSuccessfulParses()) {
+                writeEntry(out, parse.getId(), parse);
+            }
+            if (printEdgeMismatches) {
+                for (RRGParseTree parse : parseResult
+                        .getTreesWithEdgeFeatureMismatches()) {
+                    writeEntry(out, "mismatch_" + parse.getId(), parse);
+                }
+            }
+            out.endElement();
+        }
+        out.endDocument();
+    }
 
-            DOMSource source = new DOMSource(doc);
-            transformer.transform(source, resultStream);
-        } catch (Exception e) {
-            System.err.println(
-                    "Something went wrong during output transformation");
-            e.printStackTrace();
+    private void writeForest(XMLStreamOutput out) throws IOException {
+        out.startElement(XMLRRGTag.FOREST.StringVal());
+        out.attribute(XMLRRGTag.SENTENCE.StringVal(),
+                String.join(" ", forest.getSentence()));
+        out.attribute(XMLRRGTag.COUNT.StringVal(),
+                forest.countDerivations().toString());
+        List<RRGParseItem> items = forest.getItems();
+
+        // the elementary trees, each of them once
+        Map<String, RRGTree> elementaryTrees = new LinkedHashMap<String, RRGTree>();
+        for (RRGParseItem item : items) {
+            elementaryTrees.putIfAbsent(item.getTree().getId(), item.getTree());
+        }
+        for (RRGTree tree : elementaryTrees.values()) {
+            writeTree(out, tree);
         }
+
+        for (RRGParseItem item : items) {
+            writeItem(out, item);
+        }
+        for (RRGParseItem goal : forest.getGoals()) {
+            out.startElement(XMLRRGTag.GOAL.StringVal());
+            out.attribute(XMLRRGTag.REF.StringVal(),
+                    Integer.toString(forest.getId(goal)));
+            out.endElement();
+        }
+        out.endElement();
     }
 
+    private void writeItem(XMLStreamOutput out, RRGParseItem item)
+            throws IOException {
+        out.startElement(XMLRRGTag.ITEM.StringVal());
+        out.attribute(XMLRRGTag.ID.StringVal(),
+                Integer.toString(forest.getId(item)));
+        out.attribute(XMLRRGTag.TREEREF.StringVal(), item.getTree().getId());
+        out.attribute(XMLRRGTag.ADDRESS.StringVal(),
+                item.getNode().getGornaddress().toString());
+        out.attribute(XMLRRGTag.CAT.StringVal(), item.getNode().getCategory());
+        out.attribute(XMLRRGTag.POS.StringVal(), item.getNodePos().toString());
+        out.attribute(XMLRRGTag.START.StringVal(),
+                Integer.toString(item.startPos()));
+        out.attribute(XMLRRGTag.END.StringVal(),
+                Integer.toString(item.getEnd()));
+        out.attribute(XMLRRGTag.WS.StringVal(),
+                Boolean.toString(item.getwsflag()));
+        if (!item.getGaps().isEmpty()) {
+            out.attribute(XMLRRGTag.GAPS.StringVal(),
+                    item.getGaps().toString());
+        }
+        out.attribute(XMLRRGTag.COUNT.StringVal(),
+                forest.countDerivations(item).toString());
+        for (Entry<Operation, Set<Set<RRGParseItem>>> derivations : forest
+                .getDerivations(item).entrySet()) {
+            for (Set<RRGParseItem> antecedents : derivations.getValue()) {
+                out.startElement(XMLRRGTag.DERIVATION.StringVal());
+                out.attribute(XMLRRGTag.OPERATION.StringVal(),
+                        derivations.getKey().toString());
+                for (RRGParseItem antecedent : antecedents) {
+                    out.startElement(XMLRRGTag.ANTECEDENT.StringVal());
+                    out.attribute(XMLRRGTag.REF.StringVal(),
+                            Integer.toString(forest.getId(antecedent)));
+                    out.endElement();
+                }
+                out.endElement();
+            }
+        }
+        out.endElement();
+    }
 
     /**
+     * @param name
      * @param parse
-     * @return
      */
-    private Element createEntryElement(RRGParseTree parse) {
-        Element entry = doc.createElement(XMLRRGTag.ENTRY.StringVal());
-        entry.setAttribute(XMLRRGTag.NAME.StringVal(), parse.getId());
-        Element tree = createTree(parse);
-        entry.appendChild(tree);
-
-        Element frame = createFrame(parse);
-        entry.appendChild(frame);
-
+    private void writeEntry(XMLStreamOutput out, String name,
+                            RRGParseTree parse) throws IOException {
+        out.startElement(XMLRRGTag.ENTRY.StringVal());
+        out.attribute(XMLRRGTag.NAME.StringVal(), name);
+        writeTree(out, parse);
+        writeFrame(out, parse);
         // used elementary trees:
-        Element trace = createTrace(parse);
-        entry.appendChild(trace);
-        return entry;
+        writeTrace(out, parse);
+        out.endElement();
+        out.flush();
     }
 
-    private Element createTrace(RRGParseTree parse) {
-        Element trace = doc.createElement(XMLRRGTag.TRACE.StringVal());
+    private void writeTrace(XMLStreamOutput out, RRGParseTree parse)
+            throws IOException {
+        out.startElement(XMLRRGTag.TRACE.StringVal());
         for (String elemId : parse.getIds()) {
-            Element classElem = doc.createElement(XMLRRGTag.CLASS.StringVal());
-            classElem.setTextContent(elemId);
-            trace.appendChild(classElem);
+            out.startElement(XMLRRGTag.CLASS.StringVal());
+            out.text(elemId);
+            out.endElement();
         }
-        return trace;
+        out.endElement();
     }
 
-    private Element createFrame(RRGParseTree parse) {
-        Element frame = doc.createElement(XMLRRGTag.FRAME.StringVal());
+    private void writeFrame(XMLStreamOutput out, RRGParseTree parse)
+            throws IOException {
+        out.startElement(XMLRRGTag.FRAME.StringVal());
         for (Fs fs : parse.getFrameSem().getFeatureStructures()) {
-            Element fsElem = doc.createElement(XMLRRGTag.FEATURESTRUCTURE.StringVal());
-            //classElem.setTextContent(elemId);
-            fsElem = createFsElement(fsElem, fs);
-            frame.appendChild(fsElem);
+            writeFs(out, fs, null);
         }
         for (Relation rel : parse.getFrameSem().getRelations()) {
-            Element relElem = doc.createElement(XMLRRGTag.RELATION.StringVal());
-            //classElem.setTextContent(elemId);
-            relElem = createRelElement(relElem, rel);
-            frame.appendChild(relElem);
+            writeRel(out, rel);
         }
-
-        return frame;
+        out.endElement();
     }
 
-
-    private Element createTree(RRGParseTree parse) {
-        Element result = doc.createElement(XMLRRGTag.TREE.StringVal());
-        result.setAttribute(XMLRRGTag.ID.StringVal(), parse.getId());
-        Element treeRoot = createTreeRec((RRGNode) parse.getRoot());
-        result.appendChild(treeRoot);
-        return result;
+    private void writeTree(XMLStreamOutput out, RRGTree parse)
+            throws IOException {
+        out.startElement(XMLRRGTag.TREE.StringVal());
+        out.attribute(XMLRRGTag.ID.StringVal(), parse.getId());
+        writeTreeRec(out, (RRGNode) parse.getRoot());
+        out.endElement();
     }
 
-    private Element createTreeRec(RRGNode root) {
-        Element result = doc.createElement(XMLRRGTag.NODE.StringVal());
-        // build the node itself
-        String nodeTypeString = nodeTypesToXMLTags.get(root.getType())
-                .StringVal();
-        result.setAttribute(XMLRRGTag.TYPE.StringVal(), nodeTypeString);
-        Element narg = createnarg(root);
-        result.appendChild(narg);
+    private void writeTreeRec(XMLStreamOutput out, RRGNode root)
+            throws IOException {
+        out.startElement(XMLRRGTag.NODE.StringVal());
+        // the node itself
+        out.attribute(XMLRRGTag.TYPE.StringVal(),
+                nodeTypesToXMLTags.get(root.getType()).StringVal());
+        out.startElement(XMLRRGTag.NARG.StringVal());
+        writeFs(out, root.getNodeFs(), root.getCategory());
+        out.endElement();
 
         for (Node child : root.getChildren()) {
-            // append the children
-            result.appendChild(createTreeRec((RRGNode) child));
+            // the children
+            writeTreeRec(out, (RRGNode) child);
         }
-        return result;
-    }
-
-    private Element createnarg(RRGNode root) {
-        Element resultnargNode = doc.createElement(XMLRRGTag.NARG.StringVal());
-        Element fs = doc.createElement(XMLRRGTag.FEATURESTRUCTURE.StringVal());
-        Element f = doc.createElement(XMLRRGTag.FEATURE.StringVal());
-        f.setAttribute(XMLRRGTag.NAME.StringVal(), XMLRRGTag.CAT.StringVal());
-        Element sym = doc.createElement(XMLRRGTag.SYM.StringVal());
-        sym.setAttribute(XMLRRGTag.VALUE.StringVal(), root.getCategory());
-
-        f.appendChild(sym);
-        fs.appendChild(f);
-
-        fs = createFsElement(fs, root.getNodeFs());
-
-        resultnargNode.appendChild(fs);
-        return resultnargNode;
+        out.endElement();
     }
 
-    private Element createRelElement(Element relElement, Relation rel) {
-        relElement.setAttribute(XMLRRGTag.NAME.StringVal(), rel.getName());
+    private void writeRel(XMLStreamOutput out, Relation rel)
+            throws IOException {
+        out.startElement(XMLRRGTag.RELATION.StringVal());
+        out.attribute(XMLRRGTag.NAME.StringVal(), rel.getName());
         for (Value v : rel.getArguments()) {
-            Element sym = doc.createElement(XMLRRGTag.SYM.StringVal());
-            sym.setAttribute(XMLRRGTag.VALUE.StringVal(), v.getVarVal());
-            relElement.appendChild(sym);
+            out.startElement(XMLRRGTag.SYM.StringVal());
+            out.attribute(XMLRRGTag.VALUE.StringVal(), v.getVarVal());
+            out.endElement();
         }
-        return relElement;
+        out.endElement();
     }
 
-    private Element createVAltElement(Element vAltElement, Value vAlt) {
+    private void writeVAlt(XMLStreamOutput out, Value vAlt)
+            throws IOException {
+        out.startElement(XMLRRGTag.VALT.StringVal());
         // do we really need the coref? Ignoring it for now
         LinkedList<Value> adisj = vAlt.getAdisj();
         // we remove the first element of the list because it is apparently the coref
         adisj.remove();
 
         for (Value v : adisj) {
-            Element sym = doc.createElement(XMLRRGTag.SYM.StringVal());
-            sym.setAttribute(XMLRRGTag.VALUE.StringVal(), v.getSVal());
-            vAltElement.appendChild(sym);
+            out.startElement(XMLRRGTag.SYM.StringVal());
+            out.attribute(XMLRRGTag.VALUE.StringVal(), v.getSVal());
+            out.endElement();
         }
-        return vAltElement;
+        out.endElement();
     }
 
-
-    private Element createFsElement(Element fsElement, Fs realfs) {
+    /**
+     * @param cat if not null, the category of the node of the feature
+     *            structure, written as first feature
+     */
+    private void writeFs(XMLStreamOutput out, Fs realfs, String cat)
+            throws IOException {
+        out.startElement(XMLRRGTag.FEATURESTRUCTURE.StringVal());
+        String corefString;
+        try {
+            corefString = realfs.getCoref().getVarVal();
+        } catch (NullPointerException e) {
+            corefString = "";
+        }
+        if (corefString != null && !corefString.isEmpty()) {
+            out.attribute("coref", corefString);
+        }
+        if (cat != null) {
+            out.startElement(XMLRRGTag.FEATURE.StringVal());
+            out.attribute(XMLRRGTag.NAME.StringVal(),
+                    XMLRRGTag.CAT.StringVal());
+            out.startElement(XMLRRGTag.SYM.StringVal());
+            out.attribute(XMLRRGTag.VALUE.StringVal(), cat);
+            out.endElement();
+            out.endElement();
+        }
         if (realfs.isTyped()) {
-            Element ctype = doc.createElement(XMLRRGTag.CTYPE.StringVal());
+            out.startElement(XMLRRGTag.CTYPE.StringVal());
             for (String etype : realfs.getType().getElementaryTypes()) {
-                Element sym = doc.createElement(XMLRRGTag.TYPE.StringVal());
-                sym.setAttribute(XMLRRGTag.VAL.StringVal(), etype);
-                ctype.appendChild(sym);
+                out.startElement(XMLRRGTag.TYPE.StringVal());
+                out.attribute(XMLRRGTag.VAL.StringVal(), etype);
+                out.endElement();
             }
-            fsElement.appendChild(ctype);
+            out.endElement();
         }
         for (Entry<String, Value> avpair : realfs.getAVlist().entrySet()) {
-            Element f = doc.createElement(XMLRRGTag.FEATURE.StringVal());
-            f.setAttribute(XMLRRGTag.NAME.StringVal(), avpair.getKey());
+            out.startElement(XMLRRGTag.FEATURE.StringVal());
+            out.attribute(XMLRRGTag.NAME.StringVal(), avpair.getKey());
 
             if (avpair.getValue().is(Value.Kind.VAL)) {
-                // System.out.println("first case with " + avpair.getKey() +
-                // "->"
-                // + avpair.getValue());
-                Element sym = doc.createElement(XMLRRGTag.SYM.StringVal());
-                sym.setAttribute(XMLRRGTag.VALUE.StringVal(),
+                out.startElement(XMLRRGTag.SYM.StringVal());
+                out.attribute(XMLRRGTag.VALUE.StringVal(),
                         avpair.getValue().getSVal());
-                f.appendChild(sym);
+                out.endElement();
             } else if (avpair.getValue().is(Value.Kind.AVM)) {
-                // System.out.println("snd case with " + avpair.getKey() + "->"
-                // + avpair.getValue());
-                Element fsval = createFsElement(
-                        doc.createElement(
-                                XMLRRGTag.FEATURESTRUCTURE.StringVal()),
-                        avpair.getValue().getAvmVal());
-                f.appendChild(fsval);
+                writeFs(out, avpair.getValue().getAvmVal(), null);
             } else if (avpair.getValue().is(Value.Kind.VAR)) {
-                Element sym = doc.createElement(XMLRRGTag.SYM.StringVal());
-                sym.setAttribute("varname", avpair.getValue().getVarVal());
-                f.appendChild(sym);
+                out.startElement(XMLRRGTag.SYM.StringVal());
+                out.attribute("varname", avpair.getValue().getVarVal());
+                out.endElement();
             } else if (avpair.getValue().is(Value.Kind.ADISJ)) {
-                Element valt = doc.createElement(XMLRRGTag.VALT.StringVal());
-                valt = createVAltElement(valt, avpair.getValue());
-                f.appendChild(valt);
+                writeVAlt(out, avpair.getValue());
             } else {
                 System.err.println("ERROR during XML writing!!!"
                         + avpair.getValue().getType());
             }
-
-            fsElement.appendChild(f);
-        }
-        String corefString;
-        try {
-            corefString = realfs.getCoref().getVarVal();
-        } catch (NullPointerException e) {
-            corefString = "";
-        }
-        // System.out.println("realfs.getCoref()" +
-        // realfs.getCoref().getVarVal());
-        if (corefString != "") {
-            fsElement.setAttribute("coref", corefString);
+            out.endElement();
         }
-        return fsElement;
+        out.endElement();
     }
 
     public RRGParseResult getParseResult() {
@@ -3,16 +3,16 @@ package de.duesseldorf.rrg.io;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.Set;
 
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
 import de.duesseldorf.rrg.RRG;
 import de.duesseldorf.rrg.RRGTree;
-import de.tuebingen.util.XMLUtilities;
+import de.tuebingen.util.XMLEntryStream;
 
 import de.duesseldorf.frames.Fs;
 import de.tuebingen.anchoring.NameFactory;
@@ -66,24 +66,32 @@ import de.duesseldorf.io.XMLGrammarReadingTools;
  */
 public class XMLRRGReader extends FileReader {
 
-    // Our grammar
-    private Document rrgGramDoc;
+    // Our grammar, read one entry at a time
+    private XMLEntryStream rrgGramEntries;
 
     public XMLRRGReader(File rrgGrammar) throws FileNotFoundException {
         super(rrgGrammar);
-        rrgGramDoc = XMLUtilities.parseXMLFile(rrgGrammar, false);
+        rrgGramEntries = new XMLEntryStream(rrgGrammar);
     }
 
+    public void close() throws IOException {
+        rrgGramEntries.close();
+        super.close();
+    }
+
+    /**
+     * Can only be called once, as the entries are streamed from the file.
+     */
     public RRG retrieveRRG() {
         Set<RRGTree> trees = new HashSet<RRGTree>();
 
-        Element rrgGramDocRoot = rrgGramDoc.getDocumentElement();
-        NodeList grammarEntries = rrgGramDocRoot
-                .getElementsByTagName(XMLRRGTag.ENTRY.StringVal());
         // iterate over all grammar entries
-        for (int i = 0; i < grammarEntries.getLength(); i++) {
+        while (rrgGramEntries.hasNext()) {
+            Element ithEntrie = rrgGramEntries.next();
+            if (!ithEntrie.getTagName().equals(XMLRRGTag.ENTRY.StringVal())) {
+                continue;
+            }
             NameFactory nf = new NameFactory();
-            Element ithEntrie = (Element) grammarEntries.item(i);
             Element tree = (Element) ithEntrie
                     .getElementsByTagName(XMLRRGTag.TREE.StringVal()).item(0);
 
@@ -45,6 +45,11 @@ public enum XMLRRGTag {
     RELATION("relation"),// relation (frame)
     SYM("sym"), // and its value
     VALT("vAlt"), // an atomic disjunction
+    FOREST("forest"), // root element of a packed parse forest
+    ITEM("item"), // a chart item in a forest, shared between parses
+    DERIVATION("derivation"), // one way to derive an item
+    ANTECEDENT("antecedent"), // an item used in a derivation
+    GOAL("goal"), // a root of the forest
 
     // attributes
     NAME("name"), // of an entry or node
@@ -55,6 +60,17 @@ public enum XMLRRGTag {
     VAL("val"), // in a FS type
     CAT("cat"), // of a node, either a terminal sequence or the 'label' of the
     // node, e.g. RP, S, NP,...
+    SENTENCE("sentence"), // of a forest
+    COUNT("derivations"), // number of derivations of a forest or item
+    REF("ref"), // id of an item in a forest
+    TREEREF("tree"), // id of the elementary tree of an item
+    ADDRESS("address"), // gorn address of the node of an item
+    POS("pos"), // TOP or BOT position of an item
+    START("start"), // of an item
+    END("end"), // of an item
+    WS("ws"), // ws flag of an item
+    GAPS("gaps"), // of an item
+    OPERATION("operation"), // of a derivation
 
     // node types
     XMLSTDNode("std"), // standard node
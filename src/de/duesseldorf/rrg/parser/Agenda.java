@@ -2,56 +2,89 @@ package de.duesseldorf.rrg.parser;
 
 import de.duesseldorf.rrg.RRGNode;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.List;
 
+/**
+ * The agenda stores the ids the chart gave to the items that still have to be
+ * processed. There are four classes of items, and items in one class are
+ * always processed before items in the following classes. Within a class,
+ * items are processed in the order they were added to the chart.
+ */
 public class Agenda {
 
-    private ConcurrentSkipListSet<RRGParseItem> WITHIN;
-    private ConcurrentSkipListSet<RRGParseItem> AUXROOT;
-    private ConcurrentSkipListSet<RRGParseItem> DDAUGHTER;
-    private ConcurrentSkipListSet<RRGParseItem> INITROOT;
+    private RRGParseChart chart;
 
-    public Agenda() {
-        this.WITHIN = new ConcurrentSkipListSet<RRGParseItem>();
-        this.AUXROOT = new ConcurrentSkipListSet<RRGParseItem>();
-        this.DDAUGHTER = new ConcurrentSkipListSet<RRGParseItem>();
-        this.INITROOT = new ConcurrentSkipListSet<RRGParseItem>();
+    private BitSet WITHIN;
+    private BitSet AUXROOT;
+    private BitSet DDAUGHTER;
+    private BitSet INITROOT;
+    private int size;
+
+    /**
+     * @param chart the chart that gives ids to the items on this agenda
+     */
+    public Agenda(RRGParseChart chart) {
+        this.chart = chart;
+        this.WITHIN = new BitSet();
+        this.AUXROOT = new BitSet();
+        this.DDAUGHTER = new BitSet();
+        this.INITROOT = new BitSet();
+        this.size = 0;
     }
 
+    /**
+     * @param item an item that is already in the chart
+     */
     public void add(RRGParseItem item) {
+        BitSet itemclass;
         if (item.getwsflag()) {
-            this.DDAUGHTER.add(item);
+            itemclass = this.DDAUGHTER;
         } else if (item.getNode().getType().equals(RRGNode.RRGNodeType.STAR) && item.getNodePos() == RRGParseItem.NodePos.TOP) {
-            this.AUXROOT.add(item);
+            itemclass = this.AUXROOT;
         } else if (item.getNode().getGornaddress().mother() == null && item.getNodePos() == RRGParseItem.NodePos.TOP) {
-            this.INITROOT.add(item);
+            itemclass = this.INITROOT;
         } else {
-            this.WITHIN.add(item);
+            itemclass = this.WITHIN;
+        }
+        int id = chart.getId(item);
+        if (!itemclass.get(id)) {
+            itemclass.set(id);
+            size++;
         }
     }
 
     public RRGParseItem getNext() {
-        return !this.WITHIN.isEmpty() ? this.WITHIN.pollFirst() :
-                !this.AUXROOT.isEmpty() ? this.AUXROOT.pollFirst() :
-                        !this.DDAUGHTER.isEmpty() ? this.DDAUGHTER.pollFirst() :
-                                !this.INITROOT.isEmpty() ? this.INITROOT.pollFirst() : null;
+        BitSet itemclass = !this.WITHIN.isEmpty() ? this.WITHIN :
+                !this.AUXROOT.isEmpty() ? this.AUXROOT :
+                        !this.DDAUGHTER.isEmpty() ? this.DDAUGHTER :
+                                !this.INITROOT.isEmpty() ? this.INITROOT : null;
+        if (itemclass == null) {
+            return null;
+        }
+        int id = itemclass.nextSetBit(0);
+        itemclass.clear(id);
+        size--;
+        return chart.getItem(id);
     }
 
     public Collection<RRGParseItem> getAllItems() {
-        Collection<RRGParseItem> result = new ConcurrentSkipListSet<>();
-        result.addAll(WITHIN);
-        result.addAll(AUXROOT);
-        result.addAll(DDAUGHTER);
-        result.addAll(INITROOT);
+        List<RRGParseItem> result = new ArrayList<>(size);
+        for (BitSet itemclass : new BitSet[]{WITHIN, AUXROOT, DDAUGHTER, INITROOT}) {
+            for (int id = itemclass.nextSetBit(0); id >= 0; id = itemclass.nextSetBit(id + 1)) {
+                result.add(chart.getItem(id));
+            }
+        }
         return result;
     }
 
     public int size() {
-        return WITHIN.size() + AUXROOT.size() + DDAUGHTER.size() + INITROOT.size();
+        return size;
     }
 
     public boolean isEmpty() {
-        return WITHIN.isEmpty() && AUXROOT.isEmpty() && DDAUGHTER.isEmpty() && INITROOT.isEmpty();
+        return size == 0;
     }
 }
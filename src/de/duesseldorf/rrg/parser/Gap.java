@@ -30,7 +30,7 @@ import java.util.Objects;
  * You should have received a copy of the GNU General Public License
  * along with this program. If not, see <http://www.gnu.org/licenses/>.
  */
-class Gap {
+class Gap implements Comparable<Gap> {
     final int start;
     final int end;
     final String nonterminal;
@@ -54,15 +54,14 @@ class Gap {
     @Override
     public boolean equals(Object o) {
         if (o instanceof Gap) {
-            return this.hashCode() == o.hashCode();
+            Gap other = (Gap) o;
+            return start == other.start && end == other.end
+                    && nonterminal.equals(other.nonterminal);
         }
         return false;
     }
 
     public int compareTo(Gap o) {
-        if (this.equals(o)) {
-            return 0;
-        }
         if (o.start < this.start) {
             return 1;
         } else if (o.start > this.start) {
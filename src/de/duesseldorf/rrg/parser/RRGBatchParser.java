@@ -0,0 +1,200 @@
+package de.duesseldorf.rrg.parser;
+
+import de.duesseldorf.frames.Situation;
+import de.duesseldorf.rrg.RRGParseResult;
+import de.duesseldorf.rrg.RRGTree;
+import de.duesseldorf.rrg.anchoring.RRGAnchorMan;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+
+/**
+ * File RRGBatchParser.java
+ * <p>
+ * Parses many sentences concurrently on a bounded pool of worker threads.
+ * <p>
+ * The grammar is only read while parsing: sentences are anchored in the
+ * calling thread, and every {@link RRGParser} gets its own copies of the
+ * anchored trees. Only a window of a few sentences per worker is anchored
+ * ahead, so memory does not grow with the size of the corpus. Results are handed back in the order of
+ * the input sentences.
+ * <p>
+ * This file is part of the TuLiPA-frames system
+ * https://github.com/spetitjean/TuLiPA-frames
+ * <p>
+ * <p>
+ * TuLiPA is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * TuLiPA is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+public class RRGBatchParser {
+
+    private Situation situation;
+    private String axiom;
+    private int threads;
+    private long timeoutMillis;
+
+    private int parsed = 0;
+    private int timeouts = 0;
+    private int failures = 0;
+    private long parsingTimeNanos = 0;
+
+    /**
+     * @param axiom         as for the {@link RRGParser}
+     * @param threads       number of worker threads
+     * @param timeoutMillis maximal parsing time for one sentence, counted from
+     *                      the moment a worker starts on it
+     */
+    public RRGBatchParser(String axiom, int threads, long timeoutMillis) {
+        this(Situation.current(), axiom, threads, timeoutMillis);
+    }
+
+    /**
+     * @param situation     the grammar to parse with
+     * @param axiom         as for the {@link RRGParser}
+     * @param threads       number of worker threads
+     * @param timeoutMillis maximal parsing time for one sentence, counted from
+     *                      the moment a worker starts on it. A sentence that
+     *                      takes longer is interrupted, parsing and extraction
+     *                      stop at their next step.
+     */
+    public RRGBatchParser(Situation situation, String axiom, int threads,
+                          long timeoutMillis) {
+        this.situation = situation;
+        this.axiom = axiom;
+        this.threads = Math.max(1, threads);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Parse all {@code sentences}. The results are given to
+     * {@code resultConsumer} in the order of the input, together with the
+     * index of the sentence. Sentences that time out or fail get an empty
+     * result.
+     *
+     * @param sentences
+     * @param resultConsumer
+     */
+    public void parse(List<String> sentences,
+                      BiConsumer<Integer, RRGParseResult> resultConsumer) {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<SentenceTask> window = new ArrayDeque<SentenceTask>();
+        int next = 0;
+        try {
+            for (String sentence : sentences) {
+                if (window.size() >= 2 * threads) {
+                    resultConsumer.accept(next++, collect(window.poll()));
+                }
+                SentenceTask task = new SentenceTask(sentence);
+                task.future = executor.submit(task);
+                window.add(task);
+            }
+            while (!window.isEmpty()) {
+                resultConsumer.accept(next++, collect(window.poll()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        parsingTimeNanos += System.nanoTime() - start;
+    }
+
+    private RRGParseResult collect(SentenceTask task) {
+        parsed++;
+        while (true) {
+            try {
+                return task.future.get(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                long started = task.started;
+                if (started > 0 && System.nanoTime() - started > TimeUnit.MILLISECONDS
+                        .toNanos(timeoutMillis)) {
+                    task.future.cancel(true);
+                    timeouts++;
+                    System.err.println("parsing timed out: " + task.sentence);
+                    return new RRGParseResult.Builder().build();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.future.cancel(true);
+                failures++;
+                return new RRGParseResult.Builder().build();
+            } catch (ExecutionException e) {
+                failures++;
+                System.err.println("parsing failed due to exception: "
+                        + e.getCause() + " in sentence: " + task.sentence);
+                e.getCause().printStackTrace();
+                return new RRGParseResult.Builder().build();
+            }
+        }
+    }
+
+    /**
+     * anchors the sentence when it is created, i.e. in the thread that
+     * submits it, and parses it in a worker thread
+     */
+    private class SentenceTask implements Callable<RRGParseResult> {
+        private final String sentence;
+        private final List<String> toksentence;
+        private final RRGParser parser;
+        private Future<RRGParseResult> future;
+        private volatile long started = -1;
+
+        SentenceTask(String sentence) {
+            this.sentence = sentence;
+            this.toksentence = Arrays.asList(sentence.split("\\s+"));
+            Set<RRGTree> treesInvolvedInParsing = new RRGAnchorMan(situation,
+                    toksentence).anchor();
+            // the parser copies the anchored trees
+            this.parser = new RRGParser(situation, axiom,
+                    treesInvolvedInParsing);
+        }
+
+        @Override
+        public RRGParseResult call() {
+            started = System.nanoTime();
+            return parser.parseSentence(toksentence);
+        }
+    }
+
+    public int getParsedSentences() {
+        return parsed;
+    }
+
+    public int getTimeouts() {
+        return timeouts;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return sentences per second over all calls of
+     * {@link #parse(List, BiConsumer)}
+     */
+    public double getThroughput() {
+        return parsingTimeNanos == 0 ? 0
+                : parsed / (parsingTimeNanos / Math.pow(10, 9));
+    }
+
+    public String statistics() {
+        return String.format(
+                "%d sentences parsed in %.3f sec. with %d threads (%.2f sentences/sec.), %d timeouts, %d failures",
+                parsed, parsingTimeNanos / Math.pow(10, 9), threads,
+                getThroughput(), timeouts, failures);
+    }
+}
@@ -26,14 +26,19 @@
  */
 package de.duesseldorf.rrg.parser;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 
 import de.duesseldorf.rrg.RRGNode.RRGNodeType;
+import de.duesseldorf.rrg.parser.RRGParseItem.NodePos;
 
 public class RRGParseChart {
 
@@ -42,6 +47,19 @@ public class RRGParseChart {
     private int sentencelength;
     private String axiom;
 
+    // secondary indexes, filled in addItem. Every item is stored exactly once
+    // in each of them, so a lookup can be answered from one index alone.
+    // span index: one bucket per (start, end, nodepos, ws), see spanSlot
+    private List<List<RRGParseItem>> spanIndex;
+    // node index: items on the same node of the same tree in the same
+    // position, bucketed by start and by end
+    private Map<NodeKey, NodeBucket> nodeIndex;
+    // gap index: all items that have a certain gap
+    private Map<Gap, List<RRGParseItem>> gapIndex;
+    // all items in the order they were added, the position is the item id
+    private List<RRGParseItem> items;
+    private Map<RRGParseItem, Integer> ids;
+
     public RRGParseChart(int sentencelength, String axiom) {
 
         this.sentencelength = sentencelength;
@@ -52,6 +70,15 @@ public class RRGParseChart {
         for (int i = 0; i <= sentencelength; i++) {
             chart.put(i, new HashMap<RRGParseItem, Backpointer>());
         }
+        int slots = (sentencelength + 1) * (sentencelength + 1) * 4;
+        spanIndex = new ArrayList<List<RRGParseItem>>(slots);
+        for (int i = 0; i < slots; i++) {
+            spanIndex.add(null);
+        }
+        nodeIndex = new HashMap<NodeKey, NodeBucket>();
+        gapIndex = new HashMap<Gap, List<RRGParseItem>>();
+        items = new ArrayList<RRGParseItem>();
+        ids = new HashMap<RRGParseItem, Integer>();
     }
 
     public boolean containsItem(RRGParseItem item) {
@@ -71,8 +98,12 @@ public class RRGParseChart {
      */
     public Set<RRGParseItem> retrieveGoalItems() {
         Set<RRGParseItem> goals = new HashSet<RRGParseItem>();
-        for (RRGParseItem item : chart.get(0).keySet()) {
-            RRGParseItem rrgitem = (RRGParseItem) item;
+        List<RRGParseItem> spanning = spanIndex
+                .get(spanSlot(0, sentencelength, NodePos.TOP, false));
+        if (spanning == null) {
+            return goals;
+        }
+        for (RRGParseItem rrgitem : spanning) {
             boolean goalReqsFromItem = rrgitem.getEnd() == sentencelength && // end=n
                     // no more ws
                     rrgitem.getwsflag() == false && rrgitem.getGaps().isEmpty()
@@ -114,86 +145,262 @@ public class RRGParseChart {
      *                  model. To construct the template, equip the item with
      *                  concrete models or to leave values unspecified <br>
      *                  - give null for {@code tree}, {@code node}, {@code nodePos},
-     *                  {@code gaps}, {@code wsflag} <br>
+     *                  {@code gaps} <br>
+     *                  - the {@code wsflag} always has to be given <br>
      *                  - give -2 for {@code start}, {@code end}
      * @param gapSubSet are the gaps in the model only a subset of the gaps in the
      *                  item we look for?
-     * @return
+     * @return all items matching the model. The lookup only touches the
+     * smallest index bucket the model specifies: the node index if
+     * tree and node are given, the gap index if gaps are given, and
+     * the span index otherwise.
      */
-    public Set<RRGParseItem> findUnderspecifiedItem(RRGParseItem model,
-                                                    boolean gapSubSet) {
-        Set<RRGParseItem> result = new HashSet<RRGParseItem>();
-
-        // collect all the items that might fit the model
-        // first find out in which area of the chart to look
-        Set<RRGParseItem> toCheck = new HashSet<RRGParseItem>();
-        int startboundary = model.startPos() == -2 ? 0 : model.startPos();
-        int endboundary = model.startPos() == -2 ? chart.size() - 1
-                : startboundary;
-
-        // then, look up in the chart
-        for (int i = startboundary; i <= endboundary; i++) {
-            toCheck.addAll(chart.get(i).keySet());
-        }
+    public List<RRGParseItem> findUnderspecifiedItem(RRGParseItem model,
+                                                     boolean gapSubSet) {
+        List<RRGParseItem> result = new ArrayList<RRGParseItem>();
+        int start = model.startPos();
+        int end = model.getEnd();
+        NodePos nodepos = model.getNodePos();
+        boolean ws = model.getwsflag();
 
-        // this needs to be refactored!
-        for (RRGParseItem s : toCheck) {
-            boolean endCheck = model.getEnd() == -2
-                    || model.getEnd() == ((RRGParseItem) s).getEnd();
-            if (endCheck) {
-                boolean treeCheck = model.getTree() == null
-                        || model.getTree().getInstance().equals(((RRGParseItem) s).getTree().getInstance());
-                if (treeCheck) {
-                    boolean nodeCheck = model.getNode() == null || model
-                            .getNode().copyNode().equals(((RRGParseItem) s).getNode().copyNode());
-                    if (nodeCheck) {
-                        boolean posCheck = model.getNodePos() == null
-                                || model.getNodePos().equals(
-                                ((RRGParseItem) s).getNodePos());
-                        if (posCheck) {
-                            // several cases: 1. no gaps given - gaps = null. 2.
-                            // gaps given, equal to the gaps we look for
-                            // (boolean is false), 3. gaps given, subset of the
-                            // gaps we look for (boolean is true)
-
-                            // case 1
-                            boolean gapCheck = model.getGaps() == null;
-                            if (!gapCheck) {
-                                // case 2
-                                if (!gapSubSet) {
-                                    gapCheck = model.getGaps().equals(
-                                            ((RRGParseItem) s).getGaps());
-                                } else {
-                                    // case 3
-                                    gapCheck = ((RRGParseItem) s).getGaps()
-                                            .containsAll(model.getGaps());
-                                    // System.out.print(gapCheck);
-                                    // System.out.println("yay: "
-                                    // + ((RRGParseItem) s).getGaps()
-                                    // + model.getGaps());
-                                }
-                            }
-
-                            if (gapCheck) {
-                                boolean wsCheck = (Boolean) model
-                                        .getwsflag() == null
-                                        || ((Boolean) model.getwsflag()).equals(
-                                        ((RRGParseItem) s).getwsflag());
-                                if (wsCheck) {
-                                    result.add((RRGParseItem) s);
-                                }
-                            }
-                        }
+        if (model.getTree() != null && model.getNode() != null) {
+            // node index: tree and node already fit, check the rest
+            int treeHash = model.getTree().hashCode();
+            int nodeHash = model.getNode().hashCode();
+            for (NodePos pos : positions(nodepos)) {
+                NodeBucket bucket = nodeIndex
+                        .get(new NodeKey(treeHash, nodeHash, pos));
+                if (bucket == null) {
+                    continue;
+                }
+                List<RRGParseItem> candidates = start != -2
+                        ? bucket.byStart.get(start)
+                        : end != -2 ? bucket.byEnd.get(end) : bucket.all;
+                collect(candidates, model, gapSubSet, false, result);
+            }
+        } else if (model.getGaps() != null && !model.getGaps().isEmpty()) {
+            // gap index: take the smallest bucket among the gaps of the model
+            List<RRGParseItem> candidates = null;
+            for (Gap gap : model.getGaps()) {
+                List<RRGParseItem> withGap = gapIndex.get(gap);
+                if (withGap == null) {
+                    return result;
+                }
+                if (candidates == null || withGap.size() < candidates.size()) {
+                    candidates = withGap;
+                }
+            }
+            collect(candidates, model, gapSubSet, true, result);
+        } else {
+            // span index: go through all (start, end) cells the model allows
+            int firstStart = start == -2 ? 0 : start;
+            int lastStart = start == -2 ? sentencelength : start;
+            for (int i = firstStart; i <= lastStart; i++) {
+                int firstEnd = end == -2 ? i : end;
+                int lastEnd = end == -2 ? sentencelength : end;
+                for (int j = firstEnd; j <= lastEnd; j++) {
+                    for (NodePos pos : positions(nodepos)) {
+                        collect(spanIndex.get(spanSlot(i, j, pos, ws)), model,
+                                gapSubSet, true, result);
                     }
                 }
             }
-
         }
         return result;
     }
 
     /**
-     * adds an item to the chart if it is not already in there.
+     * add all candidates that match the model to the result
+     *
+     * @param checkTreeAndNode false if the candidates come from the node index
+     *                         and thus have the tree and node of the model
+     */
+    private void collect(List<RRGParseItem> candidates, RRGParseItem model,
+                         boolean gapSubSet, boolean checkTreeAndNode,
+                         List<RRGParseItem> result) {
+        if (candidates == null) {
+            return;
+        }
+        for (RRGParseItem s : candidates) {
+            if (matches(model, s, gapSubSet, checkTreeAndNode)) {
+                result.add(s);
+            }
+        }
+    }
+
+    private boolean matches(RRGParseItem model, RRGParseItem s,
+                            boolean gapSubSet, boolean checkTreeAndNode) {
+        if (model.startPos() != -2 && model.startPos() != s.startPos()) {
+            return false;
+        }
+        if (model.getEnd() != -2 && model.getEnd() != s.getEnd()) {
+            return false;
+        }
+        if (model.getNodePos() != null && model.getNodePos() != s.getNodePos()) {
+            return false;
+        }
+        if (model.getwsflag() != s.getwsflag()) {
+            return false;
+        }
+        if (checkTreeAndNode) {
+            if (model.getTree() != null
+                    && model.getTree().hashCode() != s.getTree().hashCode()) {
+                return false;
+            }
+            if (model.getNode() != null
+                    && model.getNode().hashCode() != s.getNode().hashCode()) {
+                return false;
+            }
+        }
+        // several cases: 1. no gaps given - gaps = null. 2. gaps given, equal
+        // to the gaps we look for (boolean is false), 3. gaps given, subset of
+        // the gaps we look for (boolean is true)
+        if (model.getGaps() != null) {
+            return gapSubSet ? s.getGaps().containsAll(model.getGaps())
+                    : model.getGaps().equals(s.getGaps());
+        }
+        return true;
+    }
+
+    /**
+     * @return the position of the bucket in the span index
+     */
+    private int spanSlot(int start, int end, NodePos nodepos, boolean ws) {
+        int cell = start * (sentencelength + 1) + end;
+        return cell * 4 + nodepos.ordinal() * 2 + (ws ? 1 : 0);
+    }
+
+    private static final NodePos[] ALLPOSITIONS = NodePos.values();
+
+    private static NodePos[] positions(NodePos nodepos) {
+        return nodepos == null ? ALLPOSITIONS : new NodePos[]{nodepos};
+    }
+
+    /**
+     * @param id
+     * @return the item in the chart that has the id {@code id}
+     */
+    public RRGParseItem getItem(int id) {
+        return items.get(id);
+    }
+
+    /**
+     * @param item
+     * @return the dense number the chart gave to {@code item} when it was
+     * added, or -1 if the item is not in the chart
+     */
+    public int getId(RRGParseItem item) {
+        Integer id = ids.get(item);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * give a new item its id and put it into all secondary indexes
+     */
+    private void index(RRGParseItem item) {
+        ids.put(item, items.size());
+        items.add(item);
+
+        int slot = spanSlot(item.startPos(), item.getEnd(), item.getNodePos(),
+                item.getwsflag());
+        List<RRGParseItem> span = spanIndex.get(slot);
+        if (span == null) {
+            span = new ArrayList<RRGParseItem>();
+            spanIndex.set(slot, span);
+        }
+        span.add(item);
+
+        NodeKey nodeKey = new NodeKey(item.getTree().hashCode(),
+                item.getNode().hashCode(), item.getNodePos());
+        NodeBucket nodeBucket = nodeIndex.get(nodeKey);
+        if (nodeBucket == null) {
+            nodeBucket = new NodeBucket(sentencelength);
+            nodeIndex.put(nodeKey, nodeBucket);
+        }
+        nodeBucket.add(item);
+
+        for (Gap gap : item.getGaps()) {
+            List<RRGParseItem> withGap = gapIndex.get(gap);
+            if (withGap == null) {
+                withGap = new ArrayList<RRGParseItem>();
+                gapIndex.put(gap, withGap);
+            }
+            withGap.add(item);
+        }
+    }
+
+    /**
+     * Key of the node index. Trees and nodes are compared by their hash codes,
+     * just as {@link de.duesseldorf.rrg.RRGTree#equals(Object)} and
+     * {@link de.duesseldorf.rrg.RRGNode#equals(Object)} do.
+     */
+    private static final class NodeKey {
+        private final int treeHash;
+        private final int nodeHash;
+        private final NodePos nodepos;
+
+        NodeKey(int treeHash, int nodeHash, NodePos nodepos) {
+            this.treeHash = treeHash;
+            this.nodeHash = nodeHash;
+            this.nodepos = nodepos;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(treeHash, nodeHash, nodepos);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof NodeKey)) {
+                return false;
+            }
+            NodeKey other = (NodeKey) o;
+            return treeHash == other.treeHash && nodeHash == other.nodeHash
+                    && nodepos == other.nodepos;
+        }
+    }
+
+    /**
+     * The items on one node, once in total and bucketed by start and end
+     */
+    private static final class NodeBucket {
+        private final List<RRGParseItem> all;
+        // one list per position, null as long as there is no item
+        private final List<List<RRGParseItem>> byStart;
+        private final List<List<RRGParseItem>> byEnd;
+
+        NodeBucket(int sentencelength) {
+            all = new ArrayList<RRGParseItem>();
+            byStart = new ArrayList<List<RRGParseItem>>(
+                    Collections.<List<RRGParseItem>>nCopies(
+                            sentencelength + 1, null));
+            byEnd = new ArrayList<List<RRGParseItem>>(
+                    Collections.<List<RRGParseItem>>nCopies(
+                            sentencelength + 1, null));
+        }
+
+        void add(RRGParseItem item) {
+            all.add(item);
+            addAt(byStart, item.startPos(), item);
+            addAt(byEnd, item.getEnd(), item);
+        }
+
+        private static void addAt(List<List<RRGParseItem>> buckets, int pos,
+                                  RRGParseItem item) {
+            List<RRGParseItem> bucket = buckets.get(pos);
+            if (bucket == null) {
+                bucket = new ArrayList<RRGParseItem>(2);
+                buckets.set(pos, bucket);
+            }
+            bucket.add(item);
+        }
+    }
+
+    /**
+     * adds an item to the chart if it is not already in there. Items in the
+     * chart are unique, i.e. if an equal item is already in there, the new one
+     * is not stored and only its backpointers are added to the stored one.
      *
      * @param consequent  the item that should be added to the chart.
      * @param antecedents the antecedents from which this item was created.
@@ -232,17 +439,13 @@ public class RRGParseChart {
             Backpointer backpointer = new Backpointer();
             backpointer.addToBackpointer(operation, antes);
             chart.get(startpos).put(consequent, backpointer);
+            index(consequent);
         }
         return !alreadythere;
     }
 
     public int computeSize() {
-        int result = 0;
-        for (Entry<Integer, Map<RRGParseItem, Backpointer>> startingPos : chart
-                .entrySet()) {
-            result += startingPos.getValue().keySet().size();
-        }
-        return result;
+        return items.size();
     }
 
     @Override
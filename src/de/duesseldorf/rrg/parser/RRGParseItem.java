@@ -1,6 +1,11 @@
 
 package de.duesseldorf.rrg.parser;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
@@ -44,6 +49,9 @@ public class RRGParseItem implements Comparable<RRGParseItem> {
     private final boolean ws;
     private final RRGParseItem genwrappingjumpback;
 
+    // items never change, so the hash code is computed only once
+    private final int hash;
+
     private RRGParseItem(RRGTree tree, RRGNode node, NodePos nodepos, int start,
                          int end, Set<Gap> gaps, boolean ws, RRGParseItem genwrappingjumpback) {
         this.tree = tree;
@@ -51,9 +59,12 @@ public class RRGParseItem implements Comparable<RRGParseItem> {
         this.nodepos = nodepos;
         this.start = start;
         this.end = end;
-        this.gaps = gaps;
+        this.gaps = (gaps == null) ? null
+                : gaps.isEmpty() ? Collections.<Gap>emptySet()
+                : Collections.unmodifiableSet(new HashSet<Gap>(gaps));
         this.ws = ws;
         this.genwrappingjumpback = genwrappingjumpback;
+        this.hash = computeHashCode();
     }
 
     public RRGTree getTree() {
@@ -84,6 +95,9 @@ public class RRGParseItem implements Comparable<RRGParseItem> {
         return ws;
     }
 
+    /**
+     * @return the gaps of this item. The set can not be modified.
+     */
     public Set<Gap> getGaps() {
         return gaps;
     }
@@ -92,17 +106,63 @@ public class RRGParseItem implements Comparable<RRGParseItem> {
         return genwrappingjumpback;
     }
 
+    private int computeHashCode() {
+        int result = Objects.hash(tree == null ? null : tree.getId(), start,
+                end, nodepos, ws, gaps);
+        if (node != null) {
+            result = 31 * result + Objects.hash(node.getType(), node.getName(),
+                    node.getCategory(), node.getGornaddress().getAddress());
+        }
+        if (genwrappingjumpback != null) {
+            result = 31 * result + genwrappingjumpback.hash;
+        }
+        return result;
+    }
+
     @Override
     public int hashCode() {
-        return Objects.hash(tree.getId(), start, end, node.getType(), node.getName(), node.getCategory(), gaps, nodepos, ws, genwrappingjumpback);
+        return hash;
     }
 
+    /**
+     * Two items are equal iff all of their fields are equal. Trees are
+     * identified by their id, nodes by their Gorn address, type, name and
+     * category.
+     */
     @Override
     public boolean equals(Object o) {
-        if (o instanceof RRGParseItem) {
-            return o.hashCode() == this.hashCode();
+        if (this == o) {
+            return true;
         }
-        return false;
+        if (!(o instanceof RRGParseItem)) {
+            return false;
+        }
+        RRGParseItem other = (RRGParseItem) o;
+        return hash == other.hash && start == other.start && end == other.end
+                && ws == other.ws && nodepos == other.nodepos
+                && Objects.equals(treeId(), other.treeId())
+                && sameNode(node, other.node)
+                && Objects.equals(gaps, other.gaps)
+                && Objects.equals(genwrappingjumpback,
+                other.genwrappingjumpback);
+    }
+
+    private String treeId() {
+        return tree == null ? null : tree.getId();
+    }
+
+    private static boolean sameNode(RRGNode n1, RRGNode n2) {
+        if (n1 == n2) {
+            return true;
+        }
+        if (n1 == null || n2 == null) {
+            return false;
+        }
+        return n1.getType() == n2.getType()
+                && Objects.equals(n1.getName(), n2.getName())
+                && Objects.equals(n1.getCategory(), n2.getCategory())
+                && n1.getGornaddress().getAddress()
+                .equals(n2.getGornaddress().getAddress());
     }
 
     /**
@@ -124,17 +184,103 @@ public class RRGParseItem implements Comparable<RRGParseItem> {
         return itemstr;
     }
 
+    /**
+     * A total order that is consistent with {@link #equals(Object)}: tree id,
+     * start, end, node position, ws flag, node, gaps and finally the jumpback
+     * item are compared one after another.
+     */
     public int compareTo(RRGParseItem o) {
-        if (!this.getTree().getId().equals(o.getTree().getId())) {
-            return getTree().getId().compareTo(o.getTree().getId());
+        if (this == o) {
+            return 0;
+        }
+        int res = getTree().getId().compareTo(o.getTree().getId());
+        if (res != 0) {
+            return res;
+        }
+        res = Integer.compare(this.start, o.start);
+        if (res != 0) {
+            return res;
+        }
+        res = Integer.compare(this.end, o.end);
+        if (res != 0) {
+            return res;
+        }
+        res = this.nodepos.compareTo(o.nodepos);
+        if (res != 0) {
+            return res;
+        }
+        res = Boolean.compare(this.ws, o.ws);
+        if (res != 0) {
+            return res;
+        }
+        res = compareNodes(this.node, o.node);
+        if (res != 0) {
+            return res;
+        }
+        res = compareGaps(this.gaps, o.gaps);
+        if (res != 0) {
+            return res;
+        }
+        if (this.genwrappingjumpback == null) {
+            return o.genwrappingjumpback == null ? 0 : -1;
+        }
+        if (o.genwrappingjumpback == null) {
+            return 1;
+        }
+        return this.genwrappingjumpback.compareTo(o.genwrappingjumpback);
+    }
+
+    private static int compareNodes(RRGNode n1, RRGNode n2) {
+        List<Integer> a1 = n1.getGornaddress().getAddress();
+        List<Integer> a2 = n2.getGornaddress().getAddress();
+        int res = Integer.compare(a1.size(), a2.size());
+        if (res != 0) {
+            return res;
+        }
+        Iterator<Integer> it2 = a2.iterator();
+        for (Integer i1 : a1) {
+            res = i1.compareTo(it2.next());
+            if (res != 0) {
+                return res;
+            }
+        }
+        res = n1.getType().compareTo(n2.getType());
+        if (res != 0) {
+            return res;
+        }
+        res = compareStrings(n1.getCategory(), n2.getCategory());
+        if (res != 0) {
+            return res;
+        }
+        return compareStrings(n1.getName(), n2.getName());
+    }
+
+    private static int compareStrings(String s1, String s2) {
+        if (s1 == null) {
+            return s2 == null ? 0 : -1;
+        }
+        return s2 == null ? 1 : s1.compareTo(s2);
+    }
+
+    private static int compareGaps(Set<Gap> g1, Set<Gap> g2) {
+        if (g1 == null || g2 == null) {
+            return g1 == g2 ? 0 : g1 == null ? -1 : 1;
         }
-        if (this.start != o.start) {
-            return this.start - o.start;
+        int res = Integer.compare(g1.size(), g2.size());
+        if (res != 0 || g1.isEmpty()) {
+            return res;
         }
-        if (this.end != o.end) {
-            return this.end - o.end;
+        List<Gap> l1 = new ArrayList<Gap>(g1);
+        List<Gap> l2 = new ArrayList<Gap>(g2);
+        Collections.sort(l1);
+        Collections.sort(l2);
+        for (int i = 0; i < l1.size(); i++) {
+            res = l1.get(i).compareTo(l2.get(i));
+            if (res != 0) {
+                return res;
+            }
         }
-        return this.hashCode() - o.hashCode();
+        return 0;
     }
 
     /**
@@ -1,14 +1,15 @@
 package de.duesseldorf.rrg.parser;
 
 import de.duesseldorf.frames.Situation;
-import de.duesseldorf.frames.UnifyException;
 import de.duesseldorf.rrg.*;
 import de.duesseldorf.rrg.extractor.ParseForestExtractor;
+import de.duesseldorf.rrg.extractor.RRGParseForest;
 import de.duesseldorf.rrg.parser.RRGParseItem.NodePos;
 import de.duesseldorf.ui.ParsingInterface;
 import de.tuebingen.tag.Environment;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
 
 /**
@@ -50,8 +51,27 @@ public class RRGParser {
 
     private boolean noExtractionForBigCharts = false;
     private String axiom;
+    private Situation situation;
+    // only used for checking whether nodes unify, its bindings are always
+    // undone. The nodes are copied before they are checked: they can belong
+    // to the grammar, which other parses (maybe in other threads) share, and
+    // unification changes them while it tries
+    private Environment checkEnv = new Environment(5);
 
     public RRGParser(String axiom, Set<RRGTree> treesInvolvedInParsing) {
+        this(Situation.current(), axiom, treesInvolvedInParsing);
+    }
+
+    /**
+     * @param situation              the grammar and type hierarchy this parser
+     *                               works with. It is bound to the parsing
+     *                               thread while a sentence is parsed.
+     * @param axiom
+     * @param treesInvolvedInParsing the anchored trees, they are copied
+     */
+    public RRGParser(Situation situation, String axiom,
+                     Set<RRGTree> treesInvolvedInParsing) {
+        this.situation = situation;
         this.axiom = (axiom == null) ? "" : axiom;
         this.requirementFinder = new RequirementFinder();
         this.deducer = new Deducer();
@@ -67,11 +87,85 @@ public class RRGParser {
     }
 
     public RRGParseResult parseSentence(List<String> toksentence) {
+        Situation previous = Situation.bind(situation);
+        try {
+            return parseSentenceInSituation(toksentence);
+        } finally {
+            Situation.bind(previous);
+        }
+    }
+
+    private RRGParseResult parseSentenceInSituation(List<String> toksentence) {
+        if (!recognize(toksentence)) {
+            return new RRGParseResult.Builder().successfulParses(new HashSet<>())
+                    .treesWithEdgeFeatureMismatches(new HashSet<>()).build();
+        }
+        if (noExtractionForBigCharts && chart.computeSize() > 3000) {
+            System.out.println(
+                    "ERROR: abort parse tree extraction because chart is too large: "
+                            + chart.computeSize());
+            return new RRGParseResult.Builder().build();
+        } else {
+
+
+            // System.out.println("Environments after parsing:");
+
+            // for (RRGTree rrgtree : ((RRG) Situation.getGrammar()).getTrees()){
+            // 	System.out.println(rrgtree.getEnv());
+            // }
+
+
+            // extract parse results from chart
+            ParseForestExtractor extractor = new ParseForestExtractor(chart,
+                    toksentence);
+            RRGParseResult result = extractor.extractParseTrees();
+
+            // System.out.println("Environments after extraction:");
+
+            // for (RRGTree rrgtree : ((RRG) Situation.getGrammar()).getTrees()){
+            // 	System.out.println(rrgtree.getEnv());
+            // }
+
+            return result;
+        }
+
+    }
+
+    /**
+     * Parse a sentence, but do not extract the parse trees. The chart is
+     * returned as a packed shared forest instead, from which the number of
+     * parses can be computed and single parse trees can be unpacked lazily.
+     *
+     * @param toksentence
+     * @return the packed forest of all parses of {@code toksentence}
+     */
+    public RRGParseForest parseSentenceToForest(List<String> toksentence) {
+        Situation previous = Situation.bind(situation);
+        try {
+            if (!recognize(toksentence)) {
+                return new RRGParseForest(
+                        new RRGParseChart(toksentence.size(), axiom),
+                        toksentence);
+            }
+            return new RRGParseForest(chart, toksentence);
+        } finally {
+            Situation.bind(previous);
+        }
+    }
+
+    /**
+     * Fill the chart for {@code toksentence}.
+     *
+     * @param toksentence
+     * @return false iff scanning failed, i.e. some word could not be found in
+     * the grammar
+     */
+    private boolean recognize(List<String> toksentence) {
         System.out.println("\nstart parsing sentence " + toksentence);
         System.out.println("number of trees in the grammar: "
-                + ((RRG) Situation.getGrammar()).getTrees().size());
-        this.agenda = new Agenda();
+                + ((RRG) situation.grammar()).getTrees().size());
         this.chart = new RRGParseChart(toksentence.size(), axiom);
+        this.agenda = new Agenda(chart);
 
         // System.out.println("Environments before parsing:");
 
@@ -82,8 +176,7 @@ public class RRGParser {
 
         // Axioms through scanning:
         if (!scan(toksentence)) {
-            return new RRGParseResult.Builder().successfulParses(new HashSet<>())
-                    .treesWithEdgeFeatureMismatches(new HashSet<>()).build();
+            return false;
         }
 
         this.requirementFinder = new RequirementFinder();
@@ -103,6 +196,11 @@ public class RRGParser {
         // The real recognition
         int i = 0;
         while (!agenda.isEmpty()) {
+            if (Thread.interrupted()) {
+                // e.g. the RRGBatchParser gave up on this sentence
+                throw new CancellationException(
+                        "parsing interrupted: " + toksentence);
+            }
             RRGParseItem currentItem = agenda.getNext();
             if (verbosePrintsToStdOut) {
                 System.out.println("step: " + i + "\t" + currentItem);
@@ -127,35 +225,7 @@ public class RRGParser {
 
         System.out.println("Done parsing. Chart size: " + chart.computeSize());
         //System.out.println(chart);
-        if (noExtractionForBigCharts && chart.computeSize() > 3000) {
-            System.out.println(
-                    "ERROR: abort parse tree extraction because chart is too large: "
-                            + chart.computeSize());
-            return new RRGParseResult.Builder().build();
-        } else {
-
-
-            // System.out.println("Environments after parsing:");
-
-            // for (RRGTree rrgtree : ((RRG) Situation.getGrammar()).getTrees()){
-            // 	System.out.println(rrgtree.getEnv());
-            // }
-
-
-            // extract parse results from chart
-            ParseForestExtractor extractor = new ParseForestExtractor(chart,
-                    toksentence);
-            RRGParseResult result = extractor.extractParseTrees();
-
-            // System.out.println("Environments after extraction:");
-
-            // for (RRGTree rrgtree : ((RRG) Situation.getGrammar()).getTrees()){
-            // 	System.out.println(rrgtree.getEnv());
-            // }
-
-            return result;
-        }
-
+        return true;
     }
 
     /**
@@ -255,7 +325,7 @@ public class RRGParser {
         }
         if (fillerItem) {
             // System.out.println("TODO in Parser CW 2 " + currentItem);
-            Set<RRGParseItem> completeWrappingRootAntecedents =
+            List<RRGParseItem> completeWrappingRootAntecedents =
                     requirementFinder
                             .findCompleteWrappingRoots(currentItem, chart);
             for (RRGParseItem rootAntecedent :
@@ -290,17 +360,10 @@ public class RRGParser {
                     gaps.add(new Gap(currentItem.startPos(),
                             currentItem.getEnd(), cat));
                     for (RRGNode substNode : substNodes) {
-                        boolean nodeUnificationPossible = true;
-                        try {
-                            // RRGTreeTools.unifyNodes(substNode,
-                            //         currentItem.getNode(),
-                            //         currentItem.getTree().getEnv());
-                            RRGTreeTools.unifyNodes(substNode.copyNode(),
-                                    currentItem.getNode().copyNode(),
-                                    new Environment(5));
-                        } catch (UnifyException e) {
-                            nodeUnificationPossible = false;
-                        }
+                        boolean nodeUnificationPossible = RRGTreeTools
+                                .unifiableNodes(substNode.copyNode(),
+                                        currentItem.getNode().copyNode(),
+                                        checkEnv);
 
                         if (nodeUnificationPossible) {
                             // System.out.println("got to for: " + substNode);
@@ -392,18 +455,10 @@ public class RRGParser {
                 if (substNodes != null) {
                     for (RRGNode substNode : substNodes) {
                         // System.out.println("got to for: " + substNode);
-                        boolean checkIfUnificationWorks = true;
-                        try {
-                            // RRGTreeTools.unifyNodes(substNode,
-                            //         currentItem.getNode(),
-                            //         currentItem.getTree().getEnv());
-                            RRGTreeTools.unifyNodes(substNode.copyNode(),
-                                    currentItem.getNode().copyNode(),
-                                    new Environment(5));
-                        } catch (UnifyException e) {
-                            //System.out.println("Failed unification");
-                            checkIfUnificationWorks = false;
-                        }
+                        boolean checkIfUnificationWorks = RRGTreeTools
+                                .unifiableNodes(substNode.copyNode(),
+                                        currentItem.getNode().copyNode(),
+                                        checkEnv);
                         if (checkIfUnificationWorks) {
                             RRGParseItem cons = new RRGParseItem.Builder()
                                     .tree(tree.getInstance()).node(substNode.copyNode())
@@ -437,7 +492,7 @@ public class RRGParser {
     private void combinesisters(RRGParseItem currentItem) {
         //System.out.println("combinesisters");
         // case 1: currentItem is the left node of the combination
-        Set<RRGParseItem> rightSisterCandidates = requirementFinder
+        List<RRGParseItem> rightSisterCandidates = requirementFinder
                 .findCombineSisRightSisters(currentItem, chart);
         // System.out.println("currentItem: " + leftSisterAntecedentItem);
         for (RRGParseItem rightSisterAntecedentItem : rightSisterCandidates) {
@@ -450,7 +505,7 @@ public class RRGParser {
                     currentItem, rightSisterAntecedentItem);
         }
         // case 2: currentItem is the right node of the combination
-        Set<RRGParseItem> leftSisterCandidates = requirementFinder
+        List<RRGParseItem> leftSisterCandidates = requirementFinder
                 .findCombineSisLeftSisters(currentItem, chart);
         for (RRGParseItem leftSisterAntecedentItem : leftSisterCandidates) {
             RRGParseItem rightSisTopItem = deducer
@@ -1,11 +1,12 @@
 package de.duesseldorf.rrg.parser;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import de.duesseldorf.frames.UnifyException;
 import de.duesseldorf.rrg.RRGNode;
 import de.duesseldorf.rrg.RRGNode.RRGNodeType;
 import de.duesseldorf.rrg.RRGTreeTools;
@@ -42,6 +43,10 @@ import de.tuebingen.tag.Environment;
  */
 public class RequirementFinder {
 
+    // only used for checking whether nodes unify, its bindings are always
+    // undone. The nodes are copied before they are checked, see RRGParser
+    private Environment checkEnv = new Environment(5);
+
     /**
      * needed:
      * 1. in TOP position
@@ -87,9 +92,9 @@ public class RequirementFinder {
      * @param chart      look up here
      * @return
      */
-    public Set<RRGParseItem> findCombineSisRightSisters(RRGParseItem leftSister,
-                                                        RRGParseChart chart) {
-        Set<RRGParseItem> candidates = new HashSet<RRGParseItem>();
+    public List<RRGParseItem> findCombineSisRightSisters(RRGParseItem leftSister,
+                                                         RRGParseChart chart) {
+        List<RRGParseItem> candidates = Collections.emptyList();
         // find the right sister, which already ensures we are in the same tree
         RRGNode rightSis = leftSister.getTree()
                 .findNode(leftSister.getNode().getGornaddress().rightSister());
@@ -103,7 +108,7 @@ public class RequirementFinder {
             // System.out.println("starter: " + leftSister);
 
             RRGParseItem model = new RRGParseItem.Builder()
-                    .tree(leftSister.getTree().getInstance()).node(rightSis.copyNode())
+                    .tree(leftSister.getTree()).node(rightSis)
                     .nodepos(NodePos.BOT).start(leftSister.getEnd()).ws(false)
                     .build();
             // System.out.println("model: " + model);
@@ -117,9 +122,9 @@ public class RequirementFinder {
 
     }
 
-    public Set<RRGParseItem> findCombineSisLeftSisters(RRGParseItem rightSister,
-                                                       RRGParseChart chart) {
-        Set<RRGParseItem> candidates = new HashSet<RRGParseItem>();
+    public List<RRGParseItem> findCombineSisLeftSisters(RRGParseItem rightSister,
+                                                        RRGParseChart chart) {
+        List<RRGParseItem> candidates = Collections.emptyList();
         // case 2: current item is the right node of the combination
         RRGNode leftSis = rightSister.getTree()
                 .findNode(rightSister.getNode().getGornaddress().leftSister());
@@ -133,7 +138,7 @@ public class RequirementFinder {
         if (rightReq) {
             // hier liegt der Hund begraben: Die Gaps werden falsch modelliert
             RRGParseItem model = new RRGParseItem.Builder()
-                    .tree(rightSister.getTree().getInstance()).node(leftSis.copyNode())
+                    .tree(rightSister.getTree()).node(leftSis)
                     .nodepos(NodePos.TOP).end(rightSister.startPos()).ws(false)
                     .build();
             // System.out.println("right req met for: " + currentItem);
@@ -196,7 +201,7 @@ public class RequirementFinder {
         RRGParseItem model = new RRGParseItem.Builder().nodepos(NodePos.TOP)
                 .start(sisAdjRoot.getEnd()).ws(false).build();
         // find all items matching the template in the chart
-        Set<RRGParseItem> candidates = chart.findUnderspecifiedItem(model,
+        List<RRGParseItem> candidates = chart.findUnderspecifiedItem(model,
                 false);
         // System.out.println("sisadj currentItem: " + currentItem);
         // System.out.println("model: " + model);
@@ -227,7 +232,7 @@ public class RequirementFinder {
         // false);
         RRGParseItem model = new RRGParseItem.Builder().nodepos(NodePos.TOP)
                 .end(sisadjroot.startPos()).ws(false).build();
-        Set<RRGParseItem> candidates = chart.findUnderspecifiedItem(model,
+        List<RRGParseItem> candidates = chart.findUnderspecifiedItem(model,
                 false);
         return filterByMother(sisadjroot, candidates);
     }
@@ -240,7 +245,7 @@ public class RequirementFinder {
      * the (sister adjunction) root item sisadjroot.
      */
     private Set<RRGParseItem> filterByMother(RRGParseItem sisadjroot,
-                                             Set<RRGParseItem> targetCandidates) {
+                                             List<RRGParseItem> targetCandidates) {
         Set<RRGParseItem> filteredCandidates = new HashSet<RRGParseItem>();
         for (RRGParseItem candidate : targetCandidates) {
             if (suitableMother(sisadjroot, candidate))
@@ -263,15 +268,8 @@ public class RequirementFinder {
         RRGNode targetMother = target.getTree()
                 .findNode(target.getNode().getGornaddress().mother());
         if (targetMother != null) {
-            targetMother = targetMother.copyNode();
-            boolean nodeUnificationPossible = true;
-            try {
-                RRGTreeTools.unifyNodes(root.getNode().copyNode(), targetMother,
-                        new Environment(5));
-            } catch (UnifyException e) {
-                nodeUnificationPossible = false;
-            }
-            return nodeUnificationPossible;
+            return RRGTreeTools.unifiableNodes(root.getNode().copyNode(),
+                    targetMother.copyNode(), checkEnv);
         }
         return false;
 
@@ -301,7 +299,7 @@ public class RequirementFinder {
             RRGParseItem leftAdjModel = new RRGParseItem.Builder()
                     .nodepos(NodePos.TOP).end(currentItem.startPos()).ws(false)
                     .build();
-            Set<RRGParseItem> leftAdj = chart
+            List<RRGParseItem> leftAdj = chart
                     .findUnderspecifiedItem(leftAdjModel, false);
 
             for (RRGParseItem item : leftAdj) {
@@ -320,7 +318,7 @@ public class RequirementFinder {
         RRGParseItem rightAdjModel = new RRGParseItem.Builder()
                 .nodepos(NodePos.TOP).start(currentItem.getEnd()).ws(false)
                 .build();
-        Set<RRGParseItem> rightAdj = chart.findUnderspecifiedItem(rightAdjModel,
+        List<RRGParseItem> rightAdj = chart.findUnderspecifiedItem(rightAdjModel,
                 false);
         for (RRGParseItem item : rightAdj) {
             // if the item is really a sisadjrot (specification for the
@@ -439,21 +437,18 @@ public class RequirementFinder {
          */
         RRGParseItem model = new RRGParseItem.Builder().nodepos(NodePos.BOT)
                 .start(gap.start).end(gap.end).ws(true).build();
-        Set<RRGParseItem> candidates = chart.findUnderspecifiedItem(model,
+        List<RRGParseItem> candidates = chart.findUnderspecifiedItem(model,
                 false);
         Set<RRGParseItem> candidatesWithFittingCats = new HashSet<RRGParseItem>();
         for (RRGParseItem item : candidates) {
             boolean gapHasRightLabel = item.getNode().getCategory()
                     .equals(gap.nonterminal);
-            boolean targetRootSuitsDMother = true;
-            try {
-                RRGTreeTools.unifyNodes(targetRootItem.getNode().copyNode(),
-                        item.getTree().findNode(
-                                item.getNode().getGornaddress().mother()).copyNode(),
-                        new Environment(5));
-            } catch (UnifyException e) {
-                targetRootSuitsDMother = false;
-            }
+            boolean targetRootSuitsDMother = RRGTreeTools.unifiableNodes(
+                    targetRootItem.getNode().copyNode(),
+                    item.getTree().findNode(
+                            item.getNode().getGornaddress().mother())
+                            .copyNode(),
+                    checkEnv);
             if (gapHasRightLabel && targetRootSuitsDMother) {
                 // && targetRootItem.getNode().getCategory()
                 // .equals(item.getTree()
@@ -476,8 +471,8 @@ public class RequirementFinder {
      * @param chart
      * @return
      */
-    public Set<RRGParseItem> findCompleteWrappingRoots(RRGParseItem fillerItem,
-                                                       RRGParseChart chart) {
+    public List<RRGParseItem> findCompleteWrappingRoots(RRGParseItem fillerItem,
+                                                        RRGParseChart chart) {
         Gap modelgap = new Gap(fillerItem.startPos(), fillerItem.getEnd(),
                 fillerItem.getNode().getCategory());
         Set<Gap> modelgaps = new HashSet<Gap>();
@@ -1,12 +1,10 @@
 package de.duesseldorf.rrg.test;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.stream.StreamResult;
-
 import de.duesseldorf.frames.Situation;
 import de.duesseldorf.rrg.RRG;
 import de.duesseldorf.rrg.RRGParseResult;
@@ -14,6 +12,7 @@ import de.duesseldorf.rrg.RRGParseTree;
 import de.duesseldorf.rrg.io.BracketedRRGFromStringsReader;
 import de.duesseldorf.rrg.io.RRGXMLBuilder;
 import de.duesseldorf.rrg.parser.RRGParser;
+import de.tuebingen.util.XMLStreamOutput;
 
 public class RRGFsTests {
 
@@ -88,13 +87,13 @@ public class RRGFsTests {
             for (RRGParseTree parseTree : parseResult.getSuccessfulParses()) {
                 System.out.println(parseTree);
             }
-            StreamResult resultStream = new StreamResult(
-                    "testout_" + i + ".xml");
             try {
+                XMLStreamOutput out = new XMLStreamOutput(
+                        "testout_" + i + ".xml");
                 RRGXMLBuilder rrgXMLBuilder = new RRGXMLBuilder(parseResult, false);
-                rrgXMLBuilder.build();
-                rrgXMLBuilder.write(resultStream);
-            } catch (ParserConfigurationException e) {
+                rrgXMLBuilder.write(out);
+                out.close();
+            } catch (IOException e) {
                 // TODO Auto-generated catch block
                 e.printStackTrace();
             }
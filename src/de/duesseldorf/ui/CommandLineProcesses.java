@@ -113,6 +113,19 @@ public class CommandLineProcesses {
         // we declare the OPTIONAL t option (tagger to use)
         op.add(CommandLineOptions.Prefix.DASH, "t",
                 CommandLineOptions.Separator.BLANK, true);
+        // we declare the OPTIONAL tpersist option (keep the tagger running)
+        op.add(CommandLineOptions.Prefix.DASH, "tpersist",
+                CommandLineOptions.Separator.BLANK, false);
+        // we declare the OPTIONAL ttimeout option (seconds to wait for the
+        // persistent tagger)
+        op.add(CommandLineOptions.Prefix.DASH, "ttimeout",
+                CommandLineOptions.Separator.BLANK, true);
+        // we declare the OPTIONAL image option (compiled grammar image)
+        op.add(CommandLineOptions.Prefix.DASH, "image",
+                CommandLineOptions.Separator.BLANK, true);
+        // we declare the OPTIONAL imagecache option (memory for the image)
+        op.add(CommandLineOptions.Prefix.DASH, "imagecache",
+                CommandLineOptions.Separator.BLANK, true);
         // we declare the OPTIONAL e option (export RCG)
         op.add(CommandLineOptions.Prefix.DASH, "e",
                 CommandLineOptions.Separator.BLANK, true);
@@ -152,6 +165,10 @@ public class CommandLineProcesses {
         // disambiguation)
         op.add(CommandLineOptions.Prefix.DASH, "tag",
                 CommandLineOptions.Separator.BLANK, false);
+        // we declare the OPTIONAL prunefeatures option (features unified in
+        // the chart of the CYK TAG parser)
+        op.add(CommandLineOptions.Prefix.DASH, "prunefeatures",
+                CommandLineOptions.Separator.BLANK, true);
         // we declare the OPTIONAL nofiltering option (no "simple" lexical
         // disambiguation)
         op.add(CommandLineOptions.Prefix.DASH, "nofiltering",
@@ -181,6 +198,19 @@ public class CommandLineProcesses {
         // non-default port for the UGI
         op.add(CommandLineOptions.Prefix.DASH, "port",
                 CommandLineOptions.Separator.BLANK, true);
+        // parse server mode, on the given port
+        op.add(CommandLineOptions.Prefix.DASH, "server",
+                CommandLineOptions.Separator.BLANK, true);
+        // RRG batch mode: number of sentences parsed in parallel, TAG: number
+        // of derivation trees derived in parallel
+        op.add(CommandLineOptions.Prefix.DASH, "threads",
+                CommandLineOptions.Separator.BLANK, true);
+        // RRG batch mode: maximal parsing time per sentence in seconds
+        op.add(CommandLineOptions.Prefix.DASH, "timeout",
+                CommandLineOptions.Separator.BLANK, true);
+        // RRG: keep the parses in a packed forest, unpack only the first N
+        op.add(CommandLineOptions.Prefix.DASH, "forest",
+                CommandLineOptions.Separator.BLANK, true);
         // we compile the patterns for parsing the command line
         op.prepare();
         // we concatenate the command line
@@ -238,7 +268,9 @@ public class CommandLineProcesses {
         res += "where MODE is one of:\n\t";
         res += "-i      (interactive mode, loop waiting for the next sentence to parse)\n\t";
         res += "-b      (batch processing, takes a corpus as input, and creates one XML file per sentence)\n\t";
-        res += "-s \"sentence\" (single parse mode)\n\n\t";
+        res += "-s \"sentence\" (single parse mode)\n\t";
+        res += "-server PORT (keep the grammar loaded and parse the sentences sent to http://localhost:PORT/parse,\n\t";
+        res += "         use -threads and -timeout to control the concurrent RRG parses)\n\n\t";
         res += "NB: default mode is graphical interface \n\n";
 
         res += "where OPTIONS are:\n\t";
@@ -254,8 +286,15 @@ public class CommandLineProcesses {
         res += "-omitPrint     omits most prints to stdout during RRG parsing (useful for parsing corpora) \n\t";
         res += "-no-gui        in RRGMode, do not use the in-browser GUI to display the parse result \n\t";
         res += "-port          provide a port number if the RRG parse result display should be opened on a port other than the default port (default is 1612)\n\t";
+        res += "-threads N     in RRGMode with -b, parse N sentences in parallel, otherwise derive N derivation trees"
+                + "\n\t\t\tof a sentence in parallel (default: number of processors)\n\t";
+        res += "-timeout S     in RRGMode with -b, give up parsing a sentence after S seconds\n\t";
+        res += "-forest N      in RRGMode, do not extract all parse trees but keep them in a packed forest. Only the first N trees are unpacked,"
+                + "\n\t\t\tand -xg writes the packed forest instead of the trees.\n\t";
         res += "-cyktag      use CYK parser for TAG, default parsing algorithm\n\t";
         res += "-tag2rcg     (use TAG to RCG conversion)\n\t";
+        res += "-prunefeatures f1,f2,... (with -cyktag, unify these top and bottom features during substitution\n\t"
+                + "         and adjunction, to never build the analyses on which they clash, e.g. num,mode,case)\n\t";
         res += "-nofiltering cancels polarity filtering\n\t";
         res += "-r      (rcg parser, default is TAG/TT-MCTAG)\n\t";
         res += "-k N    (limits the size of the list of pending arguments to N)\n\t";
@@ -277,6 +316,15 @@ public class CommandLineProcesses {
         res += "-l <path to the XML lemmas>\n\t";
         res += "-m <path to the XML morphs>\n\t";
         res += "-a <axiom> \n\t";
+        res += "-image <path to a compiled image of the grammar and lexicons, which is used instead of the XML files \n\t";
+        res += "         if it was built from the same files, and (re)built otherwise>\n\t";
+        res += "-imagecache <MB of the image kept decoded in memory, the trees least recently used \n\t";
+        res += "         are decoded again when needed (default: no limit)>\n\t";
+        res += "-t <path to an external POS tagger>\n\t";
+        res += "-tpersist (keep the tagger running and send it one sentence per line, \n\t";
+        res += "         it must answer every sentence with its tags followed by an empty line)\n\t";
+        res += "-ttimeout <seconds to wait for the answer of the persistent tagger, after which it is \n\t";
+        res += "         killed and started again for the next sentence (default: 60)>\n\t";
 
         res += "for output: (default is graphical output)\n\t";
         res += "-o <path to the output XML file>\n\n";
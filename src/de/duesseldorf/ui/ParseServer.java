@@ -0,0 +1,442 @@
+/*
+ *  File ParseServer.java
+ *
+ *  This file is part of the TuLiPA-frames system
+ *     https://github.com/spetitjean/TuLiPA-frames
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.duesseldorf.ui;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import de.duesseldorf.frames.Situation;
+import de.duesseldorf.rrg.RRG;
+import de.duesseldorf.rrg.RRGParseResult;
+import de.duesseldorf.rrg.RRGTree;
+import de.duesseldorf.rrg.anchoring.RRGAnchorMan;
+import de.duesseldorf.rrg.io.RRGXMLBuilder;
+import de.duesseldorf.rrg.parser.RRGParser;
+import de.tuebingen.tag.TTMCTAG;
+import de.tuebingen.tree.Grammar;
+import de.tuebingen.ui.CommandLineOptions;
+import de.tuebingen.util.XMLStreamOutput;
+
+/**
+ * A headless server that keeps the grammar (with its lexicons and type
+ * hierarchy) loaded, and parses the sentences it receives over HTTP on
+ * localhost (option -server PORT).
+ * <p>
+ * Requests: {@code POST /parse} with the sentence as (UTF-8) body, or
+ * {@code GET /parse?sentence=...}. The result is the XML the parser writes
+ * with the options given on the command line (-x or -xg), or, with
+ * {@code format=json}, a JSON object with the fields sentence, success,
+ * time (in seconds) and xml. The TAG and RCG parsers do not write any XML
+ * when there is no parse. {@code GET /status} gives the number of requests
+ * handled so far.
+ * <p>
+ * RRG sentences are parsed concurrently on -threads workers. The TAG and
+ * RCG parsers build their XML output in static documents, so these
+ * sentences are parsed one after the other. A request that is not done
+ * after -timeout seconds (counted from its arrival) is answered with 504.
+ * RRG parsing stops then, but the TAG and RCG parsers can not be
+ * interrupted: until such a parse is over, further TAG and RCG requests
+ * are answered with 503 (and {@code /status} reports busy) instead of
+ * waiting for it.
+ */
+public class ParseServer {
+
+    private final CommandLineOptions op;
+    private final Grammar grammar;
+    private final Situation situation;
+    private final int port;
+    private final long timeoutMillis;
+    private final ExecutorService workers;
+    // the TAG and RCG parsers are not re-entrant
+    private final ReentrantLock sequentialParserLock = new ReentrantLock();
+    // the number of parses that timed out but still hold the lock, at most 1
+    private final AtomicInteger abandonedParses = new AtomicInteger();
+    // the states of a TAG or RCG parse, see parse(String, AtomicInteger). A
+    // request only changes them with compareAndSet, so that the request and
+    // the worker agree on who gave up first
+    private static final int WAITING = 0;
+    private static final int RUNNING = 1;
+    private static final int ABANDONED = 2;
+    private static final int DONE = 3;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private final AtomicInteger parsed = new AtomicInteger();
+    private final AtomicInteger timeouts = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private HttpServer server;
+
+    public ParseServer(CommandLineOptions op, Grammar grammar) {
+        this.op = op;
+        this.grammar = grammar;
+        this.situation = Situation.current();
+        this.port = Integer.parseInt(op.getVal("server"));
+        int threads = op.check("threads")
+                ? Integer.parseInt(op.getVal("threads"))
+                : Runtime.getRuntime().availableProcessors();
+        this.timeoutMillis = op.check("timeout")
+                ? TimeUnit.SECONDS.toMillis(Long.parseLong(op.getVal("timeout")))
+                : TimeUnit.MINUTES.toMillis(500);
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads));
+    }
+
+    /**
+     * Start the server, and wait until it is stopped.
+     */
+    public void run() throws IOException, InterruptedException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/parse", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                handleParse(exchange);
+            }
+        });
+        server.createContext("/status", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String status = "{\"parsed\": " + parsed + ", \"timeouts\": "
+                        + timeouts + ", \"failures\": " + failures
+                        + ", \"busy\": " + busy() + "}";
+                send(exchange, 200, "application/json", status);
+            }
+        });
+        // the handlers only wait for the workers
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                ParseServer.this.stop();
+            }
+        });
+        System.err.println("Parse server listening on http://localhost:" + port
+                + "/parse");
+        stopped.await();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        workers.shutdownNow();
+        stopped.countDown();
+    }
+
+    private void handleParse(HttpExchange exchange) throws IOException {
+        Map<String, String> params = queryParameters(exchange);
+        String sentence;
+        if (exchange.getRequestMethod().equals("POST")) {
+            sentence = new String(readAll(exchange.getRequestBody()),
+                    StandardCharsets.UTF_8);
+        } else if (exchange.getRequestMethod().equals("GET")) {
+            sentence = params.get("sentence");
+        } else {
+            send(exchange, 405, "text/plain", "Use GET or POST.");
+            return;
+        }
+        if (sentence == null || sentence.trim().equals("")) {
+            send(exchange, 400, "text/plain", "No sentence given.");
+            return;
+        }
+        if (busy()) {
+            send(exchange, 503, "text/plain",
+                    "Server busy: a parse that timed out is still running.");
+            return;
+        }
+        final String s = sentence.trim();
+        boolean json = "json".equals(params.get("format"));
+        long start = System.nanoTime();
+        AtomicInteger state = new AtomicInteger(WAITING);
+        Future<ParseOutput> future = workers.submit(() -> parse(s, state));
+        ParseOutput output;
+        try {
+            output = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            if (state.compareAndSet(RUNNING, ABANDONED)) {
+                abandonedParses.incrementAndGet();
+            } else {
+                // not started yet (it gives up its turn), or already done
+                state.compareAndSet(WAITING, DONE);
+            }
+            timeouts.incrementAndGet();
+            System.err.println("parsing timed out: " + s);
+            send(exchange, 504, "text/plain", "Parsing timed out.");
+            return;
+        } catch (ExecutionException e) {
+            failures.incrementAndGet();
+            System.err.println("parsing failed due to exception: "
+                    + e.getCause() + " in sentence: " + s);
+            e.getCause().printStackTrace();
+            send(exchange, 500, "text/plain",
+                    "Parsing failed: " + e.getCause());
+            return;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            send(exchange, 503, "text/plain", "Server stopping.");
+            return;
+        }
+        parsed.incrementAndGet();
+        double time = (System.nanoTime() - start) / Math.pow(10, 9);
+        try {
+            if (json) {
+                ByteArrayOutputStream xml = new ByteArrayOutputStream();
+                output.writeXML(xml);
+                String res = "{\"sentence\": " + jsonString(s)
+                        + ", \"success\": " + output.success + ", \"time\": "
+                        + time + ", \"xml\": "
+                        + jsonString(xml.toString(output.encoding.name()))
+                        + "}";
+                send(exchange, 200, "application/json", res);
+            } else {
+                // the XML is streamed as it is written
+                exchange.getResponseHeaders().set("Content-Type",
+                        "application/xml");
+                exchange.getResponseHeaders().set("X-Parse-Success",
+                        String.valueOf(output.success));
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream body = exchange.getResponseBody();
+                output.writeXML(body);
+                body.close();
+            }
+        } finally {
+            output.dispose();
+        }
+    }
+
+    /**
+     * @return true iff TAG and RCG requests are refused because a parse that
+     * timed out still holds the sequential parser
+     */
+    private boolean busy() {
+        return !(grammar instanceof RRG) && abandonedParses.get() > 0;
+    }
+
+    /**
+     * parse the sentence in a worker thread
+     *
+     * @param state WAITING until the parse holds the sequential parser, then
+     *              RUNNING, or ABANDONED once the request has timed out, and
+     *              DONE at the end
+     */
+    private ParseOutput parse(String sentence, AtomicInteger state)
+            throws Exception {
+        Situation previous = Situation.bind(situation);
+        try {
+            if (grammar instanceof RRG) {
+                return parseRRG(sentence);
+            }
+            // a request that times out while waiting gives up its turn
+            sequentialParserLock.lockInterruptibly();
+            try {
+                if (!state.compareAndSet(WAITING, RUNNING)) {
+                    // the request timed out before the lock was free
+                    throw new CancellationException(
+                            "parsing timed out: " + sentence);
+                }
+                // the parse is written to a temporary file given as -o
+                File out = File.createTempFile("tulipa-parse", ".xml");
+                CommandLineOptions reqOp = new CommandLineOptions();
+                reqOp.merge(op);
+                reqOp.removeVal("s");
+                reqOp.setOurVal("o", out.getAbsolutePath());
+                if (!reqOp.check("xg")) {
+                    reqOp.setVal("x", "");
+                }
+                try {
+                    boolean success;
+                    if (grammar instanceof TTMCTAG) {
+                        if (!reqOp.check("cyktag") && !reqOp.check("tag2rcg")) {
+                            reqOp.setVal("cyktag", "");
+                        }
+                        success = ParsingInterface.parseTAG(reqOp,
+                                (TTMCTAG) Situation.getGrammar(), sentence);
+                    } else {
+                        success = ParsingInterface.parseNonTAG(reqOp, grammar,
+                                sentence);
+                    }
+                    return new FileOutput(success, out);
+                } catch (Exception e) {
+                    out.delete();
+                    throw e;
+                }
+            } finally {
+                if (state.getAndSet(DONE) == ABANDONED) {
+                    abandonedParses.decrementAndGet();
+                }
+                sequentialParserLock.unlock();
+            }
+        } finally {
+            Situation.bind(previous);
+        }
+    }
+
+    private ParseOutput parseRRG(String sentence) throws Exception {
+        List<String> toksentence = Arrays.asList(sentence.split("\\s+"));
+        Set<RRGTree> treesInvolvedInParsing = new RRGAnchorMan(situation,
+                toksentence).anchor();
+        RRGParser parser = new RRGParser(situation, op.getVal("a"),
+                treesInvolvedInParsing);
+        RRGParseResult result = parser.parseSentence(toksentence);
+        RRGXMLBuilder builder = new RRGXMLBuilder(result,
+                op.check("edgemismatch"));
+        return new ParseOutput(!result.getSuccessfulParses().isEmpty(),
+                StandardCharsets.UTF_8) {
+            void writeXML(OutputStream out) throws IOException {
+                builder.write(new XMLStreamOutput(out));
+            }
+        };
+    }
+
+    /**
+     * a parse result, written in the handler thread
+     */
+    private static abstract class ParseOutput {
+        final boolean success;
+        final Charset encoding;
+
+        ParseOutput(boolean success, Charset encoding) {
+            this.success = success;
+            this.encoding = encoding;
+        }
+
+        abstract void writeXML(OutputStream out) throws IOException;
+
+        void dispose() {
+        }
+    }
+
+    private static class FileOutput extends ParseOutput {
+        private final File file;
+
+        // the XML files are written in UTF-8 (see XMLStreamOutput and
+        // XMLUtilities.writeXML)
+        FileOutput(boolean success, File file) {
+            super(success, StandardCharsets.UTF_8);
+            this.file = file;
+        }
+
+        void writeXML(OutputStream out) throws IOException {
+            if (file.length() > 0) {
+                Files.copy(file.toPath(), out);
+            }
+        }
+
+        void dispose() {
+            file.delete();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int code,
+                             String contentType, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                contentType + "; charset=UTF-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        OutputStream body = exchange.getResponseBody();
+        body.write(bytes);
+        body.close();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream res = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            res.write(buf, 0, n);
+        }
+        in.close();
+        return res.toByteArray();
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange)
+            throws UnsupportedEncodingException {
+        Map<String, String> res = new HashMap<String, String>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int eq = param.indexOf('=');
+                if (eq > 0) {
+                    res.put(URLDecoder.decode(param.substring(0, eq), "UTF-8"),
+                            URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+                }
+            }
+        }
+        return res;
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
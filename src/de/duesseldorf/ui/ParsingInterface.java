@@ -39,6 +39,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -53,9 +55,6 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.stream.StreamResult;
-
 import de.duesseldorf.ui.webgui.RRGLocalWebGUI;
 import org.w3c.dom.Document;
 
@@ -69,26 +68,28 @@ import de.duesseldorf.rrg.RRGTools;
 import de.duesseldorf.rrg.RRGTree;
 import de.duesseldorf.rrg.RRGTreeTools;
 import de.duesseldorf.rrg.anchoring.RRGAnchorMan;
+import de.duesseldorf.rrg.extractor.RRGParseForest;
 import de.duesseldorf.rrg.io.RRGXMLBuilder;
+import de.duesseldorf.rrg.parser.RRGBatchParser;
 import de.duesseldorf.rrg.parser.RRGParser;
-import de.tuebingen.anchoring.NameFactory;
 import de.tuebingen.anchoring.TreeSelector;
 import de.tuebingen.converter.GrammarConvertor;
+import de.tuebingen.derive.DerivationTree;
 import de.tuebingen.disambiguate.ComputeSubGrammar;
 import de.tuebingen.disambiguate.PolarityAutomaton;
 import de.tuebingen.disambiguate.PolarizedToken;
-import de.tuebingen.expander.DOMderivationBuilder;
-import de.tuebingen.forest.ProduceDOM;
+import de.tuebingen.expander.DerivationXMLWriter;
+import de.tuebingen.expander.ForestExpander;
 import de.tuebingen.forest.Rule;
 import de.tuebingen.forest.Tidentifier;
 import de.tuebingen.gui.DerivedTreeViewer;
-import de.tuebingen.gui.ParseTreeCollection;
 import de.tuebingen.parser.ForestExtractor;
 import de.tuebingen.parser.ForestExtractorFactory;
 import de.tuebingen.parser.RCGParser;
 import de.tuebingen.parser.RCGParserBoullier2;
 import de.tuebingen.parser.simple.SimpleRCGParserEarley;
 import de.tuebingen.parserconstraints.RCGParserConstraintEarley;
+import de.tuebingen.rcg.Clause;
 import de.tuebingen.rcg.RCG;
 import de.tuebingen.rcg.RCGDOMbuilder;
 import de.tuebingen.rcg.RCGparseOutput;
@@ -103,7 +104,7 @@ import de.tuebingen.tokenizer.TokenizerException;
 import de.tuebingen.tokenizer.Word;
 import de.tuebingen.tree.Grammar;
 import de.tuebingen.ui.CommandLineOptions;
-import de.tuebingen.util.CollectionUtilities;
+import de.tuebingen.util.XMLStreamOutput;
 import de.tuebingen.util.XMLUtilities;
 import de.tuebingen.tag.Environment;
 
@@ -126,7 +127,8 @@ public class ParsingInterface {
         boolean verbose = op.check("v");
         boolean noUtool = op.check("n");
         boolean needsAnchoring = Situation.getGrammar().needsAnchoring();
-        Document fdoc = null;
+        // the derivations of the forest
+        List<DerivationTree> derivations = null;
 
         String outputfile = "";
         if (op.check("o")) {
@@ -152,10 +154,7 @@ public class ParsingInterface {
 
         List<String> toksentence = Tokenizer.tok2string(tokens);
         /* ******** external POS tagging ************/
-        ExternalTagger tagger = new ExternalTagger();
-        File taggerExec = op.check("t") ? new File(op.getVal("t")) : null;
-        tagger.setExec(taggerExec);
-        tagger.setParams("");
+        ExternalTagger tagger = loadTagger(op);
         try {
             tagger.doTagging(tokens);
         } catch (TaggerException e) {
@@ -172,7 +171,10 @@ public class ParsingInterface {
         // cleantokens = clean_tokens(tokens);
         // }
         TreeSelector ts = new TreeSelector(cleantokens, verbose);
-        List<List<Tuple>> subgrammars = null;
+        // the valid tuple sets, i.e. the sub-grammars, are only computed
+        // when they are converted
+        PolarityAutomaton pa = null;
+        Map<String, List<String>> tupleHash = null;
 
         if (needsAnchoring) {
             long ancTime = System.nanoTime();
@@ -211,26 +213,23 @@ public class ParsingInterface {
                     }
                 }
                 System.err.println("########Starting Polarity Automaton ");
-                PolarityAutomaton pa = new PolarityAutomaton(toksentence, lptk,
+                pa = new PolarityAutomaton(toksentence, lptk,
                         axiom, verbose, ts.getLexNodes(), ts.getCoancNodes());
+                tupleHash = ts.getTupleHash();
                 System.err.println("########Done Polarity Automaton ");
-                List<List<String>> tupleSets = pa.getPossibleTupleSets();
-                System.err.println("########Got possible tuple sets ");
-                subgrammars = ComputeSubGrammar.computeSubGrammar(verbose,
-                        tupleSets, ts.getTupleHash(), ts.getTreeHash());
-                System.err.println("########Computed sub grammar ");
+                System.err.println("########Valid tuple sets: "
+                        + pa.countPossibleTupleSets());
 
                 System.err.println(
                         "\t@@##Tree combinations before classical polarity filtering   : "
                                 + ts.getambig());
                 System.err.println(
                         "\t@@##Tree combinations after classical polarity filtering   : "
-                                + CollectionUtilities.computeAmbig(tupleSets,
-                                toksentence)
-                                + "\n");
+                                + pa.computeAmbig() + "\n");
 
                 if (verbose) {
-                    System.err.println("Valid tuple sets:\n" + tupleSets);
+                    System.err.println(
+                            "Valid tuple sets:\n" + pa.getPossibleTupleSets());
                     // System.err.println("\nCorresponding sub-grammars:\n" +
                     // subgrammars);
                 }
@@ -262,19 +261,27 @@ public class ParsingInterface {
 
             RCG rcggrammar = null;
             long startTime = System.nanoTime();
-            if (subgrammars != null) { // i.e. we used lexical disambiguation
+            if (pa != null) { // i.e. we used lexical disambiguation
                 // if (false) { // i.e. we used lexical disambiguation
-                // System.out.println("Doing subgrammars: " + subgrammars);
+                // the sub-grammars are converted one after the other into
+                // the same RCG, clauses of trees shared between sub-grammars
+                // are only built once
                 rcggrammar = new RCG();
-                for (int sI = 0; sI < subgrammars.size(); sI++) {
-                    List<Tuple> ltuples = subgrammars.get(sI);
+                Map<Object, List<Clause>> treeClauses = new HashMap<Object, List<Clause>>();
+                Iterator<List<String>> tupleSets = pa.possibleTupleSets();
+                for (int sI = 0; tupleSets.hasNext(); sI++) {
+                    if (verbose)
+                        System.err.println("\n*****\nSelecting sub-grammar "
+                                + sI + " ...");
+                    List<Tuple> ltuples = ComputeSubGrammar.computeTupleSubGrammar(
+                            verbose, tupleSets.next(), tupleHash, grammarDict);
                     // System.err.println("Converting sub-grammar " + sI +
                     // "...");
                     GrammarConvertor gc = new GrammarConvertor(ltuples, verbose,
                             toksentence, grammarDict, !needsAnchoring, k_limit,
                             limit);
+                    gc.convertInto(rcggrammar, treeClauses);
                     gc.buildAllClauses(axiom);
-                    rcggrammar.addGrammar(gc.getRcggrammar(), grammarDict);
                     // OptimizedGrammarConverter ogc = new
                     // OptimizedGrammarConverter(anchoredTuples, verbose,
                     // toksentence, grammarDict, !needsAnchoring);
@@ -402,9 +409,8 @@ public class ParsingInterface {
 
                 if (verbose)
                     System.err.println("**" + extractor.printForest());
-                fdoc = ProduceDOM.buildDOMForest(extractor.getForest(),
-                        extractor.getStart(), tok.getSentence(), op.getVal("g"),
-                        new NameFactory(), null);
+                derivations = ForestExpander.extractDerivationTrees(
+                        extractor.getForest(), extractor.getStart());
                 // DerivedTreeViewer.displayTreesfromDOM(sentence, fdoc,
                 // grammarDict, true, op.check("w"), op.check("w"),
                 // needsAnchoring,
@@ -480,6 +486,10 @@ public class ParsingInterface {
             long parseTime = System.nanoTime();
             // TAGParser parser = new TAGParser(grammarDict);
             SlimTAGParser parser = new SlimTAGParser(grammarDict);
+            if (op.check("prunefeatures")) {
+                parser.setPruningFeatures(Arrays
+                        .asList(op.getVal("prunefeatures").split(",")));
+            }
             Map<Tidentifier, List<Rule>> forest_rules = new HashMap<Tidentifier, List<Rule>>();
             List<Tidentifier> forest_roots = parser.parse(tokens, forest_rules,
                     axiom);
@@ -615,9 +625,8 @@ public class ParsingInterface {
             res = (forest_roots.size() > 0);
             if (res) {
                 // visualize parses
-                fdoc = ProduceDOM.buildDOMForest(forest_rules, forest_roots,
-                        tok.getSentence(), op.getVal("g"), new NameFactory(),
-                        null);
+                derivations = ForestExpander
+                        .extractDerivationTrees(forest_rules, forest_roots);
 
                 // DEBUG(by TS)
                 // XMLUtilities.writeXML(fdoc,"fdoc.xml","tulipa-forest3.dtd,xml",
@@ -638,6 +647,10 @@ public class ParsingInterface {
             System.err.println("Select a parsing mode");
         }
         if (res) {
+            // the derivation trees are derived in parallel
+            int derivationThreads = op.check("threads")
+                    ? Integer.parseInt(op.getVal("threads"))
+                    : Runtime.getRuntime().availableProcessors();
             // ArrayList<ParseTreeCollection> viewTreesFromD = DerivedTreeViewer
             // .getViewTreesFromDOM(fdoc, sit, grammarDict, false, false,
             // false, needsAnchoring, slabels, noUtool);
@@ -645,23 +658,24 @@ public class ParsingInterface {
                 // derivations!
                 long xmlTime = System.nanoTime();
 
-                ArrayList<ParseTreeCollection> viewTreesFromDOM = DerivedTreeViewer
-                        .getViewTreesFromDOM(fdoc, grammarDict, false, false,
-                                false, needsAnchoring, slabels, noUtool);
-                if (op.check("x")) {
-                    DOMderivationBuilder standardDerivationBuilder = new DOMderivationBuilder(
-                            sentence);
-                    Document dparses = standardDerivationBuilder
-                            .buildDOMderivation(viewTreesFromDOM);
-                    XMLUtilities.writeXML(dparses, outputfile,
-                            "tulipa-parses.dtd,xml", true);
-                } else if (op.check("xg")) {
-                    DOMderivationBuilder webguiDerivationBuilder = new DOMderivationBuilder(
-                            sentence);
-                    Document dwebguiparses = webguiDerivationBuilder
-                            .buildDOMderivationGrammar(viewTreesFromDOM);
-                    XMLUtilities.writeXML(dwebguiparses, outputfile,
-                            "tulipa-parses.dtd,xml", true);
+                // each parse is written (and flushed) as soon as it is
+                // derived
+                try {
+                    XMLStreamOutput out = new XMLStreamOutput(outputfile);
+                    try {
+                        DerivationXMLWriter writer = new DerivationXMLWriter(
+                                out, sentence, op.check("xg"));
+                        writer.startDocument();
+                        DerivedTreeViewer.streamViewTrees(derivations,
+                                grammarDict, false, false, false,
+                                needsAnchoring, slabels, noUtool,
+                                derivationThreads, writer::write);
+                        writer.endDocument();
+                    } finally {
+                        out.close();
+                    }
+                } catch (IOException e) {
+                    System.err.println("   " + e.getMessage());
                 }
                 long estXMLTime = System.nanoTime();
                 System.err.println(
@@ -673,9 +687,9 @@ public class ParsingInterface {
                 totalTime += estXMLTime;
             } else { // graphical output (default)
                 long estDTime = System.nanoTime();
-                DerivedTreeViewer.displayTreesfromDOM(sentence, fdoc,
+                DerivedTreeViewer.displayTrees(sentence, derivations,
                         grammarDict, true, op.check("w"), op.check("w"),
-                        needsAnchoring, slabels, noUtool);
+                        needsAnchoring, slabels, noUtool, derivationThreads);
                 // XMLUtilities.writeXML(fdoc, "stdout",
                 // "tulipa-forest3.dtd,xml",
                 // true);
@@ -724,6 +738,43 @@ public class ParsingInterface {
     }
     // END_BY_TS
 
+    private static ExternalTagger loadTagger(CommandLineOptions op) {
+        ExternalTagger tagger = new ExternalTagger();
+        File taggerExec = op.check("t") ? new File(op.getVal("t")) : null;
+        tagger.setExec(taggerExec);
+        tagger.setParams("");
+        tagger.setPersistent(op.check("tpersist"));
+        if (op.check("ttimeout")) {
+            tagger.setTimeout(TimeUnit.SECONDS
+                    .toMillis(Long.parseLong(op.getVal("ttimeout"))));
+        }
+        return tagger;
+    }
+
+    /**
+     * With a persistent tagger (option -tpersist), tokenize the sentences and
+     * send them to the tagger in one round trip, before they are parsed with
+     * {@link #parseTAG(CommandLineOptions, TTMCTAG, String)}.
+     */
+    public static void pretag(CommandLineOptions op,
+                              Collection<String> sentences) {
+        if (!op.check("t") || !op.check("tpersist")) {
+            return;
+        }
+        try {
+            Tokenizer tok = WorkbenchLoader.loadTokenizer(op);
+            List<List<String>> toksentences = new ArrayList<List<String>>();
+            for (String sentence : sentences) {
+                toksentences.add(Tokenizer.tok2string(tok.tokenize(sentence)));
+            }
+            loadTagger(op).prefetch(toksentences);
+        } catch (Exception e) {
+            // the sentences are tagged again when they are parsed
+            System.err.println(" ********** Tagging Exception *********");
+            System.err.println(e.toString());
+        }
+    }
+
     public static List<Word> clean_tokens(List<Word> tokens) {
         List<Word> clean = new LinkedList<Word>();
         Set<String> mem = new HashSet<String>();
@@ -797,6 +848,7 @@ public class ParsingInterface {
             throws Exception {
         //// 0: estup
         omitPrinting = op.check("omitPrint");
+        Situation situation = Situation.current();
         boolean returnValue = false;
         boolean verbose = op.check("v");
 
@@ -804,7 +856,9 @@ public class ParsingInterface {
         List<Integer> batchparsingResultSizes = new LinkedList<>();
 
         List<String> sentences = new LinkedList<String>();
-        if (op.check("b") && !(op.getVal("o").matches(".*[0-9].*xml"))) {
+        // without a sentence, parse all sentences of the batch file
+        boolean wholeBatchFile = sent == null && op.check("b");
+        if (wholeBatchFile) {
             sentences.addAll(new SentenceListFromFileCreator(op.getVal("b"))
                     .getListRepresentation());
         } else {
@@ -813,32 +867,55 @@ public class ParsingInterface {
         System.err.println(sentences);
         //// 1 parse sentences
         long startParsingTime = System.nanoTime();
+        if (wholeBatchFile && !op.check("forest") && !op.check("brack2XML")) {
+            // batch mode: parse the sentences concurrently
+            int threads = op.check("threads")
+                    ? Integer.parseInt(op.getVal("threads"))
+                    : Runtime.getRuntime().availableProcessors();
+            long timeout = op.check("timeout")
+                    ? TimeUnit.SECONDS.toMillis(Long.parseLong(op.getVal("timeout")))
+                    : TimeUnit.MINUTES.toMillis(500);
+            RRGBatchParser batchParser = new RRGBatchParser(situation,
+                    op.getVal("a"), threads, timeout);
+            batchParser.parse(sentences, (i, result) -> {
+                batchparsingResultSizes
+                        .add(result.getSuccessfulParses().size());
+                writeRRGXML(op, i, wholeBatchFile, result, null);
+            });
+            returnValue = batchparsingResultSizes.stream()
+                    .anyMatch(size -> size > 0);
+            System.err.println(batchParser.statistics());
+            // all sentences are done, skip the sequential loop below
+            sentences = Collections.emptyList();
+        }
         Integer sentenceCounter = 0;
         for (String sentence : sentences) {
 
-            // it seems like the grammar trees and their environments get modified during parsing
-            // this should probably not happen
-            ((RRG) Situation.getGrammar()).resetAnchoredTrees();
-            for (RRGTree rrgtree : ((RRG) Situation.getGrammar()).getTrees()) {
-                rrgtree.setEnv(new Environment(5));
-
-            }
-
             List<String> toksentence = Arrays.asList(sentence.split("\\s+"));
             RRGParseResult result = new RRGParseResult.Builder().build();
             System.out.println("RRG grammar needs anchoring: "
-                    + ((Boolean) Situation.getGrammar().needsAnchoring())
+                    + ((Boolean) situation.grammar().needsAnchoring())
                     .toString());
-            RRGAnchorMan anchorman = new RRGAnchorMan(toksentence);
+            RRGAnchorMan anchorman = new RRGAnchorMan(situation, toksentence);
             Set<RRGTree> treesInvolvedInParsing = anchorman.anchor();
             //System.err.println("\n---------------------\nTrees involved in parsing: "+treesInvolvedInParsing);
 
+            // only filled when the packed forest is requested
+            final RRGParseForest[] forest = new RRGParseForest[1];
             if (!op.check("brack2XML")) {
                 ExecutorService executor = Executors.newCachedThreadPool();
                 Callable<RRGParseResult> task = new Callable<RRGParseResult>() {
                     public RRGParseResult call() {
-                        RRGParser rrgparser = new RRGParser(op.getVal("a"),
-                                treesInvolvedInParsing);
+                        RRGParser rrgparser = new RRGParser(situation,
+                                op.getVal("a"), treesInvolvedInParsing);
+                        if (op.check("forest")) {
+                            forest[0] = rrgparser
+                                    .parseSentenceToForest(toksentence);
+                            System.out.println("derivations in the forest: "
+                                    + forest[0].countDerivations());
+                            return forest[0].unpack(
+                                    Integer.parseInt(op.getVal("forest")));
+                        }
                         return rrgparser.parseSentence(toksentence);
                     }
                 };
@@ -851,10 +928,11 @@ public class ParsingInterface {
                     System.exit(1);
                 } finally {
                     future.cancel(true);
+                    executor.shutdown();
                 }
             } else { // hack for converting .tsv grammar to xml grammar
                 Set<RRGParseTree> elementaryTreeSet = RRGTools.convertTreeSet(
-                        (((RRG) Situation.getGrammar()).getTrees()));
+                        (((RRG) situation.grammar()).getTrees()));
                 result = new RRGParseResult.Builder()
                         .successfulParses(elementaryTreeSet).build();
             }
@@ -889,35 +967,8 @@ public class ParsingInterface {
             }
 
             // XML Output
-            if (op.check("xg") || op.check("b")) {
-                StreamResult resultStream;
-                if (op.check("o")) {
-                    String fileName = op.getVal("o");
-                    if (op.check("b") && !(op.getVal("o").matches(".*[0-9].*xml"))) {
-                        if (fileName.endsWith(".xml")) {
-                            fileName = fileName.substring(0,
-                                    fileName.length() - 4);
-                            fileName = fileName + "_" + sentenceCounter;
-                            fileName += ".xml";
-                        } else {
-                            fileName = "_" + sentenceCounter + fileName;
-                        }
-                    }
-                    resultStream = new StreamResult(fileName);
-                } else {
-                    resultStream = new StreamResult(System.out);
-                }
-                try {
-                    RRGXMLBuilder rrgXMLBuilder = new RRGXMLBuilder(result, op.check("edgemismatch"));
-                    rrgXMLBuilder.build();
-                    rrgXMLBuilder.write(resultStream);
-                } catch (ParserConfigurationException e) {
-                    System.err.println(
-                            "could not build parse results due to ParserConfigurationException");
-                }
-            } else {
-                System.out.println("no output file specified with option -o");
-            }
+            writeRRGXML(op, sentenceCounter, wholeBatchFile, result,
+                    forest[0]);
 
             // call the GUI
             if (!op.check("no-gui") && !op.check("b") && !op.check("xg") && !op.check("x")) {
@@ -948,6 +999,53 @@ public class ParsingInterface {
         return returnValue;
     }
 
+    /**
+     * write the result of the sentenceCounter-th sentence in XML, if -xg or -b
+     * is given
+     *
+     * @param wholeBatchFile if true, number the output file with sentenceCounter
+     * @param forest         if not null, write the packed forest instead of the
+     *                       result
+     */
+    private static void writeRRGXML(CommandLineOptions op,
+                                    Integer sentenceCounter, boolean wholeBatchFile,
+                                    RRGParseResult result, RRGParseForest forest) {
+        if (op.check("xg") || op.check("b")) {
+            String fileName = "stdout";
+            if (op.check("o")) {
+                fileName = op.getVal("o");
+                if (wholeBatchFile) {
+                    if (fileName.endsWith(".xml")) {
+                        fileName = fileName.substring(0,
+                                fileName.length() - 4);
+                        fileName = fileName + "_" + sentenceCounter;
+                        fileName += ".xml";
+                    } else {
+                        fileName = fileName + "_" + sentenceCounter + ".xml";
+                    }
+                }
+            }
+            RRGXMLBuilder rrgXMLBuilder = forest != null
+                    ? new RRGXMLBuilder(forest)
+                    : new RRGXMLBuilder(result, op.check("edgemismatch"));
+            // one document per sentence, flushed (and closed if it is a
+            // file) before the next sentence
+            try {
+                XMLStreamOutput out = new XMLStreamOutput(fileName);
+                try {
+                    rrgXMLBuilder.write(out);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                System.err.println(
+                        "Something went wrong during output: " + e.getMessage());
+            }
+        } else {
+            System.out.println("no output file specified with option -o");
+        }
+    }
+
     /**
      * @param op
      * @param sentence
@@ -38,12 +38,14 @@ package de.duesseldorf.ui;
 import java.io.File;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import de.duesseldorf.frames.Situation;
 import de.duesseldorf.frames.TypeHierarchy;
+import de.duesseldorf.io.GrammarImage;
 import de.duesseldorf.io.XMLTypeHierarchyReader;
 import de.duesseldorf.rrg.io.BracketedRRGFromFileReader;
 import de.duesseldorf.rrg.io.XMLRRGReader;
@@ -133,6 +135,53 @@ public class WorkbenchLoader {
             // tyHi);
         }
 
+        // a compiled image of the TAG or RRG grammar (not for the SAX-based
+        // loading of the tag option, which depends on the sentence)
+        File image = null;
+        String imageMode = null;
+        Map<String, File> imageSources = null;
+        if (op.check("image") && grammar != null && !(op.check("r") || op.check("c")
+                || op.check("lcfrs") || op.check("tag"))) {
+            image = new File(op.getVal("image"));
+            imageMode = op.check("rrg")
+                    ? (op.check("rrgbrin") ? "rrgbrin" : "rrg") : "tag";
+            imageSources = new LinkedHashMap<String, File>();
+            imageSources.put("g", grammar);
+            if (frame != null) {
+                imageSources.put("f", frame);
+            }
+            if (typeHierarchy != null) {
+                imageSources.put("th", typeHierarchy);
+            }
+            if (op.check("l") && !(op.getVal("l").equals(""))
+                    && !(lem.equals(""))) {
+                imageSources.put("l", new File(lem));
+            }
+            if (op.check("m")) {
+                imageSources.put("m", new File(mo));
+            }
+            long loadTime = System.nanoTime();
+            try {
+                GrammarImage gi = GrammarImage.open(image, imageMode,
+                        imageSources);
+                if (gi != null) {
+                    if (op.check("imagecache")) {
+                        gi.setCacheBudget(Long.parseLong(op.getVal("imagecache"))
+                                * 1024 * 1024);
+                    }
+                    Situation.instantiate(gi.getGrammar(),
+                            gi.getFrameGrammar(), gi.getTypeHierarchy());
+                    long loadedTime = System.nanoTime() - loadTime;
+                    System.err.println("Grammar image loading time: "
+                            + (loadedTime) / (Math.pow(10, 9)) + " sec.");
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("Grammar image " + image
+                        + " can't be read, it is built again: " + e);
+            }
+        }
+
         if (op.check("r") || op.check("c") || op.check("lcfrs")) {// RCG parsing
             long loadTime = System.nanoTime();
             String gext = grammar.getName();
@@ -287,6 +336,16 @@ public class WorkbenchLoader {
             // System.err.println(g.toString());
         }
         Situation.instantiate(g, frameG, tHi);
+        if (image != null) {
+            try {
+                GrammarImage.write(image, imageMode, imageSources, g, frameG,
+                        tHi);
+                System.err.println("Grammar image written to " + image);
+            } catch (IOException e) {
+                System.err.println("Grammar image " + image
+                        + " can't be written: " + e);
+            }
+        }
         return;
     }
 
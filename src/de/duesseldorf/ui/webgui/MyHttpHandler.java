@@ -3,9 +3,8 @@ package de.duesseldorf.ui.webgui;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import de.duesseldorf.rrg.io.RRGXMLBuilder;
-import org.w3c.dom.Document;
+import de.tuebingen.util.XMLStreamOutput;
 
-import javax.xml.transform.stream.StreamResult;
 import java.io.*;
 import java.util.HashMap;
 import java.util.Map;
@@ -70,10 +69,9 @@ public class MyHttpHandler implements HttpHandler {
         byte[] response = null;
         //// Request for the parse Result
         if (requestedPath.contains("PARSEROUTPUT.xml")) {
-            Document parseResultDoc = rrgxmlBuilder.build();
-            StreamResult streamResult = new StreamResult(new StringWriter());
-            rrgxmlBuilder.write(streamResult);
-            response = streamResult.getWriter().toString().getBytes();
+            ByteArrayOutputStream parseResult = new ByteArrayOutputStream();
+            rrgxmlBuilder.write(new XMLStreamOutput(parseResult));
+            response = parseResult.toByteArray();
         } else {
 
             if (requestedPath.contains("GRAPHVIZ.svg")) {
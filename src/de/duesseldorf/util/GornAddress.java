@@ -1,5 +1,6 @@
 package de.duesseldorf.util;
 
+import java.io.Serializable;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -30,7 +31,8 @@ import java.util.List;
  *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
  *
  */
-public class GornAddress implements Comparable<GornAddress> {
+@SuppressWarnings("serial")
+public class GornAddress implements Comparable<GornAddress>, Serializable {
 
     // represented as a list of Integers
     private List<Integer> address;
@@ -32,6 +32,7 @@ package de.tuebingen.anchoring;
 import de.tuebingen.lexicon.Lemma;
 import de.tuebingen.lexicon.Lemmaref;
 
+@SuppressWarnings("serial")
 public class InstantiatedLemma extends Lemma {
     /**
      * An instantiated lemma is a lemma associated with a morphological item
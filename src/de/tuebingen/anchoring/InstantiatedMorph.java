@@ -32,6 +32,7 @@ package de.tuebingen.anchoring;
 import de.tuebingen.lexicon.MorphEntry;
 import de.tuebingen.tokenizer.Word;
 
+@SuppressWarnings("serial")
 public class InstantiatedMorph extends MorphEntry {
 
     private Word inToken;
@@ -34,6 +34,7 @@ import java.util.List;
 import de.tuebingen.lexicon.Anchor;
 import de.tuebingen.tag.Tuple;
 
+@SuppressWarnings("serial")
 public class InstantiatedTuple extends Tuple {
 
     private InstantiatedLemma lemma;
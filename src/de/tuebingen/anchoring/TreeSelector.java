@@ -41,7 +41,6 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import de.duesseldorf.frames.Frame;
@@ -93,12 +92,27 @@ public class TreeSelector {
     private Map<String, List<String>> coancNodes; // coanchors in the trees (for
     // polarity computation)
     private Map<String, Integer> ambiguity;
+    private Situation situation; // grammars and type hierarchy to use
+    private Set<RRGTree> rrgAnchoredTrees; // anchored RRG trees
+    private Environment checkEnv = new Environment(5); // for unification
+    // checks, its bindings are always undone
 
     /**
      * @param w list of words
      * @param v verbose mode?
      */
     public TreeSelector(List<Word> w, boolean v) {
+        this(w, v, Situation.current());
+    }
+
+    /**
+     * @param w         list of words
+     * @param v         verbose mode?
+     * @param situation the grammars to select the trees from
+     */
+    public TreeSelector(List<Word> w, boolean v, Situation situation) {
+        this.situation = situation;
+        rrgAnchoredTrees = new HashSet<RRGTree>();
         verbose = v;
         tokens = w;
         anctuples = new LinkedList<Tuple>(); // the anchored tuples
@@ -111,29 +125,9 @@ public class TreeSelector {
     }
 
     public void retrieve(List<String> slabels) {
-        if (Situation.getFrameGrammar() != null) {
-            Map<String, List<Tuple>> g = Situation.getFrameGrammar()
-                    .getGrammar();
-
-            for (Entry<String, List<Tuple>> e : g.entrySet()) {
-                // System.out.println("Key: " + e.getKey());
-                // System.out.println(e.getValue() == null); // f
-                if (e.getValue() != null) {
-                    int size = e.getValue().size(); // 1
-                    // System.out.println("Size of the list<Tuple>: " + size);
-                    // if (size > 0) {
-                    // System.out.print("Tuple null: ");
-                    // System.out.println(e.getValue().get(0) == null);
-                    // if (e.getValue().get(0) != null) {
-                    // System.out.println(e.getValue().get(0));
-                    // }
-                    // }
-                }
-            }
-        }
-        retrieve(Situation.getGrammar().getMorphEntries(),
-                Situation.getGrammar().getLemmas(),
-                Situation.getGrammar().getGrammar(), slabels);
+        retrieve(situation.grammar().getMorphEntries(),
+                situation.grammar().getLemmas(),
+                situation.grammar().getGrammar(), slabels);
     }
 
     /**
@@ -295,9 +289,9 @@ public class TreeSelector {
                             System.out.println(
                                     "TODO: create a loop in TreeSelector.546!");
                         }
-                        if (Situation.getFrameGrammar() != null) {
+                        if (situation.frameGrammar() != null) {
                             if (lemmaSem.size() > 0) {
-                                tlist = Situation.getFrameGrammar().getGrammar()
+                                tlist = situation.frameGrammar().getGrammar()
                                         .get(lemmaSem.get(0).getSemclass());
                             } else {
                                 System.err.println("No semantics for lemma "
@@ -329,33 +323,21 @@ public class TreeSelector {
                         }
                     }
                 }
-            } else if (Situation.getGrammar() instanceof RRG) {
+            } else if (situation.grammar() instanceof RRG) {
                 // everything RRG specific
-                Set<RRGTree> treesInTheFamily = ((RRG) Situation.getGrammar())
+                Set<RRGTree> treesInTheFamily = ((RRG) situation.grammar())
                         .getTreesByFamily(family);
                 // consider all trees for the family currently relevant
                 for (RRGTree tree : treesInTheFamily) {
                     tree = new RRGTree(tree);
-                    boolean match = true;
                     RRGNode anchorNode = tree.getAnchorNode();
                     if (anchorNode != null) {
-                        try {
-                            Fs morphAncFS = new Fs();
-                            morphAncFS.replaceFeat("cat",
-                                    new Value(Value.Kind.VAL, il.getCat()));
-                            Fs treeAncFS = anchorNode.getNodeFs();
-                            Environment e = new Environment(5);
-                            Fs anchorFS = FsTools.unify(morphAncFS, treeAncFS,
-                                    e);
-                            // anchorNode.getNodeFs().removeCategory();
-
-                            // anchorNode.getNodeFs().setFeatWithoutReplace("cat",
-                            // new Value(Value.Kind.VAL,
-                            // anchorFS.getCategory()));
-                        } catch (UnifyException e) {
-                            match = false;
-                            // e.printStackTrace();
-                        }
+                        Fs morphAncFS = new Fs();
+                        morphAncFS.replaceFeat("cat",
+                                new Value(Value.Kind.VAL, il.getCat()));
+                        Fs treeAncFS = anchorNode.getNodeFs();
+                        boolean match = FsTools.unifiable(morphAncFS,
+                                treeAncFS, checkEnv);
                         if (match) {
                             // build an RRGNode and attach it below the anchor
                             // node
@@ -363,8 +345,8 @@ public class TreeSelector {
                             // Trying to retrieve the frame information
                             if (la.get(k).getSemantics().size() > 0) {
                                 // get all frames of the semantic class associated to the lemma
-                                if (Situation.getFrameGrammar() != null) {
-                                    allLexSem = Situation.getFrameGrammar().getGrammar().get(la.get(k).getSemantics().get(0).getSemclass());
+                                if (situation.frameGrammar() != null) {
+                                    allLexSem = situation.frameGrammar().getGrammar().get(la.get(k).getSemantics().get(0).getSemclass());
                                 } else {
                                     System.err.println("Warning: could not retrieve frames associated to lemma (no frame grammar given)");
                                 }
@@ -490,7 +472,7 @@ public class TreeSelector {
             // System.out.println("ts RRG orig tree: " + tree);
             // System.out.println("ts RRG anch tree: " +
             // anchoredTree);
-            ((RRG) Situation.getGrammar()).addAnchoredTree(anchoredTree);
+            rrgAnchoredTrees.add(anchoredTree);
             // System.err.println("Tree after updates: ");
             // System.err.println(anchoredTree);
 
@@ -727,8 +709,8 @@ public class TreeSelector {
             System.out.println("TODO: create a loop in TreeSelector.546!");
         }
 
-        if (Situation.getFrameGrammar() != null && lemmaSem.size() > 0) {
-            List<Tuple> tlist = Situation.getFrameGrammar().getGrammar()
+        if (situation.frameGrammar() != null && lemmaSem.size() > 0) {
+            List<Tuple> tlist = situation.frameGrammar().getGrammar()
                     .get(lemmaSem.get(0).getSemclass());
 
             Fs frameInterface = new Fs();
@@ -1002,7 +984,7 @@ public class TreeSelector {
         ptl.addLexicals(tt.getLexItems());
         // we update the tree dictionary
         // -------------------------------
-        Map<String, List<MorphEntry>> lm = Situation.getGrammar()
+        Map<String, List<MorphEntry>> lm = situation.grammar()
                 .getMorphEntries();
 
         List<TagTree> ttlist = new ArrayList<TagTree>();
@@ -1123,6 +1105,13 @@ public class TreeSelector {
         }
     }
 
+    /**
+     * @return the RRG trees anchored by {@link #retrieve(List)}
+     */
+    public Set<RRGTree> getRRGAnchoredTrees() {
+        return rrgAnchoredTrees;
+    }
+
     public boolean isVerbose() {
         return verbose;
     }
@@ -29,6 +29,8 @@
  */
 package de.tuebingen.converter;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -58,6 +60,7 @@ public class GrammarConvertor {
     // processed
     private LinkedList<PredLabel> processed; // the list of predicates already
     // processed
+    private Set<PredLabel> processedSet; // idem, for lookup
     private Map<String, TagTree> treeDict; // the dictionary of trees (for
     // direct access)
     private boolean verbose; // with or without debugging info
@@ -65,6 +68,9 @@ public class GrammarConvertor {
     private boolean auto_adj; // to authorize auto-adjunctions
     private Integer depth; // to limit the depth of the conversion (i.e. to stop
     // creating new clauses after a given limit)
+    private Map<String, TagTree> rcgDict; // given to the rcg with each clause
+    private Map<Object, List<Clause>> treeClauses; // the clauses already built
+    // for elementary trees (if any)
 
     public GrammarConvertor(List<Tuple> tt, boolean b, List<String> in,
                             Map<String, TagTree> treeHash) {
@@ -73,6 +79,7 @@ public class GrammarConvertor {
         rcggrammar = new RCG();
         agenda = new LinkedList<PredLabel>();
         processed = new LinkedList<PredLabel>();
+        processedSet = new HashSet<PredLabel>();
         treeDict = treeHash;
         k_lpasize = null;
         auto_adj = false;
@@ -101,6 +108,23 @@ public class GrammarConvertor {
         // sentence ? e.g. (in.size() * 3)
     }
 
+    /**
+     * Method used to add the clauses to an existing RCG instead of a new one,
+     * e.g. to convert several sub-grammars into one RCG.
+     *
+     * @param rcg
+     *            the RCG to which clauses are added
+     * @param treeCache
+     *            the clauses built for elementary trees, by tree, LPA and
+     *            authorized adjunctions (can be shared between conversions
+     *            with the same options)
+     */
+    public void convertInto(RCG rcg, Map<Object, List<Clause>> treeCache) {
+        rcggrammar = rcg;
+        rcgDict = treeDict;
+        treeClauses = treeCache;
+    }
+
     public void buildAllClauses(String axiom) {
         /**
          * Method used to build the RCG clauses from a list of anchored tuples
@@ -156,7 +180,7 @@ public class GrammarConvertor {
             Clause c = new Clause();
             c.setLhs(sLHS);
             c.addToRhs(sRHS);
-            rcggrammar.addClause(c, null);
+            addClause(c);
 
             if (verbose) {
                 System.err.print("NEXT ONE ======");
@@ -301,6 +325,20 @@ public class GrammarConvertor {
         }
         // 2-b. We compute the distributions of lpa2 (lpa2 := lpa U args)
         // We prepare and compute the constraints on integers
+        // the clauses only depend on the tree, the LPA and psi
+        List<Object> key = null;
+        if (treeClauses != null) {
+            key = Arrays.<Object>asList(t.getId(), cur_depth, lpa, psi);
+            List<Clause> built = treeClauses.get(key);
+            if (built != null) {
+                for (Clause c : built) {
+                    addAll2agenda(c.getRhs());
+                    addClause(c);
+                }
+                return true;
+            }
+        }
+        List<Clause> built = new LinkedList<Clause>();
         Prepare prep = new Prepare(t.getId(), lpa2, adjnodes);
         prep.computeConstraints(psi);
         // System.out.println("PSI is size "+psi.size()+"");
@@ -341,7 +379,8 @@ public class GrammarConvertor {
 
                 // Finally, we update the agenda and the grammar
                 addAll2agenda(c.getRhs());
-                rcggrammar.addClause(c, null);
+                addClause(c);
+                built.add(c);
             }
         } else {
             // if there is no distribution, we just traverse the tree
@@ -358,7 +397,11 @@ public class GrammarConvertor {
 
             // Finally, we update the agenda and the grammar
             addAll2agenda(c.getRhs());
-            rcggrammar.addClause(c, null);
+            addClause(c);
+            built.add(c);
+        }
+        if (key != null) {
+            treeClauses.put(key, built);
         }
 
         return true;
@@ -459,7 +502,7 @@ public class GrammarConvertor {
 
                     // we update the rcggrammar and the agenda
                     add2agenda(pRHS);
-                    rcggrammar.addClause(c, null);
+                    addClause(c);
                 }
             }
         }
@@ -476,7 +519,7 @@ public class GrammarConvertor {
         nadjLHS.addArg(new Argument(new ArgContent(ArgContent.EPSILON, "")));
         Clause cc = new Clause();
         cc.setLhs(nadjLHS);
-        rcggrammar.addClause(cc, null);
+        addClause(cc);
 
         return true;
     }
@@ -545,7 +588,7 @@ public class GrammarConvertor {
 
                 // we update the rcggrammar and the agenda
                 add2agenda(pRHS);
-                rcggrammar.addClause(c, null);
+                addClause(c);
             }
         }
 
@@ -576,7 +619,7 @@ public class GrammarConvertor {
 
     public void add2agenda(Predicate p) {
         PredLabel plab = p.getLabel();
-        if (!(processed.contains(plab))) {
+        if (processedSet.add(plab)) {
             String plabs = plab.toString();
             if (plab instanceof PredComplexLabel)
                 plabs = ((PredComplexLabel) plab).toString(treeDict);
@@ -588,6 +631,10 @@ public class GrammarConvertor {
         }
     }
 
+    private void addClause(Clause c) {
+        rcggrammar.addClause(c, rcgDict);
+    }
+
     public boolean checkAdjWord(String treeid, String tupleId,
                                 String tupleAncPos, TagNode nn, TagNode lex, TagTree tr,
                                 List<Object> lpa) {
@@ -701,6 +748,7 @@ public class GrammarConvertor {
 
     public void setProcessed(LinkedList<PredLabel> processed) {
         this.processed = processed;
+        this.processedSet = new HashSet<PredLabel>(processed);
     }
 
     public boolean isVerbose() {
@@ -0,0 +1,238 @@
+/*
+ *  File DerivationTree.java
+ *
+ *  This file is part of the TuLiPA-frames system
+ *     https://github.com/spetitjean/TuLiPA-frames
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.tuebingen.derive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A derivation tree: an elementary tree, and the operations (substitutions
+ * and adjunctions) of other derivation trees into it.
+ * <p>
+ * Derivation trees are not modified once built, so that the derivations
+ * extracted from a forest share their common subtrees (see
+ * de.tuebingen.expander.ForestExpander). They replace the &lt;tree&gt;
+ * elements of the documents built by the ParseTreeHandler, which can still
+ * be read with {@link #fromDOM(Node)} and produced with
+ * {@link #toDOM(Document)}.
+ */
+public class DerivationTree {
+
+    public static final String ADJ = "adj";
+    public static final String SUBST = "subst";
+
+    private final String treeId;
+    private final List<Operation> operations;
+    // see getSignature(), computed once (subtrees are shared)
+    private String signature;
+
+    /**
+     * An operation of a derivation tree into its mother tree.
+     */
+    public static class Operation {
+        // ADJ or SUBST
+        private final String type;
+        // Gorn address of the node of the mother tree
+        private final String node;
+        // identifier of the forest rule the operation comes from
+        private final int id;
+        private final DerivationTree tree;
+
+        public Operation(String type, String node, int id,
+                         DerivationTree tree) {
+            this.type = type;
+            this.node = node;
+            this.id = id;
+            this.tree = tree;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public DerivationTree getTree() {
+            return tree;
+        }
+
+        public int hashCode() {
+            return ((31 * type.hashCode() + node.hashCode()) * 31 + id) * 31
+                    + tree.hashCode();
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Operation)) {
+                return false;
+            }
+            Operation op = (Operation) o;
+            return id == op.id && type.equals(op.type) && node.equals(op.node)
+                    && tree.equals(op.tree);
+        }
+    }
+
+    public DerivationTree(String treeId) {
+        this(treeId, Collections.<Operation>emptyList());
+    }
+
+    /**
+     * @param treeId     the identifier of the elementary tree in the grammar
+     *                   dictionary
+     * @param operations the operations into the elementary tree, in the
+     *                   order in which they are applied
+     */
+    public DerivationTree(String treeId, List<Operation> operations) {
+        this.treeId = treeId;
+        this.operations = operations;
+    }
+
+    public String getTreeId() {
+        return treeId;
+    }
+
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return a derivation tree with the operations of this one, followed by
+     * op
+     */
+    public DerivationTree extend(Operation op) {
+        List<Operation> ops = new ArrayList<Operation>(operations.size() + 1);
+        ops.addAll(operations);
+        ops.add(op);
+        return new DerivationTree(treeId, ops);
+    }
+
+    /**
+     * @return a canonical representation of the derivation: the trees, and
+     * the types and Gorn addresses of the operations, regardless of the
+     * forest rules they come from and of the order of the operations at
+     * different nodes. Derivations with the same signature give the same
+     * derived tree.
+     */
+    public String getSignature() {
+        if (signature == null) {
+            List<Operation> ops = new ArrayList<Operation>(operations);
+            // stable, the order of operations at the same node matters
+            Collections.sort(ops, new Comparator<Operation>() {
+                public int compare(Operation o1, Operation o2) {
+                    return o1.node.compareTo(o2.node);
+                }
+            });
+            StringBuilder sb = new StringBuilder(treeId);
+            sb.append('(');
+            for (Operation op : ops) {
+                sb.append(op.type).append('@').append(op.node).append(':')
+                        .append(op.tree.getSignature()).append(' ');
+            }
+            sb.append(')');
+            signature = sb.toString();
+        }
+        return signature;
+    }
+
+    public int hashCode() {
+        return 31 * treeId.hashCode() + operations.hashCode();
+    }
+
+    /*
+     * same as Node.isEqualNode on the DOM representations
+     */
+    public boolean equals(Object o) {
+        if (!(o instanceof DerivationTree)) {
+            return false;
+        }
+        DerivationTree t = (DerivationTree) o;
+        return treeId.equals(t.treeId) && operations.equals(t.operations);
+    }
+
+    /**
+     * @return the &lt;tree&gt; element of the derivation, as built by the
+     * ParseTreeHandler
+     */
+    public Element toDOM(Document D) {
+        Element tree = D.createElement("tree");
+        tree.setAttribute("id", treeId);
+        for (Operation op : operations) {
+            Element opNode = D.createElement(op.type);
+            opNode.setAttribute("node", op.node);
+            opNode.setAttribute("id", "_" + op.id);
+            opNode.appendChild(op.tree.toDOM(D));
+            tree.appendChild(opNode);
+        }
+        return tree;
+    }
+
+    /**
+     * @param treeNode a &lt;tree&gt; element, as built by the ParseTreeHandler
+     */
+    public static DerivationTree fromDOM(Node treeNode) {
+        String treeId = treeNode.getAttributes().getNamedItem("id")
+                .getNodeValue();
+        List<Operation> ops = new ArrayList<Operation>();
+        for (int i = 0; i < treeNode.getChildNodes().getLength(); i++) {
+            Node op = treeNode.getChildNodes().item(i);
+            if (op.getNodeName().equals(ADJ)
+                    || op.getNodeName().equals(SUBST)) {
+                for (int j = 0; j < op.getChildNodes().getLength(); j++) {
+                    Node child = op.getChildNodes().item(j);
+                    if (child.getNodeName().equals("tree")) {
+                        ops.add(new Operation(op.getNodeName(),
+                                op.getAttributes().getNamedItem("node")
+                                        .getNodeValue(),
+                                TreeDeriver.getOpId(op), fromDOM(child)));
+                    }
+                }
+            }
+        }
+        return new DerivationTree(treeId, ops);
+    }
+
+    public String toString() {
+        String res = treeId;
+        if (!operations.isEmpty()) {
+            res += "(";
+            for (int i = 0; i < operations.size(); i++) {
+                Operation op = operations.get(i);
+                if (i > 0) {
+                    res += " ";
+                }
+                res += op.type + "@" + op.node + ":" + op.tree;
+            }
+            res += ")";
+        }
+        return res;
+    }
+}
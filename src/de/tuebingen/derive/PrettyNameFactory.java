@@ -29,12 +29,14 @@
  */
 package de.tuebingen.derive;
 
+import java.io.Serializable;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
-public class PrettyNameFactory {
+@SuppressWarnings("serial")
+public class PrettyNameFactory implements Serializable {
 
     private int index;
     private Map<String, String> dictionary;
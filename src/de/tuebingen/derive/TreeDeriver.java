@@ -54,10 +54,25 @@ import de.tuebingen.anchoring.NameFactory;
 
 
 public class TreeDeriver {
+    /**
+     * @param derivationTree a &lt;start&gt; element, as built by the
+     *                       ParseTreeHandler
+     */
     public static DerivedTree deriveTree(Node derivationTree,
                                          Map<String, TagTree> treeDict, ArrayList<ElementaryTree> eTrees,
                                          ArrayList<ElementaryTree> steps, boolean returnIncompleteTrees,
                                          List<String> semlabels, boolean needsAnchoring) {
+        return deriveTree(
+                DerivationTree.fromDOM(
+                        derivationTree.getFirstChild().getFirstChild()),
+                treeDict, eTrees, steps, returnIncompleteTrees, semlabels,
+                needsAnchoring);
+    }
+
+    public static DerivedTree deriveTree(DerivationTree derivationTree,
+                                         Map<String, TagTree> treeDict, ArrayList<ElementaryTree> eTrees,
+                                         ArrayList<ElementaryTree> steps, boolean returnIncompleteTrees,
+                                         List<String> semlabels, boolean needsAnchoring) {
         //System.out.println("\n\nDeriving new tree");
         DerivedTree derivedTree = null;
         boolean failed = false;
@@ -65,10 +80,7 @@ public class TreeDeriver {
             Document D = DocumentBuilderFactory.newInstance()
                     .newDocumentBuilder().getDOMImplementation()
                     .createDocument(null, "tree", null);
-            Node initialTreeNode = derivationTree.getFirstChild()
-                    .getFirstChild();
-            String initialTreeID = initialTreeNode.getAttributes()
-                    .getNamedItem("id").getNodeValue();
+            String initialTreeID = derivationTree.getTreeId();
             ElementaryTree iniTree = getTreeInstance(initialTreeID, treeDict, D,
                     eTrees, needsAnchoring);
             NameFactory nf = new NameFactory();
@@ -95,10 +107,10 @@ public class TreeDeriver {
                 // XMLTreeViewer.displayTree(derivedTree.root);
                 // System.err.println(" === NEW DERIVATION TREE === ");
                 ArrayList<Object[]> operations = prepareOperations(
-                        initialTreeNode, treeDict, D, eTrees, needsAnchoring);
+                        derivationTree, treeDict, D, eTrees, needsAnchoring);
                 iniTree.applyOperations(operations, derivedTree, steps);
                 for (Object[] operation : operations) {
-                    recursivelyDeriveTree((Node) operation[4],
+                    recursivelyDeriveTree((DerivationTree) operation[4],
                             (ElementaryTree) operation[2], treeDict, D,
                             derivedTree, eTrees, steps, needsAnchoring);
                 }
@@ -230,7 +242,7 @@ public class TreeDeriver {
         return derivedTree;
     }
 
-    public static void recursivelyDeriveTree(Node treeNode,
+    public static void recursivelyDeriveTree(DerivationTree treeNode,
                                              ElementaryTree elementaryTree, Map<String, TagTree> treeDict,
                                              Document D, DerivedTree t, ArrayList<ElementaryTree> eTrees,
                                              ArrayList<ElementaryTree> steps, boolean needsAnchoring)
@@ -241,7 +253,7 @@ public class TreeDeriver {
                 D, eTrees, needsAnchoring);
         elementaryTree.applyOperations(operations, t, steps);
         for (Object[] operation : operations) {
-            recursivelyDeriveTree((Node) operation[4],
+            recursivelyDeriveTree((DerivationTree) operation[4],
                     (ElementaryTree) operation[2], treeDict, D, t, eTrees,
                     steps, needsAnchoring);
         }
@@ -281,74 +293,28 @@ public class TreeDeriver {
         }
     }
 
-    public static ArrayList<Object[]> prepareOperations(Node treeNode,
+    public static ArrayList<Object[]> prepareOperations(DerivationTree treeNode,
                                                         Map<String, TagTree> treeDict, Document D,
                                                         ArrayList<ElementaryTree> eTrees, boolean needsAnchoring) {
         // System.out.println(treeNode);
         ArrayList<Object[]> operations = new ArrayList<Object[]>();
-        for (int i = 0; i < treeNode.getChildNodes().getLength(); i++) {
-            Node op = treeNode.getChildNodes().item(i);
-            if (op.getNodeName().equals("adj")) {
-                Object[] operation = new Object[5];
-                operation[0] = getOpId(op);
-                operation[1] = "adj";
-
-                for (int j = 0; j < op.getChildNodes().getLength(); j++) {
-
-                    Node child = op.getChildNodes().item(j);
-                    // System.err.println(DOMWriter.elementToString(child, 0));
-                    if (child.getNodeName().equals("tree")) {
-
-                        String adjoinedTreeId = child.getAttributes()
-                                .getNamedItem("id").getNodeValue();
-                        // System.err.println(adjoinedTreeId);
-                        String address = op.getAttributes().getNamedItem("node")
-                                .getNodeValue();
-                        ElementaryTree adjoinedTree = getTreeInstance(
-                                adjoinedTreeId, treeDict, D, eTrees,
-                                needsAnchoring);
-                        if (adjoinedTree != null) {
-                            operation[2] = adjoinedTree;
-                            operation[3] = address;
-                            operation[4] = child;
-                        } else {
-                            System.err.println(
-                                    "ERROR: Tree not found in grammar: "
-                                            + adjoinedTreeId);
-                            System.exit(1);
-                        }
-                    }
-
-                }
-                operations.add(operation);
-            } else if (op.getNodeName().equals("subst")) {
-                Object[] operation = new Object[5];
-                operation[0] = getOpId(op);
-                operation[1] = "subst";
-                for (int j = 0; j < op.getChildNodes().getLength(); j++) {
-                    Node child = op.getChildNodes().item(j);
-                    if (child.getNodeName().equals("tree")) {
-                        String substTreeId = child.getAttributes()
-                                .getNamedItem("id").getNodeValue();
-                        // System.err.println(substTreeId);
-                        String address = op.getAttributes().getNamedItem("node")
-                                .getNodeValue();
-                        ElementaryTree substTree = getTreeInstance(substTreeId,
-                                treeDict, D, eTrees, needsAnchoring);
-                        if (substTree != null) {
-                            operation[2] = substTree;
-                            operation[3] = address;
-                            operation[4] = child;
-                        } else {
-                            System.err.println(
-                                    "ERROR: Tree not found in grammar: "
-                                            + substTreeId);
-                            System.exit(1);
-                        }
-                    }
-                }
-                operations.add(operation);
+        for (DerivationTree.Operation op : treeNode.getOperations()) {
+            Object[] operation = new Object[5];
+            operation[0] = op.getId();
+            operation[1] = op.getType();
+            String treeId = op.getTree().getTreeId();
+            ElementaryTree tree = getTreeInstance(treeId, treeDict, D, eTrees,
+                    needsAnchoring);
+            if (tree != null) {
+                operation[2] = tree;
+                operation[3] = op.getNode();
+                operation[4] = op.getTree();
+            } else {
+                System.err.println(
+                        "ERROR: Tree not found in grammar: " + treeId);
+                System.exit(1);
             }
+            operations.add(operation);
         }
         return operations;
     }
@@ -43,35 +43,41 @@ public class ComputeSubGrammar {
     public static List<List<Tuple>> computeSubGrammar(boolean verbose, List<List<String>> compatibleTuples, Map<String, List<String>> tupleMap, Map<String, TagTree> dict) {
         List<List<Tuple>> res = new LinkedList<List<Tuple>>();
         for (int i = 0; i < compatibleTuples.size(); i++) {
-            List<String> tuples = compatibleTuples.get(i);
             if (verbose)
                 System.err.println("\n*****\nSelecting sub-grammar " + i + " ...");
-            List<Tuple> res2 = new LinkedList<Tuple>();
-            for (int j = 0; j < tuples.size(); j++) {
-                String tuple = tuples.get(j);
-                List<String> trees = tupleMap.get(tuple);
-                if (trees != null) { //trees is null when the tuple name is "" (lexical item or coanchor)
-                    Tuple newTuple = new Tuple(tuple);
-                    List<TagTree> arguments = new LinkedList<TagTree>();
-                    for (int k = 0; k < trees.size(); k++) {
-                        String tree = trees.get(k);
-                        TagTree ttree = dict.get(tree);
-                        if (ttree.getIsHead()) {
-                            newTuple.setHead(ttree);
-                            newTuple.setOriginalId(ttree.getOriginalTupleId());
-                            newTuple.setFamily(ttree.getFamily());
-                        } else {
-                            arguments.add(ttree);
-                        }
+            res.add(computeTupleSubGrammar(verbose, compatibleTuples.get(i), tupleMap, dict));
+        }
+        return res;
+    }
+
+    /**
+     * Computes the sub-grammar of a single set of compatible tuples
+     */
+    public static List<Tuple> computeTupleSubGrammar(boolean verbose, List<String> tuples, Map<String, List<String>> tupleMap, Map<String, TagTree> dict) {
+        List<Tuple> res2 = new LinkedList<Tuple>();
+        for (int j = 0; j < tuples.size(); j++) {
+            String tuple = tuples.get(j);
+            List<String> trees = tupleMap.get(tuple);
+            if (trees != null) { //trees is null when the tuple name is "" (lexical item or coanchor)
+                Tuple newTuple = new Tuple(tuple);
+                List<TagTree> arguments = new LinkedList<TagTree>();
+                for (int k = 0; k < trees.size(); k++) {
+                    String tree = trees.get(k);
+                    TagTree ttree = dict.get(tree);
+                    if (ttree.getIsHead()) {
+                        newTuple.setHead(ttree);
+                        newTuple.setOriginalId(ttree.getOriginalTupleId());
+                        newTuple.setFamily(ttree.getFamily());
+                    } else {
+                        arguments.add(ttree);
                     }
-                    newTuple.setArguments(arguments);
-                    if (verbose)
-                        System.err.println("Adding tuple " + newTuple.getId() + "(" + newTuple.getOriginalId() + ")");
-                    res2.add(newTuple);
                 }
+                newTuple.setArguments(arguments);
+                if (verbose)
+                    System.err.println("Adding tuple " + newTuple.getId() + "(" + newTuple.getOriginalId() + ")");
+                res2.add(newTuple);
             }
-            res.add(res2);
         }
-        return res;
+        return res2;
     }
 }
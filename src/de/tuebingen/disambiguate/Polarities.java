@@ -97,12 +97,12 @@ public class Polarities {
         Polarities addedPolarities = new Polarities();
         for (String s : p1.charges.keySet()) {
             addedPolarities.charges.put(s, p1.charges.get(s));
-            addedPolarities.polarities.put(s, p1.getPolarities().get(s));
+            addedPolarities.polarities.put(s, new LinkedList<Pair>(p1.getPolarities().get(s)));
         }
         for (String s : p2.charges.keySet()) {
             if (!(addedPolarities.charges.containsKey(s))) {
                 addedPolarities.charges.put(s, p2.charges.get(s));
-                addedPolarities.polarities.put(s, p2.getPolarities().get(s));
+                addedPolarities.polarities.put(s, new LinkedList<Pair>(p2.getPolarities().get(s)));
             } else {
                 addedPolarities.charges.put(s, addedPolarities.charges.get(s) + p2.charges.get(s));
                 addedPolarities.getPolarities().get(s).addAll(p2.getPolarities().get(s));
@@ -29,148 +29,272 @@
  */
 package de.tuebingen.disambiguate;
 
+import java.math.BigInteger;
 import java.util.*;
 
+/**
+ * The polarity automaton reads the sentence token by token, each edge being
+ * labeled with the ID of a tuple anchored by the token. The states reached
+ * after the same number of tokens are merged if they have the same polarity
+ * charges, so the automaton is a DAG and not a tree of all combinations of
+ * tuples. States whose charges cannot be neutralized by the remaining tokens
+ * are not built, and states from which no final state can be reached are
+ * removed, so that every path through the automaton is a valid tuple set.
+ */
 public class PolarityAutomaton {
     ArrayList<PolarityAutomatonState> states;
     String axiom;
     boolean verbose;
+    // the states reached after the last token are the ones with an ID >= firstFinalId
+    int firstFinalId;
+    // number of paths from each state to a final state
+    BigInteger[] pathCounts;
 
     public PolarityAutomaton(List<String> toksentence, List<PolarizedToken> tokens, String axiom, boolean verbose, List<String> lexicals, Map<String, List<String>> coancNodes) {
         this.axiom = axiom;
         this.verbose = verbose;
+        //for every token, the polarities of its tuples, by tuple ID
+        List<Map<String, Polarities>> tokenTuples = new ArrayList<Map<String, Polarities>>();
+        int tokNum = 0;
+        for (String tok : toksentence) {
+            PolarizedToken token = tokens.get(tokNum);
+            tokNum += 1;
+            //get all the tuples for this token
+            HashSet<PolarizedTuple> tuples = new HashSet<PolarizedTuple>();
+            for (String lemmaID : token.getLemmas().keySet()) {
+                PolarizedLemma lemma = token.getLemmas().get(lemmaID);
+                for (PolarizedTuple tuple : lemma.getTuples().values()) {
+                    tuples.add(tuple);
+                }
+            }
+            // on top of the tuples, we check the possibility to be
+            // either a lexical item in a tree or a coanchor
+            if (lexicals.contains(tok))
+                tuples.add(new PolarizedTuple("", new Polarities(token.getToken(), token.getToken(), Polarities.PLUS)));
+
+            if (coancNodes.containsKey(tok)) {
+                Iterator<String> it = coancNodes.get(token.getToken()).iterator();
+                while (it.hasNext()) {
+                    String cat = it.next();
+                    tuples.add(new PolarizedTuple("", new Polarities(cat, cat, Polarities.PLUS)));
+                }
+            }
+            //edges are labeled with tuple IDs: of several tuples with the same ID, the last one is kept
+            Map<String, Polarities> byID = new LinkedHashMap<String, Polarities>();
+            for (PolarizedTuple tuple : tuples) {
+                byID.put(tuple.getTupleID(), tuple.getPol());
+            }
+            //a token without tuples ends all paths
+            if (byID.isEmpty())
+                break;
+            tokenTuples.add(byID);
+        }
+        List<Map<String, int[]>> remainingCharges = computeRemainingCharges(tokenTuples);
+
         int statesNum = 0;
         states = new ArrayList<PolarityAutomatonState>();
         //build an initial state that will be the entry point for traversal
         states.add(new PolarityAutomatonState(new Polarities(), statesNum++, ""));
         //previousStates will always contain all the states reached by processing a given token
-        ArrayList<PolarityAutomatonState> previousStates = new ArrayList<PolarityAutomatonState>();
-        previousStates.add(states.get(0));
-        //in newStates, the construction of the state frontier for the next token takes place 
-        ArrayList<PolarityAutomatonState> newStates = new ArrayList<PolarityAutomatonState>();
+        Collection<PolarityAutomatonState> previousStates = Collections.singletonList(states.get(0));
         //driver loop: we process all tokens
-        int tokNum = 0;
-        for (String tok : toksentence)//(PolarizedToken token : tokens)
-        {
-
-            PolarizedToken token = tokens.get(tokNum);
-            tokNum += 1;
-            //every state reached by the previous token must allow for processing the next token
+        for (int tok = 0; tok < tokenTuples.size(); tok++) {
+            //in newStates, the construction of the state frontier for the next token takes place,
+            //states with the same charges are merged
+            Map<Map<String, Integer>, PolarityAutomatonState> newStates = new LinkedHashMap<Map<String, Integer>, PolarityAutomatonState>();
             for (PolarityAutomatonState previousState : previousStates) {
-                //get all the tuples for this token
-                HashSet<PolarizedTuple> tuples = new HashSet<PolarizedTuple>();
-                for (String lemmaID : token.getLemmas().keySet()) {
-                    PolarizedLemma lemma = token.getLemmas().get(lemmaID);
-                    for (PolarizedTuple tuple : lemma.getTuples().values()) {
-                        tuples.add(tuple);
-                    }
-                }
-                // on top of the tuples, we check the possibility to be 
-                // either a lexical item in a tree or a coanchor
-                if (lexicals.contains(tok))
-                    tuples.add(new PolarizedTuple("", new Polarities(token.getToken(), token.getToken(), Polarities.PLUS)));
-
-                if (coancNodes.containsKey(tok)) {
-                    Iterator<String> it = coancNodes.get(token.getToken()).iterator();
-                    while (it.hasNext()) {
-                        String cat = it.next();
-                        tuples.add(new PolarizedTuple("", new Polarities(cat, cat, Polarities.PLUS)));
-                    }
-                }
-
                 //build new states reachable by edges labeled with the tuple IDs
-                for (PolarizedTuple tuple : tuples) {
-                    Polarities addedPolarities = tuple.getPol();
-                    Polarities newStatePolarities = Polarities.add(previousState.polarities, addedPolarities);
-                    PolarityAutomatonState newState = new PolarityAutomatonState(newStatePolarities, statesNum++, tuple.getTupleID());
-                    states.add(newState);
-                    newStates.add(newState);
-                    previousState.edges.put(tuple.getTupleID(), states.size() - 1);
+                for (Map.Entry<String, Polarities> tuple : tokenTuples.get(tok).entrySet()) {
+                    Polarities newStatePolarities = Polarities.add(previousState.polarities, tuple.getValue());
+                    Map<String, Integer> charges = newStatePolarities.getCharges();
+                    PolarityAutomatonState newState = newStates.get(charges);
+                    if (newState == null) {
+                        if (!canBeNeutralized(charges, remainingCharges.get(tok + 1)))
+                            continue;
+                        newState = new PolarityAutomatonState(newStatePolarities, statesNum++, tuple.getKey());
+                        states.add(newState);
+                        newStates.put(charges, newState);
+                    }
+                    previousState.edges.put(tuple.getKey(), newState.getStateId());
                 }
             }
             //go on to the next token
-            previousStates = newStates;
-            newStates = new ArrayList<PolarityAutomatonState>();
+            previousStates = newStates.values();
         }
+        //after the last token, the remaining charges are 0, i.e. the final states are valid
+        firstFinalId = states.size() - previousStates.size();
+        countPaths();
         //print information about automaton in verbose mode
         //System.err.println("\t@@ Global polarity automaton size: " + states.size());
         if (verbose) {
             System.err.println("Polarity automaton size: " + states.size());
+            System.err.println("Valid tuple sets: " + countPossibleTupleSets());
             //System.err.println(this.toString()); // Be careful: when the automaton gets big, this can make java run out of memory!
         }
     }
 
-    public List<List<String>> getPossibleTupleSets() {
-        //the valid paths
-        List<List<String>> validTupleSets = new ArrayList<List<String>>();
-        //all paths (FIFO queue)
-        List<List<String>> processedTupleSets = new ArrayList<List<String>>();
-        //paths have following structure: [tupleID, tupleID, tupleID, ..., stateID]
-        //initial path (trigger) starts at starting state
-        ArrayList<String> firstTupleSet = new ArrayList<String>();
-        firstTupleSet.add("0");
-        processedTupleSets.add(firstTupleSet);
-        //until we cannot build any further paths
-        while (processedTupleSets.size() > 0) {
-            //store how many incomplete tuple sets where on the FIFO queue
-            int numberProcessed = processedTupleSets.size();
-            for (int i = 0; i < numberProcessed; i++) {
-                //we retrieve the next tuple set in the FIFO:
-                List<String> nextTupleSet = processedTupleSets.remove(0);
-                //we retrieve the corresponding state:
-                // but first we save a copy (c.f. destructive traversal)
-                List<String> tupleSet = new ArrayList<String>();
-                for (String s : nextTupleSet) {
-                    tupleSet.add(s);
+    /**
+     * @return for each position in the sentence, and for each label, the
+     * minimal and maximal charge the tokens from that position on can
+     * add
+     */
+    private static List<Map<String, int[]>> computeRemainingCharges(List<Map<String, Polarities>> tokenTuples) {
+        LinkedList<Map<String, int[]>> res = new LinkedList<Map<String, int[]>>();
+        Map<String, int[]> remaining = new HashMap<String, int[]>();
+        res.addFirst(remaining);
+        for (int tok = tokenTuples.size() - 1; tok >= 0; tok--) {
+            Collection<Polarities> tuples = tokenTuples.get(tok).values();
+            Set<String> labels = new HashSet<String>(remaining.keySet());
+            for (Polarities pol : tuples) {
+                labels.addAll(pol.getCharges().keySet());
+            }
+            Map<String, int[]> before = new HashMap<String, int[]>();
+            for (String label : labels) {
+                int min = Integer.MAX_VALUE;
+                int max = Integer.MIN_VALUE;
+                for (Polarities pol : tuples) {
+                    Integer c = pol.getCharges().get(label);
+                    int charge = c == null ? 0 : c;
+                    min = Math.min(min, charge);
+                    max = Math.max(max, charge);
                 }
-                PolarityAutomatonState state = states.get(Integer.parseInt(nextTupleSet.remove(nextTupleSet.size() - 1)));
-                // if. we reached the end of an automaton path ...
-                if (state.edges.size() == 0) {
-                    //... we can check the polarities
-                    boolean valid = true;
-                    for (String label : state.polarities.getCharges().keySet()) {
-                        if (state.polarities.getCharges().get(label) != null) {
-                            //polarity of the axiom symbol must be +1
-                            if (label.equals(axiom)) {
-                                if (state.polarities.getCharges().get(label) != 1) {
-                                    valid = false;
-                                    break;
-                                }
-                            }
-                            //polarity of all other symbols must be neutral
-                            else {
-                                if (state.polarities.getCharges().get(label) != 0) {
-                                    valid = false;
-                                    break;
-                                }
-                            }
-                        } else {
-                            if (verbose) System.err.println("Label " + label + " has no polarities!");
-                        }
-                    }
-                    //if the polarities indicate a valid tuple set
-                    if (valid) {
-                        //delete last staple ID
-                        tupleSet.remove(tupleSet.size() - 1);
-                        //tuple IDs remaining on list constitute a valid set of tuples
-                        validTupleSets.add(tupleSet);
-                    }
+                int[] after = remaining.get(label);
+                if (after != null) {
+                    min += after[0];
+                    max += after[1];
+                }
+                before.put(label, new int[]{min, max});
+            }
+            remaining = before;
+            res.addFirst(remaining);
+        }
+        return new ArrayList<Map<String, int[]>>(res);
+    }
+
+    /**
+     * polarity of the axiom symbol must end up +1, polarity of all other
+     * symbols must end up neutral
+     */
+    private boolean canBeNeutralized(Map<String, Integer> charges, Map<String, int[]> remaining) {
+        for (Map.Entry<String, Integer> charge : charges.entrySet()) {
+            int target = charge.getKey().equals(axiom) ? 1 : 0;
+            int[] range = remaining.get(charge.getKey());
+            int min = charge.getValue() + (range == null ? 0 : range[0]);
+            int max = charge.getValue() + (range == null ? 0 : range[1]);
+            if (target < min || target > max)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Counts the paths from each state to a final state, and removes the
+     * edges to states from which no final state can be reached. States are
+     * numbered token by token, so a state only has edges to states with a
+     * higher ID.
+     */
+    private void countPaths() {
+        pathCounts = new BigInteger[states.size()];
+        for (int id = states.size() - 1; id >= 0; id--) {
+            if (id >= firstFinalId) {
+                pathCounts[id] = BigInteger.ONE;
+                continue;
+            }
+            BigInteger count = BigInteger.ZERO;
+            Iterator<Integer> it = states.get(id).edges.values().iterator();
+            while (it.hasNext()) {
+                BigInteger next = pathCounts[it.next()];
+                if (next.signum() == 0)
+                    it.remove();
+                else
+                    count = count.add(next);
+            }
+            pathCounts[id] = count;
+        }
+    }
+
+    /**
+     * @return the number of valid tuple sets, without enumerating them
+     */
+    public BigInteger countPossibleTupleSets() {
+        return pathCounts[0];
+    }
+
+    /**
+     * @return the valid tuple sets, one after the other: each of them is the
+     * list of the tuple IDs chosen for the tokens of the sentence
+     */
+    public Iterator<List<String>> possibleTupleSets() {
+        return new Iterator<List<String>>() {
+            // the edges still to follow from each state on the current path
+            private Deque<Iterator<Map.Entry<String, Integer>>> branches = new ArrayDeque<Iterator<Map.Entry<String, Integer>>>();
+            private List<String> path = new ArrayList<String>();
+            private List<String> next = pathCounts[0].signum() == 0 ? null : descend(0);
+
+            // every state that is not final has an edge, since the dead ends were removed
+            private List<String> descend(int stateId) {
+                while (stateId < firstFinalId) {
+                    Iterator<Map.Entry<String, Integer>> edges = states.get(stateId).edges.entrySet().iterator();
+                    Map.Entry<String, Integer> edge = edges.next();
+                    branches.push(edges);
+                    path.add(edge.getKey());
+                    stateId = edge.getValue();
                 }
-                //we go on traversing the automaton to build complete paths
-                for (String edge : state.edges.keySet()) {
-                    //a new path is built and initialized with the path leading to the current state
-                    List<String> newSet = new ArrayList<String>();
-                    for (String s : nextTupleSet) {
-                        newSet.add(s);
+                return new ArrayList<String>(path);
+            }
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public List<String> next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                List<String> res = next;
+                next = null;
+                while (next == null && !branches.isEmpty()) {
+                    path.remove(path.size() - 1);
+                    Iterator<Map.Entry<String, Integer>> edges = branches.peek();
+                    if (edges.hasNext()) {
+                        Map.Entry<String, Integer> edge = edges.next();
+                        path.add(edge.getKey());
+                        next = descend(edge.getValue());
+                    } else {
+                        branches.pop();
                     }
-                    //the next tuple ID is added...
-                    newSet.add(edge);
-                    //... and the state we end up in
-                    newSet.add(state.edges.get(edge).toString());
-                    //the extended path is added to the queue
-                    processedTupleSets.add(newSet);
                 }
+                return res;
+            }
+        };
+    }
+
+    /**
+     * @return the number of combinations of the tuples that occur in valid
+     * tuple sets, i.e. the product over the tokens of the number of
+     * tuples that can be chosen for the token
+     */
+    public long computeAmbig() {
+        long res = 1;
+        Set<Integer> level = Collections.singleton(0);
+        while (!level.isEmpty() && level.iterator().next() < firstFinalId) {
+            Set<String> tupleIds = new HashSet<String>();
+            Set<Integer> nextLevel = new HashSet<Integer>();
+            for (int stateId : level) {
+                tupleIds.addAll(states.get(stateId).edges.keySet());
+                nextLevel.addAll(states.get(stateId).edges.values());
             }
+            if (!tupleIds.isEmpty())
+                res *= tupleIds.size();
+            level = nextLevel;
+        }
+        return res;
+    }
+
+    public List<List<String>> getPossibleTupleSets() {
+        List<List<String>> validTupleSets = new ArrayList<List<String>>();
+        Iterator<List<String>> it = possibleTupleSets();
+        while (it.hasNext()) {
+            validTupleSets.add(it.next());
         }
         return validTupleSets;
     }
@@ -0,0 +1,388 @@
+/*
+ *  File DerivationXMLWriter.java
+ *
+ *  This file is part of the TuLiPA-frames system
+ *     https://github.com/spetitjean/TuLiPA-frames
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.tuebingen.expander;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import de.duesseldorf.frames.Frame;
+import de.duesseldorf.frames.Fs;
+import de.duesseldorf.frames.Relation;
+import de.duesseldorf.frames.Type;
+import de.duesseldorf.frames.Value;
+import de.tuebingen.derive.DerivedTree;
+import de.tuebingen.gui.ParseTreeCollection;
+import de.tuebingen.tag.SemDom;
+import de.tuebingen.tag.SemLit;
+import de.tuebingen.tag.SemPred;
+import de.tuebingen.util.XMLStreamOutput;
+
+/**
+ * Writes the parses of a sentence in the format of tulipa-parses.dtd (or in
+ * the grammar format of the XMG webgui), one parse after the other as they
+ * are derived, without building a document of all the parses.
+ * <p>
+ * Usage: {@link #startDocument()}, {@link #write(ParseTreeCollection)} for
+ * every parse, {@link #endDocument()}.
+ */
+public class DerivationXMLWriter {
+
+    public static final String DTD = "tulipa-parses.dtd,xml";
+
+    private final XMLStreamOutput out;
+    private final String sentence;
+    // the grammar format of the webgui instead of the standard format
+    private final boolean grammarFormat;
+    private int parsecounter;
+
+    public DerivationXMLWriter(XMLStreamOutput out, String sentence,
+                               boolean grammarFormat) {
+        this.out = out;
+        this.sentence = sentence;
+        this.grammarFormat = grammarFormat;
+        parsecounter = 0;
+    }
+
+    /**
+     * Write all the parses to outfile (a file name, or "stdout"), in the
+     * standard format.
+     */
+    public static void writeXML(List<ParseTreeCollection> all,
+                                String sentence, String outfile) {
+        try {
+            XMLStreamOutput out = new XMLStreamOutput(outfile);
+            try {
+                DerivationXMLWriter writer = new DerivationXMLWriter(out,
+                        sentence, false);
+                writer.startDocument();
+                for (ParseTreeCollection ptc : all) {
+                    writer.write(ptc);
+                }
+                writer.endDocument();
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            System.err.println("   " + e.getMessage());
+        }
+    }
+
+    public void startDocument() throws IOException {
+        out.startDocument(DTD);
+        if (grammarFormat) {
+            out.startElement("grammar");
+        } else {
+            out.startElement("parses");
+            out.attribute("sentence", sentence);
+        }
+    }
+
+    /**
+     * Write one parse, and flush it.
+     */
+    public void write(ParseTreeCollection ptc) throws IOException {
+        Node derivation = ptc.getDerivationTree().getDomNodes().get(0);
+        DerivedTree dTree = ptc.getOriginalDerivedTree();
+        if (grammarFormat) {
+            writeOneGrammarFormat(derivation, dTree, ptc.getFrameSem());
+        } else {
+            writeOne(derivation, dTree, ptc.getSemantics(),
+                    ptc.getSpecifiedSemantics(), ptc.getFrameSem());
+        }
+        out.flush();
+    }
+
+    public void endDocument() throws IOException {
+        out.endDocument();
+    }
+
+    private void writeOneGrammarFormat(Node derivation, DerivedTree dTree,
+                                       Frame frameSem) throws IOException {
+        // the entry with the derived tree
+        out.startElement("entry");
+        out.attribute("name", sentence + "_" + parsecounter + "_derivedTree");
+        parsecounter++;
+
+        out.startElement("trace");
+        writeTrace(derivation);
+        out.endElement();
+
+        out.startElement("family");
+        out.endElement();
+
+        out.startElement("tree");
+        writeDerivedTree(dTree, dTree.root);
+        out.endElement();
+
+        out.startElement("frame");
+        writeFrames(frameSem);
+        out.endElement();
+
+        out.endElement();
+    }
+
+    private void writeOne(Node derivation, DerivedTree dTree,
+                          List<SemLit> semantics, String[] specifiedSemantics,
+                          Frame frameSem) throws IOException {
+        out.startElement("parse");
+
+        out.startElement("derivationTree");
+        writeDerivationTree(derivation);
+        out.endElement();
+
+        out.startElement("derivedTree");
+        writeDerivedTree(dTree, dTree.root);
+        out.endElement();
+
+        out.startElement("semantics");
+        writeSemantics(semantics);
+        out.endElement();
+
+        out.startElement("specified_semantics");
+        writeSpecifiedSemantics(specifiedSemantics);
+        out.endElement();
+
+        out.startElement("frame");
+        writeFrames(frameSem);
+        out.endElement();
+
+        out.endElement();
+    }
+
+    private void writeDerivationTree(Node derivation) throws IOException {
+        out.startElement("tree");
+        Node id = derivation.getAttributes().getNamedItem("id");
+        if (id != null) {
+            out.attribute("id", id.getNodeValue());
+        }
+        Node op = derivation.getAttributes().getNamedItem("op");
+        if (op != null) {
+            out.attribute("op", op.getNodeValue());
+        }
+        Node opNode = derivation.getAttributes().getNamedItem("op-node");
+        if (opNode != null) {
+            out.attribute("node", opNode.getNodeValue());
+        } // skip the other attributes
+        NodeList childList = derivation.getChildNodes();
+        for (int i = 0; i < childList.getLength(); i++) {
+            Node child = childList.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                writeDerivationTree(child);
+            }
+        }
+        out.endElement();
+    }
+
+    /*
+     * the classes of the subtrees come before the one of the tree
+     */
+    private void writeTrace(Node derivation) throws IOException {
+        NodeList childList = derivation.getChildNodes();
+        for (int i = 0; i < childList.getLength(); i++) {
+            Node child = childList.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                writeTrace(child);
+            }
+        }
+        out.startElement("class");
+        Node id = derivation.getAttributes().getNamedItem("id");
+        if (id != null) {
+            out.text(id.getNodeValue());
+        }
+        out.endElement();
+    }
+
+    private void writeDerivedTree(DerivedTree dTree, Node current)
+            throws IOException {
+        NodeList children = current.getChildNodes();
+        out.startElement("node");
+        if (children.getLength() == 0) {
+            // lex node
+            out.attribute("type", "lex");
+            out.attribute("value", current.getNodeName());
+        } else {
+            out.attribute("type", "std");
+        }
+        out.startElement("narg");
+        Fs features = dTree.features.get(current);
+        if (features != null) {
+            writeFrame(features);
+        }
+        if (children.getLength() == 0) {
+            // for display in the XMG webgui
+            out.startElement("fs");
+            out.startElement("f");
+            out.attribute("name", "cat");
+            out.startElement("sym");
+            out.attribute("value", current.getNodeName());
+            out.endElement();
+            out.endElement();
+            out.endElement();
+        }
+        out.endElement();
+        for (int i = 0; i < children.getLength(); i++) {
+            writeDerivedTree(dTree, children.item(i));
+        }
+        out.endElement();
+    }
+
+    private void writeSemantics(List<SemLit> semantics) throws IOException {
+        for (SemLit sl : semantics) {
+            if (sl instanceof SemPred) {
+                out.startElement("literal");
+                out.attribute("negated",
+                        ((SemPred) sl).isNegated() ? "yes" : "no");
+                writeSemPred((SemPred) sl);
+                out.endElement();
+            } else if (sl instanceof SemDom) {
+                out.startElement("semdominance");
+                out.attribute("op", "ge");
+                writeVal(((SemDom) sl).getArg1().toString());
+                writeVal(((SemDom) sl).getArg2().toString());
+                out.endElement();
+            } else if (sl instanceof Value) {
+                writeVal(((Value) sl).toString());
+            }
+        }
+    }
+
+    private void writeSemPred(SemPred sp) throws IOException {
+        out.startElement("label");
+        writeVal(sp.getLabel().toString());
+        out.endElement();
+        out.startElement("predicate");
+        writeVal(sp.getPred().toString());
+        out.endElement();
+        for (Value arg : sp.getArgs()) {
+            out.startElement("arg");
+            writeVal(arg.toString());
+            out.endElement();
+        }
+    }
+
+    private void writeVal(String val) throws IOException {
+        if (val.startsWith("X") || val.startsWith("?")) {
+            out.startElement("sym");
+            out.attribute("varname", val);
+            out.endElement();
+        }
+        // should replace the previous case
+        else if (val.startsWith("_V_")) {
+            out.startElement("sym");
+            out.attribute("varname", val.substring(3));
+            out.endElement();
+        } else if (val.startsWith("@{")) {
+            out.startElement("vAlt");
+            for (String v : val.substring(2, val.length() - 1).split("\\W",
+                    -2)) {
+                writeVal(v);
+            }
+            out.endElement();
+        } else {
+            out.startElement("sym");
+            out.attribute("value", val);
+            out.endElement();
+        }
+    }
+
+    private void writeSpecifiedSemantics(String[] sem) throws IOException {
+        if (sem != null) {
+            for (String reading : sem) {
+                out.startElement("reading");
+                out.text(reading);
+                out.endElement();
+            }
+        }
+    }
+
+    private void writeFrames(Frame frameSem) throws IOException {
+        for (Fs frame : frameSem.getFeatureStructures()) {
+            writeFrame(frame);
+        }
+        writeRelations(frameSem.getRelations());
+    }
+
+    private void writeRelations(Set<Relation> relations) throws IOException {
+        for (Relation properRelation : relations) {
+            out.startElement("relation");
+            out.attribute("name", properRelation.getName());
+            for (Value properVal : properRelation.getArguments()) {
+                out.startElement("sym");
+                out.attribute("varname", properVal.getVarVal());
+                out.endElement();
+            }
+            out.endElement();
+        }
+    }
+
+    private void writeFrame(Fs frame) throws IOException {
+        out.startElement("fs");
+        if (frame.getCoref() != null) {
+            out.attribute("coref", frame.getCoref().toString());
+        }
+        Type type = frame.getType();
+        if (type != null) {
+            out.startElement("ctype");
+            for (String etype : type.getElementaryTypes()) {
+                out.startElement("type");
+                out.attribute("val", etype);
+                out.endElement();
+            }
+            out.endElement();
+        }
+        Map<String, Value> avm = frame.getAVlist();
+        List<String> sortedKeyList = new ArrayList<String>(avm.keySet());
+        Collections.sort(sortedKeyList);
+        for (String k : sortedKeyList) {
+            Value fval = avm.get(k);
+            out.startElement("f");
+            out.attribute("name", k);
+            // fval can be a variable, a constant, or a fs (we ignore int and
+            // adisj for now)
+            switch (fval.getType()) {
+                case VAL:
+                    out.startElement("sym");
+                    out.attribute("value", fval.getSVal());
+                    out.endElement();
+                    break;
+                case VAR:
+                    out.startElement("sym");
+                    out.attribute("varname", fval.getVarVal());
+                    out.endElement();
+                    break;
+                case AVM:
+                    writeFrame(fval.getAvmVal());
+                    break;
+                default:
+                    break;
+            }
+            out.endElement();
+        }
+        out.endElement();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *  File ForestExpander.java
+ *
+ *  This file is part of the TuLiPA-frames system
+ *     https://github.com/spetitjean/TuLiPA-frames
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.tuebingen.expander;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.tuebingen.derive.DerivationTree;
+import de.tuebingen.forest.Rule;
+import de.tuebingen.forest.Tidentifier;
+import de.tuebingen.forest.TreeOp;
+import de.tuebingen.rcg.PredComplexLabel;
+
+/**
+ * Extracts the derivation trees of a forest directly from its rules, as the
+ * ParseTreeHandler does from the DOM built by ProduceDOM.buildDOMForest,
+ * without building any of the two documents.
+ * <p>
+ * The derivations of a forest rule are computed once, and shared by all the
+ * derivations using them.
+ */
+public class ForestExpander {
+
+    private final Map<Tidentifier, List<Rule>> forest;
+    private final Map<Tidentifier, List<DerivationTree>> derivations;
+    // the operations are numbered by forest rule (see NameFactory in
+    // ProduceDOM)
+    private final Map<Tidentifier, Integer> ids;
+
+    public ForestExpander(Map<Tidentifier, List<Rule>> forest) {
+        this.forest = forest;
+        derivations = new HashMap<Tidentifier, List<DerivationTree>>();
+        ids = new HashMap<Tidentifier, Integer>();
+    }
+
+    /**
+     * @return the derivation trees of the forest, in the order of the
+     * ParseTreeHandler
+     */
+    public static List<DerivationTree> extractDerivationTrees(
+            Map<Tidentifier, List<Rule>> forest, List<Tidentifier> start) {
+        ForestExpander expander = new ForestExpander(forest);
+        List<DerivationTree> res = new ArrayList<DerivationTree>();
+        // ProduceDOM gives a start rule for each rule of a start identifier,
+        // which are all expanded by the ParseTreeHandler: each start
+        // identifier is only expanded once here, to avoid duplicates
+        Set<Tidentifier> expanded = new HashSet<Tidentifier>();
+        for (Tidentifier tid : start) {
+            if (expanded.add(tid)) {
+                res.addAll(expander.expand(tid));
+            }
+        }
+        System.err.println("Number of derivation trees " + res.size());
+        return res;
+    }
+
+    /**
+     * @return all the derivations of the rules of tid (see Rule.apply)
+     */
+    public List<DerivationTree> expand(Tidentifier tid) {
+        List<DerivationTree> res = derivations.get(tid);
+        if (res != null) {
+            return res;
+        }
+        res = new ArrayList<DerivationTree>();
+        List<Rule> rules = forest.get(tid);
+        if (rules != null) {
+            for (Rule rule : rules) {
+                List<DerivationTree> possibleTrees = new ArrayList<DerivationTree>();
+                possibleTrees.add(new DerivationTree(tid.getTreeId()));
+                for (TreeOp disj : rule.getRhs()) {
+                    List<DerivationTree.Operation> possibleOperations = new ArrayList<DerivationTree.Operation>();
+                    // the alternatives are chained (see ProduceDOM.buildDisj)
+                    for (TreeOp top = disj; top != null; top = top.isDisj()
+                            ? top.getOr() : null) {
+                        String type = top.getType() == PredComplexLabel.ADJ
+                                ? DerivationTree.ADJ : DerivationTree.SUBST;
+                        for (DerivationTree sub : expand(top.getId())) {
+                            possibleOperations.add(new DerivationTree.Operation(
+                                    type, top.getId().getNodeId(),
+                                    id(top.getId()), sub));
+                        }
+                    }
+                    // all the combinations with the previous operations
+                    List<DerivationTree> extended = new ArrayList<DerivationTree>(
+                            possibleTrees.size() * possibleOperations.size());
+                    for (DerivationTree tree : possibleTrees) {
+                        for (DerivationTree.Operation op : possibleOperations) {
+                            extended.add(tree.extend(op));
+                        }
+                    }
+                    possibleTrees = extended;
+                }
+                res.addAll(possibleTrees);
+            }
+        }
+        derivations.put(tid, res);
+        return res;
+    }
+
+    private int id(Tidentifier tid) {
+        Integer id = ids.get(tid);
+        if (id == null) {
+            id = ids.size();
+            ids.put(tid, id);
+        }
+        return id;
+    }
+}
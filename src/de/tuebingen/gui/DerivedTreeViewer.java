@@ -39,16 +39,24 @@ import java.awt.Toolkit;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import de.duesseldorf.frames.FSPrintingTools;
+import de.duesseldorf.frames.Situation;
+import de.tuebingen.derive.DerivationTree;
 import de.tuebingen.derive.DerivedTree;
 import de.tuebingen.derive.ElementaryTree;
 import de.tuebingen.derive.TreeDeriver;
@@ -71,133 +79,297 @@ public class DerivedTreeViewer {
 
             // XMLTreeViewer.displayTree(derivationTrees.getDocumentElement());
             NodeList startNodes = derivationTrees.getElementsByTagName("start");
-            // Simon: added this for debugging
-            // This should be done earlier, but I don't know where
-            HashSet<Integer> toRemove = new HashSet<Integer>();
+            List<DerivationTree> derivations = new ArrayList<DerivationTree>();
             for (int i = 0; i < startNodes.getLength(); i++) {
-                for (int j = i + 1; j < startNodes.getLength(); j++) {
-                    if (startNodes.item(i).isEqualNode(startNodes.item(j))) {
-                        // System.out.println("Found duplicate: "+i+"-"+j);
-                        toRemove.add(j);
+                derivations.add(DerivationTree.fromDOM(
+                        startNodes.item(i).getFirstChild().getFirstChild()));
+            }
+            return getViewTrees(derivations, treeDict, elementaryTreeOutput,
+                    derivationStepOutput, debugMode, needsAnchoring, semlabels,
+                    noUtool);
+        } catch (Exception e) {
+            System.err.println("Error while reading XML File:");
+            System.err.println(e.toString());
+            StackTraceElement[] stack = e.getStackTrace();
+            for (int i = 0; i < stack.length; i++) {
+                System.err.println(stack[i]);
+            }
+            // System.exit(0);
+        }
+        return new ArrayList<ParseTreeCollection>();
+    }
+
+    /**
+     * Derive the trees of the derivations extracted from a forest (see
+     * ForestExpander), without building the forest and derivations
+     * documents.
+     */
+    public static ArrayList<ParseTreeCollection> getViewTrees(
+            List<DerivationTree> derivations, Map<String, TagTree> treeDict,
+            boolean elementaryTreeOutput, boolean derivationStepOutput,
+            boolean debugMode, boolean needsAnchoring, List<String> semlabels,
+            boolean noUtool) {
+        return getViewTrees(derivations, treeDict, elementaryTreeOutput,
+                derivationStepOutput, debugMode, needsAnchoring, semlabels,
+                noUtool, 1);
+    }
+
+    /**
+     * Same as above, with the derivations derived in parallel by threads
+     * worker threads. Each derivation has its own elementary tree instances,
+     * NameFactory and Environment (see TreeDeriver.deriveTree), the
+     * grammar is only read. The trees are returned in the order of the
+     * derivations, and the derivations which fail (e.g. on frame
+     * unification) are discarded.
+     */
+    public static ArrayList<ParseTreeCollection> getViewTrees(
+            List<DerivationTree> derivations, Map<String, TagTree> treeDict,
+            boolean elementaryTreeOutput, boolean derivationStepOutput,
+            boolean debugMode, boolean needsAnchoring, List<String> semlabels,
+            boolean noUtool, int threads) {
+        ArrayList<ParseTreeCollection> viewTrees = new ArrayList<ParseTreeCollection>();
+        try {
+            streamViewTrees(derivations, treeDict, elementaryTreeOutput,
+                    derivationStepOutput, debugMode, needsAnchoring,
+                    semlabels, noUtool, threads, viewTrees::add);
+        } catch (IOException e) {
+            // not thrown, the consumer only collects the trees
+            throw new IllegalStateException(e);
+        }
+        return viewTrees;
+    }
+
+    /**
+     * Receives the trees of the derivations as soon as they are derived (see
+     * streamViewTrees).
+     */
+    public interface ParseTreeConsumer {
+        void accept(ParseTreeCollection trees) throws IOException;
+    }
+
+    /**
+     * Same as getViewTrees, but the trees of each derivation are given to
+     * consumer (in the order of the derivations) instead of being collected,
+     * so that they can be written and forgotten. At most 2 derivations per
+     * thread are derived ahead of the consumer. A derivation which fails is
+     * discarded.
+     */
+    public static void streamViewTrees(
+            List<DerivationTree> derivations, Map<String, TagTree> treeDict,
+            boolean elementaryTreeOutput, boolean derivationStepOutput,
+            boolean debugMode, boolean needsAnchoring, List<String> semlabels,
+            boolean noUtool, int threads, ParseTreeConsumer consumer)
+            throws IOException {
+        List<DerivationTree> unique = uniqueDerivations(derivations);
+
+        if (threads <= 1 || unique.size() <= 1) {
+            for (DerivationTree derivation : unique) {
+                ParseTreeCollection trees = null;
+                try {
+                    trees = deriveViewTrees(derivation, treeDict,
+                            elementaryTreeOutput, derivationStepOutput,
+                            debugMode, needsAnchoring, semlabels, noUtool);
+                } catch (Exception e) {
+                    printDerivationError(e);
+                }
+                if (trees != null) {
+                    consumer.accept(trees);
+                }
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors
+                .newFixedThreadPool(Math.min(threads, unique.size()));
+        Deque<Future<ParseTreeCollection>> window = new ArrayDeque<Future<ParseTreeCollection>>();
+        try {
+            for (DerivationTree derivation : unique) {
+                if (window.size() >= 2 * threads) {
+                    ParseTreeCollection trees = collect(window.poll());
+                    if (trees != null) {
+                        consumer.accept(trees);
                     }
                 }
+                window.add(executor.submit(derivationTask(derivation,
+                        treeDict, elementaryTreeOutput, derivationStepOutput,
+                        debugMode, needsAnchoring, semlabels, noUtool)));
+            }
+            while (!window.isEmpty()) {
+                ParseTreeCollection trees = collect(window.poll());
+                if (trees != null) {
+                    consumer.accept(trees);
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-            ArrayList<ParseTreeCollection> viewTrees = new ArrayList<ParseTreeCollection>();
-            for (ParseTreeCollection parseTreeCollection : viewTrees) {
-                System.out.println(
-                        "DTV.97: frameSem" + parseTreeCollection.getFrameSem());
-                // System.out.println(
-                // "DTV.97: frames" + parseTreeCollection.getFrames());
+    /**
+     * duplicate derivations (which give the same derived tree) are only
+     * derived once, see DerivationTree.getSignature()
+     */
+    private static List<DerivationTree> uniqueDerivations(
+            List<DerivationTree> derivations) {
+        HashSet<String> signatures = new HashSet<String>();
+        List<DerivationTree> unique = new ArrayList<DerivationTree>();
+        for (DerivationTree derivation : derivations) {
+            if (signatures.add(derivation.getSignature())) {
+                unique.add(derivation);
             }
-            for (int i = 0; i < startNodes.getLength(); i++) {
-                if (toRemove.contains(i)) {
-                    continue;
+            // else System.out.println("Found duplicate: "+derivation);
+        }
+        return unique;
+    }
+
+    private static Callable<ParseTreeCollection> derivationTask(
+            final DerivationTree derivation,
+            final Map<String, TagTree> treeDict,
+            final boolean elementaryTreeOutput,
+            final boolean derivationStepOutput, final boolean debugMode,
+            final boolean needsAnchoring, final List<String> semlabels,
+            final boolean noUtool) {
+        // the unification code gets the type hierarchy from the situation
+        // bound to the current thread
+        final Situation situation = Situation.current();
+        return new Callable<ParseTreeCollection>() {
+            public ParseTreeCollection call() throws Exception {
+                Situation previous = Situation.bind(situation);
+                try {
+                    return deriveViewTrees(derivation, treeDict,
+                            elementaryTreeOutput, derivationStepOutput,
+                            debugMode, needsAnchoring, semlabels, noUtool);
+                } finally {
+                    Situation.bind(previous);
                 }
-                Node startNode = startNodes.item(i);
+            }
+        };
+    }
 
-                XMLViewTree viewTree = ViewTreeBuilder
-                        .makeViewableDerivationTree(startNode, treeDict);
-                ArrayList<ElementaryTree> eTrees = null;
-                if (elementaryTreeOutput)
-                    eTrees = new ArrayList<ElementaryTree>();
-                ArrayList<ElementaryTree> steps = null;
-                if (derivationStepOutput)
-                    steps = new ArrayList<ElementaryTree>();
-                DerivedTree dTree = TreeDeriver.deriveTree(startNode, treeDict,
-                        eTrees, steps, debugMode, semlabels, needsAnchoring);
-                if (dTree != null) {
-                    if (!dTree.success) {
-                        viewTree.description = "*" + viewTree.description;
-                    }
-                    XMLViewTree derivedTree = ViewTreeBuilder
-                            .makeViewableDerivedTree(dTree);
-                    String semanticsString = "Semantic representation:<br>";
-                    for (SemLit sl : dTree.semantics) {
-                        semanticsString += sl.toString() + "<br>";
-                    }
-                    // if (dTree.frames != null) {
-                    // All of this should be done in TreeDeriver
-                    // Environment env= new Environment(0);
-                    // List<Fs> mergedFrames = Fs.mergeFS(dTree.frames,
-                    // situation,env);
-                    // if(mergedFrames==null){
-                    // continue;
-                    // }
-                    // // clean up the list here
-                    // List<Fs> cleanFrames = FsTools.cleanup(mergedFrames);
-                    // dTree.updateFeatures(dTree.root, env,
+    /**
+     * @return the trees of a derivation task, null if it failed
+     */
+    private static ParseTreeCollection collect(
+            Future<ParseTreeCollection> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            // only this derivation is lost
+            printDerivationError(e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * @return the view trees of the derivation, or null if the derivation
+     * failed
+     */
+    private static ParseTreeCollection deriveViewTrees(
+            DerivationTree derivation, Map<String, TagTree> treeDict,
+            boolean elementaryTreeOutput, boolean derivationStepOutput,
+            boolean debugMode, boolean needsAnchoring, List<String> semlabels,
+            boolean noUtool) throws Exception {
+        XMLViewTree viewTree = ViewTreeBuilder
+                .makeViewableDerivationTree(derivation, treeDict);
+        ArrayList<ElementaryTree> eTrees = null;
+        if (elementaryTreeOutput)
+            eTrees = new ArrayList<ElementaryTree>();
+        ArrayList<ElementaryTree> steps = null;
+        if (derivationStepOutput)
+            steps = new ArrayList<ElementaryTree>();
+        DerivedTree dTree = TreeDeriver.deriveTree(derivation, treeDict,
+                eTrees, steps, debugMode, semlabels, needsAnchoring);
+        if (dTree != null) {
+            if (!dTree.success) {
+                viewTree.description = "*" + viewTree.description;
+            }
+            XMLViewTree derivedTree = ViewTreeBuilder
+                    .makeViewableDerivedTree(dTree);
+            String semanticsString = "Semantic representation:<br>";
+            for (SemLit sl : dTree.semantics) {
+                semanticsString += sl.toString() + "<br>";
+            }
+            // if (dTree.frames != null) {
+            // All of this should be done in TreeDeriver
+            // Environment env= new Environment(0);
+            // List<Fs> mergedFrames = Fs.mergeFS(dTree.frames,
+            // situation,env);
+            // if(mergedFrames==null){
+            // continue;
+            // }
+            // // clean up the list here
+            // List<Fs> cleanFrames = FsTools.cleanup(mergedFrames);
+            // dTree.updateFeatures(dTree.root, env,
+            // false);
+            // // This is only because it's not done in TreeDeriver:
+            // derivedTree = ViewTreeBuilder
+            // .makeViewableDerivedTree(dTree);
+            // That is the only thing which should be here:
+            // for (Fs fs : cleanFrames) {
+            // for (Fs fs : dTree.frames) {
+            // semanticsString += FsTools.printFS(fs);
+            // }
+            // }
+            if (dTree.getFrameSem() != null) {
+                de.duesseldorf.frames.Frame frameSem = dTree
+                        .getFrameSem();
+                semanticsString += FSPrintingTools.printFrame(frameSem,
+                        debugMode);
+            }
+            // if (dTree.frames == null && dTree.getFrameSem() != null)
+            // {
+            // semanticsString += "frame null";
+            // }
+            // ParseTreeCollection trees = new ParseTreeCollection(
+            // viewTree, derivedTree, semanticsString,
+            // dTree.semantics, dTree.frames, dTree.getFrameSem(),
+            // noUtool);
+            ParseTreeCollection trees = new ParseTreeCollection(
+                    viewTree, derivedTree, dTree, semanticsString,
+                    dTree.semantics, dTree.getFrameSem(), noUtool);
+            if (eTrees != null) {
+                ArrayList<XMLViewTree> viewElemTrees = new ArrayList<XMLViewTree>();
+                for (ElementaryTree eTree : eTrees) {
+                    // old method which might have worked for semlits
+                    // but doesnt care about frames:
+                    // eTree.updateTBFeatures(eTree.root, dTree.env,
                     // false);
-                    // // This is only because it's not done in TreeDeriver:
-                    // derivedTree = ViewTreeBuilder
-                    // .makeViewableDerivedTree(dTree);
-                    // That is the only thing which should be here:
-                    // for (Fs fs : cleanFrames) {
-                    // for (Fs fs : dTree.frames) {
-                    // semanticsString += FsTools.printFS(fs);
-                    // }
-                    // }
-                    if (dTree.getFrameSem() != null) {
-                        de.duesseldorf.frames.Frame frameSem = dTree
-                                .getFrameSem();
-                        semanticsString += FSPrintingTools.printFrame(frameSem,
-                                debugMode);
-                    }
-                    // if (dTree.frames == null && dTree.getFrameSem() != null)
-                    // {
-                    // semanticsString += "frame null";
-                    // }
-                    // ParseTreeCollection trees = new ParseTreeCollection(
-                    // viewTree, derivedTree, semanticsString,
-                    // dTree.semantics, dTree.frames, dTree.getFrameSem(),
-                    // noUtool);
-                    ParseTreeCollection trees = new ParseTreeCollection(
-                            viewTree, derivedTree, dTree, semanticsString,
-                            dTree.semantics, dTree.getFrameSem(), noUtool);
-                    if (eTrees != null) {
-                        ArrayList<XMLViewTree> viewElemTrees = new ArrayList<XMLViewTree>();
-                        for (ElementaryTree eTree : eTrees) {
-                            // old method which might have worked for semlits
-                            // but doesnt care about frames:
-                            // eTree.updateTBFeatures(eTree.root, dTree.env,
-                            // false);
-                            // List<Fs> mergedFrames = Fs.mergeFS(eTree.frames,
-                            // situation);
-                            // clean up the list here7
-                            // List<Fs> cleanFrames = FsTools
-                            // .cleanup(mergedFrames);
-                            // eTree.frames = cleanFrames;
-                            XMLViewTree elemTree = ViewTreeBuilder
-                                    .makeViewableElementaryTree(eTree);
-                            viewElemTrees.add(elemTree);
-                        }
-                        trees.elementaryTrees = viewElemTrees;
-                    }
-                    if (steps != null) {
-                        ArrayList<XMLViewTree> viewStepTrees = new ArrayList<XMLViewTree>();
-                        for (ElementaryTree eTree : steps) {
-                            XMLViewTree elemTree = ViewTreeBuilder
-                                    .makeViewableElementaryTree(eTree);
-                            viewStepTrees.add(elemTree);
-                        }
-                        trees.derivationSteps = viewStepTrees;
-                    }
-                    viewTrees.add(trees);
+                    // List<Fs> mergedFrames = Fs.mergeFS(eTree.frames,
+                    // situation);
+                    // clean up the list here7
+                    // List<Fs> cleanFrames = FsTools
+                    // .cleanup(mergedFrames);
+                    // eTree.frames = cleanFrames;
+                    XMLViewTree elemTree = ViewTreeBuilder
+                            .makeViewableElementaryTree(eTree);
+                    viewElemTrees.add(elemTree);
                 }
+                trees.elementaryTrees = viewElemTrees;
             }
-            return viewTrees;
-        } catch (
-
-                Exception e) {
-            System.err.println("Error while reading XML File:");
-            System.err.println(e.toString());
-            StackTraceElement[] stack = e.getStackTrace();
-            for (int i = 0; i < stack.length; i++) {
-                System.err.println(stack[i]);
+            if (steps != null) {
+                ArrayList<XMLViewTree> viewStepTrees = new ArrayList<XMLViewTree>();
+                for (ElementaryTree eTree : steps) {
+                    XMLViewTree elemTree = ViewTreeBuilder
+                            .makeViewableElementaryTree(eTree);
+                    viewStepTrees.add(elemTree);
+                }
+                trees.derivationSteps = viewStepTrees;
             }
-            // System.exit(0);
+            return trees;
         }
-        return new ArrayList<ParseTreeCollection>();
+        return null;
+    }
+
+    private static void printDerivationError(Throwable e) {
+        System.err.println("Error while deriving trees:");
+        System.err.println(e.toString());
+        StackTraceElement[] stack = e.getStackTrace();
+        for (int i = 0; i < stack.length; i++) {
+            System.err.println(stack[i]);
+        }
+        // System.exit(0);
     }
 
     public static void displayTreesfromDOM(final String s, Document d,
@@ -205,9 +377,24 @@ public class DerivedTreeViewer {
                                            boolean derivationStepOutput, boolean debugMode,
                                            boolean needsAnchoring, List<String> semlabels, boolean noUtool) {
 
-        ArrayList<ParseTreeCollection> viewTrees = getViewTreesFromDOM(d,
-                treeDict, elementaryTreeOutput, derivationStepOutput, debugMode,
-                needsAnchoring, semlabels, noUtool);
+        displayTrees(s, getViewTreesFromDOM(d, treeDict, elementaryTreeOutput,
+                derivationStepOutput, debugMode, needsAnchoring, semlabels,
+                noUtool));
+    }
+
+    public static void displayTrees(final String s,
+                                    List<DerivationTree> derivations, Map<String, TagTree> treeDict,
+                                    boolean elementaryTreeOutput, boolean derivationStepOutput,
+                                    boolean debugMode, boolean needsAnchoring, List<String> semlabels,
+                                    boolean noUtool, int threads) {
+
+        displayTrees(s, getViewTrees(derivations, treeDict,
+                elementaryTreeOutput, derivationStepOutput, debugMode,
+                needsAnchoring, semlabels, noUtool, threads));
+    }
+
+    private static void displayTrees(final String s,
+                                     ArrayList<ParseTreeCollection> viewTrees) {
         // final ArrayList<ParseTreeCollection> viewTrees =
         // getViewTreesFromDOM(d,
         // situation, treeDict, elementaryTreeOutput, derivationStepOutput,
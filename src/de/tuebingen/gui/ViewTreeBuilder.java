@@ -44,6 +44,7 @@ import org.w3c.dom.NodeList;
 import de.duesseldorf.frames.FSPrintingTools;
 import de.duesseldorf.frames.Fs;
 import de.duesseldorf.frames.Value;
+import de.tuebingen.derive.DerivationTree;
 import de.tuebingen.derive.DerivedTree;
 import de.tuebingen.derive.ElementaryTree;
 import de.tuebingen.gui.tree.view.TreeViewNode;
@@ -62,6 +63,25 @@ public class ViewTreeBuilder {
         Node initialTree = D
                 .importNode(derivTree.getLastChild().getFirstChild(), true);
         D.appendChild(initialTree);
+        return makeViewableDerivationTree(D, initialTree, dict);
+    }
+
+    /*
+     * same for a derivation tree extracted directly from the forest (only the
+     * document of the view is built)
+     */
+    public static XMLViewTree makeViewableDerivationTree(
+            DerivationTree derivTree, Map<String, TagTree> dict)
+            throws Exception {
+        Document D = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .newDocument();
+        Node initialTree = derivTree.toDOM(D);
+        D.appendChild(initialTree);
+        return makeViewableDerivationTree(D, initialTree, dict);
+    }
+
+    private static XMLViewTree makeViewableDerivationTree(Document D,
+                                                          Node initialTree, Map<String, TagTree> dict) {
         // rebuild feature structures (append them as attributes to tree nodes
         // above)
         NodeList nargNodes = D.getElementsByTagName("narg");
@@ -64,11 +64,8 @@ import javax.swing.ListSelectionModel;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
-import org.w3c.dom.Document;
-
-import de.tuebingen.expander.DOMderivationBuilder;
+import de.tuebingen.expander.DerivationXMLWriter;
 import de.tuebingen.gui.tree.view.TreeViewPanel;
-import de.tuebingen.util.XMLUtilities;
 
 public class XMLTreeDisplay extends JFrame implements ListSelectionListener,
         ActionListener, FocusListener, MouseListener {
@@ -470,10 +467,8 @@ public class XMLTreeDisplay extends JFrame implements ListSelectionListener,
             chooser.showSaveDialog(this);
             File xmlFile = chooser.getSelectedFile();
 
-            Document dparses = new DOMderivationBuilder(sentence)
-                    .buildDOMderivation(trees);
-            XMLUtilities.writeXML(dparses, xmlFile.getAbsolutePath(),
-                    "tulipa-parses.dtd,xml", true);
+            DerivationXMLWriter.writeXML(trees, sentence,
+                    xmlFile.getAbsolutePath());
         } else if (s.equals("Close")) {
             this.dispose();
         } else if (s.equals("About")) {
@@ -36,6 +36,7 @@ package de.tuebingen.io;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.LinkedList;
@@ -45,7 +46,6 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -59,7 +59,7 @@ import de.tuebingen.lexicon.CoAnchor;
 import de.tuebingen.lexicon.Equation;
 import de.tuebingen.lexicon.Lemma;
 import de.tuebingen.lexicon.LexSem;
-import de.tuebingen.util.XMLUtilities;
+import de.tuebingen.util.XMLEntryStream;
 
 /**
  * @author parmenti
@@ -67,7 +67,8 @@ import de.tuebingen.util.XMLUtilities;
 public class XMLLemmaReader extends FileReader {
 
     private File lemmaFile;
-    static Document lemmaDoc;
+    // the entries are read one at a time
+    private XMLEntryStream entries;
 
     public XMLLemmaReader(File lemma) throws FileNotFoundException {
         /**
@@ -78,37 +79,33 @@ public class XMLLemmaReader extends FileReader {
          */
         super(lemma);
         this.lemmaFile = lemma;
-        lemmaDoc = XMLUtilities.parseXMLFile(lemmaFile, false);
+        entries = new XMLEntryStream(lemmaFile, "lemmas");
+    }
+
+    public void close() throws IOException {
+        entries.close();
+        super.close();
     }
 
     public Map<String, List<Lemma>> getLemmas() {
 
         Map<String, List<Lemma>> lemmas = new HashMap<String, List<Lemma>>();
-        Element root = lemmaDoc.getDocumentElement();
-        NodeList l = root.getElementsByTagName("lemmas");
-        Element e = (Element) l.item(0);
-
-        NodeList ll = e.getChildNodes();
-
-        for (int i = 0; i < ll.getLength(); i++) {
-            Node n = ll.item(i);
+        while (entries.hasNext()) {
             // according to the DTD, the XML chidlren
             // of tag is lemma
-            if (n.getNodeType() == Node.ELEMENT_NODE) {
-                Element el = (Element) n;
-                if (el.getTagName().equals("lemma")) {
-                    String name = el.getAttribute("name");
-                    String cat = el.getAttribute("cat");
-                    Lemma lemma = new Lemma(name, cat);
-                    lemma.setAnchors(getAnchors(el));
-
-                    List<Lemma> llemma = lemmas.get(lemma.getName());
-                    if (llemma == null) {
-                        llemma = new LinkedList<Lemma>();
-                    }
-                    llemma.add(lemma);
-                    lemmas.put(lemma.getName(), llemma);
+            Element el = entries.next();
+            if (el.getTagName().equals("lemma")) {
+                String name = el.getAttribute("name");
+                String cat = el.getAttribute("cat");
+                Lemma lemma = new Lemma(name, cat);
+                lemma.setAnchors(getAnchors(el));
+
+                List<Lemma> llemma = lemmas.get(lemma.getName());
+                if (llemma == null) {
+                    llemma = new LinkedList<Lemma>();
                 }
+                llemma.add(lemma);
+                lemmas.put(lemma.getName(), llemma);
             }
         }
         return lemmas;
@@ -29,7 +29,7 @@
  */
 package de.tuebingen.io;
 
-import de.tuebingen.util.XMLUtilities;
+import de.tuebingen.util.XMLEntryStream;
 import de.duesseldorf.io.XMLGrammarReadingTools;
 import de.tuebingen.anchoring.NameFactory;
 import de.tuebingen.lexicon.Lemmaref;
@@ -39,8 +39,8 @@ import java.util.*;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Node;
@@ -51,7 +51,8 @@ import org.w3c.dom.Node;
 public class XMLMorphReader extends FileReader {
 
     private File morphFile;
-    static Document morphDoc;
+    // the entries are read one at a time
+    private XMLEntryStream entries;
 
     public XMLMorphReader(File morph) throws FileNotFoundException {
         /**
@@ -62,35 +63,32 @@ public class XMLMorphReader extends FileReader {
          */
         super(morph);
         this.morphFile = morph;
-        morphDoc = XMLUtilities.parseXMLFile(morphFile, false);
+        entries = new XMLEntryStream(morphFile, "morphs");
+    }
+
+    public void close() throws IOException {
+        entries.close();
+        super.close();
     }
 
     public Map<String, List<MorphEntry>> getMorphs() {
         Map<String, List<MorphEntry>> morphs = new HashMap<String, List<MorphEntry>>();
 
-        Element root = morphDoc.getDocumentElement();
-        NodeList l = root.getElementsByTagName("morphs");
-        Element e = (Element) l.item(0);
-        NodeList ll = e.getChildNodes();
-
-        for (int i = 0; i < ll.getLength(); i++) {
-            Node n = ll.item(i);
+        while (entries.hasNext()) {
             // according to the DTD, the XML chidlren
             // of tag is morph
-            if (n.getNodeType() == Node.ELEMENT_NODE) {
-                Element el = (Element) n;
-                if (el.getTagName().equals("morph")) {
-                    String lex = el.getAttribute("lex");
-                    MorphEntry mo = new MorphEntry(lex);
-                    mo.setLemmarefs(getLemmarefs(el));
+            Element el = entries.next();
+            if (el.getTagName().equals("morph")) {
+                String lex = el.getAttribute("lex");
+                MorphEntry mo = new MorphEntry(lex);
+                mo.setLemmarefs(getLemmarefs(el));
 
-                    List<MorphEntry> lme = morphs.get(mo.getLex());
-                    if (lme == null) {
-                        lme = new LinkedList<MorphEntry>();
-                    }
-                    lme.add(mo);
-                    morphs.put(mo.getLex(), lme);
+                List<MorphEntry> lme = morphs.get(mo.getLex());
+                if (lme == null) {
+                    lme = new LinkedList<MorphEntry>();
                 }
+                lme.add(mo);
+                morphs.put(mo.getLex(), lme);
             }
         }
         return morphs;
@@ -42,6 +42,7 @@ package de.tuebingen.io;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -51,7 +52,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -68,7 +68,7 @@ import de.tuebingen.tag.SemPred;
 import de.tuebingen.tag.TagNode;
 import de.tuebingen.tag.TagTree;
 import de.tuebingen.tag.Tuple;
-import de.tuebingen.util.XMLUtilities;
+import de.tuebingen.util.XMLEntryStream;
 
 public class XMLTTMCTAGReader extends FileReader {
 
@@ -83,10 +83,14 @@ public class XMLTTMCTAGReader extends FileReader {
 
     private File grammarFile;
     private List<Boolean> needsAnchoring;
-    static Document gramDoc;
+    // the entries are read one at a time, the document is never loaded
+    // as a whole
+    private XMLEntryStream entries;
 
     /**
-     * Generate a parser for an XML file containing an XMG MC-TAG grammar
+     * Generate a parser for an XML file containing an XMG MC-TAG grammar.
+     * The grammar can only be retrieved once, with {@link #getTuples()} or
+     * {@link #getFrames()}.
      *
      * @param grammar
      *            the XML file
@@ -94,59 +98,57 @@ public class XMLTTMCTAGReader extends FileReader {
     public XMLTTMCTAGReader(File grammar) throws FileNotFoundException {
         super(grammar);
         this.grammarFile = grammar;
-        gramDoc = XMLUtilities.parseXMLFile(grammarFile, false);
+        entries = new XMLEntryStream(grammarFile);
         needsAnchoring = new LinkedList<Boolean>();
     }
 
+    public void close() throws IOException {
+        entries.close();
+        super.close();
+    }
+
     public Map<String, List<Tuple>> getFrames() {
         Map<String, List<Tuple>> sets = new HashMap<String, List<Tuple>>();
 
-        Element root = gramDoc.getDocumentElement();
-        NodeList l = root.getChildNodes();
-
-        for (int i = 0; i < l.getLength(); i++) {
-            Node n = l.item(i);
+        while (entries.hasNext()) {
             // according to the DTD, the XML chidlren
             // of mcgrammar are either entry (single tree) or mcset
-            if (n.getNodeType() == Node.ELEMENT_NODE) {
-                String id = null;
-
-                Tuple t = null;
-                Element e = (Element) n;
-                NameFactory nf = new NameFactory();
-                if (e.getTagName().equals("entry")) {
-                    id = e.getAttribute("name");
-                    t = new Tuple("tuple-" + id);
-                    TagTree ttree = getEntry(e, needsAnchoring, nf);
-                    ttree.setTupleId(id);
-                    ttree.setIsHead(true);
-                    t.setHead(ttree);
-                    updateHash(sets, t.getHead().getFamily(), t);
-                    // System.out.println("TTREE: "+ttree.getFrameSem());
-                    // System.out.println("IFACE: "+ttree.getIface());
-                } else if (e.getTagName().equals("mcset")) {
-                    id = e.getAttribute("id");
-                    t = new Tuple(id);
-                    LinkedList<TagTree> trees = (LinkedList<TagTree>) getTrees(
-                            e, id, needsAnchoring, nf);
-                    // here head is selected from trees
-                    // (it is in 1st position)
-                    t.setHead(trees.poll());
-                    t.setArguments(trees);
-                    updateHash(sets, t.getHead().getFamily(), t);
-                }
-                // we update the tuple's family
-                if (t != null) {
-                    t.setFamily(t.getHead().getFamily());
-                }
+            Element e = entries.next();
+            String id = null;
+
+            Tuple t = null;
+            NameFactory nf = new NameFactory();
+            if (e.getTagName().equals("entry")) {
+                id = e.getAttribute("name");
+                t = new Tuple("tuple-" + id);
+                TagTree ttree = getEntry(e, needsAnchoring, nf);
+                ttree.setTupleId(id);
+                ttree.setIsHead(true);
+                t.setHead(ttree);
+                updateHash(sets, t.getHead().getFamily(), t);
+                // System.out.println("TTREE: "+ttree.getFrameSem());
+                // System.out.println("IFACE: "+ttree.getIface());
+            } else if (e.getTagName().equals("mcset")) {
+                id = e.getAttribute("id");
+                t = new Tuple(id);
+                LinkedList<TagTree> trees = (LinkedList<TagTree>) getTrees(
+                        e, id, needsAnchoring, nf);
+                // here head is selected from trees
+                // (it is in 1st position)
+                t.setHead(trees.poll());
+                t.setArguments(trees);
+                updateHash(sets, t.getHead().getFamily(), t);
+            }
+            // we update the tuple's family
+            if (t != null) {
+                t.setFamily(t.getHead().getFamily());
             }
         }
         return sets;
     }
 
     /**
-     * Retrieve the tuples Object from the DOM document
-     * corresponding to the input XML file
+     * Retrieve the tuples Object from the input XML file, entry by entry
      *
      * @author parmenti
      *
@@ -155,46 +157,41 @@ public class XMLTTMCTAGReader extends FileReader {
      */
     public Map<String, List<Tuple>> getTuples() {
         Map<String, List<Tuple>> sets = new HashMap<String, List<Tuple>>();
-        Element root = gramDoc.getDocumentElement();
-        NodeList l = root.getChildNodes();
 
-        for (int i = 0; i < l.getLength(); i++) {
-            Node n = l.item(i);
+        while (entries.hasNext()) {
             // according to the DTD, the XML chidlren
             // of mcgrammar are either entry (single tree) or mcset
-            if (n.getNodeType() == Node.ELEMENT_NODE) {
-                String id = null;
-
-                Tuple t = null;
-                Element e = (Element) n;
-                NameFactory nf = new NameFactory();
-
-                if (e.getTagName().equals("entry")) {
-                    id = e.getAttribute("name");
-                    t = new Tuple("tuple-" + id);
-
-                    // System.err.println("Using a new NameFactory for " + id);
-
-                    TagTree ttree = getEntry(e, needsAnchoring, nf);
-                    ttree.setTupleId(id);
-                    ttree.setIsHead(true);
-                    t.setHead(ttree);
-                    updateHash(sets, t.getHead().getFamily(), t);
-                } else if (e.getTagName().equals("mcset")) {
-                    id = e.getAttribute("id");
-                    t = new Tuple(id);
-                    LinkedList<TagTree> trees = (LinkedList<TagTree>) getTrees(
-                            e, id, needsAnchoring, nf);
-                    // here head is selected from trees
-                    // (it is in 1st position)
-                    t.setHead(trees.poll());
-                    t.setArguments(trees);
-                    updateHash(sets, t.getHead().getFamily(), t);
-                }
-                // we update the tuple's family
-                if (t != null) {
-                    t.setFamily(t.getHead().getFamily());
-                }
+            Element e = entries.next();
+            String id = null;
+
+            Tuple t = null;
+            NameFactory nf = new NameFactory();
+
+            if (e.getTagName().equals("entry")) {
+                id = e.getAttribute("name");
+                t = new Tuple("tuple-" + id);
+
+                // System.err.println("Using a new NameFactory for " + id);
+
+                TagTree ttree = getEntry(e, needsAnchoring, nf);
+                ttree.setTupleId(id);
+                ttree.setIsHead(true);
+                t.setHead(ttree);
+                updateHash(sets, t.getHead().getFamily(), t);
+            } else if (e.getTagName().equals("mcset")) {
+                id = e.getAttribute("id");
+                t = new Tuple(id);
+                LinkedList<TagTree> trees = (LinkedList<TagTree>) getTrees(
+                        e, id, needsAnchoring, nf);
+                // here head is selected from trees
+                // (it is in 1st position)
+                t.setHead(trees.poll());
+                t.setArguments(trees);
+                updateHash(sets, t.getHead().getFamily(), t);
+            }
+            // we update the tuple's family
+            if (t != null) {
+                t.setFamily(t.getHead().getFamily());
             }
         }
         return sets;
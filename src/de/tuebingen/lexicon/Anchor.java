@@ -29,12 +29,14 @@
  */
 package de.tuebingen.lexicon;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
 
 import de.duesseldorf.frames.Fs;
 
-public class Anchor {
+@SuppressWarnings("serial")
+public class Anchor implements Serializable {
 
     private String tree_id;
     private List<CoAnchor> coanchors;
@@ -29,10 +29,12 @@
  */
 package de.tuebingen.lexicon;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
 
-public class CoAnchor {
+@SuppressWarnings("serial")
+public class CoAnchor implements Serializable {
 
     private String node_id;
     private String cat;
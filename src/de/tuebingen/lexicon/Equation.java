@@ -29,9 +29,11 @@
  */
 package de.tuebingen.lexicon;
 
+import java.io.Serializable;
 import de.duesseldorf.frames.Fs;
 
-public class Equation {
+@SuppressWarnings("serial")
+public class Equation implements Serializable {
 
     private String type;    // top or bot
     private String node_id;
@@ -29,10 +29,12 @@
  */
 package de.tuebingen.lexicon;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
 
-public class Lemma {
+@SuppressWarnings("serial")
+public class Lemma implements Serializable {
 
     private String name;
     private String cat;
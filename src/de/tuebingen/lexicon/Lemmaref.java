@@ -29,9 +29,11 @@
  */
 package de.tuebingen.lexicon;
 
+import java.io.Serializable;
 import de.duesseldorf.frames.Fs;
 
-public class Lemmaref {
+@SuppressWarnings("serial")
+public class Lemmaref implements Serializable {
 
     private String name;
     private String cat;
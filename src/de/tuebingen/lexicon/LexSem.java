@@ -29,9 +29,11 @@
  */
 package de.tuebingen.lexicon;
 
+import java.io.Serializable;
 import de.duesseldorf.frames.Fs;
 
-public class LexSem {
+@SuppressWarnings("serial")
+public class LexSem implements Serializable {
 
     private String semclass;
     private Fs args;
@@ -29,10 +29,12 @@
  */
 package de.tuebingen.lexicon;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
 
-public class MorphEntry {
+@SuppressWarnings("serial")
+public class MorphEntry implements Serializable {
 
     private String lex;
     private List<Lemmaref> lemmarefs;
@@ -0,0 +1,126 @@
+/*
+ *  File IncrementalEarleyClause.java
+ *
+ *  This file is part of the TuLiPA system
+ *     http://www.sfb441.uni-tuebingen.de/emmy-noether-kallmeyer/tulipa
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.tuebingen.parser.simple;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import de.tuebingen.rcg.ArgContent;
+import de.tuebingen.rcg.Argument;
+import de.tuebingen.rcg.Clause;
+import de.tuebingen.rcg.PredLabel;
+
+/**
+ * What the {@link SimpleRCGParserEarley} needs to know about a clause, and
+ * which only depends on the clause: its hash code, the properties of the
+ * argument content after each dot position, and the positions of the
+ * variables on its LHS. Argument contents are compared by their strings, so
+ * these are computed once for every clause (on demand), instead of once for
+ * every item.
+ */
+public class IncrementalEarleyClause {
+
+    final Clause cl;
+    final int code;
+    final int elementNumber;
+    // the positions of the variables change with the epsilons already met
+    // (see IncrementalEarleyItem.determineVariablePosition), they are only
+    // stored for clauses without epsilons on the LHS
+    private boolean lhsEpsilon;
+
+    // for each LHS argument i and dot position j: type of the following
+    // element, RHS predicate, argument and element, null if not computed yet
+    private int[][][] follow;
+    private PredLabel[][] followLabel;
+    private IdentityHashMap<ArgContent, Integer> varPositions;
+
+    public IncrementalEarleyClause(Clause cl) {
+        this.cl = cl;
+        this.code = cl.hashCode();
+        this.elementNumber = IncrementalEarleyItem.determineElementNumber(cl);
+        invalidate();
+    }
+
+    /**
+     * Forget everything computed from the argument contents, after one of
+     * them has been changed.
+     */
+    void invalidate() {
+        List<Argument> args = cl.getLhs().getArgs();
+        follow = new int[args.size()][][];
+        followLabel = new PredLabel[args.size()][];
+        for (int i = 0; i < args.size(); i++) {
+            follow[i] = new int[args.get(i).getContent().size() + 1][];
+            followLabel[i] = new PredLabel[follow[i].length];
+        }
+        varPositions = new IdentityHashMap<ArgContent, Integer>();
+        lhsEpsilon = false;
+        for (Argument arg : args) {
+            for (ArgContent ac : arg) {
+                if (ac.getType() == ArgContent.EPSILON) {
+                    lhsEpsilon = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the properties of the argument content after the dot of the item
+     * (see {@link IncrementalEarleyItem#computeFollowingArgProperties()}).
+     */
+    void setFollowingArgProperties(IncrementalEarleyItem it) {
+        int[] f = it.j < follow[it.i].length ? follow[it.i][it.j] : null;
+        if (f == null) {
+            it.computeFollowingArgPropertiesOfClause();
+            f = new int[]{it.currentElementType, it.currentRHSPredicate,
+                    it.currentRHSArgument, it.currentRHSElement};
+            if (it.j < follow[it.i].length) {
+                follow[it.i][it.j] = f;
+                followLabel[it.i][it.j] = it.currentRHSPredLabel;
+            }
+            return;
+        }
+        it.currentElementType = f[0];
+        it.currentRHSPredicate = f[1];
+        it.currentRHSArgument = f[2];
+        if (f[1] != -1) {
+            // otherwise left as it was, as by the computation
+            it.currentRHSElement = f[3];
+        }
+        it.currentRHSPredLabel = followLabel[it.i][it.j];
+    }
+
+    /**
+     * @return the position of the variable on the LHS (see
+     * {@link IncrementalEarleyItem#determineVariablePosition(ArgContent)})
+     */
+    int variablePosition(IncrementalEarleyItem it, ArgContent var) {
+        if (lhsEpsilon) {
+            return it.findVariablePosition(var);
+        }
+        Integer res = varPositions.get(var);
+        if (res == null) {
+            res = it.findVariablePosition(var);
+            varPositions.put(var, res);
+        }
+        return res;
+    }
+}
@@ -39,16 +39,32 @@ public class IncrementalEarleyGoalItem extends IncrementalEarleyItem {
     public boolean equals(Object obj) {
         if (obj instanceof IncrementalEarleyItem) {
             //System.err.println("eq " + this + " = " + obj);
-            IncrementalEarleyItem o = (IncrementalEarleyItem) obj;
-            if (!o.cl.equals(cl)) return false;
-            if (o.i != i) return false;
-            if (o.j != j) return false;
-            if (o.pos != pos) return false;
-            return true;
+            return matches((IncrementalEarleyItem) obj);
         }
         return false;
     }
 
+    public boolean matches(IncrementalEarleyItem o) {
+        // same as o.cl.equals(cl), which compares the hash codes
+        if (o.clauseCode != clauseCode) return false;
+        if (o.i != i) return false;
+        if (o.j != j) return false;
+        if (o.pos != pos) return false;
+        return true;
+    }
+
+    /*
+     * computed from the fields compared by equals, so that the goal matching
+     * an item can be looked up with goalHash(item)
+     */
+    public int hashCode() {
+        return goalHash(this);
+    }
+
+    public static int goalHash(IncrementalEarleyItem it) {
+        return ((31 * it.clauseCode + it.i) * 31 + it.j) * 31 + it.pos;
+    }
+
     public String mainString() {
         return "[" + cl.toString() + "," + pos + ",<" + i + "," + j + ">=" + el + "]";
     }
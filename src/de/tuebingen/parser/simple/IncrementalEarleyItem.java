@@ -34,6 +34,9 @@ import de.tuebingen.rcg.*;
 import java.util.*;
 
 public class IncrementalEarleyItem {
+    // all the items and their origins are only recorded for debugging (see
+    // SimpleRCGParserEarley.main)
+    static boolean recordItems = false;
     static ArrayList<IncrementalEarleyItem> items = new ArrayList<IncrementalEarleyItem>();
 
     public static String itemsAsGraph() {
@@ -47,12 +50,16 @@ public class IncrementalEarleyItem {
     int id;
 
     Clause cl;
+    //hash code of the clause (which is computed from its string)
+    int clauseCode;
+    //what is known of the clause in the current parse, null if not known
+    IncrementalEarleyClause clause;
     int pos;
     int i;
     int j;
     int el;
-    //range table for the variables; second dimension encodes range start and end
-    int[][] range;
+    //range table for the variables: start of the k-th range at 2k, end at 2k+1
+    int[] range;
 
     //epsilon handling: store epsilon positions
     int currentEpsilon;
@@ -68,34 +75,81 @@ public class IncrementalEarleyItem {
     PredLabel currentRHSPredLabel;
 
     public IncrementalEarleyItem(Clause cl) {
-        this.id = items.size();
-        items.add(this);
+        this(cl, cl.hashCode(), determineElementNumber(cl), null);
+    }
+
+    public IncrementalEarleyItem(IncrementalEarleyClause clause) {
+        this(clause.cl, clause.code, clause.elementNumber, clause);
+    }
 
+    private IncrementalEarleyItem(Clause cl, int clauseCode, int elementNumber,
+                                  IncrementalEarleyClause clause) {
         this.cl = cl;
+        this.clauseCode = clauseCode;
+        this.clause = clause;
         pos = 0;
         i = 0;
         j = 0;
         el = 0;
-        origins = new ArrayList<ItemOrigin>();
-        range = new int[determineElementNumber(cl)][2];
+        range = new int[2 * elementNumber];
 
         currentEpsilon = 0;
+        record();
+    }
+
+    /*
+     * copy the clause, position, dot and ranges of another item
+     */
+    public IncrementalEarleyItem(IncrementalEarleyItem o) {
+        this.cl = o.cl;
+        this.clauseCode = o.clauseCode;
+        this.clause = o.clause;
+        pos = o.pos;
+        i = o.i;
+        j = o.j;
+        el = o.el;
+        range = o.range.clone();
+
+        currentEpsilon = 0;
+        record();
+    }
+
+    private void record() {
+        if (recordItems) {
+            this.id = items.size();
+            items.add(this);
+            origins = new ArrayList<ItemOrigin>();
+        }
     }
 
     /*
      * set all ranges to -1 to express that nothing is known about them yet
      */
     public void resetAllRanges() {
-        for (int i = 0; i < range.length; i++) {
-            range[i][0] = -1;
-            range[i][1] = -1;
-        }
+        Arrays.fill(range, -1);
+    }
+
+    public int rangeNumber() {
+        return range.length / 2;
+    }
+
+    public int start(int k) {
+        return range[2 * k];
+    }
+
+    public int end(int k) {
+        return range[2 * k + 1];
+    }
+
+    public void setRange(int k, int start, int end) {
+        range[2 * k] = start;
+        range[2 * k + 1] = end;
     }
 
     /*
      * simple way to determine the number of variables in a simple ordered RCG clause
      */
-    public int determineElementNumber(Clause cl) {
+    public static int determineElementNumber(Clause cl) {
         int varNumber = 0;
         for (Argument arg : cl.getLhs().getArgs()) {
             varNumber += arg.getContent().size();
@@ -107,6 +161,13 @@ public class IncrementalEarleyItem {
      * simple way to determine the position of a variable on the LHS of a clause
      */
     public int determineVariablePosition(ArgContent var) {
+        if (clause != null) {
+            return clause.variablePosition(this, var);
+        }
+        return findVariablePosition(var);
+    }
+
+    int findVariablePosition(ArgContent var) {
         int pos = 0;
         int foundEpsilon = 0;
         for (Argument arg : cl.getLhs().getArgs()) {
@@ -155,6 +216,14 @@ public class IncrementalEarleyItem {
      * compute and store all the properties of the argument content immediately after the dot
      */
     public void computeFollowingArgProperties() {
+        if (clause != null) {
+            clause.setFollowingArgProperties(this);
+        } else {
+            computeFollowingArgPropertiesOfClause();
+        }
+    }
+
+    void computeFollowingArgPropertiesOfClause() {
         currentElementType = -2;
         currentRHSPredicate = -1;
         currentRHSArgument = -1;
@@ -187,6 +256,9 @@ public class IncrementalEarleyItem {
     }
 
     public void addItemOrigin(String label, IncrementalEarleyItem parent1, IncrementalEarleyItem parent2) {
+        if (!recordItems) {
+            return;
+        }
         ItemOrigin orig = new ItemOrigin();
         orig.label = label;
         orig.parent1 = parent1;
@@ -194,21 +266,32 @@ public class IncrementalEarleyItem {
         origins.add(orig);
     }
 
+    /*
+     * computed from the fields compared by equals, without building strings
+     */
     public int hashCode() {
-        return mainString().hashCode();
+        int h = clauseCode;
+        h = 31 * h + el;
+        h = 31 * h + pos;
+        h = 31 * h + i;
+        h = 31 * h + j;
+        for (int k = 0; k < range.length; k++) {
+            h = 31 * h + range[k];
+        }
+        return h;
     }
 
     public boolean equals(Object obj) {
         if (obj != null && obj.getClass().equals(this.getClass())) {
             IncrementalEarleyItem o = (IncrementalEarleyItem) obj;
-            if (!o.cl.equals(cl)) return false;
+            // same as o.cl.equals(cl), which compares the hash codes
+            if (o.clauseCode != clauseCode) return false;
             if (o.el != el) return false;
             if (o.pos != pos) return false;
-            for (int i = 0; i < range.length; i++) {
-                if (o.range[i][0] != range[i][0]) return false;
-                if (o.range[i][1] != range[i][1]) return false;
-            }
-            return true;
+            // the dot is part of the string the hash code used to be
+            // computed from: (i, j) and (i + 1, 0) have the same el
+            if (o.i != i || o.j != j) return false;
+            return Arrays.equals(o.range, range);
         }
         return false;
     }
@@ -228,14 +311,9 @@ public class IncrementalEarleyItem {
 
     public String rangeString() {
         String rangeStr = "[";
-        for (int i = 0; i < range.length; i++) {
-            rangeStr += "[";
-            for (int j = 0; j < range[i].length; j++) {
-                rangeStr += range[i][j];
-                if (j < range[i].length - 1) rangeStr += ",";
-            }
-            rangeStr += "]";
-            if (i < range.length - 1) rangeStr += ",";
+        for (int i = 0; i < rangeNumber(); i++) {
+            rangeStr += "[" + start(i) + "," + end(i) + "]";
+            if (i < rangeNumber() - 1) rangeStr += ",";
         }
         rangeStr += "]";
         return rangeStr;
@@ -254,7 +332,7 @@ public class IncrementalEarleyItem {
             if (arg.get(0).getType() != ArgContent.EPSILON) {
                 rpos = determineVariablePosition(arg.get(arg.size() - 1));
             }
-            ranges += "[" + range[lpos][0] + "," + range[rpos][1] + "]";
+            ranges += "[" + start(lpos) + "," + end(rpos) + "]";
             ranges += ",";
         }
         if (ranges.length() > 1) {
@@ -0,0 +1,136 @@
+/*
+ *  File IncrementalEarleyItemTable.java
+ *
+ *  This file is part of the TuLiPA system
+ *     http://www.sfb441.uni-tuebingen.de/emmy-noether-kallmeyer/tulipa
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.tuebingen.parser.simple;
+
+import java.util.Arrays;
+
+/**
+ * A set of items of the {@link SimpleRCGParserEarley}, with open addressing
+ * (linear probing) on the hash codes of the items, which are computed from
+ * their clause, position and ranges without building strings.
+ * <p>
+ * A table of goal items is looked up with any item, and finds the goal the
+ * item matches (see {@link IncrementalEarleyGoalItem#matches}).
+ * <p>
+ * A table can be cleared and filled again, which keeps its storage.
+ */
+public class IncrementalEarleyItemTable {
+
+    private static final int INITIAL_CAPACITY = 256;
+    // larger tables are not kept when the table is cleared
+    private static final int MAX_KEPT_CAPACITY = 1 << 20;
+
+    private final boolean goals;
+    private IncrementalEarleyItem[] slots;
+    private int[] hashes;
+    private int size;
+
+    /**
+     * @param goals true for a table of goal items
+     */
+    public IncrementalEarleyItemTable(boolean goals) {
+        this.goals = goals;
+        slots = new IncrementalEarleyItem[INITIAL_CAPACITY];
+        hashes = new int[INITIAL_CAPACITY];
+    }
+
+    private int hash(IncrementalEarleyItem it) {
+        int h = goals ? IncrementalEarleyGoalItem.goalHash(it) : it.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private boolean same(IncrementalEarleyItem slot, IncrementalEarleyItem it) {
+        return goals ? ((IncrementalEarleyGoalItem) slot).matches(it)
+                : slot.equals(it);
+    }
+
+    /**
+     * @return the item of the table equal to it (for a table of goals, the
+     * goal it matches), or null
+     */
+    public IncrementalEarleyItem get(IncrementalEarleyItem it) {
+        int h = hash(it);
+        int mask = slots.length - 1;
+        for (int k = h & mask; slots[k] != null; k = (k + 1) & mask) {
+            if (hashes[k] == h && same(slots[k], it)) {
+                return slots[k];
+            }
+        }
+        return null;
+    }
+
+    public boolean contains(IncrementalEarleyItem it) {
+        return get(it) != null;
+    }
+
+    /**
+     * @return true if the item was not in the table yet
+     */
+    public boolean add(IncrementalEarleyItem it) {
+        int h = hash(it);
+        int mask = slots.length - 1;
+        int k = h & mask;
+        for (; slots[k] != null; k = (k + 1) & mask) {
+            if (hashes[k] == h && same(slots[k], it)) {
+                return false;
+            }
+        }
+        slots[k] = it;
+        hashes[k] = h;
+        size++;
+        if (2 * size > slots.length) {
+            grow();
+        }
+        return true;
+    }
+
+    private void grow() {
+        IncrementalEarleyItem[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        slots = new IncrementalEarleyItem[2 * oldSlots.length];
+        hashes = new int[slots.length];
+        int mask = slots.length - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != null) {
+                int k = oldHashes[i] & mask;
+                while (slots[k] != null) {
+                    k = (k + 1) & mask;
+                }
+                slots[k] = oldSlots[i];
+                hashes[k] = oldHashes[i];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        if (slots.length > MAX_KEPT_CAPACITY) {
+            slots = new IncrementalEarleyItem[INITIAL_CAPACITY];
+            hashes = new int[INITIAL_CAPACITY];
+        } else {
+            Arrays.fill(slots, null);
+        }
+        size = 0;
+    }
+}
@@ -46,10 +46,22 @@ import de.tuebingen.parser.*;
 public class SimpleRCGParserEarley extends RCGParser {
     int verbose = 0;
     SimpleRCGIncrementalFrontier frontier;
-    HashMap<String, Set<IncrementalEarleyItem>> goBackAgenda;
-    HashMap<String, Set<IncrementalEarleyItem>> toResumeAgenda;
-    Set<IncrementalEarleyItem> processed;
-    Set<IncrementalEarleyGoalItem> goals;
+    // the agendas are indexed by predicate label (and argument), then by
+    // position
+    HashMap<String, List<Set<IncrementalEarleyItem>>> goBackAgenda;
+    HashMap<String, List<Set<IncrementalEarleyItem>>> toResumeAgenda;
+    IncrementalEarleyItemTable processed;
+    IncrementalEarleyItemTable goals;
+    // what is known of the clauses, which is computed from their strings
+    IdentityHashMap<Clause, IncrementalEarleyClause> clauseInfos;
+
+    // the table of processed items is kept between sentences (and parsers)
+    private static final ThreadLocal<IncrementalEarleyItemTable> processedTables = new ThreadLocal<IncrementalEarleyItemTable>() {
+        @Override
+        protected IncrementalEarleyItemTable initialValue() {
+            return new IncrementalEarleyItemTable(false);
+        }
+    };
 
     Map<Integer, List<int[]>> forest;
     Map<Integer, List<ClauseKey>> links;
@@ -79,10 +91,12 @@ public class SimpleRCGParserEarley extends RCGParser {
         }
 
         frontier = new SimpleRCGIncrementalFrontier();
-        goBackAgenda = new HashMap<String, Set<IncrementalEarleyItem>>();
-        toResumeAgenda = new HashMap<String, Set<IncrementalEarleyItem>>();
-        processed = new HashSet<IncrementalEarleyItem>();
-        goals = new HashSet<IncrementalEarleyGoalItem>();
+        goBackAgenda = new HashMap<String, List<Set<IncrementalEarleyItem>>>();
+        toResumeAgenda = new HashMap<String, List<Set<IncrementalEarleyItem>>>();
+        processed = processedTables.get();
+        processed.clear();
+        goals = new IncrementalEarleyItemTable(true);
+        clauseInfos = new IdentityHashMap<Clause, IncrementalEarleyClause>();
 
         forest = new HashMap<Integer, List<int[]>>();
         links = new HashMap<Integer, List<ClauseKey>>();
@@ -91,7 +105,7 @@ public class SimpleRCGParserEarley extends RCGParser {
         RCG grammar = ((RCG) super.getGrammar());
         List<Clause> axioms = grammar.getClausesForLabel(grammar.getStartPredicateLabel());
         for (Clause axiom : axioms) {
-            IncrementalEarleyItem axiomItem = new IncrementalEarleyItem(axiom);
+            IncrementalEarleyItem axiomItem = new IncrementalEarleyItem(clause(axiom));
             axiomItem.resetAllRanges();
             frontier.add(axiomItem);
 
@@ -126,29 +140,21 @@ public class SimpleRCGParserEarley extends RCGParser {
             if (verbose > 2) {
                 System.err.println("Now processing item " + it);
             }
-            for (IncrementalEarleyGoalItem goal : goals) {
-                if (goal.equals(it)) {
-                    if (verbose > 1) {
-                        System.err.println("Goal item found! " + it);
-                        // System.err.println(it.toXML());
-                    }
-                    foundParse = true;
+            if (goals.contains(it)) {
+                if (verbose > 1) {
+                    System.err.println("Goal item found! " + it);
+                    // System.err.println(it.toXML());
                 }
+                foundParse = true;
             }
             // scan epsilon
             if (((it.currentElementType == ArgContent.VAR) && it.hasEpsilonRHS()) || (it.currentElementType == ArgContent.EPSILON)) {
-                IncrementalEarleyItem nit = new IncrementalEarleyItem(it.cl);
+                IncrementalEarleyItem nit = new IncrementalEarleyItem(it);
                 nit.pos = it.pos;
                 nit.i = it.i;
                 nit.j = it.j + 1;
                 nit.el = it.el + 1;
-                nit.range = new int[it.range.length][2];
-                for (int i = 0; i < nit.range.length; i++) {
-                    nit.range[i][0] = it.range[i][0];
-                    nit.range[i][1] = it.range[i][1];
-                }
-                nit.range[it.el][0] = nit.pos;
-                nit.range[it.el][1] = nit.pos;
+                nit.setRange(it.el, nit.pos, nit.pos);
                 nit.addItemOrigin("scanEpsilon", it, null);
                 //nit.cl.getLhs().getArgs().get(it.i).getContent().get(it.j).setType(ArgContent.EPSILON);
                 if (verbose > 2) {
@@ -164,18 +170,12 @@ public class SimpleRCGParserEarley extends RCGParser {
             }
             // scan
             if (it.pos < input.size() && it.currentElementType > -2 && input.get(it.pos).equals(it.getFollowingArgContent().getName())) {
-                IncrementalEarleyItem nit = new IncrementalEarleyItem(it.cl);
+                IncrementalEarleyItem nit = new IncrementalEarleyItem(it);
                 nit.pos = it.pos + 1;
                 nit.i = it.i;
                 nit.j = it.j + 1;
                 nit.el = it.el + 1;
-                nit.range = new int[it.range.length][2];
-                for (int i = 0; i < nit.range.length; i++) {
-                    nit.range[i][0] = it.range[i][0];
-                    nit.range[i][1] = it.range[i][1];
-                }
-                nit.range[it.el][0] = it.pos;
-                nit.range[it.el][1] = nit.pos;
+                nit.setRange(it.el, it.pos, nit.pos);
                 nit.addItemOrigin("scan", it, null);
                 if (verbose > 2) {
                     System.err.println("\tScan! New item " + nit);
@@ -193,7 +193,7 @@ public class SimpleRCGParserEarley extends RCGParser {
                     List<Clause> clauses = grammar.getClausesForLabel(it.currentRHSPredLabel);
                     if (clauses != null) {
                         for (Clause clause : clauses) {
-                            IncrementalEarleyItem nit = new IncrementalEarleyItem(clause);
+                            IncrementalEarleyItem nit = new IncrementalEarleyItem(clause(clause));
                             nit.pos = it.pos;
                             nit.resetAllRanges();
                             nit.addItemOrigin("predict", it, null);
@@ -212,18 +212,12 @@ public class SimpleRCGParserEarley extends RCGParser {
                                     if (verbose > 2) {
                                         System.err.println("\tThe epsilon case allows direct scan!");
                                     }
-                                    nit = new IncrementalEarleyItem(it.cl);
+                                    nit = new IncrementalEarleyItem(it);
                                     nit.pos = it.pos;
                                     nit.i = it.i;
                                     nit.j = it.j + 1;
                                     nit.el = it.el + 1;
-                                    nit.range = new int[it.range.length][2];
-                                    for (int i = 0; i < nit.range.length; i++) {
-                                        nit.range[i][0] = it.range[i][0];
-                                        nit.range[i][1] = it.range[i][1];
-                                    }
-                                    nit.range[it.el][0] = it.pos;
-                                    nit.range[it.el][1] = nit.pos;
+                                    nit.setRange(it.el, it.pos, nit.pos);
                                     nit.addItemOrigin("scan_epsilon", it, null);
                                     if (verbose > 2) {
                                         System.err.println("\tScan epsilon! New item " + nit);
@@ -238,13 +232,10 @@ public class SimpleRCGParserEarley extends RCGParser {
                                 }
                             }
                         }
-                        String goBackClass = it.pos + "." + it.currentRHSPredLabel + "." + 0;
-                        if (goBackAgenda.get(goBackClass) == null) {
-                            goBackAgenda.put(goBackClass, new HashSet<IncrementalEarleyItem>());
-                        }
-                        goBackAgenda.get(goBackClass).add(it);
+                        String goBackClass = it.currentRHSPredLabel + "." + 0;
+                        file(goBackAgenda, goBackClass, it.pos, it);
                         if (verbose > 3) {
-                            System.err.println("\tPredicting item filed under " + goBackClass);
+                            System.err.println("\tPredicting item filed under " + it.pos + "." + goBackClass);
                         }
                     }
                 }
@@ -252,11 +243,12 @@ public class SimpleRCGParserEarley extends RCGParser {
             // suspend
             if (it.cl.getLhs().getArgs().get(it.i).size() == it.j) {
                 // find all items which may have predicted this clause
+                String goBackClass = it.cl.getLhs().getLabel() + "." + it.i;
                 for (int pos = 0; pos <= it.pos; pos++) {
                     if (verbose > 3) {
-                        System.err.println("\tLooking up via goBackID: " + pos + "." + it.cl.getLhs().getLabel() + "." + it.i);
+                        System.err.println("\tLooking up via goBackID: " + pos + "." + goBackClass);
                     }
-                    Set<IncrementalEarleyItem> possibleParents = goBackAgenda.get(pos + "." + it.cl.getLhs().getLabel() + "." + it.i);
+                    Set<IncrementalEarleyItem> possibleParents = lookup(goBackAgenda, goBackClass, pos);
                     if (possibleParents != null) {
                         if (verbose > 3) {
                             System.err.println("\tFound " + possibleParents.size() + " possible predictors");
@@ -264,14 +256,14 @@ public class SimpleRCGParserEarley extends RCGParser {
                         for (IncrementalEarleyItem oit : possibleParents) {
                             oit.computeFollowingArgProperties();
                             // check compatibility of ranges
-                            if (compatible(it.range[it.el - it.j][0], it.range[it.el - it.j + it.cl.getLhs().getArgs().get(it.i).size() - 1][1], oit.pos, it.pos)) {
+                            if (compatible(it.start(it.el - it.j), it.end(it.el - it.j + it.cl.getLhs().getArgs().get(it.i).size() - 1), oit.pos, it.pos)) {
                                 boolean compatible = true;
                                 for (int m = 0, o = 0; m < it.i; m++) {
                                     int length = it.cl.getLhs().getArgs().get(m).size();
                                     // difficult to get: the positions of the arguments on the LHS of the parent node clause
                                     ArgContent var = oit.cl.getRhs().get(oit.currentRHSPredicate).getArgs().get(m).getContent().get(0);
                                     int varpos = oit.determineVariablePosition(var);
-                                    if (!compatible(it.range[o][0], it.range[o + length - 1][1], oit.range[varpos][0], oit.range[varpos][1])) {
+                                    if (!compatible(it.start(o), it.end(o + length - 1), oit.start(varpos), oit.end(varpos))) {
                                         compatible = false;
                                     }
                                     o += length;
@@ -280,27 +272,18 @@ public class SimpleRCGParserEarley extends RCGParser {
                                 if (compatible) {
                                     // additional check (perhaps unnecessary?): can the dot in the other item still move on?
                                     if (oit.currentRHSElement != -1) {
-                                        IncrementalEarleyItem nit = new IncrementalEarleyItem(oit.cl);
+                                        IncrementalEarleyItem nit = new IncrementalEarleyItem(oit);
                                         nit.pos = it.pos;
                                         nit.i = oit.i;
                                         nit.j = oit.j + 1;
                                         nit.el = oit.el + 1;
-                                        nit.range = new int[oit.range.length][2];
-                                        for (int i = 0; i < nit.range.length; i++) {
-                                            nit.range[i][0] = oit.range[i][0];
-                                            nit.range[i][1] = oit.range[i][1];
-                                        }
-                                        nit.range[oit.el][0] = oit.pos;
-                                        nit.range[oit.el][1] = it.pos;
+                                        nit.setRange(oit.el, oit.pos, it.pos);
                                         nit.addItemOrigin("suspend", it, oit);
                                         if (it.i < it.cl.getLhs().getArgs().size() - 1) {
-                                            String toResumeClass = nit.pos + "." + oit.currentRHSPredLabel;
-                                            if (toResumeAgenda.get(toResumeClass) == null) {
-                                                toResumeAgenda.put(toResumeClass, new HashSet<IncrementalEarleyItem>());
-                                            }
-                                            toResumeAgenda.get(toResumeClass).add(it);
+                                            String toResumeClass = oit.currentRHSPredLabel.toString();
+                                            file(toResumeAgenda, toResumeClass, nit.pos, it);
                                             if (verbose > 3) {
-                                                System.err.println("\tFiled under resume ID " + toResumeClass);
+                                                System.err.println("\tFiled under resume ID " + nit.pos + "." + toResumeClass);
                                             }
                                         }
                                         if (!processed.contains(nit)) {
@@ -327,11 +310,12 @@ public class SimpleRCGParserEarley extends RCGParser {
             // resume
             if (it.currentElementType == ArgContent.VAR) {
                 if (it.currentRHSArgument > 0) {
+                    String toResumeClass = it.currentRHSPredLabel.toString();
                     for (int pos = 0; pos <= it.pos; pos++) {
                         if (verbose > 3) {
-                            System.err.println("Looking up via resume ID: " + pos + "." + it.currentRHSPredLabel);
+                            System.err.println("Looking up via resume ID: " + pos + "." + toResumeClass);
                         }
-                        Set<IncrementalEarleyItem> possibleParents = toResumeAgenda.get(pos + "." + it.currentRHSPredLabel);
+                        Set<IncrementalEarleyItem> possibleParents = lookup(toResumeAgenda, toResumeClass, pos);
                         if (possibleParents != null) {
                             for (IncrementalEarleyItem oit : possibleParents) {
                                 oit.computeFollowingArgProperties();
@@ -347,36 +331,28 @@ public class SimpleRCGParserEarley extends RCGParser {
                                         ArgContent var = it.cl.getRhs().get(it.currentRHSPredicate).getArgs().get(m).getContent().get(0);
                                         int varpos = it.determineVariablePosition(var);
                                         // make sure the bindings of the m-th argument are compatible
-                                        if (!compatible(oit.range[o][0], oit.range[o + rangeLength - 1][1], it.range[varpos][0], it.range[varpos][1])) {
+                                        if (!compatible(oit.start(o), oit.end(o + rangeLength - 1), it.start(varpos), it.end(varpos))) {
                                             compatible = false;
                                         }
                                         o += rangeLength;
                                     }
                                     // the current item is a candidate for resumption; perform the operation
                                     if (compatible) {
-                                        IncrementalEarleyItem nit = new IncrementalEarleyItem(oit.cl);
+                                        IncrementalEarleyItem nit = new IncrementalEarleyItem(oit);
                                         nit.pos = it.pos;
                                         nit.i = oit.i + 1;
                                         nit.j = 0;
                                         nit.el = oit.el;
-                                        nit.range = new int[oit.range.length][2];
-                                        for (int i = 0; i < nit.range.length; i++) {
-                                            nit.range[i][0] = oit.range[i][0];
-                                            nit.range[i][1] = oit.range[i][1];
-                                        }
                                         nit.addItemOrigin("resume", it, oit);
-                                        String goBackClass = it.pos + "." + it.currentRHSPredLabel + "." + it.currentRHSArgument;
-                                        if (goBackAgenda.get(goBackClass) == null) {
-                                            goBackAgenda.put(goBackClass, new HashSet<IncrementalEarleyItem>());
-                                        }
-                                        goBackAgenda.get(goBackClass).add(it);
+                                        String goBackClass = it.currentRHSPredLabel + "." + it.currentRHSArgument;
+                                        file(goBackAgenda, goBackClass, it.pos, it);
                                         if (!processed.contains(nit)) {
                                             if (verbose > 2) {
                                                 System.err.println("\tFound matching item to resume: " + oit);
                                                 System.err.println("\tResume! New item " + nit);
                                             }
                                             if (verbose > 3) {
-                                                System.err.println("\tPredicting item filed under " + goBackClass);
+                                                System.err.println("\tPredicting item filed under " + it.pos + "." + goBackClass);
                                             }
                                             frontier.add(nit);
                                             processed.add(nit);
@@ -390,18 +366,12 @@ public class SimpleRCGParserEarley extends RCGParser {
                                                 if (verbose > 2) {
                                                     System.err.println("\tThe epsilon case allows direct scan!");
                                                 }
-                                                nit = new IncrementalEarleyItem(it.cl);
+                                                nit = new IncrementalEarleyItem(it);
                                                 nit.pos = it.pos;
                                                 nit.i = it.i;
                                                 nit.j = it.j + 1;
                                                 nit.el = it.el + 1;
-                                                nit.range = new int[it.range.length][2];
-                                                for (int i = 0; i < nit.range.length; i++) {
-                                                    nit.range[i][0] = it.range[i][0];
-                                                    nit.range[i][1] = it.range[i][1];
-                                                }
-                                                nit.range[it.el][0] = it.pos;
-                                                nit.range[it.el][1] = nit.pos;
+                                                nit.setRange(it.el, it.pos, nit.pos);
                                                 nit.addItemOrigin("scan_epsilon", it, null);
                                                 if (verbose > 2) {
                                                     System.err.println("\tScan epsilon! New item " + nit);
@@ -424,9 +394,40 @@ public class SimpleRCGParserEarley extends RCGParser {
             }
         }
         //System.err.println(printForest());
+        // the items are not needed anymore, only the storage is kept
+        processed.clear();
         return foundParse;
     }
 
+    private IncrementalEarleyClause clause(Clause cl) {
+        IncrementalEarleyClause res = clauseInfos.get(cl);
+        if (res == null) {
+            res = new IncrementalEarleyClause(cl);
+            clauseInfos.put(cl, res);
+        }
+        return res;
+    }
+
+    private static void file(Map<String, List<Set<IncrementalEarleyItem>>> agenda, String key, int pos, IncrementalEarleyItem it) {
+        List<Set<IncrementalEarleyItem>> byPos = agenda.get(key);
+        if (byPos == null) {
+            byPos = new ArrayList<Set<IncrementalEarleyItem>>();
+            agenda.put(key, byPos);
+        }
+        while (byPos.size() <= pos) {
+            byPos.add(null);
+        }
+        if (byPos.get(pos) == null) {
+            byPos.set(pos, new HashSet<IncrementalEarleyItem>());
+        }
+        byPos.get(pos).add(it);
+    }
+
+    private static Set<IncrementalEarleyItem> lookup(Map<String, List<Set<IncrementalEarleyItem>>> agenda, String key, int pos) {
+        List<Set<IncrementalEarleyItem>> byPos = agenda.get(key);
+        return byPos == null || pos >= byPos.size() ? null : byPos.get(pos);
+    }
+
     public boolean compatible(int range1Start, int range1End, int range2Start, int range2End) {
         if (verbose > 4) {
             System.err.println("\t\tCompatibility check: " + range1Start + "," + range1End + " and " + range2Start + "," + range2End);
@@ -441,12 +442,12 @@ public class SimpleRCGParserEarley extends RCGParser {
             try {
                 //convert the item's range to a binding object
                 Binding bd = new Binding();
-                for (int i = 0; i < it.range.length; i++) {
+                for (int i = 0; i < it.rangeNumber(); i++) {
                     ArgContent cont = getPredicateArgContent(it.cl.getLhs(), i);
                     //System.err.println(cont + ": Content type: " + cont.getType());
                     if (cont.getType() != ArgContent.TERM) {
-                        int l = it.range[i][0];
-                        int r = it.range[i][1];
+                        int l = it.start(i);
+                        int r = it.end(i);
                         ArgContent boundCt = new ArgContent(ArgContent.EPSILON, "Eps");
                         if (r - l == 1) {
                             boundCt = new ArgContent(ArgContent.TERM, input.get(l));
@@ -464,9 +465,13 @@ public class SimpleRCGParserEarley extends RCGParser {
                         }
                         bd.bind(false, cont, boundCt);
                     } else {
-                        if (it.range[i][0] == it.range[i][1]) {
+                        if (it.start(i) == it.end(i)) {
                             //System.err.println("Setting bad things to epsilon!");
                             cont.setType(ArgContent.EPSILON);
+                            // argument contents may be shared by clauses
+                            for (IncrementalEarleyClause c : clauseInfos.values()) {
+                                c.invalidate();
+                            }
                             ArgContent boundCt = new ArgContent(ArgContent.EPSILON, "Eps");
                             bd.bind(false, cont, boundCt);
                         }
@@ -526,7 +531,7 @@ public class SimpleRCGParserEarley extends RCGParser {
                     for (Argument arg : p.getArgs()) {
                         for (ArgContent argc : arg.getContent()) {
                             int pos = it.determineVariablePosition(argc);
-                            ranges += "[" + it.range[pos][0] + "," + it.range[pos][1] + "]";
+                            ranges += "[" + it.start(pos) + "," + it.end(pos) + "]";
                             ranges += ",";
                         }
                     }
@@ -665,6 +670,7 @@ public class SimpleRCGParserEarley extends RCGParser {
         Tokenizer tok = new BuiltinTokenizer();
         tok.setSentence("a b a b");
         List<Word> input = tok.tokenize();
+        IncrementalEarleyItem.recordItems = true;
         SimpleRCGParserEarley p = new SimpleRCGParserEarley(g);
         System.err.println(p.parseSentence(true, input));
         GraphModel gm = GraphModel.loadGraph(IncrementalEarleyItem.itemsAsGraph());
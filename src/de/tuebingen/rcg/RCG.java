@@ -56,6 +56,7 @@ public class RCG implements Grammar {
 
     private int k;
     private List<Clause> clauses;
+    private Set<Clause> clauseSet; // for checking duplicates
     private Map<PredLabel, List<Clause>> clausesByLhsLabel;
     private Map<PredLabel, Integer> arityByLhsLabel;
     private PredLabel startPredicate;
@@ -66,7 +67,8 @@ public class RCG implements Grammar {
     private boolean termtransformed = false;
 
     public RCG() {
-        clauses = new LinkedList<Clause>();
+        clauses = new ArrayList<Clause>();
+        clauseSet = new HashSet<Clause>();
         clausesByLhsLabel = new Hashtable<PredLabel, List<Clause>>();
         arityByLhsLabel = new Hashtable<PredLabel, Integer>();
         startPredicate = null;
@@ -111,7 +113,7 @@ public class RCG implements Grammar {
             return false;
         }
         // can't add the same clause twice
-        if (clauses.contains(c)) {
+        if (!clauseSet.add(c)) {
             // System.err.println("Duplicate clause: " + c.toString());
             return false;
         }
@@ -331,6 +333,8 @@ public class RCG implements Grammar {
             cl.calcRangeConstraintVector();
 
         }
+        // the clauses have changed, and so have their hash codes
+        clauseSet = new HashSet<Clause>(clauses);
         for (Clause cl : terminalcls.values()) {
             cl.calcRangeConstraintVector();
             this.addClause(cl, null);
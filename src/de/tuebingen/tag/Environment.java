@@ -31,12 +31,15 @@
  */
 package de.tuebingen.tag;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import de.duesseldorf.frames.Fs;
 import de.duesseldorf.frames.UnifyException;
 import de.duesseldorf.frames.Value;
 import de.duesseldorf.frames.ValueTools;
@@ -52,17 +55,108 @@ import de.tuebingen.derive.PrettyNameFactory;
  *
  * @author parmenti
  */
-public class Environment {
+@SuppressWarnings("serial")
+public class Environment implements Serializable {
 
     private Hashtable<String, Value> table;
     // only for pretty printing of variables and semantic labels:
     private List<String> semlabels;
     private PrettyNameFactory pnf;
+    // the trail: while a mark is open, every binding is recorded together
+    // with the value it replaced, so that it can be undone (see mark())
+    private List<Object> trailKeys;
+    private List<Value> trailValues;
+    private int openMarks = 0;
 
     public Environment(int capacity) {
         table = new Hashtable<String, Value>(capacity);
     }
 
+    /**
+     * Start recording the changes made to this Environment, as on a Prolog
+     * trail. A mark is closed either by undo(mark), which takes back all
+     * changes made since the mark, or by commit(mark), which keeps them.
+     * Marks can be nested, and have to be closed in reverse order.
+     *
+     * @return the mark
+     */
+    public int mark() {
+        if (trailKeys == null) {
+            trailKeys = new ArrayList<Object>();
+            trailValues = new ArrayList<Value>();
+        }
+        openMarks++;
+        return trailKeys.size();
+    }
+
+    /**
+     * Take back all bindings (and the changes recorded with trailCoref and
+     * trailAdisj) made since mark was returned by mark(), and close the mark.
+     *
+     * @param mark
+     */
+    public void undo(int mark) {
+        for (int i = trailKeys.size() - 1; i >= mark; i--) {
+            Object key = trailKeys.remove(i);
+            Value old = trailValues.remove(i);
+            if (key instanceof Fs) {
+                ((Fs) key).setCoref(old);
+            } else if (key instanceof Value) {
+                ((Value) key).getAdisj().removeFirst();
+            } else if (old == null) {
+                table.remove(key);
+            } else {
+                table.put((String) key, old);
+            }
+        }
+        closeMark();
+    }
+
+    /**
+     * Keep the bindings made since mark was returned by mark(), and close the
+     * mark. They can still be undone by an enclosing mark.
+     *
+     * @param mark
+     */
+    public void commit(int mark) {
+        closeMark();
+    }
+
+    private void closeMark() {
+        openMarks--;
+        if (openMarks == 0) {
+            trailKeys.clear();
+            trailValues.clear();
+        }
+    }
+
+    /**
+     * Unification may set the coref of a feature structure it is given. Call
+     * this before doing so, to have the coref restored by undo.
+     *
+     * @param fs
+     */
+    public void trailCoref(Fs fs) {
+        if (openMarks > 0) {
+            trailKeys.add(fs);
+            trailValues.add(fs.getCoref());
+        }
+    }
+
+    /**
+     * Unification binds a variable to an atomic disjunction it is given by
+     * adding the variable in front of the disjunction. Call this before doing
+     * so, to have the variable removed again by undo.
+     *
+     * @param adisj
+     */
+    public void trailAdisj(Value adisj) {
+        if (openMarks > 0) {
+            trailKeys.add(adisj);
+            trailValues.add(null);
+        }
+    }
+
     /**
      * @param var
      * @return This method return either:
@@ -115,7 +209,11 @@ public class Environment {
 
         // System.out.println("Putting in the environment: "+var+"-"+val);
 
-        table.put(var, val);
+        Value old = table.put(var, val);
+        if (openMarks > 0) {
+            trailKeys.add(var);
+            trailValues.add(old);
+        }
     }
 
     public Value get(String var) {
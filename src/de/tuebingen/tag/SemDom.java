@@ -29,10 +29,12 @@
  */
 package de.tuebingen.tag;
 
+import java.io.Serializable;
 import de.duesseldorf.frames.Value;
 import de.tuebingen.anchoring.NameFactory;
 
-public class SemDom implements SemLit {
+@SuppressWarnings("serial")
+public class SemDom implements SemLit, Serializable {
 
     public static final int SCOPEOVER = 0;
 
@@ -29,13 +29,15 @@
  */
 package de.tuebingen.tag;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
 
 import de.duesseldorf.frames.Value;
 import de.tuebingen.anchoring.NameFactory;
 
-public class SemPred implements SemLit {
+@SuppressWarnings("serial")
+public class SemPred implements SemLit, Serializable {
 
     private boolean negated;
     private Value label;
@@ -31,6 +31,7 @@
  */
 package de.tuebingen.tag;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -43,7 +44,8 @@ import de.tuebingen.tree.Node;
 /**
  * @author wmaier, parmenti
  */
-public class TagNode implements Node {
+@SuppressWarnings("serial")
+public class TagNode implements Node, Serializable {
 
     /*
      * type 0: anchor
@@ -35,6 +35,7 @@
  */
 package de.tuebingen.tag;
 
+import java.io.Serializable;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
@@ -67,7 +68,8 @@ import de.tuebingen.util.Pair;
  * @author wmaier, parmenti
  */
 
-public class TagTree implements Tree {
+@SuppressWarnings("serial")
+public class TagTree implements Tree, Serializable {
 
     // unique tree id:
     private String id;
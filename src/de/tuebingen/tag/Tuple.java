@@ -31,9 +31,11 @@
  */
 package de.tuebingen.tag;
 
+import java.io.Serializable;
 import java.util.List;
 
-public class Tuple {
+@SuppressWarnings("serial")
+public class Tuple implements Serializable {
 
     private TagTree head;
     private List<TagTree> arguments;
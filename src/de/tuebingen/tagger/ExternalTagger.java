@@ -31,11 +31,17 @@
  */
 package de.tuebingen.tagger;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.*;
 
 import de.tuebingen.tokenizer.Word;
@@ -45,8 +51,12 @@ import de.tuebingen.tokenizer.Word;
  */
 public class ExternalTagger implements Tagger {
 
+    private static final Pattern POS_LINE = Pattern.compile("(\\S+)\\s+(\\S+)\\s+(\\S+)");
+
     private File exec;
     private String params;
+    private boolean persistent = false;
+    private long timeoutMillis = TimeUnit.MINUTES.toMillis(1);
 
     public ExternalTagger() {
         this(null);
@@ -82,58 +92,51 @@ public class ExternalTagger implements Tagger {
         return params;
     }
 
+    /**
+     * In persistent mode, the tagger is started only once and kept running
+     * for the following sentences, which are sent on its stdin one per line
+     * (see {@link TaggerProcess} for the protocol the tagger must follow).
+     * Otherwise, the tagger is started for every sentence.
+     */
+    public void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    /**
+     * In persistent mode, how long to wait for the tagger to answer a
+     * sentence. A tagger that does not answer in time is killed, and started
+     * again for the next sentence.
+     *
+     * @param timeoutMillis
+     */
+    public void setTimeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeout() {
+        return timeoutMillis;
+    }
+
     public void doTagging(List<Word> words) throws TaggerException, IOException, InterruptedException {
         // is there a tagger defined ?
-        if (exec != null) {
+        if (exec != null && !words.isEmpty()) {
+            List<String> output;
+            if (persistent) {
+                output = tagPersistent(words);
+            } else {
+                output = tagOnce(words);
+            }
             List<PosTag> tags = new LinkedList<PosTag>();
+            for (String posline : output) {
+                tags.addAll(this.parsePosTag(posline));
+            }
             Map<String, Word> tokens = new HashMap<String, Word>(); // for convenience
-            // creation of an external process for launching the tagging
-            // the tagger path is relative to the user directory when launching TuLiPA
-            String wd = System.getProperty("user.dir");
-            ProcessBuilder builder = new ProcessBuilder(exec.toString());
-            builder.directory(new File(wd));
-            // starts the tagger
-            Process p = builder.start();
-            // Input/Output redirection
-            // We feed the tagger's stdin with the tokenized sentence
-            BufferedOutputStream stdin = new BufferedOutputStream(p.getOutputStream());
             for (int i = 0; i < words.size(); ++i) {
-                String word = words.get(i).getWord();
-                tokens.put(word, words.get(i));
-                for (int j = 0; j < word.length(); ++j) {
-                    stdin.write(word.charAt(j));
-                }
-                stdin.write(' '); // word separator
-            }
-            stdin.close();
-            // we wait for the tagger to finish its work
-            p.waitFor();
-            // we read the tagger's output
-            BufferedInputStream stdout = new BufferedInputStream(p.getInputStream());
-            int c = 0;
-            String posline = "";
-            while ((c = stdout.read()) != -1) {
-                //System.out.print((char) c);
-                switch ((char) c) {
-                    case '\n':
-                        tags.addAll(this.parsePosTag(posline));
-                        posline = "";
-                        break;
-                    default:
-                        posline += (char) c;
-                }
-            }
-            stdout.close();
-            if (p.exitValue() != 0) {
-                //System.err.println("Error: tagger exited with value " + p.exitValue() + ":");
-                BufferedInputStream bs = new BufferedInputStream(p.getErrorStream());
-                c = 0;
-                String msg = "";
-                while ((c = bs.read()) != -1) {
-                    //System.err.print((char) c);
-                    msg += (char) c;
-                }
-                throw new TaggerException(msg);
+                tokens.put(words.get(i).getWord(), words.get(i));
             }
             // eventually, we update the tokens (and duplicate them for ambiguities):
             for (int i = 0; i < tags.size(); i++) {
@@ -145,21 +148,117 @@ public class ExternalTagger implements Tagger {
         }
     }
 
+    /**
+     * In persistent mode, send sentences to the tagger in one round trip, so
+     * that they are already tagged when {@link #doTagging(List)} is called
+     * for them. Does nothing otherwise.
+     *
+     * @param sentences the words of every sentence
+     */
+    public void prefetch(List<List<String>> sentences) throws TaggerException, IOException {
+        if (exec != null && persistent) {
+            List<String> lines = new ArrayList<String>(sentences.size());
+            for (List<String> words : sentences) {
+                if (!words.isEmpty()) {
+                    lines.add(TaggerProcess.join(words));
+                }
+            }
+            TaggerProcess.get(exec, params).prefetch(lines);
+        }
+    }
+
+    /**
+     * Stop the taggers started in persistent mode.
+     */
+    public static void closePersistentTaggers() {
+        TaggerProcess.closeAll();
+    }
+
+    private List<String> tagPersistent(List<Word> words)
+            throws TaggerException, IOException, InterruptedException {
+        List<String> toks = new ArrayList<String>(words.size());
+        for (Word w : words) {
+            toks.add(w.getWord());
+        }
+        String sentence = TaggerProcess.join(toks);
+        TaggerProcess p = TaggerProcess.get(exec, params);
+        Future<List<String>> answer = p.takePrefetched(sentence);
+        if (answer == null) {
+            answer = p.submit(Collections.singletonList(sentence)).get(0);
+        }
+        try {
+            return answer.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            String reason = "The tagger " + exec + " did not answer within "
+                    + timeoutMillis + " ms";
+            p.kill(reason);
+            throw new TaggerException(reason + ": " + sentence);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TaggerException) {
+                throw (TaggerException) e.getCause();
+            }
+            throw new TaggerException(e.getCause().toString());
+        }
+    }
+
+    private List<String> tagOnce(List<Word> words)
+            throws TaggerException, IOException, InterruptedException {
+        // creation of an external process for launching the tagging
+        // the tagger path is relative to the user directory when launching TuLiPA
+        String wd = System.getProperty("user.dir");
+        ProcessBuilder builder = new ProcessBuilder(exec.toString());
+        builder.directory(new File(wd));
+        // starts the tagger
+        Process p = builder.start();
+        // Input/Output redirection
+        // We feed the tagger's stdin with the tokenized sentence
+        BufferedOutputStream stdin = new BufferedOutputStream(p.getOutputStream());
+        for (int i = 0; i < words.size(); ++i) {
+            String word = words.get(i).getWord();
+            for (int j = 0; j < word.length(); ++j) {
+                stdin.write(word.charAt(j));
+            }
+            stdin.write(' '); // word separator
+        }
+        stdin.close();
+        // we read the tagger's output (before waiting for it to finish, so
+        // that it can't block on a full pipe)
+        List<String> output = readLines(p.getInputStream());
+        p.waitFor();
+        if (p.exitValue() != 0) {
+            //System.err.println("Error: tagger exited with value " + p.exitValue() + ":");
+            StringBuilder msg = new StringBuilder();
+            for (String line : readLines(p.getErrorStream())) {
+                msg.append(line).append('\n');
+            }
+            throw new TaggerException(msg.toString());
+        }
+        return output;
+    }
+
+    private static List<String> readLines(InputStream in) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader r = new BufferedReader(new InputStreamReader(in, TaggerProcess.ENCODING));
+        String line;
+        while ((line = r.readLine()) != null) {
+            lines.add(line);
+        }
+        r.close();
+        return lines;
+    }
+
     public List<PosTag> parsePosTag(String pos) {
         // method splitting the POS tagger's output
         List<PosTag> tag = null;
         try {
-            Pattern p = Pattern.compile("(\\S+)\\s+(\\S+)\\s+(\\S+)");
-            Matcher m = p.matcher(pos);
+            Matcher m = POS_LINE.matcher(pos);
             boolean a = m.find();
             if (a) {
                 tag = this.getAllTags(m.group(1), m.group(2), m.group(3));
             } else {
                 System.err.println("Line : " + pos);
-                System.err.println("Pattern not found : " + p.pattern());
+                System.err.println("Pattern not found : " + POS_LINE.pattern());
             }
-        } catch (PatternSyntaxException pse) {
-            System.err.println(pse.getDescription());
         } catch (IllegalStateException ise) {
             System.err.println(ise.toString());
         }
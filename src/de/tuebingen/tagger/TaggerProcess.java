@@ -0,0 +1,306 @@
+/*
+ *  File TaggerProcess.java
+ *
+ *  This file is part of the TuLiPA system
+ *     http://www.sfb441.uni-tuebingen.de/emmy-noether-kallmeyer/tulipa
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.tuebingen.tagger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An external tagger that is started once and then kept running, see
+ * {@link ExternalTagger#setPersistent(boolean)}.
+ * <p>
+ * Protocol: the tagger reads one sentence per line on its stdin (the words
+ * separated by blanks), and answers every sentence on its stdout with its
+ * usual output lines (word, tag and lemmas), followed by an empty line.
+ * <p>
+ * Sentences can be sent from several threads: they are written in the order
+ * they are submitted, and the answers are handed back in the same order by a
+ * reader thread, so a new sentence can be sent before the previous ones are
+ * answered.
+ */
+final class TaggerProcess {
+
+    // the one-shot mode writes and reads single bytes, i.e. Latin-1
+    static final Charset ENCODING = StandardCharsets.ISO_8859_1;
+
+    private static final int MAX_ERROR_LENGTH = 4096;
+
+    private static final Map<String, TaggerProcess> running = new HashMap<String, TaggerProcess>();
+
+    private final String command;
+    private final Process process;
+    private final Writer stdin;
+    private final Queue<CompletableFuture<List<String>>> pending = new ConcurrentLinkedQueue<CompletableFuture<List<String>>>();
+    private final Map<String, Future<List<String>>> prefetched = new ConcurrentHashMap<String, Future<List<String>>>();
+    private final StringBuffer errors = new StringBuffer();
+    private final Thread errorReader;
+    private volatile boolean alive = true;
+
+    private TaggerProcess(List<String> command) throws IOException {
+        this.command = command.toString();
+        ProcessBuilder builder = new ProcessBuilder(command);
+        // the tagger path is relative to the user directory when launching TuLiPA
+        builder.directory(new File(System.getProperty("user.dir")));
+        process = builder.start();
+        stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), ENCODING));
+        Thread outputReader = new Thread(new Runnable() {
+            public void run() {
+                readAnswers();
+            }
+        }, "tagger-stdout");
+        outputReader.setDaemon(true);
+        errorReader = new Thread(new Runnable() {
+            public void run() {
+                readErrors();
+            }
+        }, "tagger-stderr");
+        errorReader.setDaemon(true);
+        outputReader.start();
+        errorReader.start();
+    }
+
+    /**
+     * @return the running tagger process for the executable and its
+     * parameters, which is started if there is none (or if it has stopped)
+     */
+    static TaggerProcess get(File exec, String params) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(exec.toString());
+        if (params != null && !params.trim().equals("")) {
+            for (String p : params.trim().split("\\s+")) {
+                command.add(p);
+            }
+        }
+        String key = exec.getAbsolutePath() + " " + command.subList(1, command.size());
+        synchronized (running) {
+            TaggerProcess res = running.get(key);
+            if (res == null || !res.alive) {
+                res = new TaggerProcess(command);
+                running.put(key, res);
+            }
+            return res;
+        }
+    }
+
+    /**
+     * Close the stdin of all running taggers, and wait for them to exit.
+     */
+    static void closeAll() {
+        synchronized (running) {
+            for (TaggerProcess p : running.values()) {
+                p.close();
+            }
+            running.clear();
+        }
+    }
+
+    /**
+     * Send sentences to the tagger. All sentences are written at once, i.e.
+     * they are tagged in one round trip.
+     *
+     * @param sentences the words of every sentence, separated by blanks
+     * @return for every sentence, the output lines of the tagger
+     */
+    synchronized List<Future<List<String>>> submit(List<String> sentences)
+            throws TaggerException {
+        if (!alive) {
+            throw new TaggerException(stoppedMessage());
+        }
+        List<Future<List<String>>> res = new ArrayList<Future<List<String>>>(sentences.size());
+        try {
+            for (String sentence : sentences) {
+                CompletableFuture<List<String>> answer = new CompletableFuture<List<String>>();
+                // queued before it is written, so that the reader finds it
+                pending.add(answer);
+                res.add(answer);
+                stdin.write(sentence.replace('\n', ' '));
+                stdin.write('\n');
+            }
+            stdin.flush();
+        } catch (IOException e) {
+            stopped("Can't write to the tagger " + command + ": " + e.getMessage());
+        }
+        return res;
+    }
+
+    /**
+     * Send sentences to the tagger, and keep the answers for
+     * {@link #takePrefetched(String)}. Sentences that are already waiting
+     * there are not sent again.
+     */
+    void prefetch(List<String> sentences) throws TaggerException {
+        List<String> todo = new ArrayList<String>(sentences.size());
+        for (String sentence : sentences) {
+            if (!prefetched.containsKey(sentence) && !todo.contains(sentence)) {
+                todo.add(sentence);
+            }
+        }
+        List<Future<List<String>>> answers = submit(todo);
+        for (int i = 0; i < todo.size(); i++) {
+            prefetched.put(todo.get(i), answers.get(i));
+        }
+    }
+
+    /**
+     * @return the answer for a prefetched sentence (which is then forgotten),
+     * or null if the sentence has not been prefetched
+     */
+    Future<List<String>> takePrefetched(String sentence) {
+        return prefetched.remove(sentence);
+    }
+
+    private void readAnswers() {
+        try {
+            BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), ENCODING));
+            List<String> lines = new ArrayList<String>();
+            String line;
+            while ((line = stdout.readLine()) != null) {
+                if (line.trim().equals("")) {
+                    CompletableFuture<List<String>> answer = pending.poll();
+                    if (answer == null) {
+                        System.err.println("Tagger output without a pending sentence ignored: " + lines);
+                    } else {
+                        answer.complete(lines);
+                    }
+                    lines = new ArrayList<String>();
+                } else {
+                    lines.add(line);
+                }
+            }
+            stopped("The tagger " + command + " has stopped");
+        } catch (IOException e) {
+            stopped("Can't read from the tagger " + command + ": " + e.getMessage());
+        }
+    }
+
+    private void readErrors() {
+        try {
+            Reader stderr = new InputStreamReader(process.getErrorStream(), ENCODING);
+            char[] buf = new char[1024];
+            int n;
+            while ((n = stderr.read(buf)) != -1) {
+                // only the end of the error output is kept
+                errors.append(buf, 0, n);
+                if (errors.length() > MAX_ERROR_LENGTH) {
+                    errors.delete(0, errors.length() - MAX_ERROR_LENGTH);
+                }
+            }
+        } catch (IOException e) {
+            // the tagger has stopped
+        }
+    }
+
+    /**
+     * Mark the process as stopped, and fail all sentences waiting for an
+     * answer.
+     */
+    private void stopped(String reason) {
+        alive = false;
+        try {
+            if (process.waitFor(1, TimeUnit.SECONDS)) {
+                errorReader.join(1000);
+                reason += " (exit value " + process.exitValue() + ")";
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (errors.length() > 0) {
+            reason += ":\n" + errors;
+        }
+        CompletableFuture<List<String>> answer;
+        while ((answer = pending.poll()) != null) {
+            answer.completeExceptionally(new TaggerException(reason));
+        }
+    }
+
+    private String stoppedMessage() {
+        return "The tagger " + command + " has stopped" + (errors.length() > 0 ? ":\n" + errors : "");
+    }
+
+    private synchronized void close() {
+        try {
+            stdin.close();
+            process.waitFor(5, TimeUnit.SECONDS);
+        } catch (IOException e) {
+            // already closed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (process.isAlive()) {
+            process.destroy();
+        }
+        cancelPrefetched();
+    }
+
+    /**
+     * Kill a tagger that does not answer. All sentences waiting for an
+     * answer fail, and the next call of {@link #get(File, String)} starts a
+     * new tagger.
+     */
+    void kill(String reason) {
+        synchronized (this) {
+            alive = false;
+            process.destroyForcibly();
+        }
+        cancelPrefetched();
+        stopped(reason);
+    }
+
+    /**
+     * Forget the prefetched answers nobody has asked for.
+     */
+    private void cancelPrefetched() {
+        for (Future<List<String>> answer : prefetched.values()) {
+            answer.cancel(true);
+        }
+        prefetched.clear();
+    }
+
+    static String join(List<String> words) {
+        StringBuilder sb = new StringBuilder();
+        for (String w : words) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(w);
+        }
+        return sb.toString();
+    }
+}
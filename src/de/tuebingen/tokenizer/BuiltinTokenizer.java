@@ -53,8 +53,7 @@ public class BuiltinTokenizer extends Tokenizer {
         mode = mode.toLowerCase();
         if (GERMAN.equals(mode)) {
             setSentence(germanTest);
-            FiniteStateReader r = new FiniteStateReader(fstFile, true);
-            setT(r.getTransducer());
+            setTransducer(CompiledTransducer.load(fstFile, true));
         } else if (WHITESPACE.equals(mode)) {
             setSentence(whitespaceTest);
             setErasePunctuation(true);
@@ -0,0 +1,193 @@
+/*
+ *  File CompiledTransducer.java
+ *
+ *  This file is part of the TuLiPA system
+ *     http://www.sfb441.uni-tuebingen.de/emmy-noether-kallmeyer/tulipa
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.tuebingen.tokenizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link FiniteState} transducer compiled into a transition table: states
+ * are numbered, input characters are mapped to columns, and the arc leaving
+ * a state with a given input is the cell of the table in the row of the
+ * state and the column of the input.
+ * <p>
+ * Compiled transducers are immutable, and can therefore be shared between
+ * threads. The transducers read by {@link #load(String, boolean)} are only
+ * read and compiled once.
+ */
+public final class CompiledTransducer {
+
+    private static final Map<String, CompiledTransducer> loaded = new HashMap<String, CompiledTransducer>();
+
+    private final FiniteState source;
+    private final int start;
+    private final boolean[] finalStates;
+    // column of each input character, -1 if there is no arc with the input
+    private final int[] columns;
+    private final int width;
+    // target state and output character of each arc, -1 if there is no arc
+    // (resp. no output)
+    private final int[] targets;
+    private final int[] outputs;
+
+    /**
+     * @param fs the transducer to compile
+     * @throws TokenizerException       if an arc does not read and write
+     *                                  single characters
+     * @throws IllegalArgumentException if fs is not deterministic, i.e. if
+     *                                  a state has two arcs with the same
+     *                                  input
+     */
+    public CompiledTransducer(FiniteState fs) throws TokenizerException {
+        source = fs;
+        Map<Object, Integer> states = new HashMap<Object, Integer>();
+        states.put(fs.getStartState(), 0);
+        int maxInput = -1;
+        for (Object o : fs.getArcs()) {
+            FiniteStateArc a = (FiniteStateArc) o;
+            if (!(a.getInput() instanceof Character)) {
+                throw new TokenizerException("Can't compile arc [" + a + "]: input is not a character.");
+            }
+            maxInput = Math.max(maxInput, (Character) a.getInput());
+            stateNumber(states, a.getFrom());
+            stateNumber(states, a.getTo());
+        }
+        columns = new int[maxInput + 1];
+        Arrays.fill(columns, -1);
+        int w = 0;
+        for (Object o : fs.getArcs()) {
+            char c = (Character) ((FiniteStateArc) o).getInput();
+            if (columns[c] < 0) {
+                columns[c] = w++;
+            }
+        }
+        width = w;
+        targets = new int[states.size() * width];
+        outputs = new int[states.size() * width];
+        Arrays.fill(targets, -1);
+        for (Object o : fs.getArcs()) {
+            FiniteStateArc a = (FiniteStateArc) o;
+            int arc = states.get(a.getFrom()) * width + columns[(Character) a.getInput()];
+            if (targets[arc] >= 0) {
+                // the table has room for one arc per state and input only
+                throw new IllegalArgumentException("Can't compile nondeterministic transducer: state "
+                        + a.getFrom() + " has more than one arc with input '" + a.getInput() + "'.");
+            }
+            targets[arc] = states.get(a.getTo());
+            outputs[arc] = outputChar(a);
+        }
+        start = 0;
+        finalStates = new boolean[states.size()];
+        for (Object s : fs.getFinalStates()) {
+            Integer i = states.get(s);
+            if (i != null) {
+                finalStates[i] = true;
+            }
+        }
+    }
+
+    private static void stateNumber(Map<Object, Integer> states, Object state) {
+        if (!states.containsKey(state)) {
+            states.put(state, states.size());
+        }
+    }
+
+    private static int outputChar(FiniteStateArc a) throws TokenizerException {
+        Object out = a.getOutput();
+        if (out instanceof Character) {
+            return (Character) out;
+        }
+        String s = out.toString();
+        if (s.equals("") || s.equals(FiniteState.EPSILON)) {
+            return -1;
+        }
+        throw new TokenizerException("Can't compile arc [" + a + "]: output is not a character.");
+    }
+
+    /**
+     * Read (once) and compile a transducer.
+     *
+     * @param f   the file containing the transducer
+     * @param ins true if the file is inside the package, false if in local
+     *            file system (a file is read again when it has been modified)
+     */
+    public static CompiledTransducer load(String f, boolean ins)
+            throws IOException, TokenizerException {
+        String key = ins ? "package:" + f
+                : "file:" + f + "@" + new File(f).lastModified();
+        synchronized (loaded) {
+            CompiledTransducer res = loaded.get(key);
+            if (res == null) {
+                res = new CompiledTransducer(
+                        new FiniteStateReader(f, ins).getTransducer());
+                loaded.put(key, res);
+            }
+            return res;
+        }
+    }
+
+    /**
+     * @return the transducer this one was compiled from, which must not be
+     * used for reading
+     */
+    public FiniteState getSource() {
+        return source;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public boolean isFinal(int state) {
+        return finalStates[state];
+    }
+
+    /**
+     * @return the arc leaving state with input c, or -1 if there is none
+     */
+    public int arc(int state, char c) {
+        int col = c < columns.length ? columns[c] : -1;
+        if (col < 0) {
+            return -1;
+        }
+        int arc = state * width + col;
+        return targets[arc] < 0 ? -1 : arc;
+    }
+
+    public int target(int arc) {
+        return targets[arc];
+    }
+
+    /**
+     * @return the output character of the arc, or -1 if the arc outputs
+     * nothing
+     */
+    public int output(int arc) {
+        return outputs[arc];
+    }
+
+    public String toString() {
+        return source.toString();
+    }
+}
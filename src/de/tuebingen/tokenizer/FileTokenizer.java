@@ -37,7 +37,6 @@ import java.io.IOException;
 public class FileTokenizer extends Tokenizer {
 
     public FileTokenizer(String tokenizerFile) throws TokenizerException, IOException {
-        FiniteStateReader r = new FiniteStateReader(tokenizerFile, false);
-        setT(r.getTransducer());
+        setTransducer(CompiledTransducer.load(tokenizerFile, false));
     }
 }
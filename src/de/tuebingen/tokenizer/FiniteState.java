@@ -143,6 +143,13 @@ public class FiniteState {
         return finalStates;
     }
 
+    /**
+     * @return all arcs of the automaton
+     */
+    public Set<Object> getArcs() {
+        return arcs;
+    }
+
     /**
      * add a final state to the automaton
      *
@@ -31,17 +31,26 @@
 package de.tuebingen.tokenizer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+/**
+ * Tokenizers are cheap to create: the transducers they use are compiled
+ * once ({@link CompiledTransducer}) and shared. {@link #tokenize(String)}
+ * does not change the tokenizer, so it can be used by several threads.
+ */
 public abstract class Tokenizer {
 
     protected static final int MAXSENTLEN = 30;
     protected static final String punctstring = ",.!?;";
+    private static final Collection<String> punctuation = Collections
+            .unmodifiableList(Arrays.asList(punctstring.split("")));
 
     private String sentence;
-    private FiniteState t;
+    private CompiledTransducer t;
     // erase left-over punctuation from result
     private boolean erasePunctuation;
 
@@ -52,15 +61,6 @@ public abstract class Tokenizer {
         erasePunctuation = false;
     }
 
-    private Collection<String> punctuation() {
-        ArrayList<String> ret = new ArrayList<String>();
-        String[] puncts = punctstring.split("");
-        for (int i = 0; i < puncts.length; ++i) {
-            ret.add(puncts[i]);
-        }
-        return ret;
-    }
-
     /**
      * @return a list of words converted into a list of String
      */
@@ -105,10 +105,14 @@ public abstract class Tokenizer {
     }
 
     public FiniteState getT() {
-        return t;
+        return t == null ? null : t.getSource();
+    }
+
+    public void setT(FiniteState t) throws TokenizerException {
+        this.t = t == null ? null : new CompiledTransducer(t);
     }
 
-    public void setT(FiniteState t) {
+    public void setTransducer(CompiledTransducer t) {
         this.t = t;
     }
 
@@ -143,26 +147,45 @@ public abstract class Tokenizer {
     }
 
     /**
-     * Tokenize a sentence.
+     * Tokenize the sentence set with {@link #setSentence(String)}.
      */
     public List<Word> tokenize() throws TokenizerException {
+        return tokenize(sentence);
+    }
+
+    /**
+     * Tokenize a sentence.
+     */
+    public List<Word> tokenize(String sentence) throws TokenizerException {
         ArrayList<Word> ret = null;
 
         if (hasTransducer()) {
             ret = new ArrayList<Word>(MAXSENTLEN);
+            // the states the transducer went through since the last word,
+            // and the characters it output
+            int[] path = new int[sentence.length() + 1];
+            int[] output = new int[sentence.length() + 1];
+            int depth = 0;
+            int state = t.getStart();
+            StringBuilder out = new StringBuilder();
             int i = 0;
             String sw = "";
             Word word = new Word();
             while (i < sentence.length()) {
                 // we try to read as far as we can
-                while (i < sentence.length() && t.read(sentence.charAt(i))) {
+                int arc;
+                while (i < sentence.length()
+                        && (arc = t.arc(state, sentence.charAt(i))) >= 0) {
+                    path[depth] = state;
+                    output[depth] = t.output(arc);
+                    depth++;
+                    state = t.target(arc);
                     ++i;
                 }
                 // we are in start state, there's input left and we couldn't
                 // read:
                 // unknown input symbol! Fast forward to next whitespace.
-                if (t.getStartState().equals(t.getState())
-                        && i < sentence.length()) {
+                if (state == t.getStart() && i < sentence.length()) {
                     int auxind = i;
                     while (auxind < sentence.length() && !Character
                             .isWhitespace(sentence.charAt(auxind))) {
@@ -181,10 +204,18 @@ public abstract class Tokenizer {
                     // is
                     // no final state on the path)
                 } else {
-                    while (!t.isFinalState(t.getState()) && t.unread()) {
+                    while (!t.isFinal(state) && depth > 0) {
+                        depth--;
+                        state = path[depth];
                         --i;
                     }
-                    sw = t.getStringOutput();
+                    out.setLength(0);
+                    for (int k = 0; k < depth; k++) {
+                        if (output[k] >= 0) {
+                            out.append((char) output[k]);
+                        }
+                    }
+                    sw = out.toString();
                 }
                 if (!sw.equals("")) {
                     // save the output
@@ -196,7 +227,8 @@ public abstract class Tokenizer {
                     sw = "";
                 }
                 // new word: reset automaton to start state and empty output
-                t.reset();
+                state = t.getStart();
+                depth = 0;
             }
             // if there is only one word, try to split again by whitespace
             if (ret.size() == 1) {
@@ -210,7 +242,6 @@ public abstract class Tokenizer {
         }
 
         if (isErasePunctuation()) {
-            Collection<String> punctuation = punctuation();
             ArrayList<Word> newret = new ArrayList<Word>();
             int cnt = 0;
             Iterator<Word> it = ret.iterator();
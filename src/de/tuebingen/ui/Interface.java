@@ -39,15 +39,19 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 import javax.swing.SwingUtilities;
 
 import de.duesseldorf.frames.Situation;
 import de.duesseldorf.rrg.RRG;
 import de.duesseldorf.ui.CommandLineProcesses;
+import de.duesseldorf.ui.ParseServer;
 import de.duesseldorf.ui.ParsingInterface;
 import de.duesseldorf.ui.WorkbenchLoader;
 import de.tuebingen.tag.TTMCTAG;
+import de.tuebingen.tagger.ExternalTagger;
 import de.tuebingen.tokenizer.TokenizerException;
 import de.tuebingen.tree.Grammar;
 
@@ -56,6 +60,9 @@ import de.tuebingen.tree.Grammar;
 
 public class Interface {
 
+    // number of sentences of a batch file that are read (and tagged) at once
+    private static final int TAGGING_WINDOW = 64;
+
     /**
      * Interface to the Tuebingen Parser.
      * <p>
@@ -86,13 +93,14 @@ public class Interface {
             System.exit(0);
         }
 
-        gui = !(op.check("s") || (op.check("b"))) || (op.check("i"));
+        gui = !(op.check("s") || (op.check("b")) || op.check("server"))
+                || (op.check("i"));
         if (gui)
             op.setVal("gui", "");
 
 
-        if (((op.check("s")) || (op.check("i")) || (op.check("b")))
-                && !(op.check("g"))) {
+        if (((op.check("s")) || (op.check("i")) || (op.check("b"))
+                || op.check("server")) && !(op.check("g"))) {
             System.err.println("Argument missing - exit");
             System.err.println(
                     "When the graphical mode is not used, the option g is mandatory.\n");
@@ -111,14 +119,15 @@ public class Interface {
         // axiom's default value is "v"
         String a = op.check("a") ? op.getVal("a") : "v";
         // axiom printed to stderr only in non-graphical mode:
-        if (op.check("s") || op.check("b") || op.check("i")) {
+        if (op.check("s") || op.check("b") || op.check("i")
+                || op.check("server")) {
             System.err.print("Axiom: ");
             System.err.println(a);
         }
 
         // if we are not in graphical mode
         // we load the grammar (and potentially lexicons)
-        if (op.check("s") || op.check("i")
+        if (op.check("s") || op.check("i") || op.check("server")
                 || (op.check("b") && !op.check("tag"))) { // NB: batch mode may
             // require grammar
             // reloading if option
@@ -137,7 +146,9 @@ public class Interface {
             // System.err.println(g.toString());
         }
 
-        if (op.check("s")) { // single parse mode
+        if (op.check("server")) { // parse server mode
+            new ParseServer(op, g).run();
+        } else if (op.check("s")) { // single parse mode
             String sentence = op.getVal("s");
             try {
                 if (g instanceof TTMCTAG) {
@@ -204,66 +215,71 @@ public class Interface {
                 op.setVal("x", "true"); // to deactivate graphical output
             // interface
             // parse the input
-            while ((is = r.readLine()) != null) {
-                try {
-                    if (op.check("r") || op.check("c") || op.check("lcfrs")) {// RCG
-                        // parsing
-                        op.setOurVal("o", out + i + ".xml");
-                        // RCG parse
-                        ParsingInterface.parseNonTAG(op, g, is);
-                    } else {
-                        // in batch mode, there is an xml output, with the file
-                        // name defined as follows.
-                        String newout;
-                        if (out.endsWith(".xml") && !(op.check("rrg") && op.equals("out"))) {
-                            newout = out.substring(0,
-                                    out.length() - 4);
-                            newout = newout + "_" + i;
-                            newout += ".xml";
+            if (op.check("rrg")) {
+                // the RRG parser reads the batch file itself, so that it can
+                // parse the sentences concurrently
+                op.setOurVal("o", out);
+                ParsingInterface.parseRRG(op, null);
+            } else {
+                Deque<String> lookahead = new ArrayDeque<String>();
+                while ((is = nextSentence(r, lookahead, op)) != null) {
+                    try {
+                        if (op.check("r") || op.check("c") || op.check("lcfrs")) {// RCG
+                            // parsing
+                            op.setOurVal("o", out + i + ".xml");
+                            // RCG parse
+                            ParsingInterface.parseNonTAG(op, g, is);
                         } else {
-                            newout = out + "_" + i + ".xml";
-                        }
-                        op.setOurVal("o", newout);
-                        // if TAG (left context) polarity filtering is
-                        // activated, grammar reloading is necessary
-                        if (op.check("tag")) {
-                            try {
-                                op.setVal("s", "\"" + is + "\""); // we need to
-                                // define the
-                                // sentence to
-                                // parse for
-                                // the grammar
-                                // filtering
-                                WorkbenchLoader.loadSituation(op, gram, lem,
-                                        mo);
-                                g = Situation.getGrammar();
-                                frameG = Situation.getFrameGrammar();
-                                op.removeVal("s"); // reinit once the filtering
-                                // is done
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                                CommandLineProcesses.error(
-                                        "Error while loading grammar: please check your command line options",
-                                        op);
+                            // in batch mode, there is an xml output, with the file
+                            // name defined as follows.
+                            String newout;
+                            if (out.endsWith(".xml")) {
+                                newout = out.substring(0,
+                                        out.length() - 4);
+                                newout = newout + "_" + i;
+                                newout += ".xml";
+                            } else {
+                                newout = out + "_" + i + ".xml";
+                            }
+                            op.setOurVal("o", newout);
+                            // if TAG (left context) polarity filtering is
+                            // activated, grammar reloading is necessary
+                            if (op.check("tag")) {
+                                try {
+                                    op.setVal("s", "\"" + is + "\""); // we need to
+                                    // define the
+                                    // sentence to
+                                    // parse for
+                                    // the grammar
+                                    // filtering
+                                    WorkbenchLoader.loadSituation(op, gram, lem,
+                                            mo);
+                                    g = Situation.getGrammar();
+                                    frameG = Situation.getFrameGrammar();
+                                    op.removeVal("s"); // reinit once the filtering
+                                    // is done
+                                } catch (Exception e) {
+                                    e.printStackTrace();
+                                    CommandLineProcesses.error(
+                                            "Error while loading grammar: please check your command line options",
+                                            op);
+                                }
+                                // we remove the "simple" lexical disambiguation,
+                                // since the extended one has been performed:
+                                op.setVal("nofiltering", "true");
                             }
-                            // we remove the "simple" lexical disambiguation,
-                            // since the extended one has been performed:
-                            op.setVal("nofiltering", "true");
-                        }
-                        if (op.check("rrg")) {
-                            ParsingInterface.parseRRG(op, is);
-                        } else {
                             ParsingInterface.parseTAG(op,
                                     (TTMCTAG) Situation.getGrammar(), is);
                         }
+                    } catch (Exception e) {
+                        System.err.println(
+                                "Parse of sentence \"" + is + "\" failed.");
                     }
-                } catch (Exception e) {
-                    System.err.println(
-                            "Parse of sentence \"" + is + "\" failed.");
+                    i++;
                 }
-                i++;
             }
             r.close();
+            ExternalTagger.closePersistentTaggers();
         } else { // graphical mode
             // arguments needs to be final
             final CommandLineOptions ops = op;
@@ -280,4 +296,24 @@ public class Interface {
         }
     }
 
+    /**
+     * Read the next sentence of the batch file. The sentences are read ahead
+     * in windows, and with a persistent tagger all sentences of a window are
+     * tagged in one round trip.
+     */
+    private static String nextSentence(BufferedReader r,
+                                       Deque<String> lookahead, CommandLineOptions op) throws IOException {
+        if (lookahead.isEmpty()) {
+            String line;
+            while (lookahead.size() < TAGGING_WINDOW
+                    && (line = r.readLine()) != null) {
+                lookahead.add(line);
+            }
+            if (!(op.check("r") || op.check("c") || op.check("lcfrs"))) {
+                ParsingInterface.pretag(op, lookahead);
+            }
+        }
+        return lookahead.poll();
+    }
+
 }
@@ -0,0 +1,230 @@
+/*
+ *  File XMLEntryStream.java
+ *
+ *  This file is part of the TuLiPA system
+ *     http://www.sfb441.uni-tuebingen.de/emmy-noether-kallmeyer/tulipa
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.tuebingen.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Streaming access to the entries of a large XML file (the trees of a
+ * grammar, the lemmas of a lexicon, ...), so that the whole document is never
+ * in memory.
+ * <p>
+ * The file is read with StAX, and every entry is returned as a small DOM
+ * element of its own, as if it had been read by
+ * {@link XMLUtilities#parseXMLFile(File, boolean)}: the readers can keep on
+ * using the DOM API on the entry, and the entry can be garbage-collected as
+ * soon as it has been processed.
+ */
+public class XMLEntryStream implements Iterator<Element>, Closeable {
+
+    private final File file;
+    // the element containing the entries, null for the root element
+    private final String container;
+    private final InputStream in;
+    private final XMLStreamReader reader;
+    private final DocumentBuilder builder;
+
+    // depth of the container element, -1 if not reached yet
+    private int containerDepth = -1;
+    private int depth = -1;
+    private boolean done = false;
+    private Element next = null;
+
+    /**
+     * @param f the XML file, whose entries are the children of the root
+     *          element
+     */
+    public XMLEntryStream(File f) throws FileNotFoundException {
+        this(f, null);
+    }
+
+    /**
+     * @param f         the XML file
+     * @param container the name of the element whose children are the
+     *                  entries (only the first element with this name is
+     *                  read), or null for the root element
+     */
+    public XMLEntryStream(File f, String container)
+            throws FileNotFoundException {
+        this.file = f;
+        this.container = container;
+        this.in = new FileInputStream(f);
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // the DTDs of TuLiPA are shipped with it, see MyEntityResolver
+        factory.setXMLResolver(new XMLResolver() {
+            public Object resolveEntity(String publicID, String systemID,
+                                        String baseURI, String namespace) {
+                try {
+                    InputSource is = new MyEntityResolver()
+                            .resolveEntity(publicID, systemID);
+                    return is == null ? null : is.getByteStream();
+                } catch (SAXException e) {
+                    return null;
+                }
+            }
+        });
+        try {
+            reader = factory.createXMLStreamReader(f.toURI().toString(), in);
+            builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        } catch (XMLStreamException e) {
+            throw error(e);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    public boolean hasNext() {
+        if (next == null && !done) {
+            try {
+                next = readNext();
+            } catch (XMLStreamException e) {
+                close();
+                throw error(e);
+            }
+        }
+        return next != null;
+    }
+
+    /**
+     * @return the next entry, in a document of its own
+     */
+    public Element next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Element res = next;
+        next = null;
+        return res;
+    }
+
+    public void close() {
+        done = true;
+        try {
+            reader.close();
+            in.close();
+        } catch (XMLStreamException e) {
+            // nothing left to read anyway
+        } catch (IOException e) {
+            // nothing left to read anyway
+        }
+    }
+
+    private Element readNext() throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                if (containerDepth >= 0 && depth == containerDepth + 1) {
+                    Document doc = builder.newDocument();
+                    Element res = readElement(doc);
+                    doc.appendChild(res);
+                    depth--;
+                    return res;
+                }
+                if (containerDepth < 0 && (container == null ? depth == 0
+                        : container.equals(qName()))) {
+                    containerDepth = depth;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == containerDepth) {
+                    break;
+                }
+                depth--;
+            }
+        }
+        // the file is not needed anymore, even if the stream is not closed
+        close();
+        return null;
+    }
+
+    /**
+     * Read the element starting at the current position of the reader, up
+     * to its end tag.
+     */
+    private Element readElement(Document doc) throws XMLStreamException {
+        Element res = doc.createElement(qName());
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String prefix = reader.getAttributePrefix(i);
+            String name = reader.getAttributeLocalName(i);
+            res.setAttribute(prefix == null || prefix.equals("") ? name
+                    : prefix + ":" + name, reader.getAttributeValue(i));
+        }
+        while (true) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    res.appendChild(readElement(doc));
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    // adjacent texts are merged, as by Document.normalize()
+                    Node last = res.getLastChild();
+                    if (last instanceof Text) {
+                        ((Text) last).appendData(reader.getText());
+                    } else {
+                        res.appendChild(doc.createTextNode(reader.getText()));
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return res;
+                default:
+                    // comments and processing instructions are not needed
+            }
+        }
+    }
+
+    private String qName() {
+        String prefix = reader.getPrefix();
+        return prefix == null || prefix.equals("") ? reader.getLocalName()
+                : prefix + ":" + reader.getLocalName();
+    }
+
+    private IllegalStateException error(XMLStreamException e) {
+        String line = e.getLocation() == null ? ""
+                : ", line " + e.getLocation().getLineNumber();
+        System.err.println("\n** Parsing error" + line + ", uri " + file);
+        System.err.println("   " + e.getMessage());
+        return new IllegalStateException("Can't read " + file, e);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ *  File XMLStreamOutput.java
+ *
+ *  This file is part of the TuLiPA-frames system
+ *     https://github.com/spetitjean/TuLiPA-frames
+ *
+ *  TuLiPA is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation; either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  TuLiPA is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package de.tuebingen.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes an XML document element by element (with StAX), instead of
+ * building a DOM document and transforming it (see
+ * {@link XMLUtilities#writeXML}). The layout is the one of the transformer:
+ * UTF-8, children indented by 2, attributes in alphabetical order, empty
+ * elements as &lt;x/&gt; and text-only elements on one line.
+ * <p>
+ * The start tag of an element is only written with its first child (or as
+ * an empty element), so that its attributes can be given after
+ * {@link #startElement(String)}.
+ */
+public class XMLStreamOutput implements Closeable {
+
+    private static final XMLOutputFactory factory = XMLOutputFactory
+            .newInstance();
+
+    private final Writer writer;
+    private final XMLStreamWriter xml;
+    // whether the underlying stream is closed by close()
+    private final boolean owned;
+
+    private String doctype;
+    // the element started last, if its start tag has not been written yet
+    private String pending;
+    private final Map<String, String> attributes = new TreeMap<String, String>();
+    // for each open element, whether it has element children
+    private final List<Boolean> open = new ArrayList<Boolean>();
+
+    /**
+     * @param outfile a file name, or "stdout"
+     */
+    public XMLStreamOutput(String outfile) throws IOException {
+        this(outfile.equals("stdout") ? System.out
+                : new FileOutputStream(outfile), !outfile.equals("stdout"));
+    }
+
+    /**
+     * @param out a stream which is flushed, but not closed, by close()
+     */
+    public XMLStreamOutput(OutputStream out) throws IOException {
+        this(out, false);
+    }
+
+    private XMLStreamOutput(OutputStream out, boolean owned)
+            throws IOException {
+        this.writer = new BufferedWriter(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.owned = owned;
+        try {
+            xml = factory.createXMLStreamWriter(writer);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Write the XML declaration.
+     *
+     * @param dtd the system identifier of the document type, given with the
+     *            root element, or null
+     */
+    public void startDocument(String dtd) throws IOException {
+        doctype = dtd;
+        try {
+            xml.writeStartDocument("UTF-8", "1.0");
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public void startElement(String name) throws IOException {
+        try {
+            writePending();
+            if (open.isEmpty()) {
+                if (doctype != null) {
+                    xml.writeCharacters("\n");
+                    xml.writeDTD("<!DOCTYPE " + name + " SYSTEM \"" + doctype
+                            + "\">");
+                    xml.writeCharacters("\n");
+                }
+            } else {
+                open.set(open.size() - 1, Boolean.TRUE);
+                indent(open.size());
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        pending = name;
+        open.add(Boolean.FALSE);
+    }
+
+    /**
+     * Set an attribute of the element started last, before its content.
+     */
+    public void attribute(String name, String value) {
+        if (pending == null) {
+            throw new IllegalStateException(
+                    "attribute " + name + " after the content of an element");
+        }
+        attributes.put(name, value);
+    }
+
+    public void text(String text) throws IOException {
+        try {
+            writePending();
+            xml.writeCharacters(text);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public void endElement() throws IOException {
+        boolean children = open.remove(open.size() - 1);
+        try {
+            if (pending != null) {
+                xml.writeEmptyElement(pending);
+                writeAttributes();
+                pending = null;
+                return;
+            }
+            if (children) {
+                indent(open.size());
+            }
+            xml.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Close the open elements, and flush the document.
+     */
+    public void endDocument() throws IOException {
+        while (!open.isEmpty()) {
+            endElement();
+        }
+        try {
+            xml.writeCharacters("\n");
+            xml.writeEndDocument();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        flush();
+    }
+
+    /**
+     * Hand what has been written so far to the underlying stream.
+     */
+    public void flush() throws IOException {
+        try {
+            xml.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        writer.flush();
+    }
+
+    public void close() throws IOException {
+        flush();
+        if (owned) {
+            writer.close();
+        }
+    }
+
+    private void writePending() throws XMLStreamException {
+        if (pending != null) {
+            xml.writeStartElement(pending);
+            writeAttributes();
+            pending = null;
+        }
+    }
+
+    private void writeAttributes() throws XMLStreamException {
+        for (Map.Entry<String, String> a : attributes.entrySet()) {
+            xml.writeAttribute(a.getKey(), a.getValue());
+        }
+        attributes.clear();
+    }
+
+    private void indent(int depth) throws XMLStreamException {
+        StringBuilder sb = new StringBuilder(1 + 2 * depth);
+        sb.append('\n');
+        for (int i = 0; i < depth; i++) {
+            sb.append("  ");
+        }
+        xml.writeCharacters(sb.toString());
+    }
+}
@@ -31,10 +31,13 @@
  */
 package de.tuebingen.util;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -103,8 +106,6 @@ public class XMLUtilities {
                                 boolean system) {
         try {
             DOMSource domSource = new DOMSource(document);
-            StringWriter writer = new StringWriter();
-            StreamResult result = new StreamResult(writer);
             TransformerFactory tf = TransformerFactory.newInstance();
             // tf.setAttribute("indent-number", new Integer(2)); //no more
             // available since using xalan
@@ -119,15 +120,20 @@ public class XMLUtilities {
             } else {
                 transformer.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, dtd);
             }
-            transformer.transform(domSource, result);
-            String stringResult = writer.toString();
-
-            if (outfile.equals("stdout")) {
-                System.out.println(stringResult);
-            } else {
-                FileWriter fw = new FileWriter(outfile);
-                fw.write(stringResult);
-                fw.close();
+            // written to the output as it is serialized, in the encoding of
+            // the XML declaration
+            boolean stdout = outfile.equals("stdout");
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    stdout ? System.out : new FileOutputStream(outfile),
+                    StandardCharsets.UTF_8));
+            try {
+                transformer.transform(domSource, new StreamResult(writer));
+            } finally {
+                if (stdout) {
+                    writer.flush();
+                } else {
+                    writer.close();
+                }
             }
 
         } catch (TransformerException e) {